@@ -0,0 +1,50 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.ClearCaseException;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.util.execute.CommandLineInterface;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The parsing of diffbl output into {@link Activity}s and their versions, {@link Activity.Parser#parse()}, including the bulk loading of the versions.
+ * Cleartool is answered by a {@link CannedCommandLine}.
+ *
+ * @author cwolfgang
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class ActivityParserBenchmark {
+
+    @Param( { "10000", "100000", "1000000" } )
+    public int lines;
+
+    private CommandLineInterface original;
+    private DiffBl diffbl;
+
+    @Setup
+    public void setup() throws Exception {
+        original = Cleartool.getCommandLineInterface();
+        Cleartool.setCommandLineInterface( new CannedCommandLine().on( "diffbl", Outputs.diffbl( lines ) ) );
+        diffbl = new DiffBl( Baseline.get( "baseline:bl1@\\pvob" ), Baseline.get( "baseline:bl2@\\pvob" ) ).setVersions( true ).setActivities( true ).setViewRoot( new File( Outputs.VROOT ) );
+    }
+
+    @TearDown
+    public void tearDown() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Benchmark
+    public Object parse() throws ClearCaseException {
+        return new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.LEFT ).addDirection( Activity.Parser.Direction.RIGHT ).parse().getActivities();
+    }
+}
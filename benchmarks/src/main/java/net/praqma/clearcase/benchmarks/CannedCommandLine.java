@@ -0,0 +1,112 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+/**
+ * A {@link CommandLineInterface} answering cleartool commands from prepared output, without forking.
+ * Listings are answered by verb, describes of {@link net.praqma.clearcase.ucm.entities.Version}s and activities with generated records,
+ * so only the Java side of a command is measured.
+ *
+ * @author cwolfgang
+ */
+public class CannedCommandLine implements CommandLineInterface {
+
+    private final Map<String, List<String>> outputs = new HashMap<String, List<String>>();
+
+    /**
+     * Answer commands with the verb with the output
+     */
+    public CannedCommandLine on( String verb, List<String> output ) {
+        outputs.put( verb, output );
+        return this;
+    }
+
+    @Override
+    public OperatingSystem getOS() {
+        return CommandLine.getInstance().getOS();
+    }
+
+    @Override
+    public CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, null, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, ignore, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+        String[] tokens = cmd.trim().split( "\\s+" );
+        String verb = tokens.length > 1 ? tokens[1] : "";
+
+        List<String> lines;
+        if( outputs.containsKey( verb ) ) {
+            lines = outputs.get( verb );
+        } else if( verb.equals( "describe" ) || verb.equals( "desc" ) ) {
+            lines = describe( tokens );
+        } else {
+            throw new AbnormalProcessTerminationException( "No output for " + cmd, cmd, 1 );
+        }
+
+        CmdResult result = new CmdResult();
+        for( String line : lines ) {
+            result.stdoutList.add( line );
+            result.stdoutBuffer.append( line ).append( Cool.linesep );
+        }
+
+        return result;
+    }
+
+    private List<String> describe( String[] tokens ) {
+        String format = tokens.length > 3 ? tokens[3] : "";
+        int selectors = tokens.length - 4;
+
+        String record;
+        if( format.startsWith( "%u}{" ) ) {
+            /* Version */
+            record = Outputs.user( selectors ) + "}{" + Cool.filesep + "main" + Cool.filesep + "1}{" + tokens[4].replace( "\"", "" ) + "}{file element}{activity:dev_0@" + Cool.filesep + "pvob";
+        } else if( format.startsWith( "%u{!}" ) ) {
+            /* Activity */
+            record = Outputs.user( selectors ) + "{!}Headline";
+        } else if( format.contains( "activity" ) ) {
+            return Collections.singletonList( "activity:dev_0@" + Cool.filesep + "pvob" );
+        } else {
+            return Collections.singletonList( "" );
+        }
+
+        if( !format.endsWith( UCMEntity.RECORD_DELIMITER ) ) {
+            return Collections.singletonList( record );
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0 ; i < selectors ; i++ ) {
+            sb.append( record ).append( UCMEntity.RECORD_DELIMITER );
+        }
+
+        return Collections.singletonList( sb.toString() );
+    }
+}
@@ -0,0 +1,42 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.praqma.clearcase.api.Describe;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The grouping of describe output by property, {@link Describe#getElements(String)} and {@link Describe#getResults(List)}.
+ *
+ * @author cwolfgang
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class DescribeBenchmark {
+
+    @Param( { "10000", "100000", "1000000" } )
+    public int lines;
+
+    private List<String> outputs;
+    private Describe describe;
+
+    @Setup
+    public void setup() throws IOException {
+        outputs = Outputs.describe( lines );
+        describe = new Describe( "baseline:bl@\\pvob" ).addModifier( Describe.dependsOn ).addModifier( Describe.versions );
+    }
+
+    @Benchmark
+    public void describe( Blackhole bh ) {
+        for( String output : outputs ) {
+            bh.consume( describe.getResults( describe.getElements( output ) ) );
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Version;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The initialization of entities from their fully qualified names, {@link Version#initialize()} and {@link net.praqma.clearcase.ucm.entities.UCMEntity#initialize()}.
+ *
+ * @author cwolfgang
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class EntityBenchmark {
+
+    @Param( { "10000", "100000", "1000000" } )
+    public int lines;
+
+    private List<String> versions;
+    private List<String> baselines;
+
+    @Setup
+    public void setup() throws IOException {
+        versions = Outputs.versions( lines );
+        baselines = Outputs.baselines( lines );
+    }
+
+    @Benchmark
+    public void versionInitialize( Blackhole bh ) throws UnableToInitializeEntityException {
+        for( String line : versions ) {
+            bh.consume( Version.get( line ) );
+        }
+    }
+
+    @Benchmark
+    public void entityInitialize( Blackhole bh ) throws UnableToInitializeEntityException {
+        for( String line : baselines ) {
+            bh.consume( Baseline.get( line ) );
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.ClearCaseException;
+import net.praqma.clearcase.util.Labels;
+import net.praqma.util.execute.CommandLineInterface;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The parsing of labels from lsvtree output, {@link Labels#getLabels(String, net.praqma.clearcase.Branch)}.
+ * Cleartool is answered by a {@link CannedCommandLine}.
+ *
+ * @author cwolfgang
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class LabelsBenchmark {
+
+    @Param( { "10000", "100000", "1000000" } )
+    public int lines;
+
+    private CommandLineInterface original;
+
+    @Setup
+    public void setup() throws Exception {
+        original = Cleartool.getCommandLineInterface();
+        Cleartool.setCommandLineInterface( new CannedCommandLine().on( "lsvtree", Outputs.lsvtree( lines ) ) );
+    }
+
+    @TearDown
+    public void tearDown() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Benchmark
+    public Object getLabels() throws ClearCaseException {
+        return Labels.getLabels( Outputs.VROOT + "/src/Main.java@@", null );
+    }
+}
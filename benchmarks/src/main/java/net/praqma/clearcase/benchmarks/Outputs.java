@@ -0,0 +1,185 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.praqma.clearcase.Cool;
+
+/**
+ * Cleartool output for the benchmarks.<br>
+ * If the system property {@value #RECORDINGS_PROPERTY} points to a directory, the output is read from the recording of the kind,
+ * for example diffbl.txt, and repeated until the wanted number of lines is reached.
+ * Otherwise the output is generated, shaped as the output of a component with a few thousand elements on a handful of branches.
+ *
+ * @author cwolfgang
+ */
+public final class Outputs {
+
+    public static final String RECORDINGS_PROPERTY = "cool.benchmarks.recordings";
+
+    public static final String VROOT = Cool.filesep + "view" + Cool.filesep + "vobs" + Cool.filesep + "comp";
+
+    private static final String[] branches = { "main", "main" + Cool.filesep + "int", "main" + Cool.filesep + "int" + Cool.filesep + "dev_1", "main" + Cool.filesep + "int" + Cool.filesep + "dev_2" };
+    private static final String[] users = { "praqma\\wolfgang", "praqma\\lars", "praqma\\jes", "praqma\\mads" };
+
+    private static final int ELEMENTS = 5000;
+    private static final int VERSIONS_PER_ACTIVITY = 20;
+
+    private Outputs() {
+    }
+
+    /**
+     * Extended version names, one per line, as printed by find and diffbl -versions
+     */
+    public static List<String> versions( int lines ) throws IOException {
+        List<String> recorded = recorded( "versions", lines );
+        if( recorded != null ) {
+            return recorded;
+        }
+
+        Random random = new Random( 1 );
+        List<String> output = new ArrayList<String>( lines );
+        for( int i = 0 ; i < lines ; i++ ) {
+            output.add( version( random ) );
+        }
+
+        return output;
+    }
+
+    /**
+     * The output of diffbl -versions -activities, an activity followed by its versions
+     */
+    public static List<String> diffbl( int lines ) throws IOException {
+        List<String> recorded = recorded( "diffbl", lines );
+        if( recorded != null ) {
+            return recorded;
+        }
+
+        Random random = new Random( 2 );
+        List<String> output = new ArrayList<String>( lines );
+        int activity = 0;
+        while( output.size() < lines ) {
+            output.add( ( activity % 5 == 0 ? "<< " : ">> " ) + "activity:dev_" + activity + "@" + Cool.filesep + "pvob \"Headline of activity " + activity + "\"" );
+            for( int i = 0 ; i < VERSIONS_PER_ACTIVITY && output.size() < lines ; i++ ) {
+                output.add( "  " + version( random ) );
+            }
+            activity++;
+        }
+
+        return output;
+    }
+
+    /**
+     * The output of lsvtree, with labels on every third version
+     */
+    public static List<String> lsvtree( int lines ) throws IOException {
+        List<String> recorded = recorded( "lsvtree", lines );
+        if( recorded != null ) {
+            return recorded;
+        }
+
+        List<String> output = new ArrayList<String>( lines );
+        String element = VROOT + Cool.filesep + "src" + Cool.filesep + "Main.java@@";
+        int revision = 0;
+        while( output.size() < lines ) {
+            String branch = branches[output.size() % branches.length];
+            String line = element + Cool.filesep + branch + Cool.filesep + revision;
+            if( revision % 3 == 0 ) {
+                line += " (REL_" + revision + ", BUILD_" + revision + ", BUILD_" + revision + "_NIGHTLY)";
+            }
+            output.add( line );
+            revision++;
+        }
+
+        return output;
+    }
+
+    /**
+     * Fully qualified names of baselines
+     */
+    public static List<String> baselines( int lines ) throws IOException {
+        List<String> recorded = recorded( "baselines", lines );
+        if( recorded != null ) {
+            return recorded;
+        }
+
+        List<String> output = new ArrayList<String>( lines );
+        for( int i = 0 ; i < lines ; i++ ) {
+            output.add( "baseline:comp_" + ( i / 100 ) + "_" + i + "@" + Cool.filesep + "pvob" );
+        }
+
+        return output;
+    }
+
+    /**
+     * The output of describe -fmt with two properties separated by a new line, as parsed by Describe, one string per describe
+     */
+    public static List<String> describe( int lines ) throws IOException {
+        List<String> recorded = recorded( "describe", lines );
+        List<String> output = new ArrayList<String>( lines / 2 );
+        if( recorded != null ) {
+            for( int i = 0 ; i + 1 < recorded.size() ; i += 2 ) {
+                output.add( recorded.get( i ) + "\n" + recorded.get( i + 1 ) );
+            }
+            return output;
+        }
+
+        for( int i = 0 ; i + 1 < lines ; i += 2 ) {
+            output.add( "baseline:comp_" + i + "@" + Cool.filesep + "pvob baseline:comp_" + ( i + 1 ) + "@" + Cool.filesep + "pvob\n"
+                    + VROOT + Cool.filesep + "a" + i + ".txt@@" + Cool.filesep + "main" + Cool.filesep + "1, " + VROOT + Cool.filesep + "b" + i + ".txt@@" + Cool.filesep + "main" + Cool.filesep + "2" );
+        }
+
+        return output;
+    }
+
+    public static String user( int i ) {
+        return users[i % users.length];
+    }
+
+    private static String version( Random random ) {
+        int element = random.nextInt( ELEMENTS );
+        String branch = branches[random.nextInt( branches.length )];
+        int revision = 1 + random.nextInt( 12 );
+
+        return VROOT + Cool.filesep + "src" + Cool.filesep + "pkg" + ( element % 50 ) + Cool.filesep + "File" + element + ".java@@" + Cool.filesep + branch + Cool.filesep + revision;
+    }
+
+    private static List<String> recorded( String kind, int lines ) throws IOException {
+        String dir = System.getProperty( RECORDINGS_PROPERTY );
+        if( dir == null ) {
+            return null;
+        }
+
+        File file = new File( dir, kind + ".txt" );
+        if( !file.exists() ) {
+            return null;
+        }
+
+        List<String> recording = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader( new FileReader( file ) );
+        try {
+            String line;
+            while( ( line = reader.readLine() ) != null ) {
+                recording.add( line );
+            }
+        } finally {
+            reader.close();
+        }
+
+        if( recording.isEmpty() ) {
+            throw new IOException( "The recording " + file + " is empty" );
+        }
+
+        List<String> output = new ArrayList<String>( lines );
+        while( output.size() < lines ) {
+            output.add( recording.get( output.size() % recording.size() ) );
+        }
+
+        return output;
+    }
+}
@@ -0,0 +1,52 @@
+package net.praqma.clearcase.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.praqma.clearcase.changeset.ChangeSet2;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.ucm.utils.VersionList;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The reduction of versions to the latest per element and branch, {@link VersionList#getLatest()},
+ * and the collection of a change set, {@link ChangeSet2#addElement(java.io.File, Version.Status, Version)}.
+ *
+ * @author cwolfgang
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class VersionListBenchmark {
+
+    @Param( { "10000", "100000", "1000000" } )
+    public int lines;
+
+    private List<Version> versions;
+
+    @Setup
+    public void setup() throws Exception {
+        versions = new ArrayList<Version>( lines );
+        for( String line : Outputs.versions( lines ) ) {
+            versions.add( Version.get( line ) );
+        }
+    }
+
+    @Benchmark
+    public Object getLatest() {
+        return new VersionList( versions ).getLatest();
+    }
+
+    @Benchmark
+    public Object addElement() {
+        ChangeSet2 changeset = new ChangeSet2();
+        for( Version version : versions ) {
+            changeset.addElement( version.getFile(), version.getStatus(), version );
+        }
+        return changeset;
+    }
+}
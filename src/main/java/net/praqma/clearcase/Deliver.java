@@ -293,12 +293,14 @@ public class Deliver {
     public static final Pattern rxFindStream   = Pattern.compile( "^Deliver operation in progress on stream \"(.*?)\"$", Pattern.MULTILINE );
     public static final Pattern rxFindActivity = Pattern.compile( "^\\s*Using integration activity \"(.*?)\"\\.$", Pattern.MULTILINE );
     public static final Pattern rxFindViewTag  = Pattern.compile( "^\\s*Using view \"(.*?)\"\\.$", Pattern.MULTILINE );
+    public static final Pattern rxFindTarget   = Pattern.compile( "target stream (?:\"([^\"]+)\"|(\\S+?))\\.?(?:\\s|$)", Pattern.MULTILINE );
 
     public static class Status {
         private DeliverStatus status;
         private Stream sourceStream;
         private Activity activity;
         private String viewTag;
+        private Stream targetStream;
 
         private Status() {}
 
@@ -327,6 +329,12 @@ public class Deliver {
                     s.sourceStream = Stream.get( streamName.group( 1 ) );
                     s.activity = Activity.get( activityName.group( 1 ), s.sourceStream.getPVob() );
                     s.viewTag = viewTag.group( 1 );
+
+                    Matcher target = rxFindTarget.matcher( statusString );
+                    if( target.find() ) {
+                        String name = target.group( 1 ) != null ? target.group( 1 ) : target.group( 2 );
+                        s.targetStream = Stream.get( name.startsWith( "stream:" ) ? name : "stream:" + name );
+                    }
                 } else {
                     throw new CleartoolException( "Unable to find deliver elements" );
                 }
@@ -347,6 +355,21 @@ public class Deliver {
             return sourceStream;
         }
 
+        /**
+         * Get the {@link Stream} delivered to, as printed by the status, or else the {@link Stream} of the integration view. Null if no deliver is in progress.
+         */
+        public Stream getTargetStream() throws ClearCaseException {
+            if( targetStream == null && viewTag != null ) {
+                try {
+                    targetStream = Stream.get( Cleartool.run( "lsstream -fmt %Xn -view " + viewTag ).stdoutBuffer.toString().trim() );
+                } catch( AbnormalProcessTerminationException e ) {
+                    throw new CleartoolException( "Unable to get the target stream of the deliver from " + viewTag, e );
+                }
+            }
+
+            return targetStream;
+        }
+
         public boolean isInProgress() {
             return status.equals( DeliverStatus.DELIVER_IN_PROGRESS );
         }
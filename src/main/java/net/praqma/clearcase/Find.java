@@ -1,16 +1,22 @@
 package net.praqma.clearcase;
 
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.clearcase.ucm.entities.Version;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 
 import java.io.File;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * @author cwolfgang
@@ -33,6 +39,23 @@ public class Find {
         avobs
     }
 
+    /**
+     * The fields of a found {@link Version}, see {@link #project(Field...)}
+     */
+    public enum Field {
+        ELEMENT_OID,
+        VERSION_OID,
+        DATE,
+        KIND,
+        USER,
+        BRANCH,
+        REVISION
+    }
+
+    /* The fields described with one describe of many versions, the element oid is described for the element */
+    private static final String PROJECTION_FORMAT = "%On}{%Nd}{%[object_kind]p}{%u";
+    private static final Pattern rx_record_delimiter = Pattern.compile( Pattern.quote( UCMEntity.RECORD_DELIMITER ) );
+
     protected Visibility visible = Visibility.all;
     protected Type type;
 
@@ -43,6 +66,11 @@ public class Find {
      */
     protected boolean depth = false;
 
+    /**
+     * Processes only the entries of the directories given, not their subdirectories.
+     */
+    protected boolean nrecurse = false;
+
     /**
      * Selects only those objects in the subset of elements owned by user login-name.
      */
@@ -59,6 +87,11 @@ public class Find {
     protected String versionQuery;
 
 
+    /**
+     * The fields of the found versions fetched by {@link #findRecords()}
+     */
+    protected EnumSet<Field> projection = EnumSet.noneOf( Field.class );
+
     /* Actions */
 
     /**
@@ -148,33 +181,252 @@ public class Find {
         return this;
     }
 
+    public Find setNoRecurse() {
+        this.nrecurse = true;
+
+        return this;
+    }
+
     public Find useUnExtendedNames() {
         this.extendedNames = false;
 
         return this;
     }
 
+    /**
+     * Fetch fields of the found versions with {@link #findRecords()}.
+     * The branch and the revision are taken from the version name, the others are described in bulk, not per version.
+     */
+    public Find project( Field ... fields ) {
+        for( Field field : fields ) {
+            projection.add( field );
+        }
+
+        return this;
+    }
+
     public List<Version> find() throws CleartoolException, UnableToInitializeEntityException {
-        logger.fine( "Finding objects in ClearCase" );
-        String cmd = getCommandLine();
+        final List<Version> versions = new ArrayList<Version>();
+        final UnableToInitializeEntityException[] failure = new UnableToInitializeEntityException[1];
+
+        try {
+            find( new LineHandler() {
+                @Override
+                public void handle( String line ) {
+                    logger.finest( "LINE: " + line );
+                    try {
+                        versions.add( Version.getVersion( line ) );
+                    } catch( UnableToInitializeEntityException e ) {
+                        /* Abort the find */
+                        failure[0] = e;
+                        throw new IllegalStateException( e );
+                    }
+                }
+            } );
+        } catch( IllegalStateException e ) {
+            if( failure[0] != null ) {
+                throw failure[0];
+            }
+            throw e;
+        }
+
+        logger.fine( "Done finding...." );
+        return versions;
+    }
+
+    /**
+     * A found {@link Version} and the projected fields, see {@link #project(Field...)}. A field not projected is null.
+     */
+    public static class Record {
+        private final Version version;
+
+        private String elementObjectId;
+        private String objectId;
+        private Date date;
+        private Boolean directory;
+        private String user;
+
+        private Record( Version version ) {
+            this.version = version;
+        }
+
+        public Version getVersion() {
+            return version;
+        }
+
+        public String getElementObjectId() {
+            return elementObjectId;
+        }
+
+        public String getObjectId() {
+            return objectId;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        public Boolean isDirectory() {
+            return directory;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public String getBranch() {
+            return version.getBranch();
+        }
+
+        public Integer getRevision() {
+            return version.getRevision();
+        }
+    }
+
+    /**
+     * Find the versions and fetch the projected fields, see {@link #project(Field...)}.
+     * The fields are described for many versions at a time, the user, date and kind are also set on the {@link Version}s.
+     */
+    public List<Record> findRecords() throws CleartoolException, UnableToInitializeEntityException {
+        List<Version> versions = find();
+
+        List<Record> records = new ArrayList<Record>( versions.size() );
+        for( Version version : versions ) {
+            records.add( new Record( version ) );
+        }
+
+        boolean describeVersions = projection.contains( Field.VERSION_OID ) || projection.contains( Field.DATE ) || projection.contains( Field.KIND ) || projection.contains( Field.USER );
+        boolean describeElements = projection.contains( Field.ELEMENT_OID );
+        if( !describeVersions && !describeElements ) {
+            return records;
+        }
+
+        /* A record is described by a selector for the version and one for the element */
+        int perRecord = ( describeVersions ? 1 : 0 ) + ( describeElements ? 1 : 0 );
+        List<Record> chunk = new ArrayList<Record>();
+        int length = 0;
+        for( Record record : records ) {
+            int l = ( describeVersions ? record.version.getFullyQualifiedName().length() + 3 : 0 ) + ( describeElements ? record.version.getQualifiedFilename().length() + 3 : 0 );
+            if( chunk.size() > 0 && ( ( chunk.size() + 1 ) * perRecord > UCMEntity.BULK_LOAD_CHUNK_SIZE || length + l > UCMEntity.BULK_LOAD_MAX_LENGTH ) ) {
+                describe( chunk, describeVersions, describeElements );
+                chunk.clear();
+                length = 0;
+            }
+            chunk.add( record );
+            length += l;
+        }
+
+        if( chunk.size() > 0 ) {
+            describe( chunk, describeVersions, describeElements );
+        }
+
+        return records;
+    }
+
+    /**
+     * Describe the versions, and or their elements, of the records with one describe, or one by one if that fails
+     */
+    private void describe( List<Record> records, boolean versions, boolean elements ) {
+        List<String> selectors = new ArrayList<String>();
+        for( Record record : records ) {
+            if( versions ) {
+                selectors.add( record.version.getFullyQualifiedName() );
+            }
+            if( elements ) {
+                selectors.add( record.version.getQualifiedFilename() );
+            }
+        }
+
+        String[] described = describe( selectors );
+        if( described == null ) {
+            logger.fine( "Describing " + selectors.size() + " objects failed, describing them one by one" );
+            described = new String[selectors.size()];
+            for( int i = 0 ; i < selectors.size() ; i++ ) {
+                String[] single = describe( selectors.subList( i, i + 1 ) );
+                described[i] = single != null ? single[0] : null;
+            }
+        }
 
-        List<String> lines;
+        int i = 0;
+        for( Record record : records ) {
+            if( versions ) {
+                set( record, described[i++] );
+            }
+            if( elements ) {
+                String element = described[i++];
+                record.elementObjectId = element != null ? element.split( "\\}\\{", -1 )[0].trim() : null;
+            }
+        }
+    }
+
+    /**
+     * @return The described records, or null if the describe fails
+     */
+    private String[] describe( List<String> selectors ) {
+        StringBuilder cmd = new StringBuilder( "describe -fmt " ).append( PROJECTION_FORMAT ).append( UCMEntity.RECORD_DELIMITER );
+        for( String selector : selectors ) {
+            cmd.append( " \"" ).append( selector ).append( "\"" );
+        }
 
         try {
-            lines = Cleartool.run( cmd, viewRoot, false, acceptErrors ).stdoutList;
+            String[] records = rx_record_delimiter.split( Cleartool.run( cmd.toString(), viewRoot, false, true ).stdoutBuffer.toString(), -1 );
+            /* The last element is what comes after the last delimiter */
+            return records.length - 1 == selectors.size() ? records : null;
         } catch( AbnormalProcessTerminationException e ) {
-            throw new CleartoolException( "Error while finding", e );
+            logger.fine( "Unable to describe " + selectors.size() + " objects: " + e.getMessage() );
+            return null;
         }
+    }
 
-        List<Version> versions = new ArrayList<Version>( lines.size() );
+    private void set( Record record, String described ) {
+        if( described == null ) {
+            return;
+        }
 
-        for( String line : lines ) {
-            logger.finest( "LINE: " + line );
-            versions.add( Version.getVersion( line ) );
+        String[] fields = described.split( "\\}\\{", -1 );
+        if( fields.length < 4 ) {
+            logger.warning( "Unable to parse the description of " + record.version + ": " + described );
+            return;
         }
 
-        logger.fine( "Done finding...." );
-        return versions;
+        if( projection.contains( Field.VERSION_OID ) ) {
+            record.objectId = fields[0].trim();
+        }
+
+        if( projection.contains( Field.DATE ) ) {
+            try {
+                synchronized( UCMEntity.dateFormatter ) {
+                    record.date = UCMEntity.dateFormatter.parse( fields[1].trim() );
+                }
+                record.version.setDate( record.date );
+            } catch( ParseException e ) {
+                logger.fine( "Unable to parse the date of " + record.version + ": " + fields[1] );
+            }
+        }
+
+        if( projection.contains( Field.KIND ) ) {
+            record.directory = fields[2].trim().equals( "directory version" );
+            record.version.setKind( record.directory ? UCMEntity.Kind.DIRECTORY_ELEMENT : UCMEntity.Kind.FILE_ELEMENT );
+        }
+
+        if( projection.contains( Field.USER ) ) {
+            record.user = fields[3].trim();
+            record.version.setUser( record.user );
+        }
+    }
+
+    /**
+     * Find the objects, handing each line of the output to the handler as it is found.
+     */
+    public void find( LineHandler handler ) throws CleartoolException {
+        logger.fine( "Finding objects in ClearCase" );
+        String cmd = getCommandLine();
+
+        try {
+            Cleartool.stream( cmd, viewRoot, acceptErrors, handler );
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Error while finding", e );
+        }
     }
 
     public String getCommandLine() {
@@ -201,6 +453,10 @@ public class Find {
 
         /* Selections */
 
+        if( nrecurse ) {
+            sb.append( " -nrecurse" );
+        }
+
         if( !extendedNames ) {
             sb.append( " -nxname" );
         }
@@ -15,6 +15,7 @@ import net.praqma.clearcase.exceptions.EntityAlreadyExistsException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.ViewException;
 import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.StreamHierarchy;
 import net.praqma.clearcase.ucm.view.UCMView;
 
 public class PVob extends Vob {
@@ -71,6 +72,13 @@ public class PVob extends Vob {
         return streams;
     }
 	
+    /**
+     * Take a snapshot of the {@link Stream}s of the PVob and their relations, see {@link StreamHierarchy}
+     */
+    public StreamHierarchy getStreamHierarchy() throws CleartoolException, UnableToInitializeEntityException {
+        return StreamHierarchy.snapshot( this );
+    }
+	
 	public Set<UCMView> getViews() throws CleartoolException {
 		String cmd = "lsstream -fmt {%[views]p} -invob " + this;
 		List<String> lines = null;
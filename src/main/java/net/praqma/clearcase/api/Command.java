@@ -1,6 +1,7 @@
 package net.praqma.clearcase.api;
 
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
@@ -33,6 +34,19 @@ public abstract class Command<RT extends Object> {
         }
     }
 
+    /**
+     * Run the command, handing each line of the output to the handler while the command is running.
+     */
+    protected void streamCommand( LineHandler handler ) throws CleartoolException {
+        String cmd = getCommandLine();
+
+        try {
+            Cleartool.stream( cmd, root, handler );
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Unable to run " + getCommand(), e );
+        }
+    }
+
     public abstract RT execute() throws CleartoolException;
 
     public abstract String getCommandLine();
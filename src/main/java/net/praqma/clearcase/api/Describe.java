@@ -1,5 +1,6 @@
 package net.praqma.clearcase.api;
 
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.util.execute.CmdResult;
@@ -180,6 +181,13 @@ public class Describe extends Command<List<String>> {
         return result.stdoutList;
     }
 
+    /**
+     * Execute the command, handing each line of the output to the handler as it is read.
+     */
+    public void execute( LineHandler handler ) throws CleartoolException {
+        streamCommand( handler );
+    }
+
     public String executeGetFirstLine() throws CleartoolException {
         CmdResult result = runCommand();
 
@@ -1,8 +1,10 @@
 package net.praqma.clearcase.api;
 
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.interfaces.Diffable;
-import net.praqma.util.execute.CmdResult;
+import net.praqma.clearcase.ucm.utils.DiffBlCache;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
 
 import java.io.File;
 import java.util.List;
@@ -56,11 +58,27 @@ public class DiffBl extends Command<List<String>> {
         return this;
     }
 
+    /**
+     * Execute the command. The output of a diff between baselines may come from the {@link DiffBlCache}.
+     */
     @Override
     public List<String> execute() throws CleartoolException {
-        CmdResult result = runCommand();
+        try {
+            return DiffBlCache.run( getCommandLine(), root, false, d1, d2 );
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Unable to run " + getCommand(), e );
+        }
+    }
 
-        return result.stdoutList;
+    /**
+     * Execute the command, handing each line of the output to the handler as it is read.
+     */
+    public void execute( LineHandler handler ) throws CleartoolException {
+        try {
+            DiffBlCache.stream( getCommandLine(), root, d1, d2, handler );
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Unable to run " + getCommand(), e );
+        }
     }
 
     @Override
@@ -2,6 +2,7 @@ package net.praqma.clearcase.api;
 
 import net.praqma.clearcase.Branch;
 import net.praqma.clearcase.Label;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.util.execute.CmdResult;
 
@@ -72,6 +73,13 @@ public class ListVersionTree extends Command<List<String>> {
         return result.stdoutList;
     }
 
+    /**
+     * Execute the command, handing each line of the output to the handler as it is read.
+     */
+    public void execute( LineHandler handler ) throws CleartoolException {
+        streamCommand( handler );
+    }
+
     @Override
     public String getCommand() {
         return "lsvtree";
@@ -1,5 +1,6 @@
 package net.praqma.clearcase.api;
 
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.util.execute.CmdResult;
 
@@ -134,6 +135,13 @@ public class ListVob extends Command<List<String>> {
 
     }
 
+    /**
+     * Execute the command, handing each line of the output to the handler as it is read.
+     */
+    public void execute( LineHandler handler ) throws CleartoolException {
+        streamCommand( handler );
+    }
+
     @Override
     public String getCommandLine() {
         StringBuilder b = new StringBuilder(  );
@@ -1,6 +1,12 @@
 package net.praqma.clearcase.cleartool;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 import net.praqma.clearcase.*;
@@ -25,14 +31,164 @@ import net.praqma.util.execute.CommandLineInterface;
 public abstract class Cleartool extends Cool {
 
     
-	private static CommandLineInterface cli = null;
+	private static volatile CommandLineInterface cli = null;
     private static final Logger log = Logger.getLogger(Cleartool.class.getName());
     private static String prefix = "["+Cleartool.class.getSimpleName()+"]"; 
 
+    /**
+     * The number of pooled cleartool sessions, if set, calls are executed by a {@link CleartoolSessionPool}
+     */
+    public static final String SESSIONS_PROPERTY = "cool.cleartool.sessions";
+
+    /**
+     * If true, identical read only commands in flight are coalesced, see {@link #setSingleFlight(boolean)}
+     */
+    public static final String SINGLE_FLIGHT_PROPERTY = "cool.cleartool.singleflight";
+
+    private static volatile SingleFlight singleFlight = null;
+
+    /**
+     * The capacity of the result cache, if set, read only results are cached, see {@link #setCache(CleartoolCache)}
+     */
+    public static final String CACHE_PROPERTY = "cool.cleartool.cache";
+
+    private static volatile CleartoolCache cache = null;
+
+    /**
+     * A transcript file, if set, the commands are recorded to it by a {@link CleartoolRecorder}
+     */
+    public static final String RECORD_PROPERTY = "cool.cleartool.record";
+
+    /**
+     * A transcript file, if set, the commands are answered from it by a {@link CleartoolReplayer} instead of ClearCase
+     */
+    public static final String REPLAY_PROPERTY = "cool.cleartool.replay";
+
+    /**
+     * The speed of the replay, see {@link CleartoolReplayer#setSpeed(double)}
+     */
+    public static final String REPLAY_SPEED_PROPERTY = "cool.cleartool.replay.speed";
+
 	static {
 		cli = CommandLine.getInstance();
+
+        String sessions = System.getProperty( SESSIONS_PROPERTY );
+        if( sessions != null ) {
+            try {
+                int size = Integer.parseInt( sessions.trim() );
+                if( size > 0 ) {
+                    log.config( prefix + " Using " + size + " pooled cleartool sessions" );
+                    final CleartoolSessionPool pool = new CleartoolSessionPool( size );
+                    Runtime.getRuntime().addShutdownHook( new Thread() {
+                        public void run() {
+                            pool.close();
+                        }
+                    } );
+                    cli = pool;
+                }
+            } catch( NumberFormatException e ) {
+                log.warning( prefix + " Invalid number of cleartool sessions, " + sessions );
+            }
+        }
+
+        String replay = System.getProperty( REPLAY_PROPERTY );
+        if( replay != null ) {
+            try {
+                CleartoolReplayer replayer = new CleartoolReplayer( new File( replay ) );
+                String speed = System.getProperty( REPLAY_SPEED_PROPERTY );
+                if( speed != null ) {
+                    replayer.setSpeed( Double.parseDouble( speed.trim() ) );
+                }
+                log.config( prefix + " Replaying " + replayer.getSize() + " commands from " + replay );
+                cli = replayer;
+            } catch( Exception e ) {
+                log.warning( prefix + " Unable to replay " + replay + ", " + e.getMessage() );
+            }
+        }
+
+        String record = System.getProperty( RECORD_PROPERTY );
+        if( record != null ) {
+            try {
+                final CleartoolRecorder recorder = new CleartoolRecorder( cli, new File( record ) );
+                Runtime.getRuntime().addShutdownHook( new Thread() {
+                    public void run() {
+                        try {
+                            recorder.close();
+                        } catch( IOException e ) {
+                            log.warning( prefix + " Unable to complete the transcript, " + e.getMessage() );
+                        }
+                    }
+                } );
+                log.config( prefix + " Recording the commands to " + record );
+                cli = recorder;
+            } catch( IOException e ) {
+                log.warning( prefix + " Unable to record to " + record + ", " + e.getMessage() );
+            }
+        }
+
+        if( Boolean.getBoolean( SINGLE_FLIGHT_PROPERTY ) ) {
+            log.config( prefix + " Coalescing identical read only commands" );
+            singleFlight = new SingleFlight();
+        }
+
+        String capacity = System.getProperty( CACHE_PROPERTY );
+        if( capacity != null ) {
+            try {
+                log.config( prefix + " Caching read only results" );
+                cache = new CleartoolCache( Integer.parseInt( capacity.trim() ) );
+            } catch( IllegalArgumentException e ) {
+                log.warning( prefix + " Invalid cache capacity, " + capacity );
+            }
+        }
 	}
 
+    /**
+     * Set the {@link CommandLineInterface} executing the cleartool commands.
+     * The commands are given prefixed with "cleartool ".
+     */
+    public static void setCommandLineInterface( CommandLineInterface cli ) {
+        Cleartool.cli = cli;
+    }
+
+    public static CommandLineInterface getCommandLineInterface() {
+        return cli;
+    }
+
+    /**
+     * Coalesce identical read only commands, see {@link ReadOnlyCommands}, in flight.
+     * Concurrent callers of the same command in the same directory are served by one cleartool process.
+     */
+    public static synchronized void setSingleFlight( boolean enabled ) {
+        if( enabled && singleFlight == null ) {
+            singleFlight = new SingleFlight();
+        } else if( !enabled ) {
+            singleFlight = null;
+        }
+    }
+
+    public static boolean isSingleFlight() {
+        return singleFlight != null;
+    }
+
+    /**
+     * Cache the results of read only commands, null to disable caching
+     */
+    public static void setCache( CleartoolCache cache ) {
+        Cleartool.cache = cache;
+    }
+
+    public static CleartoolCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return The number of calls served by an identical command in flight, since single flight was enabled
+     */
+    public static long getCoalescedCommands() {
+        SingleFlight sf = singleFlight;
+        return sf == null ? 0 : sf.getCoalesced();
+    }
+
 	public static CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
 		return _run( cmd, null, true, false );
 	}
@@ -49,24 +205,224 @@ public abstract class Cleartool extends Cool {
 		return _run( cmd, dir, merge, ignore );
 	}
 	
-	private static CmdResult _run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+	private static CmdResult _run( final String cmd, final File dir, final boolean merge, final boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+		CleartoolCache cache = Cleartool.cache;
+		SingleFlight sf = singleFlight;
+		if( cache == null && sf == null ) {
+			return execute( cmd, dir, merge, ignore );
+		}
+
+		if( !ReadOnlyCommands.isReadOnly( cmd ) ) {
+			try {
+				return execute( cmd, dir, merge, ignore );
+			} finally {
+				/* Even a failed mutation may have changed something */
+				if( cache != null ) {
+					cache.mutated( cmd );
+				}
+			}
+		}
+
+		long generation = 0;
+		if( cache != null ) {
+			CmdResult cached = cache.get( cmd, dir, merge, ignore );
+			if( cached != null ) {
+				return cached;
+			}
+			generation = cache.getGeneration();
+		}
+
+		CmdResult result;
+		if( sf != null ) {
+			result = sf.run( cmd, dir, merge, ignore, new Callable<CmdResult>() {
+				@Override
+				public CmdResult call() {
+					return execute( cmd, dir, merge, ignore );
+				}
+			} );
+		} else {
+			result = execute( cmd, dir, merge, ignore );
+		}
+
+		if( cache != null ) {
+			cache.put( cmd, dir, merge, ignore, result, generation );
+		}
+
+		return result;
+	}
+
+	private static CmdResult execute( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+		if( listeners.isEmpty() ) {
+			try {
+				return cli.run( "cleartool " + cmd, dir, merge, ignore );
+			} catch( AbnormalProcessTerminationException e ) {
+				throw classify( e );
+			}
+		}
+
+		/* Instrumented */
+		long start = System.nanoTime();
+		CmdResult result = null;
+		RuntimeException failure = null;
+		try {
+			result = cli.run( "cleartool " + cmd, dir, merge, ignore );
+			return result;
+		} catch( AbnormalProcessTerminationException e ) {
+			failure = classify( e );
+			throw failure;
+		} catch( RuntimeException e ) {
+			failure = e;
+			throw e;
+		} finally {
+			long bytes = 0;
+			if( result != null ) {
+				bytes = result.stdoutBuffer.length() + result.errorBuffer.length();
+			} else if( failure != null && failure.getMessage() != null ) {
+				bytes = failure.getMessage().length();
+			}
+			fire( cmd, dir, System.nanoTime() - start, bytes, failure );
+		}
+	}
+
+	/**
+	 * Run a cleartool command, handing each line of the standard output to the handler while the command is running.
+	 * The output is not kept in memory.
+	 */
+	public static void stream( String cmd, File dir, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+		stream( cmd, dir, false, handler );
+	}
+
+	/**
+	 * Run a cleartool command, handing each line of the standard output to the handler while the command is running.
+	 * If the {@link CommandLineInterface} cannot stream, the lines are handed over when the command has finished.
+	 * @param ignore If true, a non zero exit status is not considered an error
+	 */
+	public static void stream( String cmd, File dir, boolean ignore, final LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+		if( listeners.isEmpty() ) {
+			_stream( cmd, dir, ignore, handler );
+			return;
+		}
+
+		/* Instrumented */
+		final long[] bytes = new long[1];
+		long start = System.nanoTime();
+		RuntimeException failure = null;
+		try {
+			_stream( cmd, dir, ignore, new LineHandler() {
+				@Override
+				public void handle( String line ) {
+					bytes[0] += line.length() + 1;
+					handler.handle( line );
+				}
+			} );
+		} catch( RuntimeException e ) {
+			failure = e;
+			throw e;
+		} finally {
+			fire( cmd, dir, System.nanoTime() - start, bytes[0], failure );
+		}
+	}
+
+	private static void _stream( String cmd, File dir, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+		CommandLineInterface cli = Cleartool.cli;
 		try {
-			return cli.run( "cleartool " + cmd, dir, merge, ignore );
-		} catch( AbnormalProcessTerminationException e ) {			
-			/* Validate exit errors */
-			if( e.getMessage().contains( "cleartool: command not found" ) ) {
-				throw new CleartoolNotInstalledException( "Cleartool not installed", e );
-			} else if( e.getMessage().contains( "FLEXnet Licensing error:-15,570" )) {
-				throw new NoLicenseServerException( "No license server available", e );
-			} else if( e.getMessage().contains( "FLEXnet Licensing error:-18,147" )) {
-				throw new NoLicensesException( "No licenses available", e );
-			} else if( e.getMessage().contains( "There are no valid licenses in the NT registry for ClearCase" )) {
-				throw new NoLicensesException( "No licenses available", e );
+			if( cli instanceof StreamingCommandLineInterface ) {
+				( (StreamingCommandLineInterface) cli ).stream( "cleartool " + cmd, dir, ignore, handler );
+			} else if( cli instanceof CommandLine ) {
+				CleartoolProcess.stream( "cleartool " + cmd, dir, ignore, handler );
 			} else {
-				throw e;
+				CmdResult result = cli.run( "cleartool " + cmd, dir, false, ignore );
+				for( String line : result.stdoutList ) {
+					handler.handle( line );
+				}
+			}
+		} catch( AbnormalProcessTerminationException e ) {
+			throw classify( e );
+		}
+	}
+
+	/* Instrumentation */
+
+	private static final List<CleartoolListener> listeners = new CopyOnWriteArrayList<CleartoolListener>();
+
+	/* The other spellings of a verb, mapped to the name of its page in the ClearCase command reference */
+	private static final Map<String, String> abbreviations = new HashMap<String, String>();
+
+	static {
+		abbreviations.put( "desc", "describe" );
+		abbreviations.put( "lsbaseline", "lsbl" );
+		abbreviations.put( "lsproj", "lsproject" );
+		abbreviations.put( "lsact", "lsactivity" );
+		abbreviations.put( "lscomponent", "lscomp" );
+		abbreviations.put( "setact", "setactivity" );
+		abbreviations.put( "mkbaseline", "mkbl" );
+		abbreviations.put( "rmbaseline", "rmbl" );
+		abbreviations.put( "chbaseline", "chbl" );
+		abbreviations.put( "lsh", "lshistory" );
+		abbreviations.put( "lshis", "lshistory" );
+		abbreviations.put( "lsco", "lscheckout" );
+	}
+
+	/**
+	 * Add a {@link CleartoolListener}, notified after each command
+	 */
+	public static void addListener( CleartoolListener listener ) {
+		listeners.add( listener );
+	}
+
+	public static void removeListener( CleartoolListener listener ) {
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Get the sub command of a cleartool command line, spelled as the name of its page in the ClearCase command reference.
+	 * An abbreviation is expanded, desc is describe, and a long form is shortened, lsbaseline is lsbl.
+	 * @param cmd The command line without cleartool, for example "desc -fmt %n stream:s@\pvob"
+	 * @return The verb, for example describe
+	 */
+	public static String getVerb( String cmd ) {
+		String trimmed = cmd.trim();
+		int idx = 0;
+		while( idx < trimmed.length() && !Character.isWhitespace( trimmed.charAt( idx ) ) ) {
+			idx++;
+		}
+		String verb = trimmed.substring( 0, idx ).toLowerCase();
+		String expanded = abbreviations.get( verb );
+		return expanded != null ? expanded : verb;
+	}
+
+	private static void fire( String cmd, File dir, long nanos, long bytes, RuntimeException failure ) {
+		if( listeners.isEmpty() ) {
+			return;
+		}
+
+		/* The stack is only decoded if a listener asks for the caller */
+		CleartoolEvent event = new CleartoolEvent( cmd, dir, nanos, bytes, failure, new Throwable() );
+		for( CleartoolListener listener : listeners ) {
+			try {
+				listener.commandExecuted( event );
+			} catch( RuntimeException e ) {
+				log.warning( prefix + " Listener failed: " + e.getMessage() );
 			}
 		}
 	}
+
+	/**
+	 * Validate exit errors
+	 */
+	private static AbnormalProcessTerminationException classify( AbnormalProcessTerminationException e ) {
+		if( e.getMessage().contains( "cleartool: command not found" ) ) {
+			return new CleartoolNotInstalledException( "Cleartool not installed", e );
+		} else if( e.getMessage().contains( "FLEXnet Licensing error:-15,570" )) {
+			return new NoLicenseServerException( "No license server available", e );
+		} else if( e.getMessage().contains( "FLEXnet Licensing error:-18,147" )) {
+			return new NoLicensesException( "No licenses available", e );
+		} else if( e.getMessage().contains( "There are no valid licenses in the NT registry for ClearCase" )) {
+			return new NoLicensesException( "No licenses available", e );
+		} else {
+			return e;
+		}
+	}
 }
 
 /*
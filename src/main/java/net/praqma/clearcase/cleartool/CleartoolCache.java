@@ -0,0 +1,260 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import net.praqma.util.execute.CmdResult;
+
+/**
+ * A result cache for read only cleartool commands, see {@link ReadOnlyCommands}.<br>
+ * Results are keyed by the normalized command line and working directory and kept for a time to live per verb,
+ * bounded by a least recently used policy. Only results of successful commands without error output are cached.
+ * A command run ignoring its exit status may have failed, even without error output when it is merged into the output,
+ * so its result is never cached.<br><br>
+ * Mutating commands run through {@link Cleartool} invalidate the cache:
+ * chbl and chstream the entries mentioning the changed entities and the listings they may appear in,
+ * every other mutation, including deliver, rebase, mkbl and rmstream, the whole cache.<br>
+ * Changes made outside this JVM are only seen when the entries expire.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolCache {
+
+    private static final Logger logger = Logger.getLogger( CleartoolCache.class.getName() );
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final long DEFAULT_TTL = 10000;
+
+    private final int capacity;
+    private final Map<String, Long> ttls = new HashMap<String, Long>();
+    private long defaultTtl = DEFAULT_TTL;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /* Incremented on invalidation, results of commands started before are not cached */
+    private long generation = 0;
+
+    public CleartoolCache() {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param capacity The maximum number of cached results
+     */
+    public CleartoolCache( final int capacity ) {
+        if( capacity < 1 ) {
+            throw new IllegalArgumentException( "The capacity must be positive" );
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest ) {
+                return size() > capacity;
+            }
+        };
+
+        /* Status changes quickly, listings of long lived entities slowly */
+        ttls.put( "deliver", 5000L );
+        ttls.put( "rebase", 5000L );
+        ttls.put( "lsproject", 30000L );
+        ttls.put( "lscomp", 60000L );
+        ttls.put( "lsvob", 60000L );
+        ttls.put( "lsview", 30000L );
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Set the time to live of the results of a verb
+     * @param verb The verb, abbreviations are expanded, see {@link Cleartool#getVerb(String)}
+     * @param millis The time to live in milliseconds, 0 disables caching of the verb
+     */
+    public synchronized void setTtl( String verb, long millis ) {
+        ttls.put( Cleartool.getVerb( verb ), millis );
+    }
+
+    /**
+     * Set the time to live of verbs without their own
+     */
+    public synchronized void setDefaultTtl( long millis ) {
+        this.defaultTtl = millis;
+    }
+
+    public synchronized long getTtl( String verb ) {
+        Long ttl = ttls.get( Cleartool.getVerb( verb ) );
+        return ttl != null ? ttl : defaultTtl;
+    }
+
+    /**
+     * Get a copy of the cached result of a command
+     * @return The result or null if not cached or expired
+     */
+    public synchronized CmdResult get( String cmd, File dir, boolean merge, boolean ignore ) {
+        String key = getKey( cmd, dir, merge, ignore );
+        Entry entry = entries.get( key );
+        if( entry != null ) {
+            if( entry.expires - System.nanoTime() > 0 ) {
+                hits++;
+                return SingleFlight.copy( entry.result );
+            }
+            entries.remove( key );
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+     * Cache a copy of the result of a read only command
+     */
+    public synchronized void put( String cmd, File dir, boolean merge, boolean ignore, CmdResult result ) {
+        put( cmd, dir, merge, ignore, result, generation );
+    }
+
+    /**
+     * Cache a copy of the result of a read only command, unless the cache has been invalidated since the generation.
+     * Without an exit status the result of a command run ignoring it is not known to be successful and is not cached.
+     */
+    synchronized void put( String cmd, File dir, boolean merge, boolean ignore, CmdResult result, long generation ) {
+        if( generation != this.generation || ignore || result == null || result.errorBuffer.length() > 0 || !ReadOnlyCommands.isReadOnly( cmd ) ) {
+            return;
+        }
+
+        long ttl = getTtl( Cleartool.getVerb( cmd ) );
+        if( ttl <= 0 ) {
+            return;
+        }
+
+        entries.put( getKey( cmd, dir, merge, ignore ), new Entry( Cleartool.getVerb( cmd ), SingleFlight.copy( result ), System.nanoTime() + ttl * 1000000L ) );
+    }
+
+    /**
+     * Invalidate the entries affected by a mutating command
+     */
+    public void mutated( String cmd ) {
+        String verb = Cleartool.getVerb( cmd );
+        if( verb.equals( "chbl" ) ) {
+            invalidateSelectors( cmd );
+            invalidateVerb( "lsbl" );
+            invalidateVerb( "diffbl" );
+        } else if( verb.equals( "chstream" ) ) {
+            invalidateSelectors( cmd );
+            invalidateVerb( "lsstream" );
+        } else {
+            logger.finer( "Clearing the cache after " + verb );
+            clear();
+        }
+    }
+
+    /**
+     * Invalidate the entries mentioning the text, typically the name of an entity, for example "bl1@\pvob"
+     */
+    public synchronized void invalidate( String text ) {
+        generation++;
+        Iterator<String> it = entries.keySet().iterator();
+        while( it.hasNext() ) {
+            if( it.next().contains( text ) ) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Invalidate the entries of a verb
+     */
+    public synchronized void invalidateVerb( String verb ) {
+        generation++;
+        verb = Cleartool.getVerb( verb );
+        Iterator<Entry> it = entries.values().iterator();
+        while( it.hasNext() ) {
+            if( it.next().verb.equals( verb ) ) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Invalidate by the entity selectors of a command, with and without their kind, for example baseline:bl1@\pvob and bl1@\pvob
+     */
+    private void invalidateSelectors( String cmd ) {
+        for( String token : cmd.trim().split( "\\s+" ) ) {
+            if( token.indexOf( '@' ) < 0 ) {
+                continue;
+            }
+            token = token.replace( "\"", "" );
+            int colon = token.indexOf( ':' );
+            invalidate( colon < 0 ? token : token.substring( colon + 1 ) );
+        }
+    }
+
+    private static String getKey( String cmd, File dir, boolean merge, boolean ignore ) {
+        return normalize( cmd ) + "\u0000" + ( dir == null ? "" : dir.getAbsolutePath() ) + "\u0000" + merge + "\u0000" + ignore;
+    }
+
+    /**
+     * Trim the command line and collapse white space outside quotes
+     */
+    static String normalize( String cmd ) {
+        StringBuilder sb = new StringBuilder( cmd.length() );
+        boolean quoted = false;
+        boolean space = false;
+        for( char c : cmd.trim().toCharArray() ) {
+            if( c == '"' ) {
+                quoted = !quoted;
+            }
+            if( !quoted && Character.isWhitespace( c ) ) {
+                space = true;
+                continue;
+            }
+            if( space ) {
+                sb.append( ' ' );
+                space = false;
+            }
+            sb.append( c );
+        }
+
+        return sb.toString();
+    }
+
+    private static class Entry {
+        final String verb;
+        final CmdResult result;
+        final long expires;
+
+        Entry( String verb, CmdResult result, long expires ) {
+            this.verb = verb;
+            this.result = result;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+
+/**
+ * A cleartool command executed by {@link Cleartool}.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolEvent {
+
+    private final String verb;
+    private final String command;
+    private final File directory;
+    private final long nanos;
+    private final long bytes;
+    private final RuntimeException failure;
+    private final Throwable stack;
+
+    private String caller;
+
+    /**
+     * @param stack Created where the command was executed, the stack trace is not decoded until {@link #getCaller()}
+     */
+    CleartoolEvent( String command, File directory, long nanos, long bytes, RuntimeException failure, Throwable stack ) {
+        this.verb = Cleartool.getVerb( command );
+        this.command = command;
+        this.directory = directory;
+        this.nanos = nanos;
+        this.bytes = bytes;
+        this.failure = failure;
+        this.stack = stack;
+    }
+
+    /**
+     * The cleartool sub command, as returned by {@link Cleartool#getVerb(String)}, for example describe
+     */
+    public String getVerb() {
+        return verb;
+    }
+
+    /**
+     * The command line, without the leading cleartool
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getMillis() {
+        return nanos / 1000000;
+    }
+
+    /**
+     * The number of characters written by the command to stdout and stderr
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * The exception thrown, classified as for example {@link net.praqma.clearcase.exceptions.NoLicensesException}
+     * @return The exception or null, if the command succeeded
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * The name of the failure class, for example NoLicensesException
+     * @return The name or null, if the command succeeded
+     */
+    public String getFailureClass() {
+        return failure == null ? null : failure.getClass().getSimpleName();
+    }
+
+    /**
+     * The first method outside the command layer, that triggered the command, for example net.praqma.clearcase.ucm.entities.Baseline.load
+     */
+    public synchronized String getCaller() {
+        if( caller == null ) {
+            caller = "unknown";
+            for( StackTraceElement element : stack.getStackTrace() ) {
+                String className = element.getClassName();
+                if( className.startsWith( "java." ) || className.startsWith( "sun." ) || className.startsWith( Cleartool.class.getPackage().getName() + "." ) || className.startsWith( "net.praqma.clearcase.api.Command" ) || className.startsWith( "net.praqma.util.execute." ) ) {
+                    continue;
+                }
+                caller = className + "." + element.getMethodName();
+                break;
+            }
+        }
+
+        return caller;
+    }
+
+    @Override
+    public String toString() {
+        return verb + " in " + getMillis() + "ms, " + bytes + " bytes" + ( failure != null ? ", " + getFailureClass() : "" ) + ": " + command;
+    }
+}
@@ -0,0 +1,11 @@
+package net.praqma.clearcase.cleartool;
+
+/**
+ * Notified about every cleartool command executed through {@link Cleartool}.<br>
+ * The listeners are called on the executing thread and should return quickly.
+ *
+ * @author cwolfgang
+ */
+public interface CleartoolListener {
+    public void commandExecuted( CleartoolEvent event );
+}
@@ -0,0 +1,304 @@
+package net.praqma.clearcase.cleartool;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects counters and latency histograms per cleartool verb, the output size, the failures by class and the calling COOL methods.<br>
+ * Install it with {@link #install()}, which also registers it as the MBean <code>net.praqma.cool:type=CleartoolMetrics</code>.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolMetrics implements CleartoolListener, CleartoolMetricsMBean {
+
+    private static final Logger logger = Logger.getLogger( CleartoolMetrics.class.getName() );
+
+    public static final String OBJECT_NAME = "net.praqma.cool:type=CleartoolMetrics";
+
+    /**
+     * The number of histogram buckets, the last holds everything from 2^(BUCKETS-2) ms and up
+     */
+    public static final int BUCKETS = 20;
+
+    private static final int MAX_CALLERS = 1000;
+
+    private static CleartoolMetrics installed;
+
+    private final ConcurrentMap<String, VerbStats> verbs = new ConcurrentHashMap<String, VerbStats>();
+    private final ConcurrentMap<String, AtomicLong> failures = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> callers = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Install the metrics as a {@link Cleartool} listener and register the MBean
+     * @return The installed metrics
+     */
+    public static synchronized CleartoolMetrics install() {
+        if( installed == null ) {
+            installed = new CleartoolMetrics();
+            Cleartool.addListener( installed );
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName( OBJECT_NAME );
+                if( !server.isRegistered( name ) ) {
+                    server.registerMBean( installed, name );
+                }
+            } catch( JMException e ) {
+                logger.warning( "Unable to register the cleartool metrics: " + e.getMessage() );
+            }
+        }
+
+        return installed;
+    }
+
+    /**
+     * Remove the installed metrics and unregister the MBean
+     */
+    public static synchronized void uninstall() {
+        if( installed != null ) {
+            Cleartool.removeListener( installed );
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName( OBJECT_NAME );
+                if( server.isRegistered( name ) ) {
+                    server.unregisterMBean( name );
+                }
+            } catch( JMException e ) {
+                logger.warning( "Unable to unregister the cleartool metrics: " + e.getMessage() );
+            }
+            installed = null;
+        }
+    }
+
+    public static synchronized CleartoolMetrics getInstalled() {
+        return installed;
+    }
+
+    @Override
+    public void commandExecuted( CleartoolEvent event ) {
+        VerbStats stats = verbs.get( event.getVerb() );
+        if( stats == null ) {
+            verbs.putIfAbsent( event.getVerb(), new VerbStats() );
+            stats = verbs.get( event.getVerb() );
+        }
+        stats.add( event );
+
+        if( event.isFailed() ) {
+            increment( failures, event.getFailureClass() );
+        }
+
+        if( callers.size() < MAX_CALLERS || callers.containsKey( event.getCaller() ) ) {
+            increment( callers, event.getCaller() );
+        }
+    }
+
+    private static void increment( ConcurrentMap<String, AtomicLong> map, String key ) {
+        AtomicLong count = map.get( key );
+        if( count == null ) {
+            map.putIfAbsent( key, new AtomicLong() );
+            count = map.get( key );
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public long getCommandCount() {
+        long count = 0;
+        for( VerbStats stats : verbs.values() ) {
+            count += stats.count.get();
+        }
+        return count;
+    }
+
+    @Override
+    public long getFailureCount() {
+        long count = 0;
+        for( VerbStats stats : verbs.values() ) {
+            count += stats.failures.get();
+        }
+        return count;
+    }
+
+    @Override
+    public long getTotalMillis() {
+        long nanos = 0;
+        for( VerbStats stats : verbs.values() ) {
+            nanos += stats.nanos.get();
+        }
+        return nanos / 1000000;
+    }
+
+    @Override
+    public long getTotalBytes() {
+        long bytes = 0;
+        for( VerbStats stats : verbs.values() ) {
+            bytes += stats.bytes.get();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String[] getVerbs() {
+        List<String> list = new ArrayList<String>( verbs.keySet() );
+        Collections.sort( list );
+        return list.toArray( new String[list.size()] );
+    }
+
+    @Override
+    public String[] getVerbSummary() {
+        Map<String, VerbStats> sorted = new TreeMap<String, VerbStats>( verbs );
+        List<String> lines = new ArrayList<String>( sorted.size() );
+        for( Map.Entry<String, VerbStats> entry : sorted.entrySet() ) {
+            VerbStats stats = entry.getValue();
+            lines.add( entry.getKey() + ": count=" + stats.count.get() + ", failures=" + stats.failures.get() + ", total=" + ( stats.nanos.get() / 1000000 ) + "ms" +
+                       ", mean=" + String.format( "%.1f", stats.getMeanMillis() ) + "ms, max=" + ( stats.max.get() / 1000000 ) + "ms" +
+                       ", p50<" + stats.getPercentile( 0.5 ) + "ms, p99<" + stats.getPercentile( 0.99 ) + "ms, bytes=" + stats.bytes.get() );
+        }
+        return lines.toArray( new String[lines.size()] );
+    }
+
+    @Override
+    public String[] getFailureSummary() {
+        return summary( failures, Integer.MAX_VALUE );
+    }
+
+    @Override
+    public String[] getTopCallers() {
+        return summary( callers, 20 );
+    }
+
+    /**
+     * The number of commands triggered by each caller, most frequent first
+     */
+    public Map<String, Long> getCallers() {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for( Map.Entry<String, AtomicLong> entry : callers.entrySet() ) {
+            map.put( entry.getKey(), entry.getValue().get() );
+        }
+        return map;
+    }
+
+    private static String[] summary( ConcurrentMap<String, AtomicLong> map, int max ) {
+        List<Map.Entry<String, AtomicLong>> entries = new ArrayList<Map.Entry<String, AtomicLong>>( map.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<String, AtomicLong>>() {
+            @Override
+            public int compare( Map.Entry<String, AtomicLong> e1, Map.Entry<String, AtomicLong> e2 ) {
+                long c1 = e1.getValue().get();
+                long c2 = e2.getValue().get();
+                return c1 > c2 ? -1 : ( c1 == c2 ? e1.getKey().compareTo( e2.getKey() ) : 1 );
+            }
+        } );
+
+        List<String> lines = new ArrayList<String>();
+        for( Map.Entry<String, AtomicLong> entry : entries ) {
+            if( lines.size() >= max ) {
+                break;
+            }
+            lines.add( entry.getKey() + ": " + entry.getValue().get() );
+        }
+        return lines.toArray( new String[lines.size()] );
+    }
+
+    @Override
+    public long getCount( String verb ) {
+        VerbStats stats = verbs.get( verb );
+        return stats == null ? 0 : stats.count.get();
+    }
+
+    @Override
+    public double getMeanMillis( String verb ) {
+        VerbStats stats = verbs.get( verb );
+        return stats == null ? 0 : stats.getMeanMillis();
+    }
+
+    @Override
+    public long[] getHistogram( String verb ) {
+        VerbStats stats = verbs.get( verb );
+        long[] histogram = new long[BUCKETS];
+        if( stats != null ) {
+            for( int i = 0 ; i < BUCKETS ; i++ ) {
+                histogram[i] = stats.histogram.get( i );
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public void reset() {
+        verbs.clear();
+        failures.clear();
+        callers.clear();
+    }
+
+    private static class VerbStats {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray( BUCKETS );
+
+        void add( CleartoolEvent event ) {
+            count.incrementAndGet();
+            if( event.isFailed() ) {
+                failures.incrementAndGet();
+            }
+            nanos.addAndGet( event.getNanos() );
+            bytes.addAndGet( event.getBytes() );
+
+            long current;
+            while( ( current = max.get() ) < event.getNanos() && !max.compareAndSet( current, event.getNanos() ) ) {
+                /* Retry */
+            }
+
+            histogram.incrementAndGet( getBucket( event.getMillis() ) );
+        }
+
+        double getMeanMillis() {
+            long c = count.get();
+            return c == 0 ? 0 : ( nanos.get() / 1000000.0 ) / c;
+        }
+
+        /**
+         * The upper bound of the bucket holding the percentile
+         */
+        long getPercentile( double percentile ) {
+            long total = 0;
+            for( int i = 0 ; i < BUCKETS ; i++ ) {
+                total += histogram.get( i );
+            }
+
+            long seen = 0;
+            for( int i = 0 ; i < BUCKETS ; i++ ) {
+                seen += histogram.get( i );
+                if( seen >= total * percentile ) {
+                    return 1L << i;
+                }
+            }
+
+            return 1L << ( BUCKETS - 1 );
+        }
+    }
+
+    static int getBucket( long millis ) {
+        int bucket = 0;
+        while( millis > 0 && bucket < BUCKETS - 1 ) {
+            millis >>= 1;
+            bucket++;
+        }
+        return bucket;
+    }
+}
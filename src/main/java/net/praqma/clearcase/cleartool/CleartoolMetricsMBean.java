@@ -0,0 +1,48 @@
+package net.praqma.clearcase.cleartool;
+
+/**
+ * The JMX interface of {@link CleartoolMetrics}
+ *
+ * @author cwolfgang
+ */
+public interface CleartoolMetricsMBean {
+
+    public long getCommandCount();
+
+    public long getFailureCount();
+
+    public long getTotalMillis();
+
+    public long getTotalBytes();
+
+    /**
+     * The verbs seen
+     */
+    public String[] getVerbs();
+
+    /**
+     * A line per verb with count, failures, mean, max and percentiles
+     */
+    public String[] getVerbSummary();
+
+    /**
+     * A line per failure class with its count
+     */
+    public String[] getFailureSummary();
+
+    /**
+     * The callers triggering the most commands
+     */
+    public String[] getTopCallers();
+
+    public long getCount( String verb );
+
+    public double getMeanMillis( String verb );
+
+    /**
+     * The number of commands per latency bucket, where bucket i holds the commands taking less than 2^i milliseconds
+     */
+    public long[] getHistogram( String verb );
+
+    public void reset();
+}
@@ -0,0 +1,111 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+/**
+ * Forks a command, like {@link CommandLine}, but hands the standard output to a {@link LineHandler} while the process is running.
+ *
+ * @author cwolfgang
+ */
+final class CleartoolProcess {
+
+    private static final Logger logger = Logger.getLogger( CleartoolProcess.class.getName() );
+
+    private CleartoolProcess() {
+    }
+
+    static void stream( String cmd, File dir, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        List<String> command = new ArrayList<String>( 3 );
+        if( CommandLine.getInstance().getOS().equals( OperatingSystem.WINDOWS ) ) {
+            command.add( "cmd.exe" );
+            command.add( "/C" );
+        } else {
+            command.add( "bash" );
+            command.add( "-c" );
+        }
+        command.add( cmd );
+
+        ProcessBuilder pb = new ProcessBuilder( command );
+        if( dir != null ) {
+            pb.directory( dir );
+        }
+
+        logger.fine( "Streaming " + cmd );
+
+        final Process process;
+        try {
+            process = pb.start();
+        } catch( IOException e ) {
+            throw new CommandLineException( "Could not execute the command \"" + cmd + "\": " + e.getMessage() );
+        }
+
+        /* The error output is collected in the background, not to block the process */
+        final StringBuffer errors = new StringBuffer();
+        Thread gobbler = new Thread( "cleartool-stream-stderr" ) {
+            public void run() {
+                BufferedReader err = new BufferedReader( new InputStreamReader( process.getErrorStream() ) );
+                try {
+                    String line;
+                    while( ( line = err.readLine() ) != null ) {
+                        errors.append( line ).append( Cool.linesep );
+                    }
+                } catch( IOException e ) {
+                    /* The process is gone */
+                } finally {
+                    try {
+                        err.close();
+                    } catch( IOException e ) {
+                        /* Ignore */
+                    }
+                }
+            }
+        };
+        gobbler.setDaemon( true );
+        gobbler.start();
+
+        int exitValue;
+        BufferedReader out = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+        try {
+            String line;
+            while( ( line = out.readLine() ) != null ) {
+                handler.handle( line );
+            }
+
+            exitValue = process.waitFor();
+            gobbler.join();
+        } catch( IOException e ) {
+            process.destroy();
+            throw new CommandLineException( "Could not read the output of \"" + cmd + "\": " + e.getMessage() );
+        } catch( InterruptedException e ) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while running \"" + cmd + "\"" );
+        } catch( RuntimeException e ) {
+            /* The handler gave up */
+            process.destroy();
+            throw e;
+        } finally {
+            try {
+                out.close();
+            } catch( IOException e ) {
+                /* Ignore */
+            }
+        }
+
+        if( exitValue != 0 && !ignore ) {
+            throw new AbnormalProcessTerminationException( errors.toString(), cmd, exitValue );
+        }
+    }
+}
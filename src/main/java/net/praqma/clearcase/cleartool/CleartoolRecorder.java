@@ -0,0 +1,151 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+/**
+ * A {@link CommandLineInterface} executing the commands through another and recording them to a {@link CleartoolTranscript},
+ * to be replayed by a {@link CleartoolReplayer}.<br>
+ * Each command is written through when it has finished. The recorder must be closed to complete the transcript.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolRecorder implements StreamingCommandLineInterface {
+
+    private static final Logger logger = Logger.getLogger( CleartoolRecorder.class.getName() );
+
+    private final CommandLineInterface cli;
+    private final CleartoolTranscript.Writer out;
+
+    private final long started = System.currentTimeMillis();
+    private final AtomicLong recorded = new AtomicLong( 0 );
+
+    private boolean closed = false;
+
+    public CleartoolRecorder( CommandLineInterface cli, File transcript ) throws IOException {
+        this( cli, new FileOutputStream( transcript ) );
+    }
+
+    public CleartoolRecorder( CommandLineInterface cli, OutputStream transcript ) throws IOException {
+        this.cli = cli;
+        this.out = CleartoolTranscript.open( transcript );
+    }
+
+    /**
+     * @return The number of commands recorded
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    @Override
+    public OperatingSystem getOS() {
+        return cli.getOS();
+    }
+
+    @Override
+    public CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, null, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, ignore, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+        long start = System.currentTimeMillis();
+        try {
+            CmdResult result = cli.run( cmd, dir, merge, ignore, variables );
+            record( cmd, dir, merge, ignore, result.stdoutList, result.errorList, 0, null, start );
+            return result;
+        } catch( AbnormalProcessTerminationException e ) {
+            record( cmd, dir, merge, ignore, new ArrayList<String>(), new ArrayList<String>(), e.getExitValue(), String.valueOf( e.getMessage() ), start );
+            throw e;
+        }
+    }
+
+    /**
+     * Stream the command, if the recorded {@link CommandLineInterface} cannot stream, the lines are handed over when the command has finished
+     */
+    @Override
+    public void stream( String cmd, File dir, boolean ignore, final LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        long start = System.currentTimeMillis();
+        final List<String> lines = new ArrayList<String>();
+        try {
+            if( cli instanceof StreamingCommandLineInterface ) {
+                ( (StreamingCommandLineInterface) cli ).stream( cmd, dir, ignore, new LineHandler() {
+                    @Override
+                    public void handle( String line ) {
+                        lines.add( line );
+                        handler.handle( line );
+                    }
+                } );
+            } else {
+                lines.addAll( cli.run( cmd, dir, false, ignore ).stdoutList );
+                for( String line : lines ) {
+                    handler.handle( line );
+                }
+            }
+            record( cmd, dir, false, ignore, lines, new ArrayList<String>(), 0, null, start );
+        } catch( AbnormalProcessTerminationException e ) {
+            record( cmd, dir, false, ignore, lines, new ArrayList<String>(), e.getExitValue(), String.valueOf( e.getMessage() ), start );
+            throw e;
+        }
+    }
+
+    private void record( String cmd, File dir, boolean merge, boolean ignore, List<String> output, List<String> errors, int status, String failure, long start ) {
+        long now = System.currentTimeMillis();
+        String directory = dir != null ? dir.getAbsolutePath() : null;
+        CleartoolTranscript.Entry entry = new CleartoolTranscript.Entry( cmd, directory, merge, ignore, output, errors, status, failure, start - started, now - start );
+
+        synchronized( out ) {
+            if( closed ) {
+                logger.warning( "The transcript is closed, not recording " + cmd );
+                return;
+            }
+            try {
+                out.write( entry );
+                recorded.incrementAndGet();
+            } catch( IOException e ) {
+                logger.warning( "Unable to record " + cmd + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Complete the transcript
+     */
+    public void close() throws IOException {
+        synchronized( out ) {
+            if( !closed ) {
+                closed = true;
+                out.close();
+                logger.fine( "Recorded " + recorded.get() + " commands" );
+            }
+        }
+    }
+}
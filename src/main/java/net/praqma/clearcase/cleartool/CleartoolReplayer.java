@@ -0,0 +1,229 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+/**
+ * A {@link CommandLineInterface} answering the commands from a {@link CleartoolTranscript} recorded by a {@link CleartoolRecorder}, without ClearCase.<br><br>
+ * A command is answered by the recordings of the same command in the same directory, in the order they were recorded.
+ * If the command was not recorded in the directory, the recordings of the command in any directory are used,
+ * and when all the recordings of a command are used, the last is repeated. A command never recorded fails with a {@link CommandLineException}.
+ * Each recording is used once, however it is found, the recordings of a command are kept in one queue.<br>
+ * By default the commands are answered as fast as possible, see {@link #setSpeed(double)}.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolReplayer implements StreamingCommandLineInterface {
+
+    private static final Logger logger = Logger.getLogger( CleartoolReplayer.class.getName() );
+
+    /* The recordings of each command in the order recorded */
+    private final Map<String, Recordings> byCommand = new HashMap<String, Recordings>();
+
+    /* The last recording used of each command in a directory, null if none used yet */
+    private final Map<String, CleartoolTranscript.Entry> byDirectory = new HashMap<String, CleartoolTranscript.Entry>();
+    private final int size;
+
+    private volatile double speed = 0;
+
+    private final AtomicLong replayed = new AtomicLong( 0 );
+    private final AtomicLong repeated = new AtomicLong( 0 );
+    private final AtomicLong unrecorded = new AtomicLong( 0 );
+
+    private static class Recordings {
+        private final LinkedList<CleartoolTranscript.Entry> entries = new LinkedList<CleartoolTranscript.Entry>();
+        private CleartoolTranscript.Entry last;
+    }
+
+    public CleartoolReplayer( File transcript ) throws IOException {
+        this( CleartoolTranscript.read( transcript ) );
+    }
+
+    public CleartoolReplayer( List<CleartoolTranscript.Entry> entries ) {
+        for( CleartoolTranscript.Entry entry : entries ) {
+            Recordings r = byCommand.get( entry.getCommand() );
+            if( r == null ) {
+                r = new Recordings();
+                byCommand.put( entry.getCommand(), r );
+            }
+            r.entries.add( entry );
+            byDirectory.put( getKey( entry.getCommand(), entry.getDirectory() ), null );
+        }
+        this.size = entries.size();
+        logger.fine( "Replaying " + size + " commands" );
+    }
+
+    private static String getKey( String cmd, String dir ) {
+        return cmd + "|" + dir;
+    }
+
+    /**
+     * Set the speed of the replay relative to the recording, 1 replays each command in the time it took when recorded,
+     * 2 in half the time and 0, the default, as fast as possible
+     */
+    public CleartoolReplayer setSpeed( double speed ) {
+        if( speed < 0 ) {
+            throw new IllegalArgumentException( "The speed cannot be negative" );
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return The number of commands in the transcript
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of commands answered
+     */
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * @return The number of commands answered by repeating an already used recording
+     */
+    public long getRepeated() {
+        return repeated.get();
+    }
+
+    /**
+     * @return The number of commands not found in the transcript
+     */
+    public long getUnrecorded() {
+        return unrecorded.get();
+    }
+
+    @Override
+    public OperatingSystem getOS() {
+        return CommandLine.getInstance().getOS();
+    }
+
+    @Override
+    public CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, null, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, ignore, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+        CleartoolTranscript.Entry entry = replay( cmd, dir );
+
+        CmdResult result = new CmdResult();
+        for( String line : entry.getOutput() ) {
+            result.stdoutList.add( line );
+            result.stdoutBuffer.append( line ).append( Cool.linesep );
+        }
+        for( String line : entry.getErrors() ) {
+            result.errorList.add( line );
+            result.errorBuffer.append( line ).append( Cool.linesep );
+        }
+
+        /* The output of a recording merged is already merged */
+        if( merge && !entry.isMerge() ) {
+            result.stdoutBuffer.append( result.errorBuffer );
+            result.stdoutList.addAll( result.errorList );
+        }
+
+        if( entry.isFailed() && !ignore ) {
+            throw new AbnormalProcessTerminationException( entry.getFailure(), cmd, entry.getStatus() );
+        }
+
+        return result;
+    }
+
+    @Override
+    public void stream( String cmd, File dir, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        CleartoolTranscript.Entry entry = replay( cmd, dir );
+
+        for( String line : entry.getOutput() ) {
+            handler.handle( line );
+        }
+
+        if( entry.isFailed() && !ignore ) {
+            throw new AbnormalProcessTerminationException( entry.getFailure(), cmd, entry.getStatus() );
+        }
+    }
+
+    private CleartoolTranscript.Entry replay( String cmd, File dir ) {
+        CleartoolTranscript.Entry entry = next( cmd, dir );
+        if( entry == null ) {
+            unrecorded.incrementAndGet();
+            throw new CommandLineException( "Not in the transcript: " + cmd );
+        }
+
+        replayed.incrementAndGet();
+
+        double speed = this.speed;
+        if( speed > 0 && entry.getDuration() > 0 ) {
+            try {
+                Thread.sleep( (long) ( entry.getDuration() / speed ) );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new CommandLineException( "Interrupted while replaying " + cmd );
+            }
+        }
+
+        return entry;
+    }
+
+    private synchronized CleartoolTranscript.Entry next( String cmd, File dir ) {
+        Recordings recordings = byCommand.get( cmd );
+        if( recordings == null ) {
+            return null;
+        }
+
+        /* The first recording in the directory, or in any directory if the command was not recorded in it */
+        String key = getKey( cmd, dir != null ? dir.getAbsolutePath() : null );
+        boolean recordedHere = byDirectory.containsKey( key );
+        for( Iterator<CleartoolTranscript.Entry> it = recordings.entries.iterator() ; it.hasNext() ; ) {
+            CleartoolTranscript.Entry entry = it.next();
+            String k = getKey( entry.getCommand(), entry.getDirectory() );
+            if( !recordedHere || k.equals( key ) ) {
+                it.remove();
+                recordings.last = entry;
+                byDirectory.put( k, entry );
+                return entry;
+            }
+        }
+
+        /* All used, also those of the directory used for other directories */
+        repeated.incrementAndGet();
+        return recordedHere ? byDirectory.get( key ) : recordings.last;
+    }
+}
@@ -0,0 +1,440 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+/**
+ * A {@link CommandLineInterface} keeping a number of long lived, interactive cleartool processes.<br>
+ * Commands prefixed with "cleartool " are written to the stdin of an idle session instead of forking a new process.
+ * The sessions are started with <code>-status</code>, making cleartool print the exit status of each command,
+ * and every command is followed by an unknown command acting as a sentinel, marking the end of the stderr output.<br>
+ * Everything else, commands with environment variables and multi line commands, are passed on to {@link CommandLine}.<br>
+ * The output can be streamed through {@link #stream(String, File, boolean, LineHandler)}.<br>
+ * When all sessions are busy, a caller waits for one to be released, or for a dead session to be replaced.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolSessionPool implements StreamingCommandLineInterface {
+
+    private static final Logger logger = Logger.getLogger( CleartoolSessionPool.class.getName() );
+
+    public static final String PREFIX = "cleartool ";
+
+    private static final Pattern rx_status = Pattern.compile( "^Command \\d+ returned status (\\d+)\\s*$" );
+
+    private final int size;
+    private final List<String> launcher;
+    /* Guarded by this, waiters are notified when a session is released or discarded, and when the pool is closed */
+    private final LinkedList<Session> idle = new LinkedList<Session>();
+    private final List<Session> sessions = new ArrayList<Session>();
+    private int starting = 0;
+    private final AtomicInteger sentinels = new AtomicInteger( 0 );
+
+    private boolean closed = false;
+
+    public CleartoolSessionPool( int size ) {
+        this( size, "cleartool" );
+    }
+
+    /**
+     * @param size The maximum number of concurrent cleartool sessions
+     * @param executable The cleartool executable
+     */
+    public CleartoolSessionPool( int size, String executable ) {
+        if( size < 1 ) {
+            throw new IllegalArgumentException( "The session pool must have at least one session" );
+        }
+        this.size = size;
+        this.launcher = new ArrayList<String>();
+        this.launcher.add( executable );
+        this.launcher.add( "-status" );
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public synchronized int getNumberOfSessions() {
+        return sessions.size();
+    }
+
+    public synchronized int getNumberOfIdleSessions() {
+        return idle.size();
+    }
+
+    @Override
+    public OperatingSystem getOS() {
+        return CommandLine.getInstance().getOS();
+    }
+
+    @Override
+    public CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, null, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, ignore, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+        if( !isPoolable( cmd, variables ) ) {
+            return CommandLine.getInstance().run( cmd, dir, merge, ignore, variables );
+        }
+
+        final CmdResult result = new CmdResult();
+        int status = execute( cmd, dir, new LineHandler() {
+            @Override
+            public void handle( String line ) {
+                result.stdoutList.add( line );
+                result.stdoutBuffer.append( line ).append( Cool.linesep );
+            }
+        }, result );
+
+        String errors = result.errorBuffer.toString();
+        if( merge ) {
+            result.stdoutBuffer.append( errors );
+            result.stdoutList.addAll( result.errorList );
+        }
+
+        if( status != 0 && !ignore ) {
+            throw new AbnormalProcessTerminationException( errors, cmd, status );
+        }
+
+        return result;
+    }
+
+    @Override
+    public void stream( String cmd, File dir, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        if( !isPoolable( cmd, null ) ) {
+            CleartoolProcess.stream( cmd, dir, ignore, handler );
+            return;
+        }
+
+        CmdResult errors = new CmdResult();
+        int status = execute( cmd, dir, handler, errors );
+
+        if( status != 0 && !ignore ) {
+            throw new AbnormalProcessTerminationException( errors.errorBuffer.toString(), cmd, status );
+        }
+    }
+
+    private synchronized boolean isPoolable( String cmd, Map<String, String> variables ) {
+        return !closed && cmd.startsWith( PREFIX ) && cmd.indexOf( '\n' ) < 0 && cmd.indexOf( '\r' ) < 0 && ( variables == null || variables.isEmpty() );
+    }
+
+    /**
+     * Execute a command in a session.
+     * If the handler fails, the output is still read to the end, keeping the session usable, and the failure is thrown afterwards.
+     */
+    private int execute( String cmd, File dir, final LineHandler handler, CmdResult errors ) throws CommandLineException, AbnormalProcessTerminationException {
+        final RuntimeException[] failure = new RuntimeException[1];
+        LineHandler guarded = new LineHandler() {
+            @Override
+            public void handle( String line ) {
+                if( failure[0] == null ) {
+                    try {
+                        handler.handle( line );
+                    } catch( RuntimeException e ) {
+                        failure[0] = e;
+                    }
+                }
+            }
+        };
+
+        String command = cmd.substring( PREFIX.length() );
+        Session session = acquire( cmd );
+        boolean healthy = false;
+        int status;
+        try {
+            session.changeDirectory( dir, cmd );
+            status = session.execute( command, guarded, errors );
+            healthy = true;
+        } catch( IOException e ) {
+            throw new CommandLineException( "Cleartool session failed for " + cmd + ": " + e.getMessage() );
+        } finally {
+            release( session, healthy );
+        }
+
+        if( failure[0] != null ) {
+            throw failure[0];
+        }
+
+        return status;
+    }
+
+    /**
+     * Terminate all sessions. Subsequent calls are forked through {@link CommandLine}, and callers waiting for a session fail.
+     */
+    public void close() {
+        List<Session> all;
+        synchronized( this ) {
+            closed = true;
+            all = new ArrayList<Session>( sessions );
+            sessions.clear();
+            idle.clear();
+            notifyAll();
+        }
+        for( Session s : all ) {
+            s.destroy();
+        }
+    }
+
+    /**
+     * Get an idle session, or start one if the pool is not full, otherwise wait for either
+     */
+    private Session acquire( String cmd ) {
+        synchronized( this ) {
+            while( true ) {
+                if( closed ) {
+                    throw new CommandLineException( "The cleartool session pool is closed" );
+                }
+                if( !idle.isEmpty() ) {
+                    return idle.removeFirst();
+                }
+                if( sessions.size() + starting < size ) {
+                    starting++;
+                    break;
+                }
+
+                try {
+                    wait();
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new CommandLineException( "Interrupted while waiting for a cleartool session" );
+                }
+            }
+        }
+
+        /* Started outside the lock, the slot is reserved */
+        Session session = null;
+        try {
+            session = start( cmd );
+        } finally {
+            synchronized( this ) {
+                starting--;
+                if( session != null && !closed ) {
+                    sessions.add( session );
+                }
+                notifyAll();
+            }
+        }
+
+        if( isClosed() ) {
+            session.destroy();
+            throw new CommandLineException( "The cleartool session pool is closed" );
+        }
+
+        return session;
+    }
+
+    private void release( Session session, boolean healthy ) {
+        synchronized( this ) {
+            if( healthy && session.isAlive() && !closed ) {
+                idle.addLast( session );
+                notifyAll();
+                return;
+            }
+
+            /* A waiter may start a new session */
+            sessions.remove( session );
+            notifyAll();
+        }
+
+        if( !healthy || !session.isAlive() ) {
+            logger.warning( "Discarding cleartool session" );
+        }
+        session.destroy();
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private Session start( String cmd ) {
+        logger.fine( "Starting a cleartool session, at most " + size );
+        try {
+            return new Session( launch() );
+        } catch( IOException e ) {
+            /* Keep the message recognizable as a missing cleartool */
+            throw new AbnormalProcessTerminationException( "cleartool: command not found", cmd, -1, e );
+        }
+    }
+
+    /**
+     * Start an interactive cleartool process, printing the exit status of each command
+     */
+    protected Process launch() throws IOException {
+        return new ProcessBuilder( launcher ).start();
+    }
+
+    private class Session {
+        private final Process process;
+        private final BufferedReader out;
+        private final BufferedWriter in;
+        private final LinkedBlockingQueue<String> errors = new LinkedBlockingQueue<String>();
+        private volatile boolean alive = true;
+
+        private File directory = null;
+
+        Session( Process process ) {
+            this.process = process;
+            this.out = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+            this.in = new BufferedWriter( new OutputStreamWriter( process.getOutputStream() ) );
+
+            final BufferedReader err = new BufferedReader( new InputStreamReader( process.getErrorStream() ) );
+            Thread gobbler = new Thread( "cleartool-session-stderr" ) {
+                public void run() {
+                    try {
+                        String line;
+                        while( ( line = err.readLine() ) != null ) {
+                            errors.add( line );
+                        }
+                    } catch( IOException e ) {
+                        logger.log( Level.FINE, "Session stderr closed", e );
+                    } finally {
+                        alive = false;
+                        /* Wake up any reader waiting for a sentinel */
+                        errors.add( "" );
+                    }
+                }
+            };
+            gobbler.setDaemon( true );
+            gobbler.start();
+        }
+
+        boolean isAlive() {
+            return alive;
+        }
+
+        void changeDirectory( File dir, String cmd ) throws IOException {
+            /* Without a directory, a forked cleartool runs in the working directory of the JVM, where the session started */
+            if( dir == null ) {
+                if( directory == null ) {
+                    return;
+                }
+                dir = new File( System.getProperty( "user.dir" ) );
+            }
+
+            if( dir.equals( directory ) ) {
+                return;
+            }
+
+            CmdResult result = new CmdResult();
+            int status = execute( "cd \"" + dir.getAbsolutePath() + "\"", new LineHandler() {
+                @Override
+                public void handle( String line ) {
+                    /* No output expected */
+                }
+            }, result );
+            if( status != 0 ) {
+                /* The session stays where it was */
+                throw new AbnormalProcessTerminationException( result.errorBuffer.toString(), cmd, status );
+            }
+            directory = dir;
+        }
+
+        /**
+         * Write a command followed by the sentinel, handing the output to the handler and collecting the errors.
+         * @return The exit status of the command
+         */
+        int execute( String command, LineHandler handler, CmdResult result ) throws IOException {
+            String sentinel = "cool-sentinel-" + sentinels.incrementAndGet();
+
+            in.write( command );
+            in.newLine();
+            in.write( sentinel );
+            in.newLine();
+            in.flush();
+
+            /* The output of the command, terminated by its status */
+            int status = -1;
+            String line;
+            while( ( line = out.readLine() ) != null ) {
+                Matcher m = rx_status.matcher( line );
+                if( m.find() ) {
+                    status = Integer.parseInt( m.group( 1 ) );
+                    break;
+                }
+                handler.handle( line );
+            }
+
+            /* The status of the sentinel */
+            if( line != null ) {
+                while( ( line = out.readLine() ) != null && !rx_status.matcher( line ).find() ) {
+                    /* Nothing is expected on stdout from the sentinel */
+                }
+            }
+
+            if( line == null ) {
+                alive = false;
+                throw new IOException( "The cleartool session terminated" );
+            }
+
+            /* The error output of the command, terminated by the complaint about the sentinel */
+            try {
+                while( true ) {
+                    String error = errors.take();
+                    if( error.contains( sentinel ) ) {
+                        break;
+                    }
+                    if( !alive && errors.isEmpty() ) {
+                        throw new IOException( "The cleartool session terminated" );
+                    }
+                    result.errorList.add( error );
+                    result.errorBuffer.append( error ).append( Cool.linesep );
+                }
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                alive = false;
+                throw new IOException( "Interrupted while reading from the cleartool session" );
+            }
+
+            return status;
+        }
+
+        void destroy() {
+            alive = false;
+            try {
+                in.write( "quit" );
+                in.newLine();
+                in.flush();
+            } catch( IOException e ) {
+                /* The session is gone anyway */
+            }
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A transcript of cleartool commands, written by a {@link CleartoolRecorder} and replayed by a {@link CleartoolReplayer}.<br>
+ * The transcript is a stream of entries, each with the command, the working directory, the output, the exit status and the timing.
+ * Each entry is deflated by itself and written through when recorded,
+ * so a transcript cut off, because the recording process was killed, is read up to the last complete entry.
+ *
+ * @author cwolfgang
+ */
+public class CleartoolTranscript {
+
+    private static final Logger logger = Logger.getLogger( CleartoolTranscript.class.getName() );
+
+    private static final int MAGIC = 0x434f4f4c; /* COOL */
+    private static final int VERSION = 2;
+
+    private static final String UTF8 = "UTF-8";
+
+    /**
+     * A recorded command
+     */
+    public static class Entry {
+        private final String command;
+        private final String directory;
+        private final boolean merge;
+        private final boolean ignore;
+
+        private final List<String> output;
+        private final List<String> errors;
+        private final int status;
+        private final String failure;
+
+        private final long start;
+        private final long duration;
+
+        /**
+         * @param directory The absolute path of the working directory, or null
+         * @param failure The message of the {@link net.praqma.util.execute.AbnormalProcessTerminationException} thrown, or null
+         * @param start The milliseconds since the recording started
+         */
+        public Entry( String command, String directory, boolean merge, boolean ignore, List<String> output, List<String> errors, int status, String failure, long start, long duration ) {
+            this.command = command;
+            this.directory = directory;
+            this.merge = merge;
+            this.ignore = ignore;
+            this.output = Collections.unmodifiableList( new ArrayList<String>( output ) );
+            this.errors = Collections.unmodifiableList( new ArrayList<String>( errors ) );
+            this.status = status;
+            this.failure = failure;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public boolean isMerge() {
+            return merge;
+        }
+
+        public boolean isIgnore() {
+            return ignore;
+        }
+
+        public List<String> getOutput() {
+            return output;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return True if the command threw an {@link net.praqma.util.execute.AbnormalProcessTerminationException}
+         */
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return command + ( directory != null ? " in " + directory : "" ) + ", " + duration + "ms";
+        }
+    }
+
+    private CleartoolTranscript() {
+    }
+
+    public static List<Entry> read( File file ) throws IOException {
+        InputStream in = new FileInputStream( file );
+        try {
+            return read( in );
+        } finally {
+            in.close();
+        }
+    }
+
+    public static List<Entry> read( InputStream in ) throws IOException {
+        DataInputStream data = new DataInputStream( new BufferedInputStream( in ) );
+        if( data.readInt() != MAGIC ) {
+            throw new IOException( "Not a cleartool transcript" );
+        }
+        int version = data.readInt();
+        if( version != VERSION ) {
+            throw new IOException( "Unsupported transcript version " + version );
+        }
+
+        List<Entry> entries = new ArrayList<Entry>();
+        Inflater inflater = new Inflater();
+        try {
+            /* Each entry is the length of the deflated and of the inflated entry, followed by the deflated entry. A length of 0 ends the transcript */
+            int length;
+            while( ( length = data.readInt() ) > 0 ) {
+                byte[] deflated = new byte[data.readInt()];
+                data.readFully( deflated );
+
+                byte[] inflated = new byte[length];
+                inflater.reset();
+                inflater.setInput( deflated );
+                int inflatedLength = 0;
+                while( inflatedLength < length && !inflater.finished() ) {
+                    int n = inflater.inflate( inflated, inflatedLength, length - inflatedLength );
+                    if( n == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) ) {
+                        break;
+                    }
+                    inflatedLength += n;
+                }
+                if( inflatedLength != length ) {
+                    throw new IOException( "Entry " + ( entries.size() + 1 ) + " of the transcript is corrupt" );
+                }
+                entries.add( readEntry( new DataInputStream( new ByteArrayInputStream( inflated ) ) ) );
+            }
+        } catch( EOFException e ) {
+            logger.warning( "The transcript is truncated after " + entries.size() + " commands" );
+        } catch( DataFormatException e ) {
+            throw new IOException( "Entry " + ( entries.size() + 1 ) + " of the transcript is corrupt: " + e.getMessage() );
+        } finally {
+            inflater.end();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Open a transcript for writing, the header is written
+     */
+    static Writer open( OutputStream out ) throws IOException {
+        return new Writer( out );
+    }
+
+    /**
+     * Writes the entries of a transcript, each flushed to the underlying stream when written
+     */
+    static class Writer {
+        private final DataOutputStream data;
+        private final Deflater deflater = new Deflater();
+        private final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        private byte[] buffer = new byte[8192];
+
+        private Writer( OutputStream out ) throws IOException {
+            data = new DataOutputStream( new BufferedOutputStream( out ) );
+            data.writeInt( MAGIC );
+            data.writeInt( VERSION );
+            data.flush();
+        }
+
+        void write( Entry e ) throws IOException {
+            entry.reset();
+            writeEntry( new DataOutputStream( entry ), e );
+            byte[] inflated = entry.toByteArray();
+
+            deflater.reset();
+            deflater.setInput( inflated );
+            deflater.finish();
+            int length = 0;
+            while( !deflater.finished() ) {
+                if( length == buffer.length ) {
+                    byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy( buffer, 0, larger, 0, length );
+                    buffer = larger;
+                }
+                length += deflater.deflate( buffer, length, buffer.length - length );
+            }
+
+            data.writeInt( inflated.length );
+            data.writeInt( length );
+            data.write( buffer, 0, length );
+            data.flush();
+        }
+
+        /**
+         * Write the end of the transcript and close the underlying stream
+         */
+        void close() throws IOException {
+            try {
+                data.writeInt( 0 );
+                data.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeEntry( DataOutputStream data, Entry entry ) throws IOException {
+        writeString( data, entry.command );
+        writeString( data, entry.directory );
+        data.writeBoolean( entry.merge );
+        data.writeBoolean( entry.ignore );
+        writeLines( data, entry.output );
+        writeLines( data, entry.errors );
+        data.writeInt( entry.status );
+        writeString( data, entry.failure );
+        data.writeLong( entry.start );
+        data.writeLong( entry.duration );
+    }
+
+    private static Entry readEntry( DataInputStream data ) throws IOException {
+        String command = readString( data );
+        String directory = readString( data );
+        boolean merge = data.readBoolean();
+        boolean ignore = data.readBoolean();
+        List<String> output = readLines( data );
+        List<String> errors = readLines( data );
+        int status = data.readInt();
+        String failure = readString( data );
+        long start = data.readLong();
+        long duration = data.readLong();
+
+        return new Entry( command, directory, merge, ignore, output, errors, status, failure, start, duration );
+    }
+
+    /* Strings are written with their length, writeUTF is limited to 64k */
+
+    private static void writeString( DataOutputStream data, String s ) throws IOException {
+        if( s == null ) {
+            data.writeInt( -1 );
+        } else {
+            byte[] bytes = s.getBytes( UTF8 );
+            data.writeInt( bytes.length );
+            data.write( bytes );
+        }
+    }
+
+    private static String readString( DataInputStream data ) throws IOException {
+        int length = data.readInt();
+        if( length < 0 ) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully( bytes );
+        return new String( bytes, UTF8 );
+    }
+
+    private static void writeLines( DataOutputStream data, List<String> lines ) throws IOException {
+        data.writeInt( lines.size() );
+        for( String line : lines ) {
+            writeString( data, line );
+        }
+    }
+
+    private static List<String> readLines( DataInputStream data ) throws IOException {
+        int size = data.readInt();
+        List<String> lines = new ArrayList<String>( size );
+        for( int i = 0 ; i < size ; i++ ) {
+            lines.add( readString( data ) );
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,11 @@
+package net.praqma.clearcase.cleartool;
+
+/**
+ * Receives the output of a cleartool command, one line at a time, while the command is running.<br>
+ * Throwing a {@link RuntimeException} aborts the command and is passed on to the caller.
+ *
+ * @author cwolfgang
+ */
+public interface LineHandler {
+    public void handle( String line );
+}
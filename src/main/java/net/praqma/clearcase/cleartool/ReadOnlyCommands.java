@@ -0,0 +1,63 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Classification of cleartool commands as read only.<br>
+ * The classification is an explicit allow-list of verbs, anything not on the list, or not recognized, is considered a mutation.
+ * Verbs with both querying and mutating forms, deliver and rebase, are only read only with <code>-status</code>,
+ * and find is only read only without <code>-exec</code> and <code>-ok</code>.
+ *
+ * @author cwolfgang
+ */
+public final class ReadOnlyCommands {
+
+    private static final Set<String> verbs = new HashSet<String>( Arrays.asList(
+            /* Spelled as returned by Cleartool.getVerb */
+            "describe", "diffbl", "diff", "find", "catcs", "pwv", "pwd", "hostinfo",
+            "ls", "lsactivity", "lsbl", "lscheckout", "lscomp", "lsfolder", "lshistory", "lslock",
+            "lspool", "lsproject", "lsregion", "lsreplica", "lssite", "lsstgloc", "lsstream", "lstype", "lsview", "lsvob", "lsvtree" ) );
+
+    private static final Set<String> statusOnly = new HashSet<String>( Arrays.asList( "deliver", "rebase" ) );
+
+    private ReadOnlyCommands() {
+    }
+
+    /**
+     * Determine whether a cleartool command only reads.
+     * @param cmd The command line without cleartool, for example "deliver -status -stream stream:s@\pvob"
+     */
+    public static boolean isReadOnly( String cmd ) {
+        /* Multiple commands */
+        if( cmd.indexOf( '\n' ) >= 0 || cmd.indexOf( '\r' ) >= 0 ) {
+            return false;
+        }
+
+        String verb = Cleartool.getVerb( cmd );
+        if( statusOnly.contains( verb ) ) {
+            return hasOption( cmd, "-status" );
+        }
+
+        if( !verbs.contains( verb ) ) {
+            return false;
+        }
+
+        if( verb.equals( "find" ) ) {
+            return !hasOption( cmd, "-exec" ) && !hasOption( cmd, "-ok" );
+        }
+
+        return true;
+    }
+
+    private static boolean hasOption( String cmd, String option ) {
+        for( String token : cmd.trim().split( "\\s+" ) ) {
+            if( token.equalsIgnoreCase( option ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * Coalescing of identical commands in flight.<br>
+ * The first caller of a command executes it, callers of the same command, in the same directory, arriving while it runs wait for it and share its result.
+ * The caller executing the command gets the result itself, the waiters get copies, so no one sees the changes of another.
+ * Failures are thrown to all of them.<br>
+ * Only use this for commands without side effects, see {@link ReadOnlyCommands}.
+ *
+ * @author cwolfgang
+ */
+class SingleFlight {
+
+    private static final Logger logger = Logger.getLogger( SingleFlight.class.getName() );
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+
+    private final AtomicLong executed = new AtomicLong( 0 );
+    private final AtomicLong coalesced = new AtomicLong( 0 );
+
+    /**
+     * Execute the command, or wait for an identical command in flight
+     */
+    CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Callable<CmdResult> execution ) {
+        String key = cmd + "\u0000" + ( dir == null ? "" : dir.getAbsolutePath() ) + "\u0000" + merge + "\u0000" + ignore;
+
+        Flight flight = new Flight( execution );
+        Flight existing = flights.putIfAbsent( key, flight );
+
+        if( existing != null && existing.join() ) {
+            coalesced.incrementAndGet();
+            logger.finest( "Waiting for " + cmd );
+            return existing.await();
+        }
+
+        if( existing != null ) {
+            /* Landed, but not yet removed. Replace it */
+            if( !flights.replace( key, existing, flight ) ) {
+                return run( cmd, dir, merge, ignore, execution );
+            }
+        }
+
+        executed.incrementAndGet();
+        try {
+            flight.task.run();
+        } finally {
+            flights.remove( key, flight );
+        }
+
+        return flight.land();
+    }
+
+    /**
+     * @return The number of commands executed
+     */
+    long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * @return The number of calls served by a command in flight
+     */
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    static CmdResult copy( CmdResult result ) {
+        CmdResult copy = new CmdResult();
+        copy.stdoutBuffer.append( result.stdoutBuffer );
+        copy.errorBuffer.append( result.errorBuffer );
+        copy.stdoutList.addAll( result.stdoutList );
+        copy.errorList.addAll( result.errorList );
+        return copy;
+    }
+
+    private static CmdResult get( FutureTask<CmdResult> task ) {
+        try {
+            return task.get();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while waiting for a cleartool command" );
+        } catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new CommandLineException( cause.getMessage() );
+        }
+    }
+
+    private static class Flight {
+        final FutureTask<CmdResult> task;
+
+        private int waiters = 0;
+        private boolean landed = false;
+        private CmdResult snapshot = null;
+
+        Flight( Callable<CmdResult> execution ) {
+            this.task = new FutureTask<CmdResult>( execution );
+        }
+
+        /**
+         * @return False if the command has already landed and cannot be joined
+         */
+        synchronized boolean join() {
+            if( landed ) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /**
+         * Called by the executing caller when the command has finished.
+         * The waiters copy a snapshot taken before the result is handed to the executing caller.
+         */
+        CmdResult land() {
+            CmdResult result = null;
+            try {
+                result = get( task );
+                return result;
+            } finally {
+                synchronized( this ) {
+                    landed = true;
+                    if( waiters > 0 && result != null ) {
+                        snapshot = copy( result );
+                    }
+                    notifyAll();
+                }
+            }
+        }
+
+        CmdResult await() {
+            /* Throws the failure, if any */
+            get( task );
+
+            synchronized( this ) {
+                while( !landed ) {
+                    try {
+                        wait();
+                    } catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        throw new CommandLineException( "Interrupted while waiting for a cleartool command" );
+                    }
+                }
+                return snapshot == null ? null : copy( snapshot );
+            }
+        }
+    }
+}
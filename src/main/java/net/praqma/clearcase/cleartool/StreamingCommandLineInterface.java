@@ -0,0 +1,22 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+/**
+ * A {@link CommandLineInterface} able to deliver the standard output of a command while it is running.
+ *
+ * @author cwolfgang
+ */
+public interface StreamingCommandLineInterface extends CommandLineInterface {
+
+    /**
+     * Run a command, handing each line of the standard output to the handler.
+     * The error output is collected and used as the message of an {@link AbnormalProcessTerminationException}, if the command fails.
+     * @param ignore If true, a non zero exit status is not considered an error
+     */
+    public void stream( String cmd, File dir, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException;
+}
@@ -11,6 +11,7 @@ import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.api.Describe;
 import net.praqma.clearcase.api.DiffBl;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.clearcase.interfaces.Diffable;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
@@ -58,27 +59,34 @@ public class Activity extends UCMEntity {
 	 * @throws UnableToLoadEntityException
 	 */
 	public Activity load() throws UnableToLoadEntityException {
-		String[] result = new String[2];
-
 		/* The special case branch */
 		if( isSpecialCase() ) {
-			result[0] = "System";
-			result[1] = "";
+			setLoadData( "System{!}" );
 		} else {
-			String cmd = "describe -fmt %u{!}%[headline]p " + this;
+			String cmd = "describe -fmt " + getLoadFormat() + " " + this;
 			try {
-				String line = Cleartool.run( cmd ).stdoutBuffer.toString();
-                result = line.split( "\\{!\\}" );
+				setLoadData( Cleartool.run( cmd ).stdoutBuffer.toString() );
 			} catch( AbnormalProcessTerminationException e ) {
 				throw new UnableToLoadEntityException( this, e );
 			}
 		}
 		
+		return this;
+	}
+
+	@Override
+	protected String getLoadFormat() {
+		/* The special case is not a real activity */
+		return isSpecialCase() ? null : "%u{!}%[headline]p";
+	}
+
+	@Override
+	protected void setLoadData( String line ) {
+		String[] result = line.split( "\\{!\\}", 2 );
+
 		setUser( result[0].trim() );
-		headline = result[1].trim();
+		headline = result.length > 1 ? result[1].trim() : "";
         this.loaded = true;
-		
-		return this;
 	}
 	
 	/**
@@ -120,6 +128,7 @@ public class Activity extends UCMEntity {
 
 	public static List<Activity> parseActivityStrings( List<String> result, int length ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
 		ArrayList<Activity> activities = new ArrayList<Activity>();
+		List<Version> versions = new ArrayList<Version>();
 		Activity current = null;
 		//System.out.println("PARSING:");
 		for( String s : result ) {
@@ -147,13 +156,17 @@ public class Activity extends UCMEntity {
 			/* If not an activity, it must be a version */
 			String f = s.trim();
 
-			Version v = (Version) UCMEntity.getEntity( Version.class, f ).load();
+			Version v = (Version) UCMEntity.getEntity( Version.class, f );
 			v.setSFile( v.getFile().getAbsolutePath().substring( length ) );
+			v.setActivity( current );
 
 			current.changeset.versions.add( v );
-		
+			versions.add( v );
 		}
 
+		/* Load the versions in bulk */
+		UCMEntity.loadAll( versions );
+
 		return activities;
 	}
 
@@ -222,61 +235,102 @@ public class Activity extends UCMEntity {
             return false;
         }
 
+        /* The state of the parsing */
+        private Activity current = null;
+        private boolean include = false;
+
+        /**
+         * Run the diff and parse its output, the activities of a previous parse are discarded
+         */
         public Parser parse() throws ClearCaseException {
-            Activity current = null;
-            boolean include = false;
+            current = null;
+            include = false;
+            activities = new ArrayList<Activity>();
+
+            final UnableToInitializeEntityException[] failure = new UnableToInitializeEntityException[1];
+
+            /* Parse the output while diffbl is running */
+            try {
+                diffBl.execute( new LineHandler() {
+                    @Override
+                    public void handle( String line ) {
+                        try {
+                            parseLine( line );
+                        } catch( UnableToInitializeEntityException e ) {
+                            /* Abort the diff */
+                            failure[0] = e;
+                            throw new IllegalStateException( e );
+                        }
+                    }
+                } );
+            } catch( IllegalStateException e ) {
+                if( failure[0] != null ) {
+                    throw failure[0];
+                }
+                throw e;
+            }
+
+            /* Load in bulk */
+            if( activityUserAsVersionUser ) {
+                UCMEntity.loadAll( activities );
+                for( Activity activity : activities ) {
+                    for( Version v : activity.changeset.versions ) {
+                        v.setUser( activity.getUser() );
+                    }
+                }
+            } else {
+                List<Version> versions = new ArrayList<Version>();
+                for( Activity activity : activities ) {
+                    versions.addAll( activity.changeset.versions );
+                }
+                UCMEntity.loadAll( versions );
+            }
 
-            List<String> lines = diffBl.execute();
+            return this;
+        }
 
-            for( String line : lines ) {
-                logger.finest( "Line: " + line );
+        private void parseLine( String line ) throws UnableToInitializeEntityException {
+            logger.finest( "Line: " + line );
 
-			    /* Get activity */
-                Matcher match = pattern_activity2.matcher( line );
+            /* Get activity */
+            Matcher match = pattern_activity2.matcher( line );
 
-                /* This line is a new activity */
-                if( match.find() ) {
-                    /* Test direction */
-                    String symbol = match.group( 1 );
-                    if( hasDirection( symbol ) ) {
-                        current = get( match.group( 2 ) );
+            /* This line is a new activity */
+            if( match.find() ) {
+                /* Test direction */
+                String symbol = match.group( 1 );
+                if( hasDirection( symbol ) ) {
+                    current = get( match.group( 2 ) );
 
-                        /* A special case? */
-                        if( current.getShortname().equals( "no_activity" ) ) {
-                            logger.fine( "Recorded a special activity case" );
-                            current.setSpecialCase( true );
-                        }
-                        activities.add( current );
-                        include = true;
-                    } else {
-                        include = false;
+                    /* A special case? */
+                    if( current.getShortname().equals( "no_activity" ) ) {
+                        logger.fine( "Recorded a special activity case" );
+                        current.setSpecialCase( true );
                     }
-
-                    continue;
+                    activities.add( current );
+                    include = true;
+                } else {
+                    include = false;
                 }
 
-                if( include ) {
-                    if( current == null ) {
-                        logger.fine( "Current is not an activity: " + line );
-                        continue;
-                    }
+                return;
+            }
 
-                    /* If not an activity, it must be a version */
-                    String f = line.trim();
+            if( include ) {
+                if( current == null ) {
+                    logger.fine( "Current is not an activity: " + line );
+                    return;
+                }
 
-                    Version v = (Version) UCMEntity.getEntity( Version.class, f );
-                    v.setSFile( v.getFile().getAbsolutePath().substring( length ) );
-                    if( activityUserAsVersionUser ) {
-                        v.setUser( current.getUser() );
-                    } else {
-                        v.load();
-                    }
+                /* If not an activity, it must be a version */
+                String f = line.trim();
 
-                    current.changeset.versions.add( v );
-                }
-            }
+                Version v = (Version) UCMEntity.getEntity( Version.class, f );
+                v.setSFile( v.getFile().getAbsolutePath().substring( length ) );
+                v.setActivity( current );
 
-            return this;
+                current.changeset.versions.add( v );
+            }
         }
     }
 
@@ -335,7 +389,9 @@ public class Activity extends UCMEntity {
         List<Version> versions = new ArrayList<Version>( versionNames.length );
 
         for( String versionName : versionNames ) {
-            versions.add( Version.get( versionName.trim() ) );
+            Version version = Version.get( versionName.trim() );
+            version.setActivity( activity );
+            versions.add( version );
         }
 
         return versions;
@@ -89,13 +89,57 @@ public class Baseline extends UCMEntity implements Diffable {
 
 		String result = "";
 
-		String cmd = "desc -fmt %n" + Cool.delim + "%X[component]p" + Cool.delim + "%X[bl_stream]p" + Cool.delim + "%[plevel]p" + Cool.delim + "%u" + Cool.delim + "%Nd" + Cool.delim + "%[label_status]p" + Cool.delim + "%[master]p " + this;
 		try {
-			result = Cleartool.run( cmd ).stdoutBuffer.toString();
+			result = describeLoadRecord();
 		} catch( Exception e ) {
 			throw new UnableToLoadEntityException( this, e );
 		}
 
+		setLoadData( result );
+		storeLoadRecord( result );
+
+		return this;
+	}
+
+	@Override
+	protected String getLoadFormat() {
+		return "%n" + Cool.delim + "%X[component]p" + Cool.delim + "%X[bl_stream]p" + Cool.delim + "%[plevel]p" + Cool.delim + "%u" + Cool.delim + "%Nd" + Cool.delim + "%[label_status]p" + Cool.delim + "%[master]p";
+	}
+
+	/**
+	 * The promotion level, the label status and the mastership
+	 */
+	@Override
+	protected String getMutableLoadFormat() {
+		return "%[plevel]p" + Cool.delim + "%[label_status]p" + Cool.delim + "%[master]p";
+	}
+
+	@Override
+	protected String mergeLoadRecord( String stored, String mutable ) {
+		String[] rs = stored.split( UCMEntity.delim, -1 );
+		String[] ms = mutable.split( UCMEntity.delim, -1 );
+		if( rs.length < 8 || ms.length < 3 ) {
+			return stored;
+		}
+
+		rs[3] = ms[0];
+		rs[6] = ms[1];
+		rs[7] = ms[2];
+
+		StringBuilder sb = new StringBuilder();
+		for( int i = 0 ; i < rs.length ; i++ ) {
+			sb.append( i > 0 ? Cool.delim : "" ).append( rs[i] );
+		}
+		return sb.toString();
+	}
+
+	@Override
+	protected boolean isStorable() {
+		return true;
+	}
+
+	@Override
+	protected void setLoadData( String result ) throws UnableToInitializeEntityException {
 		String[] rs = result.split( UCMEntity.delim );
         logger.fine( "Result:" + result );
 
@@ -129,8 +173,6 @@ public class Baseline extends UCMEntity implements Diffable {
 		this.mastership = rs[7];
 
 		this.loaded = true;
-
-		return this;
 	}
 	
 	public static Baseline create( String basename, Component component, File view, LabelBehaviour labelBehaviour, boolean identical ) throws UnableToInitializeEntityException, UnableToCreateEntityException, NothingNewException {
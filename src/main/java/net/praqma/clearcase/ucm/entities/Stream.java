@@ -2,6 +2,12 @@ package net.praqma.clearcase.ucm.entities;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -29,6 +35,11 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 
 	private static final String rx_stream_load = "\\s*Error: stream not found\\s*";
 
+	/**
+	 * The number of concurrent deliver status queries, when searching for the delivering stream, see {@link #getDeliveringStream(boolean, List, int)}
+	 */
+	public static int DELIVER_SEARCH_PARALLELISM = Integer.getInteger( "cool.stream.deliversearch.parallelism", 1 );
+
 	transient static private Logger logger = Logger.getLogger( Stream.class.getName() );
 
     /**
@@ -173,7 +184,7 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 
 		String rawdata = "";
 
-		String cmd = "describe -fmt %[name]p}{%[project]Xp}{%X[def_deliver_tgt]p}{%[read_only]p}{%[found_bls]Xp}{%[master]p " + this;
+		String cmd = "describe -fmt " + getLoadFormat() + " " + this;
 		try {
 			rawdata = Cleartool.run( cmd ).stdoutBuffer.toString();
 		} catch( AbnormalProcessTerminationException e ) {
@@ -184,6 +195,18 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			}
 		}
 
+		setLoadData( rawdata );
+
+		return this;
+	}
+
+	@Override
+	protected String getLoadFormat() {
+		return "%[name]p}{%[project]Xp}{%X[def_deliver_tgt]p}{%[read_only]p}{%[found_bls]Xp}{%[master]p";
+	}
+
+	@Override
+	protected void setLoadData( String rawdata ) throws UnableToInitializeEntityException {
 		String[] data = rawdata.split( "\\}\\{" );
 		logger.fine( "I got: " + Arrays.asList( data ) );
 
@@ -202,7 +225,8 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			setReadOnly( false );
 		}
 
-		/* Set foundation baseline */
+		/* Set foundation baseline, the stream may be reloaded */
+        this.foundations.clear();
         String[] blss = data[4].trim().split( "\\s+" );
         for( String bls : blss ) {
             if( bls != null && !bls.isEmpty() ) {
@@ -220,8 +244,6 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 		}
 
 		this.loaded = true;
-
-		return this;
 	}
 
     @Deprecated
@@ -292,15 +314,28 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			logger.fine( "The Stream has no child streams" );
 		}
 		
-		/**/
+		return filterChildStreams( streams, this.getMastership(), multisitePolling );
+	}
+
+	/**
+	 * Get the child streams from a {@link StreamHierarchy}, without describing this {@link Stream} and the children
+	 */
+	public List<Stream> getChildStreams( boolean multisitePolling, StreamHierarchy hierarchy ) throws UnableToInitializeEntityException {
+		Stream self = hierarchy.getStream( this );
+		return filterChildStreams( hierarchy.getChildren( this ), ( self != null ? self : this ).getMastership(), multisitePolling );
+	}
+
+	/**
+	 * Remove the child streams with posted deliveries, unless multisite polling, and those with a different mastership
+	 */
+	private List<Stream> filterChildStreams( List<Stream> streams, String mastership, boolean multisitePolling ) throws UnableToInitializeEntityException {
 		Iterator<Stream> it = streams.iterator();
-		String mastership = this.getMastership();
 		while( it.hasNext() ) {
 			Stream stream = it.next();
 			String childMastership = stream.getMastership();
 			logger.fine( "Child Mastership = " + childMastership );
 
-			if( stream.hasPostedDelivery() && !multisitePolling ) {
+			if( !multisitePolling && stream.hasPostedDelivery() ) {
 				logger.fine( "Removing [" + stream.getShortname() + "] due to non-supported posted delivery" );
 				it.remove();
 			} else if( !mastership.equals( childMastership ) ) {
@@ -345,8 +380,9 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 	
 	public boolean hasPostedDelivery() throws UnableToInitializeEntityException {
 		try {
-			logger.fine( "Status: " + Deliver.getStatus( this ) );
-			return Deliver.getStatus( this ).contains( "Operation posted from" );
+			String status = Deliver.getStatus( this );
+			logger.fine( "Status: " + status );
+			return status.contains( "Operation posted from" );
 		} catch( Exception e ) {
 			throw new UnableToInitializeEntityException( Stream.class, e );
 		}
@@ -401,6 +437,13 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 		return streams;
 	}
 
+	/**
+	 * Get the integration streams of the projects having this {@link Stream} as default target, from a {@link StreamHierarchy}
+	 */
+	public List<Stream> getSiblingStreams( StreamHierarchy hierarchy ) {
+		return hierarchy.getSiblings( this );
+	}
+
 	/**
 	 * Determines whether a Stream exists, given a fully qualified name
 	 * 
@@ -431,11 +474,34 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
          * Let's ask them first. */
 
         logger.finer( "Searching amongst child-streams" );
-        Stream s = getDeliveringStream( isMultiSite, getChildStreams( isMultiSite ) );
+        List<Stream> children = getChildStreams( isMultiSite );
+        Stream s = getDeliveringStream( isMultiSite, children );
 
         if( s == null ) {
             logger.finer( "Searching among all streams" );
-            s = getDeliveringStream( isMultiSite, this.getProject().getStreams() );
+            List<Stream> streams = this.getProject().getStreams();
+            streams.removeAll( children );
+            s = getDeliveringStream( isMultiSite, streams );
+        }
+
+        logger.fine( "Found " + s );
+        return s;
+    }
+
+    /**
+     * Get the {@link Stream} delivering to this {@link Stream}, using the relations of a {@link StreamHierarchy}. Null if no {@link Deliver} is in progress.
+     */
+    public Stream getDeliveringStream( boolean isMultiSite, StreamHierarchy hierarchy ) throws ClearCaseException {
+        logger.finer( "Searching amongst child-streams" );
+        List<Stream> children = getChildStreams( isMultiSite, hierarchy );
+        Stream s = getDeliveringStream( isMultiSite, rankDeliverCandidates( children, hierarchy ), DELIVER_SEARCH_PARALLELISM );
+
+        Project project = hierarchy.getProject( this );
+        if( s == null && project != null ) {
+            logger.finer( "Searching among all streams" );
+            List<Stream> streams = hierarchy.getStreams( project );
+            streams.removeAll( children );
+            s = getDeliveringStream( isMultiSite, rankDeliverCandidates( streams, hierarchy ), DELIVER_SEARCH_PARALLELISM );
         }
 
         logger.fine( "Found " + s );
@@ -443,17 +509,115 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
     }
 
     public Stream getDeliveringStream( boolean isMultiSite, List<Stream> streams ) throws ClearCaseException {
+        return getDeliveringStream( isMultiSite, rankDeliverCandidates( streams, null ), DELIVER_SEARCH_PARALLELISM );
+    }
 
+    /**
+     * Get the {@link Stream} delivering to this {@link Stream}, querying the deliver status of the streams in the given order, using up to parallelism concurrent queries.
+     * The outstanding queries are cancelled when a delivering {@link Stream} is found.
+     * In parallel, the first delivering {@link Stream} found is returned, not necessarily the first in the list.
+     * @throws CleartoolException If interrupted while waiting for the queries, the interrupt flag is kept
+     */
+    public Stream getDeliveringStream( boolean isMultiSite, List<Stream> streams, int parallelism ) throws ClearCaseException {
+        if( parallelism <= 1 || streams.size() <= 1 ) {
+            for( Stream stream : streams ) {
+                if( isDelivering( stream ) ) {
+                    return stream;
+                }
+            }
 
-        for( Stream stream : streams ) {
-            Deliver.Status status = stream.getDeliverStatus();
-            logger.finer( "Status: " + status );
-            if( status.isInProgress() && status.getSourceStream().equals( stream ) ) {
-                return stream;
+            return null;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( Math.min( parallelism, streams.size() ) );
+        CompletionService<Stream> service = new ExecutorCompletionService<Stream>( pool );
+        try {
+            for( final Stream stream : streams ) {
+                service.submit( new Callable<Stream>() {
+                    @Override
+                    public Stream call() throws Exception {
+                        return isDelivering( stream ) ? stream : null;
+                    }
+                } );
             }
+
+            ClearCaseException failure = null;
+            for( int i = 0 ; i < streams.size() ; i++ ) {
+                try {
+                    Stream stream = service.take().get();
+                    if( stream != null ) {
+                        return stream;
+                    }
+                } catch( ExecutionException e ) {
+                    if( e.getCause() instanceof ClearCaseException ) {
+                        failure = failure != null ? failure : (ClearCaseException) e.getCause();
+                    } else if( e.getCause() instanceof RuntimeException ) {
+                        throw (RuntimeException) e.getCause();
+                    } else {
+                        throw new IllegalStateException( e.getCause() );
+                    }
+                }
+            }
+
+            /* None delivering, report the first failing query as the sequential search would */
+            if( failure != null ) {
+                throw failure;
+            }
+
+            return null;
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CleartoolException( "Interrupted while searching for the stream delivering to " + this, e );
+        } finally {
+            pool.shutdownNow();
         }
+    }
 
-        return null;
+    /**
+     * @return True if the {@link Stream} is delivering to this {@link Stream}
+     */
+    private boolean isDelivering( Stream stream ) throws ClearCaseException {
+        Deliver.Status status = stream.getDeliverStatus();
+        logger.finer( "Status: " + status );
+        return status.isInProgress() && status.getSourceStream().equals( stream ) && this.equals( status.getTargetStream() );
+    }
+
+    /**
+     * Order the candidates of a deliver search by what is already known, without calling cleartool.
+     * Read only streams, having no activities, are last, then streams without views, if a {@link StreamHierarchy} is given.
+     * Otherwise the newest streams are first, and the streams of unknown date after those of known date, in the given order.
+     */
+    static List<Stream> rankDeliverCandidates( List<Stream> streams, final StreamHierarchy hierarchy ) {
+        List<Stream> ranked = new ArrayList<Stream>( streams );
+        Collections.sort( ranked, new Comparator<Stream>() {
+            @Override
+            public int compare( Stream s1, Stream s2 ) {
+                int c = rank( s1 ) - rank( s2 );
+                if( c != 0 ) {
+                    return c;
+                }
+                if( s1.hasDate() != s2.hasDate() ) {
+                    return s1.hasDate() ? -1 : 1;
+                }
+                if( s1.hasDate() ) {
+                    return s2.getDate().compareTo( s1.getDate() );
+                }
+                return 0;
+            }
+
+            private int rank( Stream stream ) {
+                int rank = 0;
+                if( stream.isLoaded() && stream.readOnly ) {
+                    rank += 2;
+                }
+                if( hierarchy != null && hierarchy.contains( stream ) && hierarchy.getViews( stream ).isEmpty() ) {
+                    rank += 1;
+                }
+                return rank;
+            }
+        } );
+
+        return ranked;
     }
 
     public Deliver.Status getDeliverStatus() throws ClearCaseException {
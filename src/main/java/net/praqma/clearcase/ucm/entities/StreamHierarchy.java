@@ -0,0 +1,227 @@
+package net.praqma.clearcase.ucm.entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.PVob;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.CleartoolException;
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+
+/**
+ * A snapshot of the {@link Stream}s of a {@link PVob}, listed with one cleartool call, and an index of their relations.<br>
+ * The {@link Stream}s of the snapshot are loaded, and the lookups of children, parents, default targets, siblings and projects
+ * do not call cleartool. The snapshot does not change, {@link #refresh()} takes a new one.
+ *
+ * @author cwolfgang
+ */
+public class StreamHierarchy {
+
+    private static final Logger logger = Logger.getLogger( StreamHierarchy.class.getName() );
+
+    private static final String DELIMITER = "}{";
+    private static final int LOAD_FIELDS = 6;
+
+    private final PVob pvob;
+    private final long created;
+
+    private final Map<Stream, Node> nodes;
+
+    private static class Node {
+        private final Stream stream;
+        private final List<Stream> children = new ArrayList<Stream>();
+        private final List<Stream> targeting = new ArrayList<Stream>();
+        private final List<String> views;
+        private Stream parent;
+
+        private Node( Stream stream, List<String> views ) {
+            this.stream = stream;
+            this.views = views;
+        }
+    }
+
+    private StreamHierarchy( PVob pvob, Map<Stream, Node> nodes ) {
+        this.pvob = pvob;
+        this.nodes = nodes;
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Take a snapshot of the {@link Stream}s of a {@link PVob}
+     */
+    public static StreamHierarchy snapshot( PVob pvob ) throws CleartoolException, UnableToInitializeEntityException {
+        /* The load format of a stream, followed by the name, the views and the child streams */
+        String format = new Stream().getLoadFormat() + DELIMITER + "%Xn" + DELIMITER + "%[views]p" + DELIMITER + "%[dstreams]Xp\\n";
+        String cmd = "lsstream -fmt " + format + " -invob " + pvob;
+
+        List<String> lines;
+        try {
+            lines = Cleartool.run( cmd ).stdoutList;
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Unable to list the streams of " + pvob, e );
+        }
+
+        Map<Stream, Node> nodes = new LinkedHashMap<Stream, Node>();
+        Map<Stream, List<String>> children = new LinkedHashMap<Stream, List<String>>();
+        for( String line : lines ) {
+            if( line.trim().length() == 0 ) {
+                continue;
+            }
+
+            String[] fields = line.split( "\\}\\{", -1 );
+            if( fields.length < LOAD_FIELDS + 3 ) {
+                logger.warning( "Unable to parse the stream " + line );
+                continue;
+            }
+
+            Stream stream = Stream.get( fields[LOAD_FIELDS].trim() );
+            stream.setLoadData( join( fields, 0, LOAD_FIELDS ) );
+
+            nodes.put( stream, new Node( stream, split( fields[LOAD_FIELDS + 1] ) ) );
+            children.put( stream, split( fields[LOAD_FIELDS + 2] ) );
+        }
+
+        /* The relations */
+        for( Node node : nodes.values() ) {
+            for( String child : children.get( node.stream ) ) {
+                Node c = nodes.get( Stream.get( child ) );
+                if( c != null ) {
+                    node.children.add( c.stream );
+                    c.parent = node.stream;
+                    c.stream.setParent( node.stream );
+                }
+            }
+
+            Stream target = node.stream.getDefaultTarget();
+            if( target != null && nodes.containsKey( target ) ) {
+                nodes.get( target ).targeting.add( node.stream );
+            }
+        }
+
+        logger.fine( "Snapshot of " + nodes.size() + " streams in " + pvob );
+
+        return new StreamHierarchy( pvob, Collections.unmodifiableMap( nodes ) );
+    }
+
+    /**
+     * Take a new snapshot of the {@link PVob}
+     */
+    public StreamHierarchy refresh() throws CleartoolException, UnableToInitializeEntityException {
+        return snapshot( pvob );
+    }
+
+    public PVob getPVob() {
+        return pvob;
+    }
+
+    /**
+     * @return The time the snapshot was taken, in milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    public List<Stream> getStreams() {
+        return new ArrayList<Stream>( nodes.keySet() );
+    }
+
+    public boolean contains( Stream stream ) {
+        return nodes.containsKey( stream );
+    }
+
+    /**
+     * @return The loaded {@link Stream} of the snapshot, or null if not in the snapshot
+     */
+    public Stream getStream( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? node.stream : null;
+    }
+
+    public List<Stream> getChildren( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? new ArrayList<Stream>( node.children ) : new ArrayList<Stream>();
+    }
+
+    /**
+     * @return The {@link Stream} the stream was created from, null for integration streams
+     */
+    public Stream getParent( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? node.parent : null;
+    }
+
+    public Stream getTarget( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? node.stream.getDefaultTarget() : null;
+    }
+
+    /**
+     * @return The {@link Stream}s having the stream as default target
+     */
+    public List<Stream> getTargeting( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? new ArrayList<Stream>( node.targeting ) : new ArrayList<Stream>();
+    }
+
+    /**
+     * @return The integration streams of other projects having the stream as default target, as {@link Stream#getSiblingStreams()}
+     */
+    public List<Stream> getSiblings( Stream stream ) {
+        List<Stream> siblings = new ArrayList<Stream>();
+        for( Stream s : getTargeting( stream ) ) {
+            if( nodes.get( s ).parent == null ) {
+                siblings.add( s );
+            }
+        }
+        return siblings;
+    }
+
+    public Project getProject( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? node.stream.getProject() : null;
+    }
+
+    /**
+     * @return The {@link Stream}s of a {@link Project}
+     */
+    public List<Stream> getStreams( Project project ) {
+        List<Stream> streams = new ArrayList<Stream>();
+        for( Node node : nodes.values() ) {
+            if( project.equals( node.stream.getProject() ) ) {
+                streams.add( node.stream );
+            }
+        }
+        return streams;
+    }
+
+    /**
+     * @return The tags of the views of the stream
+     */
+    public List<String> getViews( Stream stream ) {
+        Node node = nodes.get( stream );
+        return node != null ? new ArrayList<String>( node.views ) : new ArrayList<String>();
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    private static String join( String[] fields, int from, int to ) {
+        StringBuilder sb = new StringBuilder();
+        for( int i = from ; i < to ; i++ ) {
+            sb.append( i > from ? DELIMITER : "" ).append( fields[i] );
+        }
+        return sb.toString();
+    }
+
+    private static List<String> split( String field ) {
+        field = field.trim();
+        return field.length() == 0 ? Collections.<String>emptyList() : Arrays.asList( field.split( "\\s+" ) );
+    }
+}
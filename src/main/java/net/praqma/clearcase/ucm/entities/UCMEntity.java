@@ -6,8 +6,10 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -36,6 +38,7 @@ import net.praqma.clearcase.exceptions.UnknownUserException;
 import net.praqma.clearcase.exceptions.UnknownVobException;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
 
 /**
  * 
@@ -122,6 +125,15 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		UCMEntity entity = null;
 		String pvob = "";
 
+		/* Reuse the instance, if the identity map is enabled */
+		boolean cacheable = UCMEntityCache.isCacheable( clazz );
+		if( cacheable ) {
+			entity = UCMEntityCache.get( clazz, fqname );
+			if( entity != null ) {
+				return entity;
+			}
+		}
+
 		/* Try to instantiate the Entity object */
 		try {
 			entity = clazz.newInstance();
@@ -134,6 +146,10 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		/* Create the vob object */
 		entity.vob = new PVob( pvob );
 
+		if( cacheable ) {
+			entity = UCMEntityCache.put( clazz, fqname, entity );
+		}
+
 		return entity;
 	}
 
@@ -405,6 +421,13 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
         }
     }
 
+    /**
+     * @return True if the date is known, {@link #getDate()} will not run cleartool
+     */
+    public boolean hasDate() {
+        return date != null;
+    }
+
 	public void setComment( String comment ) {
 		this.comment = comment;
 	}
@@ -476,6 +499,380 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		return this.loaded;
 	}
 
+	/* Bulk loading */
+
+	/**
+	 * Delimiter appended to the format of each record in a bulk describe
+	 */
+	public static final String RECORD_DELIMITER = "{#}";
+	private static final String rx_record_delimiter = Pattern.quote( RECORD_DELIMITER );
+
+	/**
+	 * Delimiter between the object id and the load record of a storable entity, see {@link UCMEntityStore}
+	 */
+	private static final String OID_DELIMITER = "{@}";
+
+	/* The object id of the last load, names can be reused by other objects */
+	transient private String oid = null;
+
+	/**
+	 * The maximum number of selectors given to one describe
+	 */
+	public static int BULK_LOAD_CHUNK_SIZE = 100;
+
+	/**
+	 * The maximum length of the selectors given to one describe, keeping the command line within the Windows limits
+	 */
+	public static int BULK_LOAD_MAX_LENGTH = 6000;
+
+	/**
+	 * The describe format used to load this entity in bulk, see {@link #loadAll(Collection)}.
+	 * @return The format or null, if the entity must be loaded by itself.
+	 */
+	protected String getLoadFormat() {
+		return null;
+	}
+
+	/**
+	 * The selector used, when the entity is described in bulk.
+	 */
+	protected String getLoadSelector() {
+		return toString();
+	}
+
+	/**
+	 * Set the fields of the entity from the output of {@link #getLoadFormat()}.
+	 */
+	protected void setLoadData( String data ) throws UnableToLoadEntityException, UnableToInitializeEntityException {
+		this.loaded = true;
+	}
+
+	/**
+	 * @return True if the load record of this entity may be kept in the {@link UCMEntityStore}
+	 */
+	protected boolean isStorable() {
+		return false;
+	}
+
+	/**
+	 * The describe format of the fields that may change, described even when the load record is stored, see {@link UCMEntityStore}.
+	 * @return The format or null, if the entity never changes.
+	 */
+	protected String getMutableLoadFormat() {
+		return null;
+	}
+
+	/**
+	 * Merge a stored load record with the fields of {@link #getMutableLoadFormat()}.
+	 */
+	protected String mergeLoadRecord( String stored, String mutable ) {
+		return stored;
+	}
+
+	/**
+	 * The part of a load record kept in the {@link UCMEntityStore}, leaving out the facts that are not immutable after all
+	 */
+	protected String getStoredLoadRecord( String record ) {
+		return record;
+	}
+
+	/**
+	 * Describe this entity with {@link #getLoadFormat()}. If the record is stored, see {@link UCMEntityStore}, only the mutable fields are described,
+	 * with the object id. An entity without mutable fields is not described at all.
+	 * A stored record of another object of the same name, or of an object no longer found, is removed from the store and the entity is described in full.
+	 * The record is stored by {@link #storeLoadRecord(String)}, when it is known to be valid.
+	 */
+	protected String describeLoadRecord() throws CommandLineException, AbnormalProcessTerminationException {
+		String stored = UCMEntityStore.get( this );
+		if( stored != null && getMutableLoadFormat() == null ) {
+			String record = toLoadRecord( stored );
+			if( record != null ) {
+				return record;
+			}
+			UCMEntityStore.remove( this );
+		} else if( stored != null ) {
+			try {
+				String record = toLoadRecord( stored, Cleartool.run( "describe -fmt " + getDescribeFormat( true ) + " " + getLoadSelector() ).stdoutBuffer.toString() );
+				if( record != null ) {
+					return record;
+				}
+			} catch( AbnormalProcessTerminationException e ) {
+				/* The full describe tells why */
+				logger.fine( "Unable to describe the stored " + this + ": " + e.getMessage() );
+			}
+			UCMEntityStore.remove( this );
+		}
+
+		return toLoadRecord( null, Cleartool.run( "describe -fmt " + getDescribeFormat( false ) + " " + getLoadSelector() ).stdoutBuffer.toString() );
+	}
+
+	protected void storeLoadRecord( String record ) {
+		if( oid != null ) {
+			UCMEntityStore.put( this, oid + OID_DELIMITER + getStoredLoadRecord( record ) );
+		}
+	}
+
+	/**
+	 * Get the load record of a stored record, trusted without describing the entity
+	 * @return The record, or null if the stored record can not be read
+	 */
+	String toLoadRecord( String stored ) {
+		int j = stored.indexOf( OID_DELIMITER );
+		if( j < 0 ) {
+			return null;
+		}
+
+		this.oid = stored.substring( 0, j );
+		return stored.substring( j + OID_DELIMITER.length() );
+	}
+
+	/**
+	 * The describe format of this entity, prefixed by the object id if the entity is storable
+	 * @param stored True if the record is stored and only the mutable fields are described
+	 */
+	String getDescribeFormat( boolean stored ) {
+		if( !isStorable() ) {
+			return getLoadFormat();
+		}
+
+		String format = stored ? getMutableLoadFormat() : getLoadFormat();
+		return "%On" + OID_DELIMITER + ( format != null ? format : "" );
+	}
+
+	/**
+	 * Get the load record of the output of {@link #getDescribeFormat(boolean)}, remembering the object id to store it with
+	 * @param stored The stored record, or null if the entity is described in full
+	 * @return The record, or null if the stored record is not of the described object
+	 */
+	String toLoadRecord( String stored, String described ) {
+		if( !isStorable() ) {
+			return described;
+		}
+
+		int i = described.indexOf( OID_DELIMITER );
+		String oid = i < 0 ? null : described.substring( 0, i ).trim();
+		String fields = i < 0 ? described : described.substring( i + OID_DELIMITER.length() );
+		if( stored == null ) {
+			this.oid = oid;
+			return fields;
+		}
+
+		int j = stored.indexOf( OID_DELIMITER );
+		if( oid == null || j < 0 || !oid.equals( stored.substring( 0, j ) ) ) {
+			logger.fine( "The stored record of " + this + " is not of the object " + oid );
+			return null;
+		}
+
+		this.oid = oid;
+		String record = stored.substring( j + OID_DELIMITER.length() );
+		return getMutableLoadFormat() == null ? record : mergeLoadRecord( record, fields );
+	}
+
+	/**
+	 * Load a collection of entities, using as few cleartool describe calls as possible.
+	 * The entities are grouped by type and described in chunks of {@link #BULK_LOAD_CHUNK_SIZE}.
+	 * If a chunk cannot be described as a whole, its entities are loaded one by one.
+	 * @throws UnableToLoadEntityException The first entity failing to load
+	 */
+	public static void loadAll( Collection<? extends UCMEntity> entities ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		_loadAll( entities, true );
+	}
+
+	/**
+	 * Load a collection of entities like {@link #loadAll(Collection)}, but without stopping at the first failure.
+	 * @return The entities not loaded, mapped to the reason
+	 */
+	public static <T extends UCMEntity> Map<T, Exception> tryLoadAll( Collection<T> entities ) {
+		try {
+			return _loadAll( entities, false );
+		} catch( ClearCaseException e ) {
+			/* Not thrown, when not failing fast */
+			throw new IllegalStateException( e );
+		}
+	}
+
+	private static <T extends UCMEntity> Map<T, Exception> _loadAll( Collection<T> entities, boolean failFast ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		Map<T, Exception> failed = new LinkedHashMap<T, Exception>();
+
+		/* Group by type */
+		Map<Class<?>, List<T>> groups = new LinkedHashMap<Class<?>, List<T>>();
+		Map<Class<?>, List<T>> stored = new LinkedHashMap<Class<?>, List<T>>();
+		Map<T, String> records = new HashMap<T, String>();
+		for( T entity : entities ) {
+			String format = entity.getLoadFormat();
+			if( format == null ) {
+				loadSingle( entity, failed, failFast );
+				continue;
+			}
+
+			/* Stored, only the object id and the mutable fields are described, if any */
+			String record = UCMEntityStore.get( entity );
+			if( record != null && entity.getMutableLoadFormat() == null ) {
+				String trusted = entity.toLoadRecord( record );
+				if( trusted != null ) {
+					setLoadData( entity, trusted, false, failed, failFast );
+					continue;
+				}
+				UCMEntityStore.remove( entity );
+				record = null;
+			}
+			if( record != null ) {
+				records.put( entity, record );
+				group( stored, entity );
+				continue;
+			}
+
+			group( groups, entity );
+		}
+
+		for( List<T> group : stored.values() ) {
+			for( List<T> chunk : chunk( group ) ) {
+				loadChunk( chunk, records, failed, failFast );
+			}
+		}
+
+		for( List<T> group : groups.values() ) {
+			for( List<T> chunk : chunk( group ) ) {
+				loadChunk( chunk, null, failed, failFast );
+			}
+		}
+
+		return failed;
+	}
+
+	private static <T extends UCMEntity> void group( Map<Class<?>, List<T>> groups, T entity ) {
+		List<T> group = groups.get( entity.getClass() );
+		if( group == null ) {
+			group = new ArrayList<T>();
+			groups.put( entity.getClass(), group );
+		}
+		group.add( entity );
+	}
+
+	/**
+	 * Split entities into chunks of at most {@link #BULK_LOAD_CHUNK_SIZE} entities and {@link #BULK_LOAD_MAX_LENGTH} characters of selectors
+	 */
+	private static <T extends UCMEntity> List<List<T>> chunk( List<T> group ) {
+		List<List<T>> chunks = new ArrayList<List<T>>();
+		List<T> chunk = new ArrayList<T>();
+		int length = 0;
+		for( T entity : group ) {
+			String selector = entity.getLoadSelector();
+			if( chunk.size() > 0 && ( chunk.size() >= BULK_LOAD_CHUNK_SIZE || length + selector.length() > BULK_LOAD_MAX_LENGTH ) ) {
+				chunks.add( chunk );
+				chunk = new ArrayList<T>();
+				length = 0;
+			}
+			chunk.add( entity );
+			length += selector.length() + 1;
+		}
+
+		if( chunk.size() > 0 ) {
+			chunks.add( chunk );
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * Load a chunk of entities of the same type with one describe
+	 * @param stored The stored load records of the entities, only the mutable fields are described. Null if not stored.
+	 */
+	private static <T extends UCMEntity> void loadChunk( List<T> chunk, Map<T, String> stored, Map<T, Exception> failed, boolean failFast ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		if( chunk.size() == 1 ) {
+			loadSingle( chunk.get( 0 ), failed, failFast );
+			return;
+		}
+
+		String format = chunk.get( 0 ).getDescribeFormat( stored != null );
+		StringBuilder cmd = new StringBuilder( "describe -fmt " ).append( format ).append( RECORD_DELIMITER );
+		for( T entity : chunk ) {
+			cmd.append( " " ).append( entity.getLoadSelector() );
+		}
+
+		String[] records = null;
+		try {
+			CmdResult result = Cleartool.run( cmd.toString(), null, false, true );
+			records = result.stdoutBuffer.toString().split( rx_record_delimiter, -1 );
+		} catch( AbnormalProcessTerminationException e ) {
+			logger.fine( "Unable to bulk load " + chunk.size() + " entities: " + e.getMessage() );
+		}
+
+		/* The last element is what comes after the last delimiter */
+		if( records == null || records.length - 1 != chunk.size() ) {
+			logger.fine( "Bulk loading " + chunk.size() + " entities failed, loading them one by one" );
+			for( T entity : chunk ) {
+				loadSingle( entity, failed, failFast );
+			}
+			return;
+		}
+
+		for( int i = 0 ; i < chunk.size() ; i++ ) {
+			T entity = chunk.get( i );
+			String record = entity.toLoadRecord( stored != null ? stored.get( entity ) : null, records[i] );
+			if( record == null ) {
+				UCMEntityStore.remove( entity );
+				loadSingle( entity, failed, failFast );
+			} else {
+				setLoadData( entity, record, true, failed, failFast );
+			}
+		}
+	}
+
+	/**
+	 * Set the load data of an entity, storing the record if wanted
+	 */
+	private static <T extends UCMEntity> void setLoadData( T entity, String record, boolean store, Map<T, Exception> failed, boolean failFast ) throws UnableToLoadEntityException, UnableToInitializeEntityException {
+		try {
+			entity.setLoadData( record );
+			if( store ) {
+				entity.storeLoadRecord( record );
+			}
+		} catch( RuntimeException e ) {
+			UnableToLoadEntityException ex = new UnableToLoadEntityException( entity, e );
+			if( failFast ) {
+				throw ex;
+			}
+			failed.put( entity, ex );
+		} catch( UnableToLoadEntityException e ) {
+			if( failFast ) {
+				throw e;
+			}
+			failed.put( entity, e );
+		} catch( UnableToInitializeEntityException e ) {
+			if( failFast ) {
+				throw e;
+			}
+			failed.put( entity, e );
+		}
+	}
+
+	private static <T extends UCMEntity> void loadSingle( T entity, Map<T, Exception> failed, boolean failFast ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		try {
+			entity.load();
+		} catch( UnableToLoadEntityException e ) {
+			if( failFast ) {
+				throw e;
+			}
+			failed.put( entity, e );
+		} catch( UCMEntityNotFoundException e ) {
+			if( failFast ) {
+				throw e;
+			}
+			failed.put( entity, e );
+		} catch( UnableToInitializeEntityException e ) {
+			if( failFast ) {
+				throw e;
+			}
+			failed.put( entity, e );
+		} catch( RuntimeException e ) {
+			if( failFast ) {
+				throw e;
+			}
+			failed.put( entity, e );
+		}
+	}
+
     protected void autoLoad() throws EntityNotLoadedException {
         if( !loaded ) {
             try {
@@ -512,8 +909,16 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		return "-in " + ( in == null ? "RootFolder" : in );
 	}
 
+    /**
+     * Get the object id, known without cleartool if described when the entity was loaded
+     */
     public String getObjectId() throws CleartoolException {
-        return new Describe( this ).getObjectId().executeGetFirstLine();
+        String oid = this.oid;
+        if( oid == null ) {
+            oid = new Describe( this ).getObjectId().executeGetFirstLine().trim();
+            this.oid = oid;
+        }
+        return oid;
     }
 
     public static String getObjectId( String name ) throws CleartoolException {
@@ -0,0 +1,205 @@
+package net.praqma.clearcase.ucm.entities;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * An optional identity map for {@link UCMEntity}s, making {@link UCMEntity#getEntity(Class, String)} return the same instance for the same fully qualified name.<br>
+ * The entities are kept per PVob, softly referenced and bounded by a least recently used policy.<br><br>
+ * Only {@link Baseline}, {@link Stream}, {@link Project}, {@link Component} and {@link Folder} are cached.
+ * {@link Activity}s and {@link Version}s carry state relative to the diff they were found in and are always created anew.<br><br>
+ * A cached entity is shared by all callers, calling {@link UCMEntity#load()} refreshes it for all of them.
+ *
+ * @author cwolfgang
+ */
+public final class UCMEntityCache {
+
+    private static final Logger logger = Logger.getLogger( UCMEntityCache.class.getName() );
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private static final Class<?>[] cacheable = { Baseline.class, Stream.class, Project.class, Component.class, Folder.class };
+
+    private static final Map<String, PVobPartition> partitions = new HashMap<String, PVobPartition>();
+
+    private static boolean enabled = false;
+    private static int capacity = DEFAULT_CAPACITY;
+
+    private static int hits = 0;
+    private static int misses = 0;
+
+    private UCMEntityCache() {
+    }
+
+    /**
+     * Enable the identity map with the default capacity
+     */
+    public static void enable() {
+        enable( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Enable the identity map
+     * @param capacity The maximum number of entities per PVob
+     */
+    public static synchronized void enable( int capacity ) {
+        if( capacity < 1 ) {
+            throw new IllegalArgumentException( "The capacity must be positive" );
+        }
+        logger.fine( "Enabling the entity cache with a capacity of " + capacity );
+        UCMEntityCache.capacity = capacity;
+        UCMEntityCache.enabled = true;
+        for( PVobPartition partition : partitions.values() ) {
+            partition.trim();
+        }
+    }
+
+    /**
+     * Disable the identity map and clear it
+     */
+    public static synchronized void disable() {
+        enabled = false;
+        clear();
+    }
+
+    public static synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void clear() {
+        partitions.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Remove the entity with the given fully qualified name
+     */
+    public static synchronized void evict( String fqname ) {
+        fqname = fqname.trim();
+        PVobPartition partition = partitions.get( getPVobPart( fqname ) );
+        if( partition != null ) {
+            Iterator<String> it = partition.keySet().iterator();
+            while( it.hasNext() ) {
+                if( it.next().endsWith( "|" + fqname ) ) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entities from the given PVob
+     */
+    public static synchronized void evictPVob( String pvob ) {
+        partitions.remove( pvob );
+    }
+
+    public static synchronized int size() {
+        int size = 0;
+        for( PVobPartition partition : partitions.values() ) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    public static synchronized int getHits() {
+        return hits;
+    }
+
+    public static synchronized int getMisses() {
+        return misses;
+    }
+
+    static boolean isCacheable( Class<? extends UCMEntity> clazz ) {
+        for( Class<?> c : cacheable ) {
+            if( c.equals( clazz ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static synchronized UCMEntity get( Class<? extends UCMEntity> clazz, String fqname ) {
+        if( !enabled ) {
+            return null;
+        }
+
+        PVobPartition partition = partitions.get( getPVobPart( fqname ) );
+        if( partition != null ) {
+            String key = getKey( clazz, fqname );
+            SoftReference<UCMEntity> ref = partition.get( key );
+            if( ref != null ) {
+                UCMEntity entity = ref.get();
+                if( entity != null ) {
+                    hits++;
+                    return entity;
+                }
+                partition.remove( key );
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+     * Store an entity, unless another thread got there first
+     * @return The entity to use
+     */
+    static synchronized UCMEntity put( Class<? extends UCMEntity> clazz, String fqname, UCMEntity entity ) {
+        if( !enabled ) {
+            return entity;
+        }
+
+        String pvob = getPVobPart( fqname );
+        PVobPartition partition = partitions.get( pvob );
+        if( partition == null ) {
+            partition = new PVobPartition();
+            partitions.put( pvob, partition );
+        }
+
+        String key = getKey( clazz, fqname );
+        SoftReference<UCMEntity> ref = partition.get( key );
+        if( ref != null && ref.get() != null ) {
+            return ref.get();
+        }
+
+        partition.put( key, new SoftReference<UCMEntity>( entity ) );
+        return entity;
+    }
+
+    private static String getKey( Class<? extends UCMEntity> clazz, String fqname ) {
+        return clazz.getSimpleName() + "|" + fqname;
+    }
+
+    private static String getPVobPart( String fqname ) {
+        int i = fqname.lastIndexOf( '@' );
+        return i < 0 ? "" : fqname.substring( i + 1 );
+    }
+
+    private static class PVobPartition extends LinkedHashMap<String, SoftReference<UCMEntity>> {
+
+        PVobPartition() {
+            super( 16, 0.75f, true );
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, SoftReference<UCMEntity>> eldest ) {
+            return size() > capacity;
+        }
+
+        void trim() {
+            Iterator<String> it = keySet().iterator();
+            while( size() > capacity && it.hasNext() ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+}
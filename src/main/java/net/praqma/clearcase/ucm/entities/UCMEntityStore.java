@@ -0,0 +1,478 @@
+package net.praqma.clearcase.ucm.entities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * An optional file backed store of the facts about {@link UCMEntity}s that never change, kept across restarts.<br>
+ * When enabled, the load record of a storable entity, see {@link UCMEntity#isStorable()}, is stored the first time the entity is loaded.
+ * Later loads take the record from the store and only describe the mutable fields, see {@link UCMEntity#getMutableLoadFormat()},
+ * as the promotion level and the mastership of a {@link Baseline}. A checked in {@link Version} has no mutable fields and is loaded without cleartool.<br>
+ * Names can be reused, a baseline can be removed and made again, and the record is stored with the object id, which is described with the mutable fields.
+ * A record of another object, or of an object no longer found, is removed.<br><br>
+ * Other immutable facts, as the result of a diff between two baselines, can be stored by key with {@link #put(String, String)}.<br>
+ * The file is append only, a value stored again or removed is appended and the last one wins. {@link #compact()} rewrites the file with the current values,
+ * which is done when the file is more than {@value #COMPACT_RATIO} times as long as the current values and longer than {@link #COMPACT_LENGTH}.
+ * Values longer than {@value #MEMORY_LIMIT} bytes are not kept in memory, only their offset in the file, and are read when asked for.<br>
+ * The store is enabled with {@link #enable(File)} or by setting the system property {@value #STORE_PROPERTY} to the file.
+ *
+ * @author cwolfgang
+ */
+public final class UCMEntityStore {
+
+    private static final Logger logger = Logger.getLogger( UCMEntityStore.class.getName() );
+
+    private static final int MAGIC = 0x55434d53; /* UCMS */
+    private static final String UTF8 = "UTF-8";
+
+    /**
+     * The length in bytes of the longest value kept in memory
+     */
+    public static final int MEMORY_LIMIT = 1024;
+
+    /* The length written for a removed value */
+    private static final int REMOVED = -1;
+
+    /**
+     * The file is compacted when it is this many times as long as its current values
+     */
+    public static final int COMPACT_RATIO = 2;
+
+    /**
+     * The file is not compacted before it is this long
+     */
+    public static long COMPACT_LENGTH = 1024 * 1024;
+
+    private static File file = null;
+    private static DataOutputStream out = null;
+    private static RandomAccessFile reader = null;
+
+    /* The length of the file, the offset of the next entry */
+    private static long length = 0;
+
+    /* The length of the entries of the current values */
+    private static long live = 0;
+
+    /* The length of the file when compaction failed, it is not tried again before the file has grown as much again */
+    private static long failed = 0;
+
+    private static Map<String, String> values = new HashMap<String, String>();
+
+    /* The offsets of the long values */
+    private static Map<String, Long> offsets = new HashMap<String, Long>();
+
+    private static int hits = 0;
+    private static int misses = 0;
+
+    /**
+     * The file of the store, if set the store is enabled
+     */
+    public static final String STORE_PROPERTY = "cool.entitystore";
+
+    static {
+        String store = System.getProperty( STORE_PROPERTY );
+        if( store != null ) {
+            try {
+                enable( new File( store ) );
+                Runtime.getRuntime().addShutdownHook( new Thread() {
+                    public void run() {
+                        disable();
+                    }
+                } );
+            } catch( IOException e ) {
+                logger.warning( "Unable to enable the entity store " + store + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    private UCMEntityStore() {
+    }
+
+    /**
+     * Enable the store, reading the values of the file, if it exists
+     */
+    public static synchronized void enable( File file ) throws IOException {
+        disable();
+
+        Map<String, String> values = new HashMap<String, String>();
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        boolean complete = true;
+        if( file.exists() && file.length() > 0 ) {
+            complete = read( file, values, offsets );
+        }
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, true ) ) );
+        if( file.length() == 0 ) {
+            out.writeInt( MAGIC );
+            out.flush();
+        }
+
+        logger.fine( "Enabling the entity store " + file + " with " + ( values.size() + offsets.size() ) + " values" );
+        UCMEntityStore.file = file;
+        UCMEntityStore.out = out;
+        UCMEntityStore.reader = new RandomAccessFile( file, "r" );
+        UCMEntityStore.length = file.length();
+        UCMEntityStore.values = values;
+        UCMEntityStore.offsets = offsets;
+        UCMEntityStore.live = 0;
+        UCMEntityStore.failed = 0;
+        for( String key : values.keySet() ) {
+            live += sizeOf( key );
+        }
+        for( String key : offsets.keySet() ) {
+            live += sizeOf( key );
+        }
+
+        /* Appending after an entry cut off would corrupt the file */
+        if( !complete ) {
+            compact();
+        } else {
+            compactIfOutgrown();
+        }
+    }
+
+    public static synchronized void disable() {
+        if( out != null ) {
+            try {
+                out.close();
+                reader.close();
+            } catch( IOException e ) {
+                logger.warning( "Unable to close the entity store " + file + ": " + e.getMessage() );
+            }
+        }
+        file = null;
+        out = null;
+        reader = null;
+        values = new HashMap<String, String>();
+        offsets = new HashMap<String, Long>();
+    }
+
+    public static synchronized boolean isEnabled() {
+        return out != null;
+    }
+
+    /**
+     * @return The value stored for the key, or null
+     */
+    public static synchronized String get( String key ) {
+        if( out == null ) {
+            return null;
+        }
+
+        String value = values.get( key );
+        if( value == null && offsets.containsKey( key ) ) {
+            try {
+                value = read( key );
+            } catch( IOException e ) {
+                logger.warning( "Unable to read " + key + ": " + e.getMessage() );
+            }
+        }
+
+        if( value != null ) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Store a value, if the store is enabled and the value is new or changed
+     */
+    public static synchronized void put( String key, String value ) {
+        if( out == null || value.equals( values.get( key ) ) ) {
+            return;
+        }
+
+        try {
+            if( offsets.containsKey( key ) && value.equals( read( key ) ) ) {
+                return;
+            }
+
+            long previous = sizeOf( key );
+            long offset = length + writeString( out, key );
+            int size = writeString( out, value ) - 4;
+            length = offset + 4 + size;
+            out.flush();
+            remember( key, value, size, offset, values, offsets );
+            live += entryLength( key, size ) - previous;
+        } catch( IOException e ) {
+            logger.warning( "Unable to store " + key + ": " + e.getMessage() );
+            return;
+        }
+
+        compactIfOutgrown();
+    }
+
+    /**
+     * Remove a value, if the store is enabled
+     */
+    public static synchronized void remove( String key ) {
+        if( out == null || ( !values.containsKey( key ) && !offsets.containsKey( key ) ) ) {
+            return;
+        }
+
+        try {
+            long previous = sizeOf( key );
+            length += writeString( out, key );
+            out.writeInt( REMOVED );
+            length += 4;
+            out.flush();
+            values.remove( key );
+            offsets.remove( key );
+            live -= previous;
+        } catch( IOException e ) {
+            logger.warning( "Unable to remove " + key + ": " + e.getMessage() );
+            return;
+        }
+
+        compactIfOutgrown();
+    }
+
+    /**
+     * Rewrite the file with only the current values.
+     * The file is kept until the rewritten file has replaced it.
+     */
+    public static synchronized void compact() throws IOException {
+        if( out == null ) {
+            return;
+        }
+
+        File compacted = new File( file.getPath() + ".compact" );
+        Map<String, Long> moved = new HashMap<String, Long>();
+        long position = 4;
+        DataOutputStream data = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( compacted ) ) );
+        try {
+            data.writeInt( MAGIC );
+            for( Map.Entry<String, String> entry : values.entrySet() ) {
+                position += writeString( data, entry.getKey() );
+                position += writeString( data, entry.getValue() );
+            }
+            for( String key : offsets.keySet() ) {
+                position += writeString( data, key );
+                moved.put( key, position );
+                position += writeString( data, read( key ) );
+            }
+        } finally {
+            data.close();
+        }
+
+        /* Renaming onto an existing file fails on Windows */
+        File backup = new File( file.getPath() + ".old" );
+        backup.delete();
+        out.close();
+        reader.close();
+        if( !file.renameTo( backup ) ) {
+            open();
+            compacted.delete();
+            throw new IOException( "Unable to replace " + file + " with " + compacted );
+        }
+        if( !compacted.renameTo( file ) ) {
+            if( !backup.renameTo( file ) ) {
+                File lost = file;
+                disable();
+                throw new IOException( "Unable to replace " + lost + " with " + compacted + ", the store is kept in " + backup );
+            }
+            open();
+            compacted.delete();
+            throw new IOException( "Unable to replace " + file + " with " + compacted );
+        }
+        backup.delete();
+
+        open();
+        length = position;
+        live = position - 4;
+        offsets = moved;
+        logger.fine( "Compacted the entity store " + file + " to " + size() + " values" );
+    }
+
+    /**
+     * Compact the file if it has outgrown the current values
+     */
+    private static void compactIfOutgrown() {
+        if( out == null || length < COMPACT_LENGTH || length - 4 <= COMPACT_RATIO * live || length < 2 * failed ) {
+            return;
+        }
+
+        try {
+            compact();
+            failed = 0;
+        } catch( IOException e ) {
+            logger.warning( "Unable to compact the entity store: " + e.getMessage() );
+            failed = length;
+        }
+    }
+
+    /**
+     * @return The length of the entry of the current value of a key, 0 if none
+     */
+    private static long sizeOf( String key ) throws IOException {
+        String value = values.get( key );
+        if( value != null ) {
+            return entryLength( key, value.getBytes( UTF8 ).length );
+        }
+
+        Long offset = offsets.get( key );
+        if( offset != null ) {
+            reader.seek( offset );
+            return entryLength( key, reader.readInt() );
+        }
+
+        return 0;
+    }
+
+    private static long entryLength( String key, int size ) throws IOException {
+        return 8 + key.getBytes( UTF8 ).length + size;
+    }
+
+    private static void open() throws IOException {
+        out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, true ) ) );
+        reader = new RandomAccessFile( file, "r" );
+    }
+
+    public static synchronized int size() {
+        return values.size() + offsets.size();
+    }
+
+    public static synchronized int getHits() {
+        return hits;
+    }
+
+    public static synchronized int getMisses() {
+        return misses;
+    }
+
+    /* Entities */
+
+    static String get( UCMEntity entity ) {
+        return entity.isStorable() ? get( key( entity ) ) : null;
+    }
+
+    static void put( UCMEntity entity, String record ) {
+        if( entity.isStorable() ) {
+            put( key( entity ), record );
+        }
+    }
+
+    static void remove( UCMEntity entity ) {
+        if( entity.isStorable() ) {
+            remove( key( entity ) );
+        }
+    }
+
+    private static String key( UCMEntity entity ) {
+        return entity.getClass().getSimpleName() + "|" + entity.getFullyQualifiedName();
+    }
+
+    /* The file */
+
+    /**
+     * Read the values of the file, the long values are skipped and only their offsets are kept
+     * @return False if the last entry is cut off
+     */
+    private static boolean read( File file, Map<String, String> values, Map<String, Long> offsets ) throws IOException {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try {
+            if( in.readInt() != MAGIC ) {
+                throw new IOException( file + " is not an entity store" );
+            }
+
+            long position = 4;
+            while( true ) {
+                in.mark( 1 );
+                if( in.read() < 0 ) {
+                    return true;
+                }
+                in.reset();
+
+                String key = readString( in );
+                position += 4 + key.getBytes( UTF8 ).length;
+
+                long offset = position;
+                int size = in.readInt();
+                if( size == REMOVED ) {
+                    position += 4;
+                    values.remove( key );
+                    offsets.remove( key );
+                    continue;
+                }
+
+                position += 4 + size;
+                if( size > MEMORY_LIMIT ) {
+                    skip( in, size );
+                    remember( key, null, size, offset, values, offsets );
+                } else {
+                    byte[] bytes = new byte[size];
+                    in.readFully( bytes );
+                    remember( key, new String( bytes, UTF8 ), size, offset, values, offsets );
+                }
+            }
+        } catch( EOFException e ) {
+            logger.warning( "The last entry of the entity store " + file + " is cut off" );
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Keep a value in memory, or only its offset if it is long
+     * @param size The number of bytes of the value
+     */
+    private static void remember( String key, String value, int size, long offset, Map<String, String> values, Map<String, Long> offsets ) {
+        if( size > MEMORY_LIMIT ) {
+            values.remove( key );
+            offsets.put( key, offset );
+        } else {
+            values.put( key, value );
+            offsets.remove( key );
+        }
+    }
+
+    /**
+     * Read a long value from the file
+     */
+    private static String read( String key ) throws IOException {
+        reader.seek( offsets.get( key ) );
+        return readString( reader );
+    }
+
+    private static void skip( DataInputStream in, int bytes ) throws IOException {
+        while( bytes > 0 ) {
+            int skipped = in.skipBytes( bytes );
+            if( skipped <= 0 ) {
+                throw new EOFException();
+            }
+            bytes -= skipped;
+        }
+    }
+
+    /**
+     * @return The number of bytes written
+     */
+    private static int writeString( DataOutputStream data, String s ) throws IOException {
+        byte[] bytes = s.getBytes( UTF8 );
+        data.writeInt( bytes.length );
+        data.write( bytes );
+        return 4 + bytes.length;
+    }
+
+    private static String readString( DataInput data ) throws IOException {
+        int length = data.readInt();
+        byte[] bytes = new byte[length];
+        data.readFully( bytes );
+        return new String( bytes, UTF8 );
+    }
+}
@@ -25,6 +25,7 @@ import net.praqma.clearcase.exceptions.UnableToGetEntityException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
 import net.praqma.clearcase.interfaces.Diffable;
+import net.praqma.clearcase.ucm.utils.DiffBlCache;
 import net.praqma.clearcase.ucm.view.SnapshotView;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
@@ -87,8 +88,12 @@ public class Version extends UCMEntity implements Comparable<Version> {
      */
     private Activity activity;
 
+    /* Loaded from the store, without the activity */
+    transient private boolean describeActivity = false;
+
 	private static String rx_revision = "(\\d+)$";
 	private static Pattern p_revision = Pattern.compile( "@@(.*)$" );
+	private static final Pattern rx_checked_in = Pattern.compile( "@@.*[\\\\/]\\d+$" );
 	
 	public enum Status {
 		UNCHANGED,
@@ -268,8 +273,54 @@ public class Version extends UCMEntity implements Comparable<Version> {
 	
 	public Version load() throws UnableToLoadEntityException {
 		try {
-			String cmd = "describe -fmt %u}{%Vn}{%Xn}{%[object_kind]p \"" + this + "\"";
-			String[] list = Cleartool.run( cmd ).stdoutBuffer.toString().split( "\\}\\{" );
+			String record = describeLoadRecord();
+			setLoadData( record );
+			storeLoadRecord( record );
+		} catch( UnableToLoadEntityException e ) {
+			throw e;
+		} catch( Exception e ) {
+			throw new UnableToLoadEntityException( this, e );
+		}
+		
+		return this;
+	}
+
+	@Override
+	protected String getLoadFormat() {
+		return "%u}{%Vn}{%Xn}{%[object_kind]p}{%[activity]Xp";
+	}
+
+	@Override
+	protected String getLoadSelector() {
+		return "\"" + this + "\"";
+	}
+
+	/**
+	 * A checked in version does not change, and its stored record is trusted without describing it.
+	 * It can be moved to another activity though, so the activity is not stored, see {@link #getActivity()}.
+	 */
+	@Override
+	protected boolean isStorable() {
+		return rx_checked_in.matcher( getFullyQualifiedName() ).find();
+	}
+
+	/**
+	 * The record without the activity
+	 */
+	@Override
+	protected String getStoredLoadRecord( String record ) {
+		String[] list = record.split( "\\}\\{", -1 );
+		if( list.length <= 4 ) {
+			return record;
+		}
+
+		return list[0] + "}{" + list[1] + "}{" + list[2] + "}{" + list[3];
+	}
+
+	@Override
+	protected void setLoadData( String data ) throws UnableToLoadEntityException {
+		try {
+			String[] list = data.split( "\\}\\{", -1 );
 
             logger.finest( "Elements: " + Arrays.asList( list ) );
 
@@ -283,21 +334,23 @@ public class Version extends UCMEntity implements Comparable<Version> {
 			String ven = list[2];
 			Matcher m = rx_extendedName.matcher( ven );
 
-			if( list[3].equals( "file element" ) ) {
+			if( list[3].trim().equals( "file element" ) ) {
 				setKind( Kind.FILE_ELEMENT );
-			} else if( list[3].equals( "directory version" ) ) {
+			} else if( list[3].trim().equals( "directory version" ) ) {
 				setKind( Kind.DIRECTORY_ELEMENT );
 			}
 
-            activity = getActivity( this );
+            /* Fifth line, the activity, empty in base ClearCase. An activity already known is kept. Not in a stored record */
+            if( activity == null && list.length > 4 && list[4].trim().length() > 0 ) {
+                activity = Activity.get( list[4].trim() );
+            }
+            describeActivity = list.length <= 4;
 
 		} catch( Exception e ) {
 			throw new UnableToLoadEntityException( this, e );
 		}
 
         this.loaded = true;
-		
-		return this;
 	}
 
     /**
@@ -314,10 +367,31 @@ public class Version extends UCMEntity implements Comparable<Version> {
         }
     }
 
+    /**
+     * Get the {@link Activity} of the version, loading the version, unless the activity is already known.
+     * If the version is loaded from the {@link UCMEntityStore}, the activity is described by itself
+     */
     public Activity getActivity() {
-        autoLoad();
+        if( activity == null ) {
+            autoLoad();
+        }
+        if( activity == null && describeActivity ) {
+            try {
+                activity = getActivity( this );
+            } catch( ClearCaseException e ) {
+                throw new EntityNotLoadedException( fqname, "The activity of " + fqname + " could not be described", e );
+            }
+            describeActivity = false;
+        }
         return activity;
     }
+
+    /**
+     * Set the {@link Activity} of the version, when known from the context it was found in, for example the change set of the activity
+     */
+    public void setActivity( Activity activity ) {
+        this.activity = activity;
+    }
 	
 	public static Version create( File file, boolean mkdir, SnapshotView view ) throws CleartoolException, IOException, UnableToCreateEntityException, UCMEntityNotFoundException, UnableToGetEntityException, UnableToLoadEntityException, UnableToInitializeEntityException {
 
@@ -778,7 +852,7 @@ public class Version extends UCMEntity implements Comparable<Version> {
 		List<String> lines = null;
 
 		try {
-			lines = Cleartool.run( cmd, viewContext ).stdoutList;
+			lines = DiffBlCache.run( cmd, viewContext, e1, e2 );
 		} catch( Exception e ) {
 			throw new CleartoolException( "Could not retreive the differences of " + e1 + " and " + e2 + ": " + e.getMessage(), e );
 		}
@@ -827,7 +901,7 @@ public class Version extends UCMEntity implements Comparable<Version> {
 		List<String> lines = null;
 		
 		try {
-			lines = Cleartool.run( cmd, viewContext ).stdoutList;
+			lines = DiffBlCache.run( cmd, viewContext, d1, d2 );
 		} catch( AbnormalProcessTerminationException e ) {
 			throw new CleartoolException( "Could not get difference between " + d1 + " and " + d2 + ": " + e.getMessage(), e );
 		}
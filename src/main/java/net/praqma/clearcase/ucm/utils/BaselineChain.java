@@ -0,0 +1,162 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.exceptions.ClearCaseException;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Version;
+
+/**
+ * A chain of {@link Baseline}s, oldest first, for example those of a component on a stream, and the change sets between them.<br>
+ * Only adjacent baselines are diffed, each pair once, and the change set of any range of the chain is composed from these diffs.
+ * An {@link Activity} found in several diffs is merged, and the versions can be trimmed to the latest with {@link VersionList#getLatest()}.
+ * A baseline added to the chain costs one diff with the previous baseline.<br>
+ * With the {@link DiffBlCache} enabled, the diffs are also reused across chains.
+ *
+ * @author cwolfgang
+ */
+public class BaselineChain {
+
+    private static Logger logger = Logger.getLogger( BaselineChain.class.getName() );
+
+    private final List<Baseline> baselines = new ArrayList<Baseline>();
+
+    /* The activities and versions added by a baseline, compared with the previous */
+    private final Map<Baseline, Map<Activity, List<Version>>> diffs = new HashMap<Baseline, Map<Activity, List<Version>>>();
+
+    private File viewRoot;
+
+    public BaselineChain() {
+    }
+
+    /**
+     * @param baselines The baselines, oldest first
+     */
+    public BaselineChain( List<Baseline> baselines ) {
+        for( Baseline baseline : baselines ) {
+            add( baseline );
+        }
+    }
+
+    /**
+     * Set the view the diffs are made in, the versions are listed with its path
+     */
+    public BaselineChain setViewRoot( File viewRoot ) {
+        this.viewRoot = viewRoot;
+        diffs.clear();
+        return this;
+    }
+
+    /**
+     * Add a baseline newer than the others to the chain
+     */
+    public BaselineChain add( Baseline baseline ) {
+        if( baselines.contains( baseline ) ) {
+            throw new IllegalArgumentException( baseline + " is already in the chain" );
+        }
+        baselines.add( baseline );
+        return this;
+    }
+
+    public List<Baseline> getBaselines() {
+        return Collections.unmodifiableList( baselines );
+    }
+
+    public int size() {
+        return baselines.size();
+    }
+
+    /**
+     * @return The number of adjacent baselines diffed
+     */
+    public int getDiffCount() {
+        return diffs.size();
+    }
+
+    /**
+     * Get the change set from a baseline to a newer, the activities of the baselines after from, up to and including to.
+     * The versions of an activity are those of all the diffs in the range, in the order of the chain.
+     */
+    public Map<Activity, List<Version>> getChangeSet( Baseline from, Baseline to ) throws ClearCaseException {
+        int f = indexOf( from );
+        int t = indexOf( to );
+        if( f > t ) {
+            throw new IllegalArgumentException( from + " is newer than " + to );
+        }
+
+        Map<Activity, List<Version>> changeset = new LinkedHashMap<Activity, List<Version>>();
+        for( int i = f + 1 ; i <= t ; i++ ) {
+            for( Map.Entry<Activity, List<Version>> entry : getDiff( i ).entrySet() ) {
+                List<Version> versions = changeset.get( entry.getKey() );
+                if( versions == null ) {
+                    versions = new ArrayList<Version>();
+                    changeset.put( entry.getKey(), versions );
+                }
+                versions.addAll( entry.getValue() );
+            }
+        }
+
+        return changeset;
+    }
+
+    /**
+     * @return The activities from a baseline to a newer, see {@link #getChangeSet(Baseline, Baseline)}
+     */
+    public List<Activity> getActivities( Baseline from, Baseline to ) throws ClearCaseException {
+        return new ArrayList<Activity>( getChangeSet( from, to ).keySet() );
+    }
+
+    /**
+     * @return The latest versions from a baseline to a newer, of each file and branch
+     */
+    public VersionList getLatestVersions( Baseline from, Baseline to ) throws ClearCaseException {
+        VersionList versions = new VersionList();
+        for( List<Version> v : getChangeSet( from, to ).values() ) {
+            versions.addAll( v );
+        }
+
+        return versions.getLatest();
+    }
+
+    /**
+     * @return The activities added by the baseline at the index, compared with the previous
+     */
+    private Map<Activity, List<Version>> getDiff( int index ) throws ClearCaseException {
+        Baseline baseline = baselines.get( index );
+        Map<Activity, List<Version>> diff = diffs.get( baseline );
+        if( diff != null ) {
+            return diff;
+        }
+
+        Baseline previous = baselines.get( index - 1 );
+        logger.fine( "Diffing " + previous + " and " + baseline );
+
+        DiffBl diffbl = new DiffBl( baseline, previous ).setActivities( true ).setVersions( true ).setViewRoot( viewRoot );
+        List<Activity> activities = new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.RIGHT ).addDirection( Activity.Parser.Direction.RIGHTI ).parse().getActivities();
+
+        diff = new LinkedHashMap<Activity, List<Version>>();
+        for( Activity activity : activities ) {
+            diff.put( activity, Collections.unmodifiableList( new ArrayList<Version>( activity.changeset.versions ) ) );
+        }
+        diffs.put( baseline, diff );
+
+        return diff;
+    }
+
+    private int indexOf( Baseline baseline ) {
+        int index = baselines.indexOf( baseline );
+        if( index < 0 ) {
+            throw new IllegalArgumentException( baseline + " is not in the chain" );
+        }
+        return index;
+    }
+}
@@ -3,6 +3,11 @@ package net.praqma.clearcase.ucm.utils;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import net.praqma.clearcase.cleartool.Cleartool;
@@ -12,7 +17,9 @@ import net.praqma.clearcase.ucm.entities.Baseline;
 import net.praqma.clearcase.ucm.entities.Component;
 import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
 import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineException;
 
 public class BaselineList extends ArrayList<Baseline> {
 	private static Logger logger = Logger.getLogger( BaselineList.class.getName() );
@@ -20,6 +27,8 @@ public class BaselineList extends ArrayList<Baseline> {
 	private List<BaselineFilter> filters = new ArrayList<BaselineFilter>();
 	private Comparator<Baseline> sorter;
 	private boolean load = false;
+	private int parallelism = 1;
+	private ExecutorService executor;
 	
 	private Stream stream;
 	private Component component;
@@ -58,6 +67,7 @@ public class BaselineList extends ArrayList<Baseline> {
 	 * @return
 	 * @throws UnableToInitializeEntityException
 	 * @throws UnableToListBaselinesException
+	 * @throws CommandLineException If interrupted while loading in parallel, the interrupt flag is kept
 	 */
 	public BaselineList apply() throws UnableToInitializeEntityException, UnableToListBaselinesException {
 
@@ -92,37 +102,61 @@ public class BaselineList extends ArrayList<Baseline> {
             }
         }
 
-        /* Sort the baselines */
-        if( sorter != null ) {
-            Collections.sort( this, sorter );
-        }
-
 		logger.fine( " --- Bare retrieval --- " );
 		logger.fine( "Baselines: " + this );
 
-		/* Do the filtering */
-		int pruned = 0;
+		/* The range filters are applied together, sorting once, and leave the list in their order */
+		List<BaselineRangeFilter> ranges = new ArrayList<BaselineRangeFilter>();
+		List<BaselineFilter> others = new ArrayList<BaselineFilter>();
 		for( BaselineFilter filter : filters ) {
+			if( filter instanceof BaselineRangeFilter ) {
+				ranges.add( (BaselineRangeFilter) filter );
+			} else {
+				others.add( filter );
+			}
+		}
+
+		int pruned = 0;
+		if( ranges.size() > 0 ) {
+			pruned += BaselineRangeFilter.apply( this, ranges );
+			logger.fine( "Baselines: " + this );
+		} else if( sorter instanceof AscendingDateSort || sorter instanceof DescendingDateSort ) {
+			sortByDate( this, sorter instanceof AscendingDateSort );
+		} else if( sorter != null ) {
+			Collections.sort( this, sorter );
+		}
+
+		/* Do the filtering */
+		for( BaselineFilter filter : others ) {
 			logger.fine( "Filter: " + filter.getName() );
 			pruned += filter.filter( this );
 			logger.fine( "Baselines: " + this );
 		}
 		
-		/* Load em? */
+		/* With a limit, load only as many as needed, in order */
+		if( load && limit > 0 ) {
+			LoadingIterator it = new LoadingIterator( this, limit );
+			BaselineList n = new BaselineList();
+			while( n.size() < limit && it.hasNext() ) {
+				n.add( it.next() );
+			}
+			pruned += it.getPruned();
+
+			if( pruned > 0 ) {
+				logger.config( "[ClearCase] Pruned " + pruned + " baselines" );
+			}
+			logger.fine( "Final list of baselines: " + n );
+			return n;
+		}
+
+		/* Load em? In bulk, pruning those failing */
 		if( load ) {
-			Iterator<Baseline> it = this.iterator();
-			while( it.hasNext() ) {
-				Baseline baseline = it.next();
-				try {
-					baseline.load();
-				} catch( Exception e ) {
-					logger.warning( "[ClearCase] Unable to load " + baseline.getNormalizedName() + ": " + e.getMessage() );
-					it.remove();
-					pruned++;
-					continue;
-					/* Just continue */
-				}
+			Map<Baseline, Exception> failed = parallelism > 1 && this.size() > 1 ? loadInParallel( this ) : UCMEntity.tryLoadAll( this );
+			for( Map.Entry<Baseline, Exception> entry : failed.entrySet() ) {
+				logger.warning( "[ClearCase] Unable to load " + entry.getKey().getNormalizedName() + ": " + entry.getValue().getMessage() );
 			}
+			this.removeAll( failed.keySet() );
+			pruned += failed.size();
 		}
 		
 		if( pruned > 0 ) {
@@ -130,7 +164,7 @@ public class BaselineList extends ArrayList<Baseline> {
 		}
 
 		/* Limit? 0 = unlimited */
-		if( limit > 0 && this.size() > 0 ) {
+		if( limit > 0 && this.size() > limit ) {
 			BaselineList n = new BaselineList();
 			n.addAll( this.subList( 0, limit ) );
 			logger.fine( "Final list of baselines: " + n );
@@ -165,7 +199,8 @@ public class BaselineList extends ArrayList<Baseline> {
 	}
 	
 	/**
-	 * Set a limit of how many {@link Baseline}s apply should return
+	 * Set a limit of how many {@link Baseline}s apply should return.
+	 * If the {@link Baseline}s are loaded, only the first are loaded, until the limit is reached, in parallel if loaded by {@link #load(int)}
 	 * @param limit
 	 * @return
 	 */
@@ -185,6 +220,171 @@ public class BaselineList extends ArrayList<Baseline> {
 		return this;
 	}
 	
+	/**
+	 * Load the {@link Baseline}s using a number of parallel workers.
+	 * Each worker runs one cleartool process at a time, capping the number of concurrent processes at parallelism.
+	 * @param parallelism - The maximum number of concurrent loads
+	 * @return
+	 */
+	public BaselineList load( int parallelism ) {
+		if( parallelism < 1 ) {
+			throw new IllegalArgumentException( "The parallelism must be at least one" );
+		}
+		this.load = true;
+		this.parallelism = parallelism;
+
+		return this;
+	}
+
+	/**
+	 * Set the {@link ExecutorService} running the parallel loads. If not given, a pool is created for each apply.
+	 * At most parallelism tasks are submitted to the executor.
+	 * @param executor
+	 * @return
+	 */
+	public BaselineList setExecutor( ExecutorService executor ) {
+		this.executor = executor;
+
+		return this;
+	}
+
+	/**
+	 * Iterate the {@link Baseline}s, loading them in bulk as they are consumed, skipping those failing to load.
+	 * The first chunk is small and the chunks grow, so consuming only the first baselines of an applied list, not loaded, costs few cleartool calls.
+	 * Each chunk is loaded in parallel, if the parallelism is set by {@link #load(int)}.
+	 * @return
+	 */
+	public Iterator<Baseline> loadingIterator() {
+		return new LoadingIterator( this, 4 );
+	}
+
+	/**
+	 * Loads the {@link Baseline}s of a list ahead of the consumer, a chunk at a time, doubling the chunk size up to {@link UCMEntity#BULK_LOAD_CHUNK_SIZE} per worker
+	 */
+	private class LoadingIterator implements Iterator<Baseline> {
+		private final List<Baseline> baselines;
+		private final LinkedList<Baseline> loaded = new LinkedList<Baseline>();
+		private final int workers = parallelism;
+		private int next = 0;
+		private int chunk;
+		private int pruned = 0;
+
+		LoadingIterator( List<Baseline> baselines, int chunk ) {
+			this.baselines = new ArrayList<Baseline>( baselines );
+			this.chunk = Math.max( 1, chunk );
+		}
+
+		@Override
+		public boolean hasNext() {
+			while( loaded.isEmpty() && next < baselines.size() ) {
+				List<Baseline> list = baselines.subList( next, Math.min( next + chunk, baselines.size() ) );
+				next += list.size();
+				chunk = Math.min( chunk * 2, Math.max( chunk, UCMEntity.BULK_LOAD_CHUNK_SIZE * workers ) );
+
+				Map<Baseline, Exception> failed = workers > 1 && list.size() > 1 ? loadInParallel( list, workers ) : UCMEntity.tryLoadAll( list );
+				for( Map.Entry<Baseline, Exception> entry : failed.entrySet() ) {
+					logger.warning( "[ClearCase] Unable to load " + entry.getKey().getNormalizedName() + ": " + entry.getValue().getMessage() );
+				}
+				pruned += failed.size();
+
+				for( Baseline baseline : list ) {
+					if( !failed.containsKey( baseline ) ) {
+						loaded.add( baseline );
+					}
+				}
+			}
+
+			return !loaded.isEmpty();
+		}
+
+		@Override
+		public Baseline next() {
+			if( !hasNext() ) {
+				throw new NoSuchElementException();
+			}
+			return loaded.removeFirst();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * @return The number of baselines failing to load
+		 */
+		int getPruned() {
+			return pruned;
+		}
+	}
+
+	private Map<Baseline, Exception> loadInParallel( List<Baseline> baselines ) {
+		return loadInParallel( baselines, parallelism );
+	}
+
+	/**
+	 * Load {@link Baseline}s in chunks, distributed over at most parallelism workers.
+	 * @return The {@link Baseline}s not loaded, mapped to the reason
+	 * @throws CommandLineException If interrupted, the loads are cancelled and the interrupt flag is kept
+	 */
+	private Map<Baseline, Exception> loadInParallel( List<Baseline> baselines, int parallelism ) {
+		int workers = Math.min( parallelism, baselines.size() );
+		int chunkSize = Math.max( 1, Math.min( UCMEntity.BULK_LOAD_CHUNK_SIZE, ( baselines.size() + workers - 1 ) / workers ) );
+
+		final Queue<List<Baseline>> chunks = new ConcurrentLinkedQueue<List<Baseline>>();
+		for( int i = 0 ; i < baselines.size() ; i += chunkSize ) {
+			chunks.add( new ArrayList<Baseline>( baselines.subList( i, Math.min( i + chunkSize, baselines.size() ) ) ) );
+		}
+		workers = Math.min( workers, chunks.size() );
+		logger.fine( "Loading " + baselines.size() + " baselines in " + chunks.size() + " chunks using " + workers + " workers" );
+
+		final Map<Baseline, Exception> failed = Collections.synchronizedMap( new LinkedHashMap<Baseline, Exception>() );
+
+		ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool( workers );
+		List<Future<?>> futures = new ArrayList<Future<?>>( workers );
+		try {
+			for( int i = 0 ; i < workers ; i++ ) {
+				futures.add( pool.submit( new Runnable() {
+					@Override
+					public void run() {
+						List<Baseline> chunk;
+						while( ( chunk = chunks.poll() ) != null && !Thread.currentThread().isInterrupted() ) {
+							failed.putAll( UCMEntity.tryLoadAll( chunk ) );
+						}
+					}
+				} ) );
+			}
+
+			for( Future<?> future : futures ) {
+				try {
+					future.get();
+				} catch( ExecutionException e ) {
+					logger.warning( "[ClearCase] A loader failed: " + e.getCause().getMessage() );
+				}
+			}
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			for( Future<?> future : futures ) {
+				future.cancel( true );
+			}
+			throw new CommandLineException( "Interrupted while loading " + baselines.size() + " baselines" );
+		} finally {
+			if( executor == null ) {
+				pool.shutdownNow();
+			}
+		}
+
+		/* Whatever was not reached by a failing loader, is pruned as well */
+		Map<Baseline, Exception> result = new LinkedHashMap<Baseline, Exception>( failed );
+		for( Baseline baseline : baselines ) {
+			if( !baseline.isLoaded() && !result.containsKey( baseline ) ) {
+				result.put( baseline, new IllegalStateException( "Not loaded, a loader failed" ) );
+			}
+		}
+
+		return result;
+	}
+	
 	/**
 	 * Set the sorting of the {@link BaselineList}
 	 * @param sorter - A {@link Comparator} of {@link Baseline}s
@@ -236,6 +436,62 @@ public class BaselineList extends ArrayList<Baseline> {
 		return bls;
 	}
 	
+	/**
+	 * Sort {@link Baseline}s by date, like {@link AscendingDateSort} and {@link DescendingDateSort}, reading each date once.
+	 * The dates not known are loaded in bulk first, see {@link #loadDates(List)}.
+	 * @return The dates of the sorted baselines in milliseconds, {@link Long#MIN_VALUE} for a date not known
+	 */
+	public static long[] sortByDate( List<Baseline> baselines, final boolean ascending ) {
+		loadDates( baselines );
+
+		final long[] times = new long[baselines.size()];
+		Integer[] order = new Integer[times.length];
+		for( int i = 0 ; i < times.length ; i++ ) {
+			Baseline baseline = baselines.get( i );
+			times[i] = baseline.hasDate() ? baseline.getDate().getTime() : Long.MIN_VALUE;
+			order[i] = i;
+		}
+
+		/* Compared by the second, as the comparators, the sort is stable */
+		Arrays.sort( order, new Comparator<Integer>() {
+			@Override
+			public int compare( Integer i1, Integer i2 ) {
+				long s1 = times[i1] / 1000;
+				long s2 = times[i2] / 1000;
+				int c = s1 < s2 ? -1 : ( s1 == s2 ? 0 : 1 );
+				return ascending ? c : -c;
+			}
+		} );
+
+		List<Baseline> unsorted = new ArrayList<Baseline>( baselines );
+		long[] sorted = new long[times.length];
+		for( int i = 0 ; i < times.length ; i++ ) {
+			baselines.set( i, unsorted.get( order[i] ) );
+			sorted[i] = times[order[i]];
+		}
+
+		return sorted;
+	}
+
+	/**
+	 * Get the dates of the {@link Baseline}s not known, loading them in bulk instead of one cleartool call per baseline
+	 */
+	public static void loadDates( List<Baseline> baselines ) {
+		List<Baseline> missing = new ArrayList<Baseline>();
+		for( Baseline baseline : baselines ) {
+			if( !baseline.hasDate() ) {
+				missing.add( baseline );
+			}
+		}
+
+		if( missing.size() > 0 ) {
+			logger.fine( "Loading the dates of " + missing.size() + " baselines" );
+			for( Map.Entry<Baseline, Exception> entry : UCMEntity.tryLoadAll( missing ).entrySet() ) {
+				logger.fine( "Unable to get the date of " + entry.getKey().getNormalizedName() + ": " + entry.getValue().getMessage() );
+			}
+		}
+	}
+	
 	public static class AscendingDateSort implements Comparator<Baseline>, Serializable {
 
 		@Override
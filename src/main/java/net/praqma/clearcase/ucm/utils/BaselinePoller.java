@@ -0,0 +1,269 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.*;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.clearcase.exceptions.UnableToListBaselinesException;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+
+/**
+ * Incremental polling of {@link Baseline}s on a {@link Stream} and {@link Component}.<br>
+ * For each stream, component and promotion level, a watermark is kept: the date of the newest {@link Baseline} seen and the {@link Baseline}s created at that date.
+ * A poll returns the {@link Baseline}s created after the watermark, at the promotion level.<br><br>
+ * {@link Baseline}s created after the watermark, but not yet at the promotion level, are kept as pending and returned when they are promoted.
+ * Pending {@link Baseline}s are forgotten when deleted, rejected or promoted past the level.<br><br>
+ * The state is persisted in a properties file, if given.<br>
+ * lsbl cannot be bounded by date, the poller lists the name, date and level of the {@link Baseline}s in one call and filters them against the watermark,
+ * sparing the sorting, filtering and loading of the whole history.
+ *
+ * @author cwolfgang
+ */
+public class BaselinePoller {
+
+	private static Logger logger = Logger.getLogger( BaselinePoller.class.getName() );
+
+	/**
+	 * The maximum number of pending {@link Baseline}s per watermark
+	 */
+	public static final int MAX_PENDING = 1000;
+
+	private static final String WATERMARK = ".watermark";
+	private static final String AT_WATERMARK = ".atWatermark";
+	private static final String PENDING = ".pending";
+
+	private final File store;
+	private final Properties state = new Properties();
+
+	/**
+	 * A poller keeping its state in memory
+	 */
+	public BaselinePoller() {
+		this.store = null;
+	}
+
+	/**
+	 * A poller persisting its state in the given file
+	 * @param store - A properties file, created if it does not exist
+	 * @throws IOException
+	 */
+	public BaselinePoller( File store ) throws IOException {
+		this.store = store;
+		if( store.exists() ) {
+			InputStream is = new FileInputStream( store );
+			try {
+				state.load( is );
+			} finally {
+				is.close();
+			}
+		}
+	}
+
+	/**
+	 * Get the {@link Baseline}s created or promoted to the level since the last poll, oldest first.
+	 * The first poll returns all {@link Baseline}s at the level.
+	 * @param level - The promotion level, null for all levels
+	 */
+	public synchronized List<Baseline> poll( Stream stream, Component component, PromotionLevel level ) throws UnableToInitializeEntityException, UnableToListBaselinesException, IOException {
+		String key = getKey( stream, component, level );
+
+		long watermark = Long.parseLong( state.getProperty( key + WATERMARK, "-1" ) );
+		Set<String> atWatermark = getSet( key + AT_WATERMARK );
+		Set<String> pending = getSet( key + PENDING );
+
+		List<Entry> entries = list( stream, component );
+
+		List<Baseline> result = new ArrayList<Baseline>();
+		Set<String> stillPending = new LinkedHashSet<String>();
+		Set<String> listed = new HashSet<String>();
+
+		long newWatermark = watermark;
+		for( Entry entry : entries ) {
+			listed.add( entry.name );
+			if( entry.date > newWatermark ) {
+				newWatermark = entry.date;
+			}
+		}
+
+		for( Entry entry : entries ) {
+			boolean isNew = entry.date > watermark || ( entry.date == watermark && !atWatermark.contains( entry.name ) );
+			if( !isNew && !pending.contains( entry.name ) ) {
+				continue;
+			}
+
+			if( level == null || entry.level.equals( level ) ) {
+				result.add( entry.baseline );
+			} else if( entry.level != PromotionLevel.REJECTED && entry.level.ordinal() < level.ordinal() ) {
+				stillPending.add( entry.name );
+			}
+		}
+
+		/* Deleted since the last poll */
+		for( String name : pending ) {
+			if( !listed.contains( name ) ) {
+				logger.fine( "The pending baseline " + name + " was deleted" );
+			}
+		}
+
+		/* Keep the newest pending */
+		while( stillPending.size() > MAX_PENDING ) {
+			Iterator<String> it = stillPending.iterator();
+			logger.fine( "Forgetting the pending baseline " + it.next() );
+			it.remove();
+		}
+
+		Set<String> newAtWatermark = new LinkedHashSet<String>();
+		for( Entry entry : entries ) {
+			if( entry.date == newWatermark ) {
+				newAtWatermark.add( entry.name );
+			}
+		}
+		if( newWatermark == watermark ) {
+			/* Baselines at the watermark may have been deleted, keep the rest */
+			for( String name : atWatermark ) {
+				newAtWatermark.add( name );
+			}
+			newAtWatermark.retainAll( listed );
+		}
+
+		state.setProperty( key + WATERMARK, Long.toString( newWatermark ) );
+		setSet( key + AT_WATERMARK, newAtWatermark );
+		setSet( key + PENDING, stillPending );
+		save();
+
+		logger.fine( "Polled " + result.size() + " new baselines, " + stillPending.size() + " pending" );
+
+		return result;
+	}
+
+	/**
+	 * Get the watermark, the date of the newest {@link Baseline} seen.
+	 * @return The date or null if never polled
+	 */
+	public synchronized Date getWatermark( Stream stream, Component component, PromotionLevel level ) {
+		long watermark = Long.parseLong( state.getProperty( getKey( stream, component, level ) + WATERMARK, "-1" ) );
+		return watermark < 0 ? null : new Date( watermark );
+	}
+
+	/**
+	 * Forget the state, the next poll returns all {@link Baseline}s at the level
+	 */
+	public synchronized void reset( Stream stream, Component component, PromotionLevel level ) throws IOException {
+		String key = getKey( stream, component, level );
+		state.remove( key + WATERMARK );
+		state.remove( key + AT_WATERMARK );
+		state.remove( key + PENDING );
+		save();
+	}
+
+	private List<Entry> list( Stream stream, Component component ) throws UnableToInitializeEntityException, UnableToListBaselinesException {
+		List<String> lines;
+		String cmd = "lsbl -fmt %Xn;%Nd;%[plevel]p\\n -component " + component + " -stream " + stream;
+		try {
+			lines = Cleartool.run( cmd ).stdoutList;
+		} catch( AbnormalProcessTerminationException e ) {
+			throw new UnableToListBaselinesException( stream, component, null, e );
+		}
+
+		List<Entry> entries = new ArrayList<Entry>( lines.size() );
+		for( String line : lines ) {
+			String[] split = line.trim().split( ";" );
+			if( split.length < 3 ) {
+				continue;
+			}
+
+			Baseline baseline = Baseline.get( split[0] );
+			try {
+				baseline.setDate( split[1] );
+			} catch( ParseException e ) {
+				throw new UnableToInitializeEntityException( baseline.getClass(), e );
+			}
+			entries.add( new Entry( baseline, Project.getPlevelFromString( split[2] ) ) );
+		}
+
+		/* Oldest first */
+		Collections.sort( entries, new Comparator<Entry>() {
+			@Override
+			public int compare( Entry e1, Entry e2 ) {
+				return e1.date < e2.date ? -1 : ( e1.date == e2.date ? 0 : 1 );
+			}
+		} );
+
+		return entries;
+	}
+
+	private String getKey( Stream stream, Component component, PromotionLevel level ) {
+		return stream.getFullyQualifiedName() + "|" + component.getFullyQualifiedName() + "|" + ( level == null ? "ANY" : level.toString() );
+	}
+
+	private Set<String> getSet( String key ) {
+		Set<String> set = new LinkedHashSet<String>();
+		String value = state.getProperty( key, "" );
+		for( String s : value.split( "," ) ) {
+			if( s.length() > 0 ) {
+				set.add( s );
+			}
+		}
+		return set;
+	}
+
+	private void setSet( String key, Set<String> set ) {
+		StringBuilder sb = new StringBuilder();
+		for( String s : set ) {
+			if( sb.length() > 0 ) {
+				sb.append( "," );
+			}
+			sb.append( s );
+		}
+		state.setProperty( key, sb.toString() );
+	}
+
+	private void save() throws IOException {
+		if( store == null ) {
+			return;
+		}
+
+		/* Write to a temporary file first, not to leave a half written state */
+		File tmp = new File( store.getAbsolutePath() + ".tmp" );
+		OutputStream os = new FileOutputStream( tmp );
+		try {
+			state.store( os, "Baseline watermarks" );
+		} finally {
+			os.close();
+		}
+
+		if( store.exists() && !store.delete() ) {
+			throw new IOException( "Unable to replace " + store );
+		}
+		if( !tmp.renameTo( store ) ) {
+			throw new IOException( "Unable to rename " + tmp + " to " + store );
+		}
+	}
+
+	private static class Entry {
+		Baseline baseline;
+		String name;
+		long date;
+		PromotionLevel level;
+
+		Entry( Baseline baseline, PromotionLevel level ) {
+			this.baseline = baseline;
+			this.name = baseline.getFullyQualifiedName();
+			this.date = baseline.getDate().getTime();
+			this.level = level;
+		}
+	}
+}
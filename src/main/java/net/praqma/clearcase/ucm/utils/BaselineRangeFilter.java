@@ -0,0 +1,91 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.ucm.entities.Baseline;
+
+/**
+ * A {@link BaselineFilter} keeping a range of the {@link Baseline}s sorted by date, for example those after a given baseline.<br>
+ * The range filters of a {@link BaselineList} are applied together, sorting the baselines once and narrowing the range with each filter.
+ * The list is left in the order of the last range filter, ascending or descending by date.
+ *
+ * @author cwolfgang
+ */
+public abstract class BaselineRangeFilter extends BaselineFilter {
+
+    private static Logger logger = Logger.getLogger( BaselineRangeFilter.class.getName() );
+
+    /**
+     * @return True if the filtered baselines are left ascending by date, false if descending
+     */
+    public abstract boolean isAscending();
+
+    /**
+     * Narrow the start of the range
+     * @param ascending The baselines, ascending by date
+     * @param times The dates of the baselines in milliseconds, {@link Long#MIN_VALUE} if not known
+     * @return The new start of the range, inclusive
+     */
+    protected int narrowFrom( List<Baseline> ascending, long[] times, int from, int to ) {
+        return from;
+    }
+
+    /**
+     * Narrow the end of the range
+     * @return The new end of the range, exclusive
+     */
+    protected int narrowTo( List<Baseline> ascending, long[] times, int from, int to ) {
+        return to;
+    }
+
+    @Override
+    public int filter( BaselineList baselines ) {
+        return apply( baselines, Collections.singletonList( this ) );
+    }
+
+    /**
+     * Apply range filters to a list of baselines, sorting it once
+     * @return The number of baselines pruned
+     */
+    public static int apply( List<Baseline> baselines, List<? extends BaselineRangeFilter> filters ) {
+        if( filters.isEmpty() ) {
+            return 0;
+        }
+
+        long[] times = BaselineList.sortByDate( baselines, true );
+
+        int size = baselines.size();
+        int from = 0;
+        int to = size;
+        for( BaselineRangeFilter filter : filters ) {
+            logger.fine( "Filter: " + filter.getName() );
+            from = filter.narrowFrom( baselines, times, from, to );
+            to = Math.max( from, filter.narrowTo( baselines, times, from, to ) );
+        }
+
+        List<Baseline> kept = new ArrayList<Baseline>( baselines.subList( from, to ) );
+        if( !filters.get( filters.size() - 1 ).isAscending() ) {
+            Collections.reverse( kept );
+        }
+
+        baselines.clear();
+        baselines.addAll( kept );
+
+        return size - kept.size();
+    }
+
+    /**
+     * @return The index of a baseline in the range, or -1
+     */
+    protected static int indexOf( List<Baseline> ascending, Baseline baseline, int from, int to ) {
+        for( int i = from ; i < to ; i++ ) {
+            if( ascending.get( i ).equals( baseline ) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,247 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.exceptions.CleartoolException;
+import net.praqma.clearcase.interfaces.Diffable;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.UCMEntityStore;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * A cache of the output of diffbl between two {@link Baseline}s, or a {@link Baseline} and its predecessor, which never changes once the baselines exist.<br>
+ * The output is keyed by the normalized command line, holding the ordered pair and the flags, the working directory, as the versions are listed with the view path,
+ * and whether the error output is merged into the output.
+ * The number of cached results is bounded by a least recently used policy. If the {@link UCMEntityStore} is enabled the results are also stored there and kept across restarts,
+ * results longer than {@link UCMEntityStore#MEMORY_LIMIT} are read from its file when asked for and are not kept in memory.
+ * A baseline name can be reused after the baseline is removed, so a result is stored with the object ids of the baselines, and a stored result of other baselines is removed.
+ * The object ids are known if the baselines are loaded, otherwise they are described.<br>
+ * The cache is disabled by default and is enabled by setting a capacity with {@link #setCapacity(int)} or the system property {@value #CAPACITY_PROPERTY}.
+ * Differences involving a {@link net.praqma.clearcase.ucm.entities.Stream} are never cached.
+ *
+ * @author cwolfgang
+ */
+public final class DiffBlCache {
+
+    private static final Logger logger = Logger.getLogger( DiffBlCache.class.getName() );
+
+    /**
+     * The maximum number of results kept in memory, 0 disables the cache
+     */
+    public static final String CAPACITY_PROPERTY = "cool.diffbl.cache";
+
+    private static final String STORE_PREFIX = "diffbl|";
+
+    private static int capacity = 0;
+    private static LinkedHashMap<String, List<String>> results = create( 0 );
+
+    private static long hits = 0;
+    private static long misses = 0;
+
+    static {
+        Integer capacity = Integer.getInteger( CAPACITY_PROPERTY );
+        if( capacity != null ) {
+            setCapacity( capacity );
+        }
+    }
+
+    private DiffBlCache() {
+    }
+
+    /**
+     * Set the maximum number of results kept in memory, 0 disables the cache. The cached results and the hit counts are cleared.
+     */
+    public static synchronized void setCapacity( int capacity ) {
+        if( capacity < 0 ) {
+            throw new IllegalArgumentException( "The capacity must not be negative" );
+        }
+        DiffBlCache.capacity = capacity;
+        DiffBlCache.results = create( capacity );
+        DiffBlCache.hits = 0;
+        DiffBlCache.misses = 0;
+    }
+
+    public static synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public static synchronized boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * @return True if the difference never changes, when both are {@link Baseline}s or the second is null, the predecessor
+     */
+    public static boolean isCacheable( Diffable d1, Diffable d2 ) {
+        return d1 instanceof Baseline && ( d2 == null || d2 instanceof Baseline );
+    }
+
+    /**
+     * Run a diffbl command, or get its output from the cache, with the error output merged as {@link Cleartool#run(String, File)}
+     * @param d1 The first of the compared
+     * @param d2 The second of the compared, null if compared with the predecessor
+     */
+    public static List<String> run( String cmd, File dir, Diffable d1, Diffable d2 ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, true, d1, d2 );
+    }
+
+    /**
+     * Run a diffbl command, or get its output from the cache
+     * @param merge Merge the error output into the output
+     * @param d1 The first of the compared
+     * @param d2 The second of the compared, null if compared with the predecessor
+     */
+    public static List<String> run( String cmd, File dir, boolean merge, Diffable d1, Diffable d2 ) throws CommandLineException, AbnormalProcessTerminationException {
+        if( !isEnabled() || !isCacheable( d1, d2 ) ) {
+            return Cleartool.run( cmd, dir, merge ).stdoutList;
+        }
+
+        String key = key( cmd, dir, merge );
+        List<String> lines = get( key, d1, d2 );
+        if( lines == null ) {
+            lines = Cleartool.run( cmd, dir, merge ).stdoutList;
+            put( key, lines, d1, d2 );
+        }
+
+        return new ArrayList<String>( lines );
+    }
+
+    /**
+     * Stream a diffbl command, handing each line of the output to the handler, or hand the lines from the cache.
+     * The error output is not merged. The output is only cached if the command and the handler completes.
+     */
+    public static void stream( String cmd, File dir, Diffable d1, Diffable d2, final LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        if( !isEnabled() || !isCacheable( d1, d2 ) ) {
+            Cleartool.stream( cmd, dir, handler );
+            return;
+        }
+
+        String key = key( cmd, dir, false );
+        List<String> lines = get( key, d1, d2 );
+        if( lines != null ) {
+            for( String line : lines ) {
+                handler.handle( line );
+            }
+            return;
+        }
+
+        final List<String> read = new ArrayList<String>();
+        Cleartool.stream( cmd, dir, new LineHandler() {
+            @Override
+            public void handle( String line ) {
+                read.add( line );
+                handler.handle( line );
+            }
+        } );
+        put( key, read, d1, d2 );
+    }
+
+    public static synchronized void clear() {
+        results.clear();
+    }
+
+    public static synchronized int size() {
+        return results.size();
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get a result from memory, or from the store if it is of the baselines. The object ids are described outside the lock
+     */
+    private static List<String> get( String key, Diffable d1, Diffable d2 ) {
+        List<String> lines;
+        synchronized( DiffBlCache.class ) {
+            lines = results.get( key );
+        }
+
+        if( lines == null ) {
+            String stored = UCMEntityStore.get( STORE_PREFIX + key );
+            String oids = stored != null ? getObjectIds( d1, d2 ) : null;
+            if( oids != null ) {
+                /* The first line holds the object ids */
+                int i = stored.indexOf( '\n' );
+                if( i >= 0 && stored.substring( 0, i ).equals( oids ) ) {
+                    lines = i + 1 == stored.length() ? Collections.<String>emptyList() : Arrays.asList( stored.substring( i + 1 ).split( "\n", -1 ) );
+                    synchronized( DiffBlCache.class ) {
+                        results.put( key, lines );
+                    }
+                } else {
+                    logger.fine( "The stored result of " + key + " is not of the baselines " + oids );
+                    UCMEntityStore.remove( STORE_PREFIX + key );
+                }
+            }
+        }
+
+        synchronized( DiffBlCache.class ) {
+            if( lines != null ) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+
+        return lines;
+    }
+
+    private static void put( String key, List<String> lines, Diffable d1, Diffable d2 ) {
+        lines = Collections.unmodifiableList( new ArrayList<String>( lines ) );
+        synchronized( DiffBlCache.class ) {
+            results.put( key, lines );
+        }
+
+        if( UCMEntityStore.isEnabled() ) {
+            String oids = getObjectIds( d1, d2 );
+            if( oids != null ) {
+                StringBuilder sb = new StringBuilder( oids ).append( "\n" );
+                for( int i = 0 ; i < lines.size() ; i++ ) {
+                    sb.append( i > 0 ? "\n" : "" ).append( lines.get( i ) );
+                }
+                UCMEntityStore.put( STORE_PREFIX + key, sb.toString() );
+            }
+        }
+
+        logger.finest( "Cached " + lines.size() + " lines of " + key );
+    }
+
+    /**
+     * @return The object ids of the baselines, or null if they can not be described
+     */
+    private static String getObjectIds( Diffable d1, Diffable d2 ) {
+        try {
+            return ( (Baseline) d1 ).getObjectId() + "|" + ( d2 != null ? ( (Baseline) d2 ).getObjectId() : "" );
+        } catch( CleartoolException e ) {
+            logger.fine( "Unable to describe the object ids of " + d1 + " and " + d2 + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    private static String key( String cmd, File dir, boolean merge ) {
+        return ( merge ? "merged|" : "stdout|" ) + ( dir != null ? dir.getAbsolutePath() : "" ) + "|" + cmd.trim().replaceAll( "\\s+", " " );
+    }
+
+    private static LinkedHashMap<String, List<String>> create( final int capacity ) {
+        return new LinkedHashMap<String, List<String>>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, List<String>> eldest ) {
+                return size() > capacity;
+            }
+        };
+    }
+}
@@ -6,7 +6,6 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import net.praqma.clearcase.cleartool.Cleartool;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
@@ -87,7 +86,7 @@ public class Difference {
 		List<String> lines = null;
 
 		try {
-			lines = Cleartool.run( cmd, view.getViewRoot() ).stdoutList;
+			lines = DiffBlCache.run( cmd, view.getViewRoot(), bl2, bl1 );
 		} catch( Exception e ) {
 			throw new CleartoolException( "Could not retreive the differences of " + bl1 + " and " + bl2 );
 		}
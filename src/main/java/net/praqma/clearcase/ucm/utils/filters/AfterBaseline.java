@@ -1,14 +1,13 @@
 package net.praqma.clearcase.ucm.utils.filters;
 
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Logger;
 
 import net.praqma.clearcase.ucm.entities.Baseline;
-import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselineRangeFilter;
 
-public class AfterBaseline extends BaselineFilter {
+public class AfterBaseline extends BaselineRangeFilter {
 	
 	private static Logger logger = Logger.getLogger( AfterBaseline.class.getName() );
 
@@ -25,30 +24,19 @@ public class AfterBaseline extends BaselineFilter {
     }
 
     @Override
-	public int filter( BaselineList baselines ) {
-		
-		/* Sort the baselines */
-		Collections.sort( baselines, new BaselineList.AscendingDateSort() );
-		
-		int pruned = 0;
-		Iterator<Baseline> itAfter = baselines.iterator();
-		while( itAfter.hasNext() ) {
-			Baseline baseline = itAfter.next();
-			logger.fine( "Removing " + baseline.getNormalizedName() );
-			if( baseline.equals( after ) ) {
-				/* We found the baseline we were looking for */
-				/* Let's remove this too */
-				itAfter.remove();
-				pruned++;
-				break;
-			} else {
-				itAfter.remove();
-				pruned++;
-			}
-		}
-		
-		return pruned;
-	}
+    public boolean isAscending() {
+        return true;
+    }
+
+    /**
+     * Start after the baseline, if not found, nothing is kept
+     */
+    @Override
+    protected int narrowFrom( List<Baseline> ascending, long[] times, int from, int to ) {
+        int index = indexOf( ascending, after, 0, ascending.size() );
+        logger.fine( "Removing the baselines up to and including " + after.getNormalizedName() );
+        return index < 0 ? to : Math.max( from, index + 1 );
+    }
 
 	@Override
 	public String getName() {
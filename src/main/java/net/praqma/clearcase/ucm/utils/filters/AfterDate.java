@@ -1,15 +1,13 @@
 package net.praqma.clearcase.ucm.utils.filters;
 
-import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Logger;
 
 import net.praqma.clearcase.ucm.entities.Baseline;
-import net.praqma.clearcase.ucm.utils.BaselineFilter;
-import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselineRangeFilter;
 
-public class AfterDate extends BaselineFilter {
+public class AfterDate extends BaselineRangeFilter {
 	
 	private static Logger logger = Logger.getLogger( AfterDate.class.getName() );
 
@@ -20,28 +18,23 @@ public class AfterDate extends BaselineFilter {
 	}
 	
 	@Override
-	public int filter( BaselineList baselines ) {
+	public boolean isAscending() {
+		return true;
+	}
+
+	/**
+	 * Start at the first baseline later than the date
+	 */
+	@Override
+	protected int narrowFrom( List<Baseline> ascending, long[] times, int from, int to ) {
 		logger.fine( "Date is " + date );
-		
-		/* Sort the baselines */
-		Collections.sort( baselines, new BaselineList.AscendingDateSort() );
-		
-		int pruned = 0;
-		Iterator<Baseline> itDate = baselines.iterator();
-		while( itDate.hasNext() ) {
-			Baseline baseline = itDate.next();
-            logger.finest( baseline.getDate() + "==" + date );
-            if( date.after( baseline.getDate() ) || date.compareTo( baseline.getDate() ) == 0 ) {
-                logger.finest( "REMOVED" );
-				itDate.remove();
-				pruned++;
-			} else {
-				/* We must be after date, since the list is sorted, there are no more baselines before date */
-				break;
-			}
+
+		long time = date.getTime();
+		while( from < to && times[from] <= time ) {
+			from++;
 		}
-		
-		return pruned;
+
+		return from;
 	}
 	
 	@Override
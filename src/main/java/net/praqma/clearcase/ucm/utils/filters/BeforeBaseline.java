@@ -1,14 +1,13 @@
 package net.praqma.clearcase.ucm.utils.filters;
 
 import net.praqma.clearcase.ucm.entities.Baseline;
-import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselineRangeFilter;
 
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Logger;
 
-public class BeforeBaseline extends BaselineFilter {
+public class BeforeBaseline extends BaselineRangeFilter {
 
 	private static Logger logger = Logger.getLogger( BeforeBaseline.class.getName() );
 
@@ -25,30 +24,19 @@ public class BeforeBaseline extends BaselineFilter {
     }
 
     @Override
-	public int filter( BaselineList baselines ) {
-		
-		/* Sort the baselines */
-		Collections.sort( baselines, new BaselineList.DescendingDateSort() );
-		
-		int pruned = 0;
-		Iterator<Baseline> itBefore = baselines.iterator();
-		while( itBefore.hasNext() ) {
-			Baseline baseline = itBefore.next();
-			logger.fine( "Removing " + baseline.getNormalizedName() );
-			if( baseline.equals( before ) ) {
-				/* We found the baseline we were looking for */
-				/* Let's remove this too */
-				itBefore.remove();
-				pruned++;
-				break;
-			} else {
-				itBefore.remove();
-				pruned++;
-			}
-		}
-		
-		return pruned;
-	}
+    public boolean isAscending() {
+        return false;
+    }
+
+    /**
+     * End before the baseline, if not found, nothing is kept
+     */
+    @Override
+    protected int narrowTo( List<Baseline> ascending, long[] times, int from, int to ) {
+        int index = indexOf( ascending, before, 0, ascending.size() );
+        logger.fine( "Removing the baselines from " + before.getNormalizedName() + " and newer" );
+        return index < 0 ? from : Math.min( to, index );
+    }
 
 	@Override
 	public String getName() {
@@ -4,19 +4,17 @@
  */
 package net.praqma.clearcase.ucm.utils.filters;
 
-import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Logger;
 import net.praqma.clearcase.ucm.entities.Baseline;
-import net.praqma.clearcase.ucm.utils.BaselineFilter;
-import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselineRangeFilter;
 
 /**
  *
  * @author Praqma
  */
-public class BeforeDate extends BaselineFilter {
+public class BeforeDate extends BaselineRangeFilter {
 
 	private static Logger logger = Logger.getLogger( BeforeDate.class.getName() );
 
@@ -27,28 +25,23 @@ public class BeforeDate extends BaselineFilter {
 	}  
     
     @Override
-    public int filter(BaselineList baselines) {
+    public boolean isAscending() {
+        return false;
+    }
+
+    /**
+     * End at the last baseline earlier than the date
+     */
+    @Override
+    protected int narrowTo( List<Baseline> ascending, long[] times, int from, int to ) {
         logger.fine( "Date is " + date );
-		
-		/* Sort the baselines */
-		Collections.sort( baselines, new BaselineList.DescendingDateSort() );
-		
-		int pruned = 0;
-		Iterator<Baseline> itDate = baselines.iterator();
-		while( itDate.hasNext() ) {
-			Baseline baseline = itDate.next();
-            logger.finest( String.format("%s==%s", baseline.getDate(), date) );
-            if( date.before( baseline.getDate() ) || date.compareTo( baseline.getDate() ) == 0 ) {
-                logger.finest( "REMOVED" );
-				itDate.remove();
-				pruned++;
-			} else {
-				/* We must be after date, since the list is sorted, there are no more baselines before date */
-				break;
-			}
-		}
-		
-		return pruned;
+
+        long time = date.getTime();
+        while( to > from && times[to - 1] >= time ) {
+            to--;
+        }
+
+        return to;
     }
 
     @Override
@@ -3,6 +3,7 @@ package net.praqma.clearcase.util;
 import net.praqma.clearcase.Branch;
 import net.praqma.clearcase.Label;
 import net.praqma.clearcase.api.ListVersionTree;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.container.LabelsForVersion;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
@@ -10,7 +11,11 @@ import net.praqma.clearcase.ucm.entities.Version;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
@@ -21,6 +26,16 @@ public class Labels {
 
     private static Logger logger = Logger.getLogger( Labels.class.getName() );
 
+    /**
+     * The maximum number of elements listed by one lsvtree, see {@link #getLabels(Collection, Branch)}
+     */
+    public static int LIST_CHUNK_SIZE = 200;
+
+    /**
+     * The maximum length of the path names listed by one lsvtree
+     */
+    public static int LIST_MAX_LENGTH = 6000;
+
     private Labels() {
 
     }
@@ -29,25 +44,196 @@ public class Labels {
         return getLabels( pathname.toString() + "@@", branch );
     }
 
-    public static List<LabelsForVersion> getLabels( String pathname, Branch branch ) throws CleartoolException, UnableToInitializeEntityException {
+    public static List<LabelsForVersion> getLabels( String pathname, final Branch branch ) throws CleartoolException, UnableToInitializeEntityException {
         logger.fine( "Get labels from " + pathname );
 
-        List<String> lines = new ListVersionTree().addPathName( pathname.toString() ).execute();
+        final List<LabelsForVersion> labels = new ArrayList<LabelsForVersion>();
+        final UnableToInitializeEntityException[] failure = new UnableToInitializeEntityException[1];
 
-        List<LabelsForVersion> labels = new ArrayList<LabelsForVersion>( lines.size() );
+        try {
+            new ListVersionTree().addPathName( pathname.toString() ).execute( new LineHandler() {
+                @Override
+                public void handle( String line ) {
+                    try {
+                        parse( line, branch, labels );
+                    } catch( UnableToInitializeEntityException e ) {
+                        /* Abort the listing */
+                        failure[0] = e;
+                        throw new IllegalStateException( e );
+                    }
+                }
+            } );
+        } catch( IllegalStateException e ) {
+            if( failure[0] != null ) {
+                throw failure[0];
+            }
+            throw e;
+        }
 
-        for( String line : lines ) {
-            /* Determine if there is a label */
-            Matcher m = Label.rx.matcher( line );
-            if( m.find() ) {
-                Version v = Version.get( m.group( 1 ) );
+        return labels;
+    }
 
-                if( branch == null || branch.equals( v.getUltimateBranch() ) ) {
-                    labels.add( new LabelsForVersion( v ).addLabels( Label.getLabels( m.group( 2 ) ) ) );
-                }
+    /**
+     * Get the labels of many elements, listing the version trees of hundreds of elements with one lsvtree.
+     * The output is split per element, in whatever order lsvtree prints them.
+     * If the listing of a chunk of elements fails, they are listed one by one, as are the elements nothing was printed for.
+     * @param pathnames The element path names, for example foo.c@@
+     * @return The labels of each element, mapped by the path name given
+     */
+    public static Map<String, List<LabelsForVersion>> getLabels( Collection<String> pathnames, Branch branch ) throws CleartoolException, UnableToInitializeEntityException {
+        Map<String, List<LabelsForVersion>> labels = new LinkedHashMap<String, List<LabelsForVersion>>();
+
+        List<String> chunk = new ArrayList<String>();
+        int length = 0;
+        for( String pathname : pathnames ) {
+            if( labels.containsKey( pathname ) ) {
+                continue;
+            }
+            labels.put( pathname, new ArrayList<LabelsForVersion>() );
+
+            if( chunk.size() > 0 && ( chunk.size() >= LIST_CHUNK_SIZE || length + pathname.length() + 3 > LIST_MAX_LENGTH ) ) {
+                getLabels( chunk, branch, labels );
+                chunk.clear();
+                length = 0;
             }
+            chunk.add( pathname );
+            length += pathname.length() + 3;
+        }
+
+        if( chunk.size() > 0 ) {
+            getLabels( chunk, branch, labels );
         }
 
         return labels;
     }
+
+    private static void getLabels( final List<String> chunk, final Branch branch, final Map<String, List<LabelsForVersion>> labels ) throws CleartoolException, UnableToInitializeEntityException {
+        if( chunk.size() == 1 ) {
+            labels.put( chunk.get( 0 ), getLabels( chunk.get( 0 ), branch ) );
+            return;
+        }
+
+        logger.fine( "Get labels from " + chunk.size() + " elements" );
+
+        ListVersionTree lsvtree = new ListVersionTree();
+        for( String pathname : chunk ) {
+            lsvtree.addPathName( pathname );
+        }
+
+        final UnableToInitializeEntityException[] failure = new UnableToInitializeEntityException[1];
+        final Map<String, List<LabelsForVersion>> listed = new LinkedHashMap<String, List<LabelsForVersion>>();
+
+        try {
+            lsvtree.execute( new LineHandler() {
+                /* The element of the current lines and its index in the chunk */
+                private String element = null;
+                private int index = -1;
+
+                @Override
+                public void handle( String line ) {
+                    int at = line.indexOf( "@@" );
+                    if( at < 0 ) {
+                        return;
+                    }
+
+                    /* The lines of the next element */
+                    String prefix = line.substring( 0, at );
+                    if( !prefix.equals( element ) ) {
+                        element = prefix;
+                        index = indexOf( chunk, prefix, index + 1, listed.keySet() );
+                        if( index < 0 ) {
+                            logger.fine( "Ignoring the lines of " + prefix + ", it was not listed" );
+                        }
+                    }
+
+                    if( index < 0 ) {
+                        return;
+                    }
+
+                    String key = chunk.get( index );
+                    List<LabelsForVersion> l = listed.get( key );
+                    if( l == null ) {
+                        l = new ArrayList<LabelsForVersion>();
+                        listed.put( key, l );
+                    }
+
+                    try {
+                        parse( line, branch, l );
+                    } catch( UnableToInitializeEntityException e ) {
+                        /* Abort the listing */
+                        failure[0] = e;
+                        throw new IllegalStateException( e );
+                    }
+                }
+            } );
+        } catch( IllegalStateException e ) {
+            if( failure[0] != null ) {
+                throw failure[0];
+            }
+            throw e;
+        } catch( CleartoolException e ) {
+            logger.fine( "Listing " + chunk.size() + " elements failed, listing them one by one: " + e.getMessage() );
+            for( String pathname : chunk ) {
+                labels.put( pathname, getLabels( pathname, branch ) );
+            }
+            return;
+        }
+
+        labels.putAll( listed );
+
+        /* The elements that were not recognized in the output */
+        for( String pathname : chunk ) {
+            if( !listed.containsKey( pathname ) ) {
+                logger.fine( "Nothing listed for " + pathname + ", listing it alone" );
+                labels.put( pathname, getLabels( pathname, branch ) );
+            }
+        }
+    }
+
+    /**
+     * Find the path name of an element printed by lsvtree in the whole chunk, the elements may be printed in any order.
+     * The most specific path name wins, preferring the ones not listed yet and then the ones from the given index.
+     * @return The index of the path name, or -1
+     */
+    private static int indexOf( List<String> pathnames, String element, int from, Set<String> listed ) {
+        int best = -1;
+        int bestLength = -1;
+        boolean bestListed = true;
+        for( int n = 0 ; n < pathnames.size() ; n++ ) {
+            int i = ( Math.max( 0, from ) + n ) % pathnames.size();
+            String pathname = pathnames.get( i );
+            if( pathname.endsWith( "@@" ) ) {
+                pathname = pathname.substring( 0, pathname.length() - 2 );
+            }
+            while( pathname.startsWith( "." + File.separator ) ) {
+                pathname = pathname.substring( 2 );
+            }
+
+            /* Relative path names are printed as absolute */
+            if( !element.equals( pathname ) && !element.endsWith( File.separator + pathname ) ) {
+                continue;
+            }
+
+            boolean isListed = listed.contains( pathnames.get( i ) );
+            if( best < 0 || ( bestListed && !isListed ) || ( bestListed == isListed && pathname.length() > bestLength ) ) {
+                best = i;
+                bestLength = pathname.length();
+                bestListed = isListed;
+            }
+        }
+
+        return best;
+    }
+
+    private static void parse( String line, Branch branch, List<LabelsForVersion> labels ) throws UnableToInitializeEntityException {
+        /* Determine if there is a label */
+        Matcher m = Label.rx.matcher( line );
+        if( m.find() ) {
+            Version v = Version.get( m.group( 1 ) );
+
+            if( branch == null || branch.equals( v.getUltimateBranch() ) ) {
+                labels.add( new LabelsForVersion( v ).addLabels( Label.getLabels( m.group( 2 ) ) ) );
+            }
+        }
+    }
 }
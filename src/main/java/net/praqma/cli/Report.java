@@ -2,21 +2,32 @@ package net.praqma.cli;
 
 import net.praqma.clearcase.Branch;
 import net.praqma.clearcase.Find;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.command.ListType;
 import net.praqma.clearcase.container.LabelsForVersion;
-import net.praqma.clearcase.exceptions.CleartoolException;
-import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.ucm.entities.Version;
 import net.praqma.clearcase.util.Labels;
 import net.praqma.util.option.Option;
 import net.praqma.util.option.Options;
 import org.apache.commons.io.FileUtils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -35,10 +46,46 @@ public class Report extends CLI {
     private int lengthOfPath = 0;
     private boolean showFullPath = false;
 
-    private DateFormat dateFormatter;
+    private DateFormat dateFormatter = new SimpleDateFormat( "yyyy.MM.dd" );
 
     private boolean verbose = false;
 
+    /* The number of partitions processed at a time */
+    private int parallelism = 1;
+
+    /* Partition the branches by the subtrees of the path */
+    private boolean subtrees = false;
+
+    /* The time of the report, kept in its state */
+    private long now;
+
+    /* The state of the previous report, if incremental */
+    private File state;
+
+    /* Only versions created since, if incremental */
+    private Date since;
+
+    /* The time of the last full report, kept in the state */
+    private long full;
+
+    /* Versions created this long before the previous report are found again, the clocks of the hosts may differ */
+    private long sinceMargin = DEFAULT_SINCE_MARGIN;
+
+    /* A full report is made when the last is older, and labels added to older versions and removed versions are seen */
+    private long fullAfter = DEFAULT_FULL_AFTER;
+
+    /* The memory used for the rows of the report, beyond it they are sorted on disk */
+    private long memory = ReportWriter.DEFAULT_MEMORY;
+
+    /* The rows of the report */
+    private ReportWriter writer;
+
+    private static final int STATE_MAGIC = 0x52505254; /* RPRT */
+    private static final int STATE_VERSION = 3;
+
+    public static final long DEFAULT_SINCE_MARGIN = 60 * 60 * 1000;
+    public static final long DEFAULT_FULL_AFTER = 7L * 24 * 60 * 60 * 1000;
+
     @Override
     public void perform( String[] arguments ) throws Exception {
         Options o = new Options( "1.0.0" );
@@ -49,6 +96,12 @@ public class Report extends CLI {
         Option odateFormat = new Option( "dateFormat", "d", false, 1, "Date format, default is \"yyyy.MM.dd\"" );
         Option oOutput = new Option( "outputFile", "o", false, 1, "Output the result to the specified file, otherwise dump it to the console." );
         Option oIgnore = new Option( "ignore", "i", false, 0, "Ignore this run, if the output file already exists." );
+        Option oParallel = new Option( "parallel", "t", false, 1, "The number of branches, or subtrees, processed in parallel, default is 1" );
+        Option oSubtrees = new Option( "subtrees", "u", false, 0, "Process each subtree of the path by itself, for each branch. Only the elements visible in the view are reported" );
+        Option oState = new Option( "state", "S", false, 1, "Keep the state of the report in this file, and only find the versions created since the previous report. Removed elements and branches are seen by each report, labels added to older versions and removed versions by the next full report." );
+        Option oMargin = new Option( "margin", "g", false, 1, "With a state, find the versions created this many minutes before the previous report again, default is " + DEFAULT_SINCE_MARGIN / 60 / 1000 );
+        Option oFullAfter = new Option( "fullAfter", "F", false, 1, "With a state, make a full report when the last is this many days old, default is " + DEFAULT_FULL_AFTER / 24 / 60 / 60 / 1000 );
+        Option oMemory = new Option( "memory", "m", false, 1, "The memory in MB used for the rows of the report, beyond it they are sorted on disk, default is " + ReportWriter.DEFAULT_MEMORY / 1024 / 1024 );
 
 
         o.setOption( opath );
@@ -57,6 +110,12 @@ public class Report extends CLI {
         o.setOption( odateFormat );
         o.setOption( oOutput );
         o.setOption( oIgnore );
+        o.setOption( oParallel );
+        o.setOption( oSubtrees );
+        o.setOption( oState );
+        o.setOption( oMargin );
+        o.setOption( oFullAfter );
+        o.setOption( oMemory );
 
         o.setDefaultOptions();
 
@@ -82,6 +141,30 @@ public class Report extends CLI {
             verbose = true;
         }
 
+        if( oParallel.isUsed() ) {
+            parallelism = Math.max( 1, Integer.parseInt( oParallel.getString().trim() ) );
+        }
+
+        if( oSubtrees.isUsed() ) {
+            subtrees = true;
+        }
+
+        if( oState.isUsed() ) {
+            state = new File( oState.getString() );
+        }
+
+        if( oMargin.isUsed() ) {
+            sinceMargin = Math.max( 0, Long.parseLong( oMargin.getString().trim() ) ) * 60 * 1000;
+        }
+
+        if( oFullAfter.isUsed() ) {
+            fullAfter = Math.max( 0, Long.parseLong( oFullAfter.getString().trim() ) ) * 24 * 60 * 60 * 1000;
+        }
+
+        if( oMemory.isUsed() ) {
+            memory = Math.max( 1, Long.parseLong( oMemory.getString().trim() ) ) * 1024 * 1024;
+        }
+
         if( oOutput.isUsed() && oIgnore.isUsed() ) {
             File outputFile = new File( oOutput.getString() );
             if( outputFile.exists() ) {
@@ -90,41 +173,194 @@ public class Report extends CLI {
             }
         }
 
-        if( opath.isUsed() ) {
-            path = new File( opath.getString() );
-        } else {
-            path = new File( System.getProperty( "user.dir" ) );
-        }
-        lengthOfPath = path.getAbsolutePath().length();
-        logger.fine( "Path is " + path.getAbsolutePath() + ", " + lengthOfPath );
-
         if( odateFormat.isUsed()) {
             dateFormatter = new SimpleDateFormat( odateFormat.getString() );
-        } else {
-            dateFormatter = new SimpleDateFormat( "yyyy.MM.dd" );
         }
 
+        report( opath.isUsed() ? new File( opath.getString() ) : new File( System.getProperty( "user.dir" ) ), oOutput.isUsed() ? new File( oOutput.getString() ) : null );
+    }
+
+    /**
+     * Keep the state of the report in the file, and only find the versions created since the previous report
+     */
+    public Report setState( File state ) {
+        this.state = state;
+        return this;
+    }
+
+    /**
+     * Find the versions created this many milliseconds before the previous report again, the clocks of the hosts may differ
+     */
+    public Report setSinceMargin( long margin ) {
+        this.sinceMargin = margin;
+        return this;
+    }
+
+    /**
+     * Make a full report when the last is this many milliseconds old, even with a state
+     */
+    public Report setFullAfter( long fullAfter ) {
+        this.fullAfter = fullAfter;
+        return this;
+    }
+
+    /**
+     * Process each subtree of the path by itself, for each branch
+     */
+    public Report setSubtrees( boolean subtrees ) {
+        this.subtrees = subtrees;
+        return this;
+    }
+
+    /**
+     * Report the versions of a path
+     * @param outputFile The file the report is written to, or null for the console
+     */
+    public void report( File path, File outputFile ) throws Exception {
+        this.path = path;
+        lengthOfPath = path.getAbsolutePath().length();
+        logger.fine( "Path is " + path.getAbsolutePath() + ", " + lengthOfPath );
+
         ListType ls = new ListType().setLocal().setBranchType().setViewRoot( path );
         List<Branch> branches = ls.list();
 
-        Map<File, Entry> map = new HashMap<File, Entry>();
+        now = System.currentTimeMillis();
+        full = now;
+        since = null;
 
-        for( Branch branch : branches ) {
-            findBranch( path, branch, map );
+        DataInputStream previous = null;
+        if( state != null && state.exists() ) {
+            previous = openState( state );
         }
 
-        if( oOutput.isUsed() ) {
-            File outputFile = new File( oOutput.getString() );
-            if( outputFile.exists() ) {
-                FileUtils.forceDelete( outputFile );
+        writer = new ReportWriter( branches, memory );
+        try {
+            if( previous != null ) {
+                readState( state, previous );
+            }
+
+            process( partition( path, branches ) );
+
+            PrintStream out = System.out;
+            if( outputFile != null ) {
+                if( outputFile.exists() ) {
+                    FileUtils.forceDelete( outputFile );
+                }
+                out = new PrintStream( outputFile );
+            }
+
+            try {
+                dump( out );
+            } finally {
+                if( out != System.out ) {
+                    out.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * The options changing the rows, a state written with other options is not used
+     */
+    private String getStateKey() {
+        String pattern = dateFormatter instanceof SimpleDateFormat ? ( (SimpleDateFormat) dateFormatter ).toPattern() : dateFormatter.toString();
+        return path.getAbsolutePath() + "|" + sep + "|" + showFullPath + "|" + pattern;
+    }
+
+    /**
+     * Open the state of the previous report
+     * @return The state positioned at its entries, or null if the state can not be used or a full report is due
+     */
+    private DataInputStream openState( File file ) throws IOException {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try {
+            if( in.readInt() != STATE_MAGIC || in.readInt() != STATE_VERSION ) {
+                logger.warning( file + " is not a report state, making a full report" );
+                in.close();
+                return null;
+            }
+
+            if( !in.readUTF().equals( getStateKey() ) ) {
+                logger.info( "The report state " + file + " was written with other options, making a full report" );
+                in.close();
+                return null;
+            }
+
+            long time = in.readLong();
+            long last = in.readLong();
+            if( now - last >= fullAfter ) {
+                logger.info( "The last full report was " + new Date( last ) + ", making a full report" );
+                in.close();
+                return null;
+            }
+
+            logger.info( "Reading the state of the report " + new Date( time ) );
+            since = new Date( time - sinceMargin );
+            full = last;
+
+            return in;
+        } catch( IOException e ) {
+            logger.warning( "Unable to read the report state " + file + ", making a full report: " + e.getMessage() );
+            in.close();
+            return null;
+        }
+    }
+
+    /**
+     * Add the entries of the previous report to the rows, they rank before any found.
+     * Their branches are those the elements are found on now, see {@link #findPresent(Find, Branch)}.
+     */
+    private void readState( File file, DataInputStream in ) throws IOException {
+        try {
+            long rank = 0;
+            while( in.readBoolean() ) {
+                String f = ReportWriter.readString( in );
+                String row = ReportWriter.readString( in );
+                long date = in.readLong();
+
+                writer.add( f, row, date, rank++, Collections.<Branch>emptyList() );
             }
-            dump( new PrintStream( outputFile ), map );
-        } else {
-            dump( System.out, map );
+
+            logger.info( "Read the state of " + rank + " elements" );
+        } catch( IOException e ) {
+            /* The rows are already added */
+            throw new IOException( "Unable to read the report state " + file + ", remove it to make a full report: " + e.getMessage(), e );
+        } finally {
+            in.close();
         }
     }
 
-    public <K, V> void dump( PrintStream out, Map<K, V> map ) {
+    private DataOutputStream createState( File file ) throws IOException {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        out.writeInt( STATE_MAGIC );
+        out.writeInt( STATE_VERSION );
+        out.writeUTF( getStateKey() );
+        out.writeLong( now );
+        out.writeLong( full );
+
+        return out;
+    }
+
+    private void writeState( DataOutputStream out, String path, String row, long date ) throws IOException {
+        out.writeBoolean( true );
+        ReportWriter.writeString( out, path );
+        ReportWriter.writeString( out, row );
+        out.writeLong( date );
+    }
+
+    private static void replace( File tmp, File file ) throws IOException {
+        if( file.exists() && !file.delete() || !tmp.renameTo( file ) ) {
+            throw new IOException( "Unable to replace the report state " + file );
+        }
+    }
+
+    /**
+     * Print the report, the rows sorted by path, so a full and an incremental report print the same.
+     * The branches of an element are printed in the order of the branches. If incremental, the state is written with the rows.
+     */
+    public void dump( final PrintStream out ) throws IOException {
         /* Build header */
         StringBuilder b = new StringBuilder(  ).
                 append( "Element oid" ).append( sep ).
@@ -140,12 +376,34 @@ public class Report extends CLI {
 
         out.println( b.toString() );
 
-        for( K key : map.keySet() ) {
-            out.print( map.get( key ).toString() );
+        final File tmp = state != null ? new File( state.getPath() + ".tmp" ) : null;
+        final DataOutputStream stateOut = tmp != null ? createState( tmp ) : null;
+        try {
+            writer.write( new ReportWriter.RowHandler() {
+                @Override
+                public void handle( String path, String row, long date, List<Branch> branches ) throws IOException {
+                    out.print( row );
+
+                    /* Add the branches */
+                    out.println( printBranches( branches ) );
+
+                    if( stateOut != null ) {
+                        writeState( stateOut, path, row, date );
+                    }
+                }
+            } );
+
+            if( stateOut != null ) {
+                stateOut.writeBoolean( false );
+            }
+        } finally {
+            if( stateOut != null ) {
+                stateOut.close();
+            }
+        }
 
-            /* Add the branches */
-            //out.println( branches.get( key ).toString() );
-            out.println( printBranches( branches.get( key ) ) );
+        if( tmp != null ) {
+            replace( tmp, state );
         }
     }
 
@@ -194,18 +452,171 @@ public class Report extends CLI {
     }
 
     /**
-     * Track the branches containing a given element.
-      */
-    private Map<File, List<Branch>> branches = new HashMap<File, List<Branch>>();
+     * The versions of a branch in a path name, processed by one worker
+     */
+    private class Partition {
+        private final int index;
+        private final Branch branch;
+        private final String pathname;
+        private final boolean recurse;
+
+        private Partition( int index, Branch branch, String pathname, boolean recurse ) {
+            this.index = index;
+            this.branch = branch;
+            this.pathname = pathname;
+            this.recurse = recurse;
+        }
 
-    private void findBranch( File path, Branch branch, Map<File, Entry> map ) throws Exception {
-        logger.info( "Processing " + branch );
+        /**
+         * Of rows equally young, the row of the first partition wins, and the first found of a partition
+         */
+        private long rank( int i ) {
+            return ( (long) ( index + 1 ) << 32 ) | i;
+        }
 
-        Find find = new Find().addPathName( "." ).setFindAll().print().setViewRoot( path ).setVersionQuery( "version(.../" + branch.getName() + "/LATEST)" ).acceptErrors();
+        @Override
+        public String toString() {
+            return branch + ( subtrees ? " in " + pathname : "" );
+        }
+    }
+
+    /**
+     * Partition the work by branch, and if wanted, by the subtrees of the path.
+     * Not partitioned, the whole vob of the path is searched with -all. Partitioned, the path itself is searched without recursing,
+     * and each directory in it is searched by itself, without -all as it would search the whole vob for each subtree.
+     * So only the elements visible in the view are found.
+     */
+    private List<Partition> partition( File path, List<Branch> branches ) {
+        List<Partition> partitions = new ArrayList<Partition>();
+        for( Branch branch : branches ) {
+            if( !subtrees ) {
+                partitions.add( new Partition( partitions.size(), branch, ".", true ) );
+                continue;
+            }
+
+            partitions.add( new Partition( partitions.size(), branch, ".", false ) );
+            File[] files = path.listFiles();
+            if( files != null ) {
+                Arrays.sort( files );
+                for( File file : files ) {
+                    if( file.isDirectory() ) {
+                        partitions.add( new Partition( partitions.size(), branch, file.getName(), true ) );
+                    }
+                }
+            }
+        }
 
-        List<Version> versions = null;
+        return partitions;
+    }
+
+    /**
+     * Process the partitions with a pool of workers, adding the rows as they are found.
+     * The youngest row of a file wins, and of rows equally young, the first as when processed one by one.
+     */
+    private void process( List<Partition> partitions ) throws Exception {
+        logger.fine( "Processing " + partitions.size() + " partitions, " + parallelism + " at a time" );
+
+        final Progress progress = new Progress( partitions.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( parallelism, Math.max( 1, partitions.size() ) ) );
         try {
-            versions = find.find();
+            List<Future<Partition>> futures = new ArrayList<Future<Partition>>( partitions.size() );
+            for( final Partition partition : partitions ) {
+                futures.add( executor.submit( new Callable<Partition>() {
+                    @Override
+                    public Partition call() throws Exception {
+                        findBranch( path, partition, progress );
+                        return partition;
+                    }
+                } ) );
+            }
+
+            for( Future<Partition> future : futures ) {
+                try {
+                    future.get();
+                } catch( ExecutionException e ) {
+                    if( e.getCause() instanceof Exception ) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+
+            progress.done();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The progress of the workers, the time left is estimated from the versions processed so far,
+     * and for the partitions not yet found, from the number of versions of those found.
+     */
+    private class Progress {
+        private final long start = System.currentTimeMillis();
+        private final int partitions;
+
+        private int listed = 0;
+        private int found = 0;
+        private int processed = 0;
+        private long printed = 0;
+
+        private Progress( int partitions ) {
+            this.partitions = partitions;
+        }
+
+        private synchronized void found( int versions ) {
+            listed++;
+            found += versions;
+        }
+
+        private synchronized void processed() {
+            processed++;
+
+            /* Not more than a few times a second */
+            long time = System.currentTimeMillis();
+            if( verbose || time - printed < 250 ) {
+                return;
+            }
+            printed = time;
+
+            double minutePerVersion = (double) ( time - start ) / 60000 / processed;
+            double total = (double) found / listed * partitions;
+            double timeLeft = ( total - processed ) * minutePerVersion;
+
+            String str = Math.floor( timeLeft ) + " minutes";
+            if( timeLeft <= 1.0 ) {
+                str = "Within a minute";
+            }
+
+            System.out.print( "\rProcessing version #" + processed + " of " + found + " in " + listed + " of " + partitions + " partitions, " + getPercentage( processed, (int) total, 10 ) + "% Estimated time left: " + str + "        " );
+        }
+
+        private synchronized void done() {
+            if( !verbose ) {
+                System.out.println( "\rProcessed " + processed + " versions in " + partitions + " partitions [Done]                                           " );
+            }
+        }
+    }
+
+    private void findBranch( File path, Partition partition, Progress progress ) throws Exception {
+        Branch branch = partition.branch;
+        logger.info( "Processing " + partition );
+
+        String query = "version(.../" + branch.getName() + "/LATEST)";
+        if( since != null ) {
+            /* Incremental, the entries of older versions are in the state, and only the elements still found are reported */
+            findPresent( getFind( partition, query ), branch );
+            query += " && created_since(" + new SimpleDateFormat( "dd-MMM-yyyy.HH:mm:ss", Locale.US ).format( since ) + ")";
+        }
+
+        Find find = getFind( partition, query );
+
+        /* The fields of the report are described with the find, not per version */
+        find.project( Find.Field.ELEMENT_OID, Find.Field.VERSION_OID, Find.Field.DATE, Find.Field.KIND, Find.Field.USER );
+
+        List<Find.Record> versions = null;
+        try {
+            versions = find.findRecords();
         } catch( Exception e ) {
             File[] fs = path.listFiles();
             for( File f : fs ) {
@@ -217,38 +628,22 @@ public class Report extends CLI {
 
         logger.fine( "I found " + versions.size() + " versions" );
 
-        //List<Entry> rows = new ArrayList<Entry>( versions.size() );
-
-        long startTime = System.currentTimeMillis();
-        long elapsedTime = 0;
+        /* The labels of the elements, listed for many elements at a time */
+        List<String> elements = new ArrayList<String>( versions.size() );
+        for( Find.Record record : versions ) {
+            elements.add( record.getVersion().getQualifiedFilename() );
+        }
+        Map<String, List<LabelsForVersion>> labels = Labels.getLabels( elements, branch );
 
-        //for( Version v : versions ) {
         int size = versions.size();
+        progress.found( size );
         for( int i = 0 ; i < size ; ++i ) {
-            Version v = versions.get( i );
+            Find.Record record = versions.get( i );
+            Version v = record.getVersion();
 
-            if( !verbose ) {
-                elapsedTime = System.currentTimeMillis() - startTime;
-                double minutes = (double)elapsedTime / 60000;
-                //logger.info( "Elapsed: " + elapsedTime + ", minutes: " + minutes );
-                double minutePerVersion = minutes / ( i + 1 );
-                //logger.info( "Minutes per version: " + minutePerVersion );
-                int rest = size - i;
-                double timeLeft = ( rest * minutePerVersion );
-
-                String str = Math.floor( timeLeft ) + " minutes";
-                if( timeLeft <= 1.0 ) {
-                    str = "Within a minute";
-                }
-
-                System.out.print( "\rProcessing version #" + i + " , " + getPercentage( i, size, 10 ) + "% Estimated time left: " + str + "        " );
-            }
+            progress.processed();
 
             StringBuilder sb = new StringBuilder();
-            File file = v.getFile();
-
-            Date now = new Date();
-            long secs = now.getTime();
 
             logger.finer( "Version: " + v );
             logger.finer( "Version: " + v.getDate() );
@@ -261,10 +656,10 @@ public class Report extends CLI {
             }
 
             /* Get element oid */
-            sb.append( v.getElementObjectId() ).append( sep );
+            sb.append( record.getElementObjectId() ).append( sep );
 
             /* Get version oid */
-            sb.append( v.getObjectId() ).append( sep );
+            sb.append( record.getObjectId() ).append( sep );
 
             /* Get file */
             if( showFullPath ) {
@@ -273,14 +668,11 @@ public class Report extends CLI {
                 sb.append( v.getFile().getAbsolutePath().substring( lengthOfPath ) ).append( sep ); // Name
             }
 
-            /* Get age */
-            long age = secs - v.getDate().getTime();
-
             /* Get type */
-            sb.append( v.isDirectory() ? "directory" : "file" ).append( sep ); // Absolute file
+            sb.append( Boolean.TRUE.equals( record.isDirectory() ) ? "directory" : "file" ).append( sep ); // Absolute file
 
             /* Get user */
-            sb.append( v.getUser() ).append( sep ); // The user
+            sb.append( record.getUser() ).append( sep ); // The user
 
             /* Get branch name */
             sb.append( branch.getName() ).append( sep );
@@ -289,39 +681,64 @@ public class Report extends CLI {
             sb.append( v.getRevision() ).append( sep );
 
             /* TODO Labeled versions, case 9223 */
-            sb.append( getVersionNumbers( compileLabeledVersions( v.getQualifiedFilename(), branch ) ) ).append( sep );
+            sb.append( getVersionNumbers( compileLabeledVersions( labels.get( v.getQualifiedFilename() ), branch ) ) ).append( sep );
 
             /* Get date */
-            sb.append( dateFormatter.format( v.getDate() ) ).append( sep );
-
-            /* Put to map */
-            if( map.containsKey( file ) ) {
-                logger.fine( "Ages " + age + "<" + map.get( file ).age );
-                if( map.get( file ).age > age ) {
-                    logger.fine( "Replaced!" );
-                    map.put( file, new Entry( sb.toString(), age ) );
-                }
-            } else {
-                map.put( file, new Entry( sb.toString(), age ) );
+            synchronized( dateFormatter ) {
+                sb.append( dateFormatter.format( v.getDate() ) ).append( sep );
             }
 
-            /**/
-            if( branches.containsKey( file ) ) {
-                List<Branch> b = branches.get( file );
-                b.add( branch );
-            } else {
-                List<Branch> bs = new ArrayList<Branch>(  );
-                bs.add( branch );
-                branches.put( file, bs );
-            }
+            /* The youngest row of the file wins */
+            writer.add( v.getFile().getPath(), sb.toString(), v.getDate().getTime(), partition.rank( i ), Collections.singletonList( branch ) );
         }
-        if( !verbose ) {
-            System.out.println( "\rProcessed " + size + " versions [Done]                                           " );
+    }
+
+    private Find getFind( Partition partition, String query ) {
+        Find find = new Find().addPathName( partition.pathname ).print().setViewRoot( path ).setVersionQuery( query ).acceptErrors();
+        if( !subtrees ) {
+            /* The whole vob, also the elements not visible in the view */
+            find.setFindAll();
+        } else if( !partition.recurse ) {
+            find.setNoRecurse();
+        }
+        return find;
+    }
+
+    /**
+     * Add the elements having a version on the branch, as a full report would find them, without describing the versions.
+     * An element of the state no longer found on any branch is not reported, and its branches are the ones found.
+     */
+    private void findPresent( Find find, final Branch branch ) throws Exception {
+        final List<Branch> branches = Collections.singletonList( branch );
+        final Exception[] failure = new Exception[1];
+        try {
+            find.find( new LineHandler() {
+                @Override
+                public void handle( String line ) {
+                    try {
+                        Version v = Version.getVersion( line );
+                        if( !( v.getUltimateBranch().getName().equals( "main" ) && v.getRevision().equals( 0 ) ) ) {
+                            writer.present( v.getFile().getPath(), branches );
+                        }
+                    } catch( Exception e ) {
+                        /* Abort the find */
+                        failure[0] = e;
+                        throw new IllegalStateException( e );
+                    }
+                }
+            } );
+        } catch( IllegalStateException e ) {
+            if( failure[0] != null ) {
+                throw failure[0];
+            }
+            throw e;
         }
     }
 
-    private List<Integer> compileLabeledVersions( String pathname, Branch branch ) throws UnableToInitializeEntityException, CleartoolException {
-        List<LabelsForVersion> lfvs = Labels.getLabels( pathname, branch );
+    private List<Integer> compileLabeledVersions( List<LabelsForVersion> lfvs, Branch branch ) {
+        if( lfvs == null ) {
+            return Collections.emptyList();
+        }
 
         List<Integer> versionNumbers = new ArrayList<Integer>( lfvs.size() );
 
@@ -339,18 +756,4 @@ public class Report extends CLI {
 
         return r;
     }
-
-    public class Entry {
-        String string;
-        long age;
-        public Entry( String string, long age ) {
-            this.string = string;
-            this.age = age;
-        }
-
-        @Override
-        public String toString() {
-            return string;
-        }
-    }
 }
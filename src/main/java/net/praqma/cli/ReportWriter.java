@@ -0,0 +1,828 @@
+package net.praqma.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import net.praqma.clearcase.Branch;
+
+/**
+ * The rows of a {@link Report}, kept with bounded memory.<br>
+ * A row is written to a spill file when it is added, and only a compact index is kept in memory: for each element,
+ * keyed by its path, the date, rank and offset of the youngest row and the branches it was found on.
+ * The index is ordered by two hashes of the path, paths of equal hashes are told apart by the path itself.
+ * The youngest row of an element wins, of rows equally young the one of the lowest rank.
+ * When the index exceeds its share of the memory it is sorted and written to disk, and the parts are merged in the end.<br>
+ * The winning rows are handed out sorted by path, as {@link File}s are sorted, sorting on disk if they do not fit in memory.
+ * No row is final before every branch has been searched, a later branch may find a younger version of any element,
+ * and the sorted output must wait for the last row. So nothing is handed out before {@link #write(RowHandler)}.
+ * Paths and rows are stored as length prefixed UTF-8, a row is not limited to the 64K of {@link DataOutput#writeUTF(String)}.<br>
+ * The branches of an element can also be given without a row, see {@link #present(String, Collection)}.
+ * An element without a row, or found on no branch, is not handed out.
+ *
+ * @author cwolfgang
+ */
+public class ReportWriter {
+
+    private static Logger logger = Logger.getLogger( ReportWriter.class.getName() );
+
+    public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+
+    /* The number of runs on disk merged at a time */
+    private static final int MERGE_RUNS = 32;
+
+    /**
+     * Handles the rows, in the order of the paths
+     */
+    public interface RowHandler {
+        public void handle( String path, String row, long date, List<Branch> branches ) throws IOException;
+    }
+
+    /* The branches, indexed by their place in the masks */
+    private final List<Branch> branches;
+    private final long memory;
+
+    private final File spillFile;
+    private final CountingOutputStream spillCounter;
+    private final DataOutputStream spill;
+
+    private Index index;
+    private final List<File> runs = new ArrayList<File>();
+
+    /**
+     * @param branches The branches in the order they are printed for an element
+     * @param memory The memory in bytes used for the index and the sorting
+     */
+    public ReportWriter( List<Branch> branches, long memory ) throws IOException {
+        this.branches = new ArrayList<Branch>( branches );
+        this.memory = memory;
+        this.spillFile = File.createTempFile( "report", ".rows" );
+        this.spillCounter = new CountingOutputStream( new BufferedOutputStream( new FileOutputStream( spillFile ) ) );
+        this.spill = new DataOutputStream( spillCounter );
+        this.index = new Index( words() );
+    }
+
+    /**
+     * Add a row of an element
+     * @param rank Of rows equally young, the row of the lowest rank wins
+     * @param branches The branches the element is found on
+     */
+    public synchronized void add( String path, String row, long date, long rank, Collection<Branch> branches ) throws IOException {
+        long offset = spillCounter.getCount();
+        writeString( spill, row );
+
+        Entry entry = new Entry( path, date, rank, offset, mask( branches ) );
+        index.add( entry );
+
+        /* Half the memory for the index */
+        if( index.bytes() > memory / 2 ) {
+            spillIndex();
+        }
+    }
+
+    /**
+     * Add the branches an element is found on, without a row.
+     * A row added without branches is only handed out if the element is also found on a branch.
+     */
+    public synchronized void present( String path, Collection<Branch> branches ) throws IOException {
+        /* Never younger than a row */
+        index.add( new Entry( path, Long.MIN_VALUE, Long.MAX_VALUE, -1, mask( branches ) ) );
+
+        if( index.bytes() > memory / 2 ) {
+            spillIndex();
+        }
+    }
+
+    /**
+     * Hand the winning rows to the handler, sorted by path
+     */
+    public synchronized void write( RowHandler handler ) throws IOException {
+        spill.flush();
+
+        /* The entries of the index, sorted by key */
+        Iterator<Entry> entries;
+        List<Iterator<Entry>> parts = new ArrayList<Iterator<Entry>>();
+        for( File run : runs ) {
+            parts.add( new EntryReader( run, words() ) );
+        }
+        parts.add( index.sorted().iterator() );
+        entries = combine( merge( parts, KEY_ORDER ) );
+
+        /* Sort the winning rows by path */
+        Sorter sorter = new Sorter( memory / 2 );
+        RandomAccessFile rows = new RandomAccessFile( spillFile, "r" );
+        try {
+            while( entries.hasNext() ) {
+                Entry entry = entries.next();
+                if( entry.offset < 0 || isEmpty( entry.mask ) ) {
+                    /* Not reported, or no longer found on any branch */
+                    continue;
+                }
+                rows.seek( entry.offset );
+                sorter.add( new Row( entry.path, readString( rows ), entry.date, entry.mask ) );
+            }
+        } catch( IOException e ) {
+            sorter.close();
+            throw e;
+        } finally {
+            rows.close();
+        }
+
+        try {
+            Iterator<Row> sorted = sorter.sorted();
+            while( sorted.hasNext() ) {
+                Row row = sorted.next();
+                handler.handle( row.path, row.row, row.date, branches( row.mask ) );
+            }
+        } finally {
+            sorter.close();
+        }
+    }
+
+    /**
+     * Delete the files on disk
+     */
+    public synchronized void close() {
+        try {
+            spill.close();
+        } catch( IOException e ) {
+            logger.fine( "Unable to close " + spillFile + ": " + e.getMessage() );
+        }
+        spillFile.delete();
+        for( File run : runs ) {
+            run.delete();
+        }
+    }
+
+    private void spillIndex() throws IOException {
+        File run = File.createTempFile( "report", ".index" );
+        logger.fine( "Writing " + index.size() + " index entries to " + run );
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( run ) ) );
+        try {
+            for( Entry entry : index.sorted() ) {
+                entry.write( out );
+            }
+        } finally {
+            out.close();
+        }
+
+        runs.add( run );
+        index = new Index( words() );
+
+        if( runs.size() >= MERGE_RUNS ) {
+            mergeIndex();
+        }
+    }
+
+    /**
+     * Merge the runs of the index into one
+     */
+    private void mergeIndex() throws IOException {
+        File run = File.createTempFile( "report", ".index" );
+        logger.fine( "Merging " + runs.size() + " runs of the index to " + run );
+
+        List<Iterator<Entry>> parts = new ArrayList<Iterator<Entry>>();
+        for( File r : runs ) {
+            parts.add( new EntryReader( r, words() ) );
+        }
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( run ) ) );
+        try {
+            Iterator<Entry> entries = combine( merge( parts, KEY_ORDER ) );
+            while( entries.hasNext() ) {
+                entries.next().write( out );
+            }
+        } finally {
+            out.close();
+        }
+
+        for( File r : runs ) {
+            r.delete();
+        }
+        runs.clear();
+        runs.add( run );
+    }
+
+    /* Branches */
+
+    private int words() {
+        return Math.max( 1, ( branches.size() + 63 ) / 64 );
+    }
+
+    private long[] mask( Collection<Branch> bs ) {
+        long[] mask = new long[words()];
+        for( Branch branch : bs ) {
+            int i = branches.indexOf( branch );
+            if( i < 0 ) {
+                throw new IllegalArgumentException( branch + " is not a branch of the report" );
+            }
+            mask[i / 64] |= 1L << ( i % 64 );
+        }
+        return mask;
+    }
+
+    private static boolean isEmpty( long[] mask ) {
+        for( long word : mask ) {
+            if( word != 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Branch> branches( long[] mask ) {
+        List<Branch> bs = new ArrayList<Branch>();
+        for( int i = 0 ; i < branches.size() ; i++ ) {
+            if( ( mask[i / 64] & ( 1L << ( i % 64 ) ) ) != 0 ) {
+                bs.add( branches.get( i ) );
+            }
+        }
+        return bs;
+    }
+
+    /* Strings, as length prefixed UTF-8 */
+
+    static void writeString( DataOutput out, String string ) throws IOException {
+        byte[] bytes = string.getBytes( "UTF-8" );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    static String readString( DataInput in ) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, "UTF-8" );
+    }
+
+    /* Keys, ordered by two independent hashes of the path */
+
+    private static long hash1( String path ) {
+        long h = 0xcbf29ce484222325L;
+        for( int i = 0 ; i < path.length() ; i++ ) {
+            h ^= path.charAt( i );
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long hash2( String path ) {
+        long h = path.length();
+        for( int i = 0 ; i < path.length() ; i++ ) {
+            h = ( h + path.charAt( i ) ) * 0x9e3779b97f4a7c15L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+
+    /* The index */
+
+    private static class Entry {
+        private final String path;
+        private final long key1;
+        private final long key2;
+        private long date;
+        private long rank;
+        private long offset;
+        private final long[] mask;
+
+        private Entry( String path, long date, long rank, long offset, long[] mask ) {
+            this( path, hash1( path ), hash2( path ), date, rank, offset, mask );
+        }
+
+        private Entry( String path, long key1, long key2, long date, long rank, long offset, long[] mask ) {
+            this.path = path;
+            this.key1 = key1;
+            this.key2 = key2;
+            this.date = date;
+            this.rank = rank;
+            this.offset = offset;
+            this.mask = mask;
+        }
+
+        /**
+         * Combine with an entry of the same element, the youngest row wins and the branches are joined
+         */
+        private void combine( Entry other ) {
+            if( other.date > date || ( other.date == date && other.rank < rank ) ) {
+                date = other.date;
+                rank = other.rank;
+                offset = other.offset;
+            }
+            for( int i = 0 ; i < mask.length ; i++ ) {
+                mask[i] |= other.mask[i];
+            }
+        }
+
+        private void write( DataOutputStream out ) throws IOException {
+            out.writeLong( key1 );
+            out.writeLong( key2 );
+            writeString( out, path );
+            out.writeLong( date );
+            out.writeLong( rank );
+            out.writeLong( offset );
+            for( long word : mask ) {
+                out.writeLong( word );
+            }
+        }
+    }
+
+    private static final Comparator<Entry> KEY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare( Entry e1, Entry e2 ) {
+            if( e1.key1 != e2.key1 ) {
+                return e1.key1 < e2.key1 ? -1 : 1;
+            }
+            if( e1.key2 != e2.key2 ) {
+                return e1.key2 < e2.key2 ? -1 : 1;
+            }
+            return e1.path.compareTo( e2.path );
+        }
+    };
+
+    /**
+     * An open addressing hash table of the entries, kept in arrays of primitives
+     */
+    private static class Index {
+        private final int words;
+        private int capacity = 16;
+        private int size = 0;
+        private long chars = 0;
+
+        private String[] paths;
+        private long[] keys1;
+        private long[] keys2;
+        private long[] dates;
+        private long[] ranks;
+        private long[] offsets;
+        private long[] masks;
+        private boolean[] used;
+
+        private Index( int words ) {
+            this.words = words;
+            allocate( capacity );
+        }
+
+        private void allocate( int capacity ) {
+            this.capacity = capacity;
+            paths = new String[capacity];
+            keys1 = new long[capacity];
+            keys2 = new long[capacity];
+            dates = new long[capacity];
+            ranks = new long[capacity];
+            offsets = new long[capacity];
+            masks = new long[capacity * words];
+            used = new boolean[capacity];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * @return The approximate number of bytes used
+         */
+        private long bytes() {
+            return (long) capacity * ( 6 * 8 + words * 8 + 1 ) + size * 40L + chars * 2;
+        }
+
+        private void add( Entry entry ) {
+            if( size + 1 > capacity * 3 / 4 ) {
+                grow();
+            }
+
+            int slot = slot( entry );
+            if( used[slot] ) {
+                Entry existing = get( slot );
+                existing.combine( entry );
+                put( slot, existing );
+            } else {
+                put( slot, entry );
+                size++;
+                chars += entry.path.length();
+            }
+        }
+
+        private int slot( Entry entry ) {
+            int slot = (int) ( ( entry.key1 ^ ( entry.key1 >>> 32 ) ) & 0x7fffffff ) % capacity;
+            while( used[slot] && ( keys1[slot] != entry.key1 || keys2[slot] != entry.key2 || !paths[slot].equals( entry.path ) ) ) {
+                slot = ( slot + 1 ) % capacity;
+            }
+            return slot;
+        }
+
+        private Entry get( int slot ) {
+            return new Entry( paths[slot], keys1[slot], keys2[slot], dates[slot], ranks[slot], offsets[slot], Arrays.copyOfRange( masks, slot * words, ( slot + 1 ) * words ) );
+        }
+
+        private void put( int slot, Entry entry ) {
+            used[slot] = true;
+            paths[slot] = entry.path;
+            keys1[slot] = entry.key1;
+            keys2[slot] = entry.key2;
+            dates[slot] = entry.date;
+            ranks[slot] = entry.rank;
+            offsets[slot] = entry.offset;
+            System.arraycopy( entry.mask, 0, masks, slot * words, words );
+        }
+
+        private void grow() {
+            List<Entry> entries = entries();
+            allocate( capacity * 2 );
+            for( Entry entry : entries ) {
+                put( slot( entry ), entry );
+            }
+        }
+
+        private List<Entry> entries() {
+            List<Entry> entries = new ArrayList<Entry>( size );
+            for( int i = 0 ; i < capacity ; i++ ) {
+                if( used[i] ) {
+                    entries.add( get( i ) );
+                }
+            }
+            return entries;
+        }
+
+        private List<Entry> sorted() {
+            List<Entry> entries = entries();
+            Collections.sort( entries, KEY_ORDER );
+            return entries;
+        }
+    }
+
+    private static class EntryReader implements Iterator<Entry> {
+        private final DataInputStream in;
+        private final int words;
+        private Entry next;
+
+        private EntryReader( File file, int words ) throws IOException {
+            this.in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            this.words = words;
+            this.next = read();
+        }
+
+        private Entry read() throws IOException {
+            long key1;
+            try {
+                key1 = in.readLong();
+            } catch( EOFException e ) {
+                in.close();
+                return null;
+            }
+            long key2 = in.readLong();
+            String path = readString( in );
+            long date = in.readLong();
+            long rank = in.readLong();
+            long offset = in.readLong();
+            long[] mask = new long[words];
+            for( int i = 0 ; i < words ; i++ ) {
+                mask[i] = in.readLong();
+            }
+            return new Entry( path, key1, key2, date, rank, offset, mask );
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if( next == null ) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = next;
+            try {
+                next = read();
+            } catch( IOException e ) {
+                throw new IllegalStateException( "Unable to read the index", e );
+            }
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Combine the adjacent entries of the same element
+     */
+    private static Iterator<Entry> combine( final Iterator<Entry> entries ) {
+        return new Iterator<Entry>() {
+            private Entry pending = entries.hasNext() ? entries.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            @Override
+            public Entry next() {
+                if( pending == null ) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = pending;
+                pending = null;
+                while( entries.hasNext() ) {
+                    Entry e = entries.next();
+                    if( KEY_ORDER.compare( entry, e ) == 0 ) {
+                        entry.combine( e );
+                    } else {
+                        pending = e;
+                        break;
+                    }
+                }
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /* The rows */
+
+    private static class Row {
+        private final String path;
+        private final String row;
+        private final long date;
+        private final long[] mask;
+        private File file;
+
+        private Row( String path, String row, long date, long[] mask ) {
+            this.path = path;
+            this.row = row;
+            this.date = date;
+            this.mask = mask;
+        }
+
+        private File getFile() {
+            if( file == null ) {
+                file = new File( path );
+            }
+            return file;
+        }
+
+        /**
+         * @return The approximate number of bytes used
+         */
+        private long bytes() {
+            return 2L * ( path.length() + row.length() ) + 8L * mask.length + 96;
+        }
+
+        private void write( DataOutputStream out ) throws IOException {
+            writeString( out, path );
+            writeString( out, row );
+            out.writeLong( date );
+            for( long word : mask ) {
+                out.writeLong( word );
+            }
+        }
+    }
+
+    /* As a TreeMap of Files */
+    private static final Comparator<Row> PATH_ORDER = new Comparator<Row>() {
+        @Override
+        public int compare( Row r1, Row r2 ) {
+            return r1.getFile().compareTo( r2.getFile() );
+        }
+    };
+
+    /**
+     * Sort rows in memory, or on disk in sorted runs merged in the end
+     */
+    private class Sorter {
+        private final long memory;
+        private final List<Row> rows = new ArrayList<Row>();
+        private long bytes = 0;
+        private final List<File> runs = new ArrayList<File>();
+
+        private Sorter( long memory ) {
+            this.memory = memory;
+        }
+
+        private void add( Row row ) throws IOException {
+            rows.add( row );
+            bytes += row.bytes();
+            if( bytes > memory ) {
+                spillRows();
+            }
+        }
+
+        private void spillRows() throws IOException {
+            Collections.sort( rows, PATH_ORDER );
+
+            File run = File.createTempFile( "report", ".sorted" );
+            logger.fine( "Writing " + rows.size() + " sorted rows to " + run );
+            write( rows.iterator(), run );
+
+            runs.add( run );
+            rows.clear();
+            bytes = 0;
+
+            if( runs.size() >= MERGE_RUNS ) {
+                File merged = File.createTempFile( "report", ".sorted" );
+                logger.fine( "Merging " + runs.size() + " runs of sorted rows to " + merged );
+                write( merge( readers(), PATH_ORDER ), merged );
+
+                close();
+                runs.clear();
+                runs.add( merged );
+            }
+        }
+
+        private void write( Iterator<Row> rows, File file ) throws IOException {
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+            try {
+                while( rows.hasNext() ) {
+                    rows.next().write( out );
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+        private List<Iterator<Row>> readers() throws IOException {
+            List<Iterator<Row>> parts = new ArrayList<Iterator<Row>>();
+            for( File run : runs ) {
+                parts.add( new RowReader( run ) );
+            }
+            return parts;
+        }
+
+        private Iterator<Row> sorted() throws IOException {
+            Collections.sort( rows, PATH_ORDER );
+            if( runs.isEmpty() ) {
+                return rows.iterator();
+            }
+
+            List<Iterator<Row>> parts = readers();
+            parts.add( rows.iterator() );
+            return merge( parts, PATH_ORDER );
+        }
+
+        private void close() {
+            for( File run : runs ) {
+                run.delete();
+            }
+        }
+    }
+
+    private class RowReader implements Iterator<Row> {
+        private final DataInputStream in;
+        private Row next;
+
+        private RowReader( File file ) throws IOException {
+            this.in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            this.next = read();
+        }
+
+        private Row read() throws IOException {
+            String path;
+            try {
+                path = readString( in );
+            } catch( EOFException e ) {
+                in.close();
+                return null;
+            }
+            String row = readString( in );
+            long date = in.readLong();
+            long[] mask = new long[words()];
+            for( int i = 0 ; i < mask.length ; i++ ) {
+                mask[i] = in.readLong();
+            }
+            return new Row( path, row, date, mask );
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Row next() {
+            if( next == null ) {
+                throw new NoSuchElementException();
+            }
+            Row row = next;
+            try {
+                next = read();
+            } catch( IOException e ) {
+                throw new IllegalStateException( "Unable to read the sorted rows", e );
+            }
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Merge sorted iterators, of equal elements those of the first iterator come first
+     */
+    private static <T> Iterator<T> merge( final List<Iterator<T>> parts, final Comparator<T> comparator ) {
+        class Head {
+            private final int part;
+            private final T value;
+
+            private Head( int part, T value ) {
+                this.part = part;
+                this.value = value;
+            }
+        }
+
+        final PriorityQueue<Head> queue = new PriorityQueue<Head>( Math.max( 1, parts.size() ), new Comparator<Head>() {
+            @Override
+            public int compare( Head h1, Head h2 ) {
+                int c = comparator.compare( h1.value, h2.value );
+                return c != 0 ? c : h1.part - h2.part;
+            }
+        } );
+
+        for( int i = 0 ; i < parts.size() ; i++ ) {
+            if( parts.get( i ).hasNext() ) {
+                queue.add( new Head( i, parts.get( i ).next() ) );
+            }
+        }
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Head head = queue.poll();
+                if( head == null ) {
+                    throw new NoSuchElementException();
+                }
+                Iterator<T> part = parts.get( head.part );
+                if( part.hasNext() ) {
+                    queue.add( new Head( head.part, part.next() ) );
+                }
+                return head.value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Counts the bytes written, as a {@link DataOutputStream} counts in an int
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        private CountingOutputStream( OutputStream out ) {
+            super( out );
+        }
+
+        @Override
+        public void write( int b ) throws IOException {
+            out.write( b );
+            count++;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            out.write( b, off, len );
+            count += len;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
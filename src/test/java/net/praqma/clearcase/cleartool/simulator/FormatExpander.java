@@ -0,0 +1,136 @@
+package net.praqma.clearcase.cleartool.simulator;
+
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Expansion of the cleartool <code>-fmt</code> format strings for a {@link SimulatedObject}.<br>
+ * Supported are the escapes \n, \t and \\, the names %n, %Xn, %Vn, %PVn and %On, the user %u, the dates %d and %Nd,
+ * and properties as %[property]p with the modifiers X, extended names, and C, comma separated, before or after the property name.
+ * Anything else is printed as is.
+ *
+ * @author cwolfgang
+ */
+public final class FormatExpander {
+
+    private static final Pattern rx_kind = Pattern.compile( "^(baseline|stream|project|component|activity|folder):" );
+
+    private FormatExpander() {
+    }
+
+    public static String expand( String format, SimulatedObject object ) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while( i < format.length() ) {
+            char c = format.charAt( i );
+            if( c == '\\' && i + 1 < format.length() ) {
+                char e = format.charAt( i + 1 );
+                sb.append( e == 'n' ? "\n" : e == 't' ? "\t" : String.valueOf( e ) );
+                i += 2;
+            } else if( c == '%' ) {
+                i = directive( format, i + 1, object, sb );
+            } else {
+                sb.append( c );
+                i++;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Expand the directive starting after the %
+     * @return The index after the directive
+     */
+    private static int directive( String format, int i, SimulatedObject object, StringBuilder sb ) {
+        int start = i;
+
+        /* Modifiers before the property */
+        String modifiers = "";
+        while( i < format.length() && "XCNPVO".indexOf( format.charAt( i ) ) >= 0 ) {
+            modifiers += format.charAt( i );
+            i++;
+        }
+
+        String property = null;
+        if( i < format.length() && format.charAt( i ) == '[' ) {
+            int end = format.indexOf( ']', i );
+            if( end < 0 ) {
+                sb.append( '%' ).append( format.substring( start ) );
+                return format.length();
+            }
+            property = format.substring( i + 1, end );
+            i = end + 1;
+
+            /* Modifiers after the property */
+            while( i < format.length() && "XCN".indexOf( format.charAt( i ) ) >= 0 ) {
+                modifiers += format.charAt( i );
+                i++;
+            }
+        }
+
+        if( i >= format.length() ) {
+            sb.append( '%' ).append( format.substring( start ) );
+            return format.length();
+        }
+
+        char conversion = format.charAt( i );
+        boolean extended = modifiers.contains( "X" );
+
+        if( property != null && conversion == 'p' ) {
+            sb.append( property( object, property, extended, modifiers.contains( "C" ) ) );
+        } else if( conversion == 'n' ) {
+            sb.append( name( object, modifiers ) );
+        } else if( conversion == 'u' ) {
+            sb.append( object.getUser() );
+        } else if( conversion == 'd' ) {
+            sb.append( new SimpleDateFormat( modifiers.contains( "N" ) ? "yyyyMMdd.HHmmss" : "yyyy-MM-dd'T'HH:mm:ss" ).format( object.getDate() ) );
+        } else {
+            sb.append( '%' ).append( format.substring( start, i + 1 ) );
+        }
+
+        return i + 1;
+    }
+
+    private static String name( SimulatedObject object, String modifiers ) {
+        if( modifiers.equals( "O" ) ) {
+            return oid( object );
+        }
+
+        if( object instanceof SimulatedVersion ) {
+            SimulatedVersion version = (SimulatedVersion) object;
+            if( modifiers.equals( "PV" ) ) {
+                return version.getPredecessorId();
+            } else if( modifiers.equals( "V" ) ) {
+                return version.getVersionId();
+            }
+            return version.getFullyQualifiedName();
+        }
+
+        return modifiers.contains( "X" ) ? object.getFullyQualifiedName() : object.getName();
+    }
+
+    private static String property( SimulatedObject object, String property, boolean extended, boolean commaSeparated ) {
+        List<String> values = object.get( property );
+        StringBuilder sb = new StringBuilder();
+        for( String value : values ) {
+            if( sb.length() > 0 ) {
+                sb.append( commaSeparated ? ", " : " " );
+            }
+            sb.append( extended ? value : unextend( value ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Strip the kind from a reference, baseline:bl@\pvob is printed as bl@\pvob
+     */
+    private static String unextend( String value ) {
+        return rx_kind.matcher( value ).replaceFirst( "" );
+    }
+
+    private static String oid( SimulatedObject object ) {
+        return String.format( "%08x.%08x", object.getFullyQualifiedName().hashCode(), object.getDate().getTime() / 1000 );
+    }
+}
@@ -0,0 +1,834 @@
+package net.praqma.clearcase.cleartool.simulator;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.StreamingCommandLineInterface;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * A {@link StreamingCommandLineInterface} answering cleartool commands from a {@link SimulatedUCM}, for load and performance testing without ClearCase.
+ * Plug it in with {@link Cleartool#setCommandLineInterface(net.praqma.util.execute.CommandLineInterface)}.<br><br>
+ * The verbs issued by COOL are simulated: describe, lsbl, lsstream, lsproject, lscomp, diffbl, deliver -status, find, lsvtree, lstype -kind brtype,
+ * mkbl, chbl, chstream, mkstream and rmstream. Anything else fails as an unrecognized command.<br>
+ * Each call can be delayed by a latency, for all verbs or per verb, to resemble a real server.
+ *
+ * @author cwolfgang
+ */
+public class SimulatedCleartool implements StreamingCommandLineInterface {
+
+    private static final Logger logger = Logger.getLogger( SimulatedCleartool.class.getName() );
+
+    private static final String PREFIX = "cleartool ";
+
+    /* Options taking a value */
+    private static final Set<String> valued = new HashSet<String>( Arrays.asList(
+            "-fmt", "-component", "-stream", "-level", "-in", "-invob", "-view", "-target", "-recommend", "-c",
+            "-branch", "-version", "-type", "-name", "-adepends_on", "-exec", "-user", "-kind" ) );
+
+    /* A term of a version query */
+    private static final Pattern rx_term = Pattern.compile( "^(version|lbtype|brtype|created_since)\\((.*)\\)$" );
+
+    private final SimulatedUCM model;
+
+    private volatile long latency = 0;
+    private final Map<String, Long> latencies = new ConcurrentHashMap<String, Long>();
+
+    private final AtomicLong commands = new AtomicLong( 0 );
+
+    public SimulatedCleartool( SimulatedUCM model ) {
+        this.model = model;
+    }
+
+    public SimulatedUCM getModel() {
+        return model;
+    }
+
+    /**
+     * Delay every call
+     */
+    public SimulatedCleartool setLatency( long millis ) {
+        this.latency = millis;
+        return this;
+    }
+
+    /**
+     * Delay the calls of a verb, instead of the common latency
+     */
+    public SimulatedCleartool setLatency( String verb, long millis ) {
+        latencies.put( Cleartool.getVerb( verb ), millis );
+        return this;
+    }
+
+    /**
+     * @return The number of commands answered
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    @Override
+    public OperatingSystem getOS() {
+        return CommandLine.getInstance().getOS();
+    }
+
+    @Override
+    public CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, null, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, ignore, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+        Answer answer = answer( cmd, dir );
+
+        CmdResult result = new CmdResult();
+        for( String line : answer.getLines( answer.out ) ) {
+            result.stdoutList.add( line );
+            result.stdoutBuffer.append( line ).append( Cool.linesep );
+        }
+        for( String line : answer.getLines( answer.err ) ) {
+            result.errorList.add( line );
+            result.errorBuffer.append( line ).append( Cool.linesep );
+        }
+
+        if( merge ) {
+            result.stdoutBuffer.append( result.errorBuffer );
+            result.stdoutList.addAll( result.errorList );
+        }
+
+        if( answer.status != 0 && !ignore ) {
+            throw new AbnormalProcessTerminationException( result.errorBuffer.toString(), cmd, answer.status );
+        }
+
+        return result;
+    }
+
+    @Override
+    public void stream( String cmd, File dir, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        Answer answer = answer( cmd, dir );
+
+        for( String line : answer.getLines( answer.out ) ) {
+            handler.handle( line );
+        }
+
+        if( answer.status != 0 && !ignore ) {
+            throw new AbnormalProcessTerminationException( answer.err.toString(), cmd, answer.status );
+        }
+    }
+
+    private Answer answer( String cmd, File dir ) {
+        if( !cmd.startsWith( PREFIX ) ) {
+            throw new CommandLineException( "Only cleartool commands are simulated, not " + cmd );
+        }
+
+        List<String> tokens = tokenize( cmd.substring( PREFIX.length() ) );
+        Answer answer = new Answer();
+        if( tokens.isEmpty() ) {
+            return answer;
+        }
+
+        String verb = Cleartool.getVerb( tokens.get( 0 ) );
+        Args args = new Args( tokens.subList( 1, tokens.size() ) );
+
+        commands.incrementAndGet();
+        delay( verb );
+
+        synchronized( model ) {
+            try {
+                if( verb.equals( "describe" ) ) {
+                    describe( args, dir, answer );
+                } else if( verb.equals( "lsbl" ) ) {
+                    lsbl( args, answer );
+                } else if( verb.equals( "lsstream" ) ) {
+                    lsstream( args, answer );
+                } else if( verb.equals( "lsproject" ) ) {
+                    list( args, model.getAll( "project" ), "project", answer );
+                } else if( verb.equals( "lscomp" ) ) {
+                    list( args, model.getAll( "component" ), "component", answer );
+                } else if( verb.equals( "diffbl" ) ) {
+                    diffbl( args, answer );
+                } else if( verb.equals( "deliver" ) && args.has( "-status" ) ) {
+                    deliverStatus( args, answer );
+                } else if( verb.equals( "find" ) ) {
+                    find( args, dir, answer );
+                } else if( verb.equals( "lstype" ) ) {
+                    lstype( args, answer );
+                } else if( verb.equals( "lsvtree" ) ) {
+                    lsvtree( args, dir, answer );
+                } else if( verb.equals( "mkbl" ) ) {
+                    mkbl( args, dir, answer );
+                } else if( verb.equals( "chbl" ) ) {
+                    chbl( args, answer );
+                } else if( verb.equals( "chstream" ) ) {
+                    chstream( args, answer );
+                } else if( verb.equals( "mkstream" ) ) {
+                    mkstream( args, answer );
+                } else if( verb.equals( "rmstream" ) ) {
+                    rmstream( args, answer );
+                } else {
+                    answer.error( "cleartool: Error: Unrecognized command: \"" + tokens.get( 0 ) + "\"" );
+                }
+            } catch( IllegalArgumentException e ) {
+                answer.error( "cleartool: Error: " + e.getMessage() );
+            }
+        }
+
+        logger.finest( "Simulated " + cmd );
+
+        return answer;
+    }
+
+    private void delay( String verb ) {
+        Long millis = latencies.get( verb );
+        long delay = millis != null ? millis : latency;
+        if( delay > 0 ) {
+            try {
+                Thread.sleep( delay );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new CommandLineException( "Interrupted while simulating " + verb );
+            }
+        }
+    }
+
+    /* Verbs */
+
+    private void describe( Args args, File dir, Answer answer ) {
+        for( String selector : args.positional ) {
+            SimulatedObject o = resolve( selector, dir );
+            if( o == null ) {
+                answer.error( "cleartool: Error: Unable to access \"" + selector + "\": No such file or directory." );
+                continue;
+            }
+
+            if( args.has( "-fmt" ) ) {
+                answer.out.append( FormatExpander.expand( args.get( "-fmt" ), o ) );
+            } else if( args.has( "-s" ) || args.has( "-short" ) ) {
+                answer.println( o.getName() );
+            } else {
+                answer.println( o.getKind() + " \"" + o.getFullyQualifiedName() + "\"" );
+                answer.println( "  created " + new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss" ).format( o.getDate() ) + " by " + o.getUser() );
+            }
+        }
+    }
+
+    private void lsbl( Args args, Answer answer ) {
+        SimulatedObject component = args.has( "-component" ) ? model.get( "component", args.get( "-component" ) ) : null;
+        SimulatedObject stream = args.has( "-stream" ) ? model.get( "stream", args.get( "-stream" ) ) : null;
+
+        List<SimulatedObject> baselines = new ArrayList<SimulatedObject>();
+        for( SimulatedObject b : model.getBaselines( component, stream ) ) {
+            if( !args.has( "-level" ) || args.get( "-level" ).equals( b.getFirst( "plevel" ) ) ) {
+                baselines.add( b );
+            }
+        }
+
+        print( args, baselines, answer );
+    }
+
+    private void lsstream( Args args, Answer answer ) {
+        List<SimulatedObject> streams = new ArrayList<SimulatedObject>();
+        if( args.has( "-view" ) ) {
+            String stream = model.getStreamOfView( args.get( "-view" ) );
+            if( stream == null ) {
+                throw new IllegalArgumentException( "View tag not found: \"" + args.get( "-view" ) + "\"." );
+            }
+            streams.add( model.get( "stream", stream ) );
+        } else if( args.has( "-in" ) ) {
+            SimulatedObject in = model.find( "project", args.get( "-in" ) );
+            if( in == null ) {
+                in = model.get( "stream", args.get( "-in" ) );
+            }
+            for( SimulatedObject s : model.getAll( "stream" ) ) {
+                boolean inProject = in.getKind().equals( "project" ) && in.getFullyQualifiedName().equals( s.getFirst( "project" ) );
+                boolean child = in.getKind().equals( "stream" ) && in.get( "dstreams" ).contains( s.getFullyQualifiedName() );
+                if( inProject || child ) {
+                    streams.add( s );
+                }
+            }
+        } else {
+            list( args, model.getAll( "stream" ), "stream", answer );
+            return;
+        }
+
+        print( args, streams, answer );
+    }
+
+    /**
+     * List the given objects or those of the positional selectors, in the PVob of -invob
+     */
+    private void list( Args args, List<SimulatedObject> all, String kind, Answer answer ) {
+        List<SimulatedObject> objects = new ArrayList<SimulatedObject>();
+        if( !args.positional.isEmpty() ) {
+            for( String selector : args.positional ) {
+                objects.add( model.get( kind, selector ) );
+            }
+        } else {
+            for( SimulatedObject o : all ) {
+                if( !args.has( "-invob" ) || args.get( "-invob" ).equals( o.getPVob() ) ) {
+                    objects.add( o );
+                }
+            }
+        }
+
+        print( args, objects, answer );
+    }
+
+    /**
+     * The branch types, the only kind of type modelled
+     */
+    private void lstype( Args args, Answer answer ) {
+        if( !"brtype".equals( args.get( "-kind" ) ) ) {
+            answer.error( "cleartool: Error: The simulator only lists branch types" );
+            return;
+        }
+
+        for( String type : model.getBranchTypes() ) {
+            answer.println( type );
+        }
+    }
+
+    private void diffbl( Args args, Answer answer ) {
+        Set<String> left;
+        Set<String> right;
+        if( args.has( "-predecessor" ) ) {
+            SimulatedObject b = model.get( "baseline", args.positional.get( 0 ) );
+            left = new LinkedHashSet<String>();
+            right = new LinkedHashSet<String>( b.get( "activities" ) );
+        } else {
+            if( args.positional.size() < 2 ) {
+                throw new IllegalArgumentException( "Two baselines or streams must be given" );
+            }
+            left = getActivities( args.positional.get( 0 ) );
+            right = getActivities( args.positional.get( 1 ) );
+        }
+
+        answer.println( "Comparing the following:" );
+        for( String selector : args.positional ) {
+            answer.println( "  " + selector );
+        }
+        answer.println( "Differences:" );
+
+        for( String a : left ) {
+            if( !right.contains( a ) ) {
+                printActivity( "<<", a, args.has( "-versions" ), answer );
+            }
+        }
+        for( String a : right ) {
+            if( !left.contains( a ) ) {
+                printActivity( ">>", a, args.has( "-versions" ), answer );
+            }
+        }
+    }
+
+    private void printActivity( String direction, String activity, boolean versions, Answer answer ) {
+        SimulatedObject a = model.get( "activity", activity );
+        answer.println( direction + " " + a.getName() + "@" + a.getPVob() + " \"" + a.getFirst( "headline" ) + "\"" );
+        if( versions ) {
+            for( String version : a.get( "versions" ) ) {
+                answer.println( "\t" + version );
+            }
+        }
+    }
+
+    /**
+     * The activities of a baseline, or of a stream, those of its foundation baselines and those created on it
+     */
+    private Set<String> getActivities( String selector ) {
+        SimulatedObject o = model.find( "baseline", selector );
+        if( o == null || !o.getKind().equals( "baseline" ) ) {
+            o = model.get( "stream", selector );
+        }
+
+        if( o.getKind().equals( "baseline" ) ) {
+            return model.getActivities( o );
+        }
+
+        Set<String> activities = new LinkedHashSet<String>();
+        for( String b : o.get( "found_bls" ) ) {
+            activities.addAll( model.getActivities( model.get( "baseline", b ) ) );
+        }
+        for( SimulatedObject a : model.getAll( "activity" ) ) {
+            if( o.getFullyQualifiedName().equals( a.getFirst( "stream" ) ) ) {
+                activities.add( a.getFullyQualifiedName() );
+            }
+        }
+        return activities;
+    }
+
+    private void deliverStatus( Args args, Answer answer ) {
+        SimulatedObject stream = model.get( "stream", args.get( "-stream" ) );
+        String activity = stream.getFirst( "deliver_activity" );
+        if( activity == null ) {
+            answer.println( "No deliver operation in progress on stream \"" + stream.getFullyQualifiedName() + "\"." );
+        } else {
+            answer.println( "Deliver operation in progress on stream \"" + stream.getFullyQualifiedName() + "\"" );
+            answer.println( "  Started by \"" + stream.getUser() + "\"" );
+            /* The activity is given by its name */
+            answer.println( "  Using integration activity \"" + activity.replaceFirst( "^activity:", "" ).replaceFirst( "@.*$", "" ) + "\"." );
+            answer.println( "  Using view \"" + stream.getFirst( "deliver_view" ) + "\"." );
+            String target = stream.getFirst( "deliver_target" );
+            if( target != null ) {
+                answer.println( "  Activities will be delivered to the " + ( target.equals( stream.getFirst( "def_deliver_tgt" ) ) ? "" : "non-" ) + "default target stream \"" + target + "\"." );
+            }
+            answer.println( "  Baselines to be delivered:" );
+            for( String b : stream.get( "latest_bls" ) ) {
+                answer.println( "    " + b );
+            }
+        }
+    }
+
+    /**
+     * With -all the whole vob of the path names is searched, the vob being the root directory of a component,
+     * otherwise the path names, and with -nrecurse only the path names and the elements directly in them
+     */
+    private void find( Args args, File dir, Answer answer ) {
+        String query = args.get( "-version" );
+        List<String> paths = args.positional;
+        boolean recurse = !args.has( "-nrecurse" );
+        if( args.has( "-all" ) ) {
+            paths = getVobRoots( paths, dir );
+            recurse = true;
+        }
+
+        for( String element : model.getElements() ) {
+            if( !isUnder( element, paths, dir, recurse ) ) {
+                continue;
+            }
+
+            if( query == null ) {
+                answer.println( element + "@@" );
+                continue;
+            }
+
+            List<SimulatedVersion> versions = model.getVersions( element );
+            for( SimulatedVersion v : versions ) {
+                if( matches( v, versions, query ) ) {
+                    answer.println( v.getFullyQualifiedName() );
+                }
+            }
+        }
+    }
+
+    private boolean isUnder( String element, List<String> paths, File dir, boolean recurse ) {
+        if( paths.isEmpty() ) {
+            return true;
+        }
+        for( String path : paths ) {
+            String p = absolute( path, dir );
+            String prefix = p.endsWith( Cool.filesep ) ? p : p + Cool.filesep;
+            if( element.equals( p ) || element.startsWith( prefix ) && ( recurse || element.indexOf( Cool.filesep, prefix.length() ) < 0 ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The root directories of the components holding the path names, no paths if a path name is in none, meaning everything
+     */
+    private List<String> getVobRoots( List<String> paths, File dir ) {
+        List<String> roots = new ArrayList<String>();
+        for( String path : paths ) {
+            String p = absolute( path, dir );
+            String root = null;
+            for( SimulatedObject component : model.getAll( "component" ) ) {
+                String r = component.getFirst( "root_dir" );
+                if( r != null && ( p.equals( r ) || p.startsWith( r.endsWith( Cool.filesep ) ? r : r + Cool.filesep ) ) ) {
+                    root = r;
+                }
+            }
+            if( root == null ) {
+                return new ArrayList<String>();
+            }
+            if( !roots.contains( root ) ) {
+                roots.add( root );
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * A conjunction of the terms version(.../branch/LATEST), version(branch/revision), lbtype(label), brtype(branch) and created_since(date).
+     * Any other query fails loudly, rather than matching versions it should not.
+     */
+    private boolean matches( SimulatedVersion v, List<SimulatedVersion> versions, String query ) {
+        for( String term : query.split( "&&" ) ) {
+            Matcher m = rx_term.matcher( term.trim() );
+            if( !m.matches() ) {
+                throw new CommandLineException( "The simulator does not support the query " + query );
+            }
+
+            String argument = m.group( 2 ).trim();
+            if( m.group( 1 ).equals( "version" ) ) {
+                if( !matchesVersion( v, versions, argument, query ) ) {
+                    return false;
+                }
+            } else if( m.group( 1 ).equals( "lbtype" ) ) {
+                if( !v.getLabels().contains( argument ) ) {
+                    return false;
+                }
+            } else if( m.group( 1 ).equals( "brtype" ) ) {
+                if( !v.getBranch().equals( argument ) && !v.getBranch().endsWith( Cool.filesep + argument ) ) {
+                    return false;
+                }
+            } else {
+                if( v.getDate().before( parseDate( argument, query ) ) ) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A version selector, a branch path, or a branch name after .../, followed by LATEST or a revision
+     */
+    private boolean matchesVersion( SimulatedVersion v, List<SimulatedVersion> versions, String selector, String query ) {
+        selector = selector.replace( '/', Cool.filesepChar ).replace( '\\', Cool.filesepChar );
+        int last = selector.lastIndexOf( Cool.filesepChar );
+        if( last < 0 ) {
+            throw new CommandLineException( "The simulator does not support the query " + query );
+        }
+
+        String branch = selector.substring( 0, last );
+        String revision = selector.substring( last + 1 );
+
+        String ellipsis = "..." + Cool.filesep;
+        if( branch.startsWith( ellipsis ) ) {
+            String name = branch.substring( ellipsis.length() );
+            if( !v.getBranch().equals( name ) && !v.getBranch().endsWith( Cool.filesep + name ) ) {
+                return false;
+            }
+        } else if( !v.getBranch().equals( branch.replaceFirst( "^\\" + Cool.filesep, "" ) ) ) {
+            return false;
+        }
+
+        if( revision.equals( "LATEST" ) ) {
+            for( SimulatedVersion other : versions ) {
+                if( other.getBranch().equals( v.getBranch() ) && other.getRevision() > v.getRevision() ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        try {
+            return v.getRevision() == Integer.parseInt( revision );
+        } catch( NumberFormatException e ) {
+            throw new CommandLineException( "The simulator does not support the query " + query );
+        }
+    }
+
+    private static Date parseDate( String date, String query ) {
+        for( String pattern : new String[] { "dd-MMM-yyyy.HH:mm:ss", "dd-MMM-yyyy" } ) {
+            try {
+                SimpleDateFormat format = new SimpleDateFormat( pattern, Locale.US );
+                format.setLenient( false );
+                return format.parse( date );
+            } catch( ParseException e ) {
+                /* Try the next */
+            }
+        }
+
+        throw new CommandLineException( "The simulator does not support the date of the query " + query );
+    }
+
+    private void lsvtree( Args args, File dir, Answer answer ) {
+        for( String path : args.positional ) {
+            String element = absolute( path.endsWith( "@@" ) ? path.substring( 0, path.length() - 2 ) : path, dir );
+            List<SimulatedVersion> versions = model.getVersions( element );
+            if( versions.isEmpty() ) {
+                answer.error( "cleartool: Error: Not a vob object: \"" + path + "\"." );
+                continue;
+            }
+
+            Set<String> branches = new HashSet<String>();
+            for( SimulatedVersion v : versions ) {
+                if( branches.add( v.getBranch() ) ) {
+                    answer.println( element + "@@" + Cool.filesep + v.getBranch() );
+                }
+                if( v.getLabels().isEmpty() || args.has( "-short" ) ) {
+                    answer.println( v.getFullyQualifiedName() );
+                } else {
+                    answer.println( v.getFullyQualifiedName() + " (" + join( v.getLabels(), ", " ) + ")" );
+                }
+            }
+        }
+    }
+
+    private void mkbl( Args args, File dir, Answer answer ) {
+        String stream = args.has( "-view" ) ? model.getStreamOfView( args.get( "-view" ) ) : model.getStream( dir );
+        if( stream == null ) {
+            throw new IllegalArgumentException( "Not in a UCM view" );
+        }
+        SimulatedObject component = model.get( "component", args.get( "-component" ) );
+        /* The activities of -activities are given before the name */
+        String name = args.positional.isEmpty() ? component.getName() + "_" + model.getAll( "baseline" ).size() : args.positional.get( args.positional.size() - 1 );
+
+        SimulatedObject s = model.get( "stream", stream );
+        Set<String> previous = new HashSet<String>();
+        for( SimulatedObject b : model.getBaselines( component, s ) ) {
+            previous.addAll( b.get( "activities" ) );
+        }
+        boolean changed = false;
+        for( SimulatedObject a : model.getAll( "activity" ) ) {
+            changed |= stream.equals( a.getFirst( "stream" ) ) && !previous.contains( a.getFullyQualifiedName() );
+        }
+
+        if( !changed && !args.has( "-identical" ) ) {
+            answer.println( "Baseline not created, no changes in component \"" + component.getName() + "\"." );
+            return;
+        }
+
+        model.baseline( name, component.getFullyQualifiedName(), stream, "INITIAL" );
+        answer.println( "Created baseline \"" + name + "\" in component \"" + component.getName() + "\"." );
+    }
+
+    private void chbl( Args args, Answer answer ) {
+        for( String selector : args.positional ) {
+            SimulatedObject b = model.get( "baseline", selector );
+            if( args.has( "-level" ) ) {
+                b.set( "plevel", args.get( "-level" ) );
+            }
+            answer.println( "Changed baseline \"" + b.getName() + "@" + b.getPVob() + "\"." );
+        }
+    }
+
+    private void chstream( Args args, Answer answer ) {
+        for( String selector : args.positional ) {
+            SimulatedObject s = model.get( "stream", selector );
+            if( args.has( "-generate" ) ) {
+                s.set( "rec_bls", s.get( "latest_bls" ) );
+            }
+            if( args.has( "-recommend" ) ) {
+                List<String> recommended = new ArrayList<String>();
+                for( String b : args.get( "-recommend" ).split( "," ) ) {
+                    recommended.add( model.get( "baseline", b.trim() ).getFullyQualifiedName() );
+                }
+                s.set( "rec_bls", recommended );
+            }
+            if( args.has( "-target" ) ) {
+                s.set( "def_deliver_tgt", model.get( "stream", args.get( "-target" ) ).getFullyQualifiedName() );
+            }
+            answer.println( "Updated stream \"" + s.getName() + "\"." );
+        }
+    }
+
+    private void mkstream( Args args, Answer answer ) {
+        String name = args.positional.get( 0 ).replaceFirst( "^stream:", "" );
+        int at = name.indexOf( '@' );
+        if( at >= 0 ) {
+            name = name.substring( 0, at );
+        }
+
+        SimulatedObject in = model.find( "project", args.get( "-in" ) );
+        if( args.has( "-integration" ) ) {
+            if( in == null || !in.getKind().equals( "project" ) ) {
+                throw new IllegalArgumentException( "Project not found: \"" + args.get( "-in" ) + "\"." );
+            }
+            SimulatedObject stream = model.create( "stream", name, in.getPVob() );
+            stream.set( "name", name ).set( "project", in.getFullyQualifiedName() );
+            in.set( "istream", stream.getFullyQualifiedName() );
+        } else {
+            model.stream( name, args.get( "-in" ) );
+        }
+        answer.println( "Created stream \"" + name + "\"." );
+    }
+
+    private void rmstream( Args args, Answer answer ) {
+        for( String selector : args.positional ) {
+            SimulatedObject s = model.get( "stream", selector );
+            for( SimulatedObject other : model.getAll( "stream" ) ) {
+                other.get( "dstreams" ).remove( s.getFullyQualifiedName() );
+            }
+            model.remove( s );
+            answer.println( "Removed stream \"" + s.getName() + "\"." );
+        }
+    }
+
+    /* Helpers */
+
+    private void print( Args args, List<SimulatedObject> objects, Answer answer ) {
+        for( SimulatedObject o : objects ) {
+            if( args.has( "-fmt" ) ) {
+                answer.out.append( FormatExpander.expand( args.get( "-fmt" ), o ) );
+            } else if( args.has( "-s" ) || args.has( "-short" ) ) {
+                answer.println( o.getName() );
+            } else {
+                answer.println( o.getFullyQualifiedName() );
+            }
+        }
+    }
+
+    /**
+     * Resolve a selector, a fully qualified name or a path of an element or version
+     */
+    private SimulatedObject resolve( String selector, File dir ) {
+        SimulatedObject o = model.find( null, selector );
+        if( o != null ) {
+            return o;
+        }
+
+        if( !selector.contains( ":" ) || selector.indexOf( ':' ) == 1 ) {
+            /* A path */
+            String path = absolute( selector, dir );
+            o = model.find( null, path );
+            if( o == null && model.getElements().contains( path ) ) {
+                List<SimulatedVersion> versions = model.getVersions( path );
+                o = versions.get( versions.size() - 1 );
+            }
+            return o;
+        }
+
+        return null;
+    }
+
+    private String absolute( String path, File dir ) {
+        if( new File( path ).isAbsolute() || dir == null ) {
+            return path;
+        }
+        if( path.equals( "." ) ) {
+            return dir.getAbsolutePath();
+        }
+        return new File( dir, path ).getAbsolutePath();
+    }
+
+    private static String join( List<String> values, String separator ) {
+        StringBuilder sb = new StringBuilder();
+        for( String value : values ) {
+            if( sb.length() > 0 ) {
+                sb.append( separator );
+            }
+            sb.append( value );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Split a command line by white space, keeping quoted strings together and removing the quotes
+     */
+    static List<String> tokenize( String cmd ) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = null;
+        boolean quoted = false;
+        for( char c : cmd.toCharArray() ) {
+            if( c == '"' ) {
+                quoted = !quoted;
+                if( token == null ) {
+                    token = new StringBuilder();
+                }
+            } else if( Character.isWhitespace( c ) && !quoted ) {
+                if( token != null ) {
+                    tokens.add( token.toString() );
+                    token = null;
+                }
+            } else {
+                if( token == null ) {
+                    token = new StringBuilder();
+                }
+                token.append( c );
+            }
+        }
+        if( token != null ) {
+            tokens.add( token.toString() );
+        }
+
+        return tokens;
+    }
+
+    private static class Args {
+        final Map<String, String> options = new HashMap<String, String>();
+        final List<String> positional = new ArrayList<String>();
+
+        Args( List<String> tokens ) {
+            for( int i = 0 ; i < tokens.size() ; i++ ) {
+                String token = tokens.get( i );
+                if( token.startsWith( "-" ) && token.length() > 1 ) {
+                    String option = token.toLowerCase();
+                    if( valued.contains( option ) && i + 1 < tokens.size() ) {
+                        options.put( option, tokens.get( ++i ) );
+                    } else {
+                        options.put( option, null );
+                    }
+                } else {
+                    positional.add( token );
+                }
+            }
+        }
+
+        boolean has( String option ) {
+            return options.containsKey( option );
+        }
+
+        String get( String option ) {
+            return options.get( option );
+        }
+    }
+
+    private static class Answer {
+        final StringBuilder out = new StringBuilder();
+        final StringBuilder err = new StringBuilder();
+        int status = 0;
+
+        void println( String line ) {
+            out.append( line ).append( "\n" );
+        }
+
+        void error( String line ) {
+            err.append( line ).append( "\n" );
+            status = 1;
+        }
+
+        List<String> getLines( StringBuilder sb ) {
+            List<String> lines = new ArrayList<String>();
+            if( sb.length() == 0 ) {
+                return lines;
+            }
+            String s = sb.toString();
+            if( s.endsWith( "\n" ) ) {
+                s = s.substring( 0, s.length() - 1 );
+            }
+            lines.addAll( Arrays.asList( s.split( "\n", -1 ) ) );
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package net.praqma.clearcase.cleartool.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An object of a {@link SimulatedUCM}, for example a stream or a baseline.<br>
+ * The properties are kept as lists of values, references to other objects by their fully qualified names,
+ * as they are printed with <code>%[property]p</code>.
+ *
+ * @author cwolfgang
+ */
+public class SimulatedObject {
+
+    private final String kind;
+    private final String name;
+    private final String pvob;
+    private final String user;
+    private final Date date;
+
+    private final Map<String, List<String>> properties = new HashMap<String, List<String>>();
+
+    SimulatedObject( String kind, String name, String pvob, String user, Date date ) {
+        this.kind = kind;
+        this.name = name;
+        this.pvob = pvob;
+        this.user = user;
+        this.date = date;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * @return The name, without kind and PVob
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getPVob() {
+        return pvob;
+    }
+
+    /**
+     * @return The fully qualified name, for example stream:dev@\pvob
+     */
+    public String getFullyQualifiedName() {
+        return kind + ":" + name + "@" + pvob;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    /**
+     * @return The values of the property, never null
+     */
+    public List<String> get( String property ) {
+        List<String> values = properties.get( property );
+        return values == null ? Collections.<String>emptyList() : values;
+    }
+
+    public String getFirst( String property ) {
+        List<String> values = get( property );
+        return values.isEmpty() ? null : values.get( 0 );
+    }
+
+    public SimulatedObject set( String property, String... values ) {
+        List<String> list = new ArrayList<String>();
+        for( String value : values ) {
+            if( value != null ) {
+                list.add( value );
+            }
+        }
+        properties.put( property, list );
+        return this;
+    }
+
+    public SimulatedObject set( String property, List<String> values ) {
+        properties.put( property, new ArrayList<String>( values ) );
+        return this;
+    }
+
+    public SimulatedObject add( String property, String value ) {
+        List<String> values = properties.get( property );
+        if( values == null ) {
+            values = new ArrayList<String>();
+            properties.put( property, values );
+        }
+        values.add( value );
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return getFullyQualifiedName();
+    }
+}
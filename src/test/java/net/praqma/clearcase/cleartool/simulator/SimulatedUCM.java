@@ -0,0 +1,368 @@
+package net.praqma.clearcase.cleartool.simulator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import net.praqma.clearcase.Cool;
+
+/**
+ * An in memory model of UCM, PVobs with projects, streams, components, baselines, activities and versions, answering the commands of a {@link SimulatedCleartool}.<br>
+ * The model is built through the methods named after the kind of object, in the order the objects would be created in ClearCase.
+ * Each created object is one minute younger than the previous.<br><br>
+ * A {@link SimulatedVersion} belongs to an activity and an activity to a stream. When a baseline is created on a stream,
+ * the activities created on the stream since the previous baseline of the component are put into the baseline.<br>
+ * The model is not thread safe by itself, {@link SimulatedCleartool} synchronizes on it.
+ *
+ * @author cwolfgang
+ */
+public class SimulatedUCM {
+
+    private final Map<String, SimulatedObject> objects = new LinkedHashMap<String, SimulatedObject>();
+    private final Map<String, List<SimulatedVersion>> elements = new LinkedHashMap<String, List<SimulatedVersion>>();
+    private final Map<String, String> viewTags = new HashMap<String, String>();
+    private final Map<File, String> viewRoots = new HashMap<File, String>();
+
+    private long clock = 1356998400000L; /* 2013-01-01 */
+    private String user = "simulator";
+
+    /**
+     * The user of the objects created from now on
+     */
+    public SimulatedUCM setUser( String user ) {
+        this.user = user;
+        return this;
+    }
+
+    /**
+     * The objects created from now on are dated from this time, a minute apart
+     */
+    public SimulatedUCM setClock( Date date ) {
+        this.clock = date.getTime() - 60000;
+        return this;
+    }
+
+    public SimulatedUCM component( String name, String pvob, String rootDir ) {
+        create( "component", name, pvob ).set( "root_dir", rootDir ).set( "name", name );
+        return this;
+    }
+
+    /**
+     * Create a project and its integration stream, named name_int
+     * @param components The fully qualified names of the modifiable components
+     */
+    public SimulatedUCM project( String name, String pvob, String... components ) {
+        SimulatedObject project = create( "project", name, pvob ).set( "name", name ).set( "mod_comps", components );
+
+        SimulatedObject stream = create( "stream", name + "_int", pvob );
+        stream.set( "name", stream.getName() ).set( "project", project.getFullyQualifiedName() );
+        project.set( "istream", stream.getFullyQualifiedName() );
+        return this;
+    }
+
+    /**
+     * Create a stream, child of another stream, delivering to it and founded on its recommended baselines
+     */
+    public SimulatedUCM stream( String name, String parent ) {
+        SimulatedObject p = get( "stream", parent );
+        SimulatedObject stream = create( "stream", name, p.getPVob() );
+        stream.set( "name", name ).set( "project", p.get( "project" ) ).set( "def_deliver_tgt", p.getFullyQualifiedName() ).set( "found_bls", p.get( "rec_bls" ) );
+        p.add( "dstreams", stream.getFullyQualifiedName() );
+        return this;
+    }
+
+    /**
+     * Create a view on a stream
+     * @param root The view root, commands executed in it are executed in the context of the stream, may be null
+     */
+    public SimulatedUCM view( String tag, String stream, File root ) {
+        SimulatedObject s = get( "stream", stream );
+        s.add( "views", tag );
+        viewTags.put( tag, s.getFullyQualifiedName() );
+        if( root != null ) {
+            viewRoots.put( root.getAbsoluteFile(), s.getFullyQualifiedName() );
+        }
+        return this;
+    }
+
+    public SimulatedUCM activity( String name, String stream, String headline ) {
+        SimulatedObject s = get( "stream", stream );
+        create( "activity", name, s.getPVob() ).set( "headline", headline ).set( "stream", s.getFullyQualifiedName() );
+        return this;
+    }
+
+    /**
+     * Check in the next revision of an element on a branch
+     * @param element The path of the element
+     * @param branch The branch path, for example main/int, with forward or platform separators
+     * @param activity The activity, may be null
+     */
+    public SimulatedVersion version( String element, String branch, String activity ) {
+        return version( element, branch, activity, false );
+    }
+
+    public SimulatedVersion version( String element, String branch, String activity, boolean directory ) {
+        SimulatedObject a = activity != null ? get( "activity", activity ) : null;
+        branch = branch.replace( '/', Cool.filesepChar ).replace( '\\', Cool.filesepChar );
+
+        List<SimulatedVersion> versions = elements.get( element );
+        if( versions == null ) {
+            versions = new ArrayList<SimulatedVersion>();
+            elements.put( element, versions );
+
+            /* The element, named by its extended path, for example /view/vobs/comp/a.txt@@ */
+            SimulatedObject e = new SimulatedObject( "element", element + "@@", a != null ? a.getPVob() : null, user, tick() ) {
+                @Override
+                public String getFullyQualifiedName() {
+                    return getName();
+                }
+            };
+            objects.put( e.getFullyQualifiedName(), e );
+        }
+
+        /* Revision 0 is the empty version of the branch */
+        int revision = 1;
+        for( SimulatedVersion v : versions ) {
+            if( v.getBranch().equals( branch ) ) {
+                revision = Math.max( revision, v.getRevision() + 1 );
+            }
+        }
+
+        SimulatedVersion version = new SimulatedVersion( element, branch, revision, directory, a != null ? a.getFullyQualifiedName() : null, a != null ? a.getPVob() : null, user, tick() );
+        versions.add( version );
+        objects.put( version.getFullyQualifiedName(), version );
+        if( a != null ) {
+            a.add( "versions", version.getFullyQualifiedName() );
+        }
+
+        return version;
+    }
+
+    public SimulatedUCM label( SimulatedVersion version, String label ) {
+        version.addLabel( label );
+        return this;
+    }
+
+    /**
+     * Create a baseline of a component on a stream, containing the activities of the stream not yet in a baseline of the component
+     */
+    public SimulatedObject baseline( String name, String component, String stream, String plevel ) {
+        SimulatedObject c = get( "component", component );
+        SimulatedObject s = get( "stream", stream );
+
+        Set<String> previous = new LinkedHashSet<String>();
+        for( SimulatedObject b : getBaselines( c, s ) ) {
+            previous.addAll( b.get( "activities" ) );
+        }
+
+        List<String> activities = new ArrayList<String>();
+        for( SimulatedObject a : getAll( "activity" ) ) {
+            if( s.getFullyQualifiedName().equals( a.getFirst( "stream" ) ) && !previous.contains( a.getFullyQualifiedName() ) ) {
+                activities.add( a.getFullyQualifiedName() );
+            }
+        }
+
+        SimulatedObject baseline = create( "baseline", name, s.getPVob() );
+        baseline.set( "component", c.getFullyQualifiedName() ).set( "bl_stream", s.getFullyQualifiedName() ).set( "plevel", plevel );
+        baseline.set( "label_status", "Full" ).set( "master", s.getFirst( "master" ) != null ? s.getFirst( "master" ) : "local" );
+        baseline.set( "activities", activities );
+
+        /* The latest baseline of the component */
+        List<String> latest = new ArrayList<String>();
+        for( String bl : s.get( "latest_bls" ) ) {
+            if( !c.getFullyQualifiedName().equals( find( "baseline", bl ).getFirst( "component" ) ) ) {
+                latest.add( bl );
+            }
+        }
+        latest.add( baseline.getFullyQualifiedName() );
+        s.set( "latest_bls", latest );
+
+        return baseline;
+    }
+
+    /**
+     * Start a deliver from a stream to its default target
+     */
+    public SimulatedUCM deliver( String stream, String activity, String viewTag ) {
+        return deliver( stream, null, activity, viewTag );
+    }
+
+    /**
+     * Start a deliver from a stream to a target stream, or to its default target if null
+     */
+    public SimulatedUCM deliver( String stream, String target, String activity, String viewTag ) {
+        SimulatedObject s = get( "stream", stream );
+        String t = target != null ? get( "stream", target ).getFullyQualifiedName() : s.getFirst( "def_deliver_tgt" );
+        s.set( "deliver_activity", activity ).set( "deliver_view", viewTag );
+        if( t != null ) {
+            s.set( "deliver_target", t );
+        }
+        return this;
+    }
+
+    public SimulatedUCM completeDeliver( String stream ) {
+        get( "stream", stream ).set( "deliver_activity" ).set( "deliver_view" ).set( "deliver_target" );
+        return this;
+    }
+
+    /**
+     * Find an object
+     * @param kind The kind of the object, used if the selector is not qualified by kind
+     * @param selector The fully qualified name, possibly without kind
+     * @return The object or null if not found
+     */
+    public SimulatedObject find( String kind, String selector ) {
+        SimulatedObject o = objects.get( selector );
+        if( o == null && kind != null && !selector.startsWith( kind + ":" ) ) {
+            o = objects.get( kind + ":" + selector );
+        }
+        if( o == null && kind != null && "stream".equals( kind ) && viewTags.containsKey( selector ) ) {
+            o = objects.get( viewTags.get( selector ) );
+        }
+        return o;
+    }
+
+    /**
+     * Get an object
+     * @throws IllegalArgumentException If not found
+     */
+    public SimulatedObject get( String kind, String selector ) {
+        SimulatedObject o = find( kind, selector );
+        if( o == null || ( kind != null && !kind.equals( o.getKind() ) ) ) {
+            throw new IllegalArgumentException( "No " + kind + " " + selector );
+        }
+        return o;
+    }
+
+    /**
+     * Get all objects of a kind, in the order they were created
+     */
+    public List<SimulatedObject> getAll( String kind ) {
+        List<SimulatedObject> list = new ArrayList<SimulatedObject>();
+        for( SimulatedObject o : objects.values() ) {
+            if( o.getKind().equals( kind ) ) {
+                list.add( o );
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get the baselines of a component on a stream, oldest first
+     */
+    public List<SimulatedObject> getBaselines( SimulatedObject component, SimulatedObject stream ) {
+        List<SimulatedObject> list = new ArrayList<SimulatedObject>();
+        for( SimulatedObject b : getAll( "baseline" ) ) {
+            if( ( component == null || component.getFullyQualifiedName().equals( b.getFirst( "component" ) ) ) && ( stream == null || stream.getFullyQualifiedName().equals( b.getFirst( "bl_stream" ) ) ) ) {
+                list.add( b );
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get the activities contained in a baseline, those of the baseline and of the previous baselines of the component on the stream
+     */
+    public Set<String> getActivities( SimulatedObject baseline ) {
+        Set<String> activities = new LinkedHashSet<String>();
+        SimulatedObject component = get( "component", baseline.getFirst( "component" ) );
+        SimulatedObject stream = get( "stream", baseline.getFirst( "bl_stream" ) );
+        for( SimulatedObject b : getBaselines( component, stream ) ) {
+            activities.addAll( b.get( "activities" ) );
+            if( b == baseline ) {
+                break;
+            }
+        }
+        return activities;
+    }
+
+    public List<SimulatedVersion> getVersions( String element ) {
+        List<SimulatedVersion> versions = elements.get( element );
+        return versions == null ? new ArrayList<SimulatedVersion>() : versions;
+    }
+
+    public Collection<String> getElements() {
+        return elements.keySet();
+    }
+
+    /**
+     * @return The names of the branches of the versions, in the order they are first used
+     */
+    public Collection<String> getBranchTypes() {
+        Set<String> types = new LinkedHashSet<String>();
+        for( List<SimulatedVersion> versions : elements.values() ) {
+            for( SimulatedVersion v : versions ) {
+                types.addAll( Arrays.asList( v.getBranch().split( Pattern.quote( Cool.filesep ) ) ) );
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Get the stream of a view root or a directory in it
+     * @return The fully qualified name of the stream or null
+     */
+    public String getStream( File dir ) {
+        for( File d = dir == null ? null : dir.getAbsoluteFile() ; d != null ; d = d.getParentFile() ) {
+            if( viewRoots.containsKey( d ) ) {
+                return viewRoots.get( d );
+            }
+        }
+        return null;
+    }
+
+    public String getStreamOfView( String tag ) {
+        return viewTags.get( tag );
+    }
+
+    SimulatedObject create( String kind, String name, String pvob ) {
+        SimulatedObject o = new SimulatedObject( kind, name, pvob, user, tick() );
+        /* Everything is mastered by the local replica */
+        o.set( "master", "local" );
+        if( objects.containsKey( o.getFullyQualifiedName() ) ) {
+            throw new IllegalArgumentException( o.getFullyQualifiedName() + " already exists" );
+        }
+        objects.put( o.getFullyQualifiedName(), o );
+        return o;
+    }
+
+    /**
+     * Remove an object, as rmbl or rmstream, its name can be used again
+     */
+    public SimulatedUCM remove( String kind, String selector ) {
+        remove( get( kind, selector ) );
+        return this;
+    }
+
+    /**
+     * Remove a version, as rmver, the element is removed with its last version, as rmelem
+     */
+    public SimulatedUCM remove( SimulatedVersion version ) {
+        List<SimulatedVersion> versions = getVersions( version.getElement() );
+        versions.remove( version );
+        remove( (SimulatedObject) version );
+        if( versions.isEmpty() ) {
+            elements.remove( version.getElement() );
+            objects.remove( version.getElement() + "@@" );
+        }
+        return this;
+    }
+
+    void remove( SimulatedObject o ) {
+        objects.remove( o.getFullyQualifiedName() );
+    }
+
+    private Date tick() {
+        clock += 60000;
+        return new Date( clock );
+    }
+}
@@ -0,0 +1,83 @@
+package net.praqma.clearcase.cleartool.simulator;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.Cool;
+
+/**
+ * A version of an element of a {@link SimulatedUCM}, named by its extended path, for example /view/vobs/comp/a.txt@@/main/int/2.
+ *
+ * @author cwolfgang
+ */
+public class SimulatedVersion extends SimulatedObject {
+
+    private final String element;
+    private final String branch;
+    private final int revision;
+    private final boolean directory;
+
+    private final List<String> labels = new ArrayList<String>();
+
+    SimulatedVersion( String element, String branch, int revision, boolean directory, String activity, String pvob, String user, Date date ) {
+        super( "version", element + "@@" + Cool.filesep + branch + Cool.filesep + revision, pvob, user, date );
+        this.element = element;
+        this.branch = branch;
+        this.revision = revision;
+        this.directory = directory;
+        if( activity != null ) {
+            set( "activity", activity );
+        }
+        set( "object_kind", directory ? "directory version" : "file element" );
+    }
+
+    /**
+     * @return The extended path, versions are not qualified by kind and PVob
+     */
+    @Override
+    public String getFullyQualifiedName() {
+        return getName();
+    }
+
+    public String getElement() {
+        return element;
+    }
+
+    /**
+     * @return The branch path, for example main/int
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return The version identifier, for example /main/int/2
+     */
+    public String getVersionId() {
+        return Cool.filesep + branch + Cool.filesep + revision;
+    }
+
+    /**
+     * @return The identifier of the predecessor, the previous revision on the branch
+     */
+    public String getPredecessorId() {
+        return Cool.filesep + branch + Cool.filesep + Math.max( 0, revision - 1 );
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    void addLabel( String label ) {
+        labels.add( label );
+    }
+}
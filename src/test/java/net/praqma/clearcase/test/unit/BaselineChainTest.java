@@ -0,0 +1,90 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.ucm.utils.BaselineChain;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author cwolfgang
+ */
+public class BaselineChainTest {
+
+    private CommandLineInterface original;
+    private SimulatedCleartool cleartool;
+
+    @Before
+    public void before() {
+        SimulatedUCM model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                .stream( "dev", "stream:proj_int@\\pvob" );
+        model.baseline( "bl0", "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+
+        /* A new version of a.txt in each baseline */
+        for( int i = 1 ; i <= 4 ; i++ ) {
+            model.activity( "act" + i, "stream:dev@\\pvob", "Activity " + i );
+            model.version( "/view/vobs/comp/a.txt", "main/dev", "activity:act" + i + "@\\pvob" );
+            model.version( "/view/vobs/comp/f" + i + ".txt", "main/dev", "activity:act" + i + "@\\pvob" );
+            model.baseline( "bl" + i, "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+        }
+
+        original = Cleartool.getCommandLineInterface();
+        cleartool = new SimulatedCleartool( model );
+        Cleartool.setCommandLineInterface( cleartool );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void compose() throws Exception {
+        BaselineChain chain = new BaselineChain();
+        for( int i = 0 ; i <= 3 ; i++ ) {
+            chain.add( Baseline.get( "baseline:bl" + i + "@\\pvob" ) );
+        }
+
+        Map<Activity, List<Version>> changeset = chain.getChangeSet( bl( 0 ), bl( 3 ) );
+        assertThat( changeset.size(), is( 3 ) );
+        assertThat( changeset.get( Activity.get( "activity:act2@\\pvob" ) ).size(), is( 2 ) );
+        assertThat( chain.getDiffCount(), is( 3 ) );
+
+        /* The latest version of a.txt and one version of each other file */
+        List<Version> latest = chain.getLatestVersions( bl( 0 ), bl( 3 ) );
+        assertThat( latest.size(), is( 4 ) );
+        for( Version version : latest ) {
+            if( version.getFile().getName().equals( "a.txt" ) ) {
+                assertThat( version.getRevision(), is( 3 ) );
+            }
+        }
+
+        /* A sub range is composed without diffing */
+        long commands = cleartool.getCommandCount();
+        assertThat( chain.getActivities( bl( 1 ), bl( 3 ) ).size(), is( 2 ) );
+        assertThat( cleartool.getCommandCount(), is( commands ) );
+
+        /* A new baseline costs one diff */
+        chain.add( bl( 4 ) );
+        assertThat( chain.getActivities( bl( 0 ), bl( 4 ) ).size(), is( 4 ) );
+        assertThat( chain.getDiffCount(), is( 4 ) );
+    }
+
+    private Baseline bl( int i ) throws Exception {
+        return Baseline.get( "baseline:bl" + i + "@\\pvob" );
+    }
+}
@@ -0,0 +1,190 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.filters.AfterBaseline;
+import net.praqma.clearcase.ucm.utils.filters.BeforeBaseline;
+import net.praqma.clearcase.ucm.utils.filters.NoDeliver;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class BaselineListTest {
+
+    private CommandLineInterface original;
+    private SimulatedCleartool cleartool;
+
+    @Before
+    public void before() {
+        SimulatedUCM model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" );
+        for( String name : new String[] { "bl1", "bl2", "deliverbl.bl3", "bl4", "bl5", "bl6" } ) {
+            model.baseline( name, "component:comp@\\pvob", "stream:proj_int@\\pvob", "INITIAL" );
+        }
+
+        original = Cleartool.getCommandLineInterface();
+        cleartool = new SimulatedCleartool( model );
+        Cleartool.setCommandLineInterface( cleartool );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void fusedFilters() throws Exception {
+        BaselineList list = new BaselineList( Stream.get( "stream:proj_int@\\pvob" ), Component.get( "component:comp@\\pvob" ), null )
+                .setSorting( new BaselineList.AscendingDateSort() )
+                .addFilter( new AfterBaseline( Baseline.get( "baseline:bl1@\\pvob" ) ) )
+                .addFilter( new NoDeliver() )
+                .addFilter( new BeforeBaseline( Baseline.get( "baseline:bl6@\\pvob" ) ) );
+
+        /* Left descending by the last range filter */
+        assertThat( names( list.apply() ), is( "bl5 bl4 bl2" ) );
+
+        /* The deliver status of the stream and the listing, the dates are listed with the baselines */
+        assertThat( cleartool.getCommandCount(), is( 2L ) );
+    }
+
+    @Test
+    public void limit() throws Exception {
+        Stream stream = Stream.get( "stream:proj_int@\\pvob" );
+        Component component = Component.get( "component:comp@\\pvob" );
+
+        List<Baseline> baselines = new BaselineList( stream, component, null ).setSorting( new BaselineList.DescendingDateSort() ).setLimit( 2 ).load().apply();
+        assertThat( names( baselines ), is( "bl6 bl5" ) );
+        assertThat( baselines.get( 1 ).isLoaded(), is( true ) );
+
+        /* The deliver status, the listing and one describe of the two baselines */
+        assertThat( cleartool.getCommandCount(), is( 3L ) );
+
+        /* A limit larger than the list */
+        assertThat( new BaselineList( stream, component, null ).setLimit( 10 ).apply().size(), is( 6 ) );
+    }
+
+    @Test
+    public void parallelLoad() throws Exception {
+        cleartool.setLatency( "describe", 20 );
+        ExecutorService executor = Executors.newFixedThreadPool( 3 );
+        try {
+            List<Baseline> baselines = new BaselineList( Stream.get( "stream:proj_int@\\pvob" ), Component.get( "component:comp@\\pvob" ), null )
+                    .load( 3 ).setExecutor( executor ).apply();
+            assertThat( baselines.size(), is( 6 ) );
+            for( Baseline baseline : baselines ) {
+                assertThat( baseline.getShortname(), baseline.isLoaded(), is( true ) );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelLimit() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool( 2 );
+        try {
+            List<Baseline> baselines = new BaselineList( Stream.get( "stream:proj_int@\\pvob" ), Component.get( "component:comp@\\pvob" ), null )
+                    .setSorting( new BaselineList.DescendingDateSort() ).setLimit( 4 ).load( 2 ).setExecutor( executor ).apply();
+            assertThat( names( baselines ), is( "bl6 bl5 bl4 deliverbl.bl3" ) );
+            for( Baseline baseline : baselines ) {
+                assertThat( baseline.getShortname(), baseline.isLoaded(), is( true ) );
+            }
+
+            /* The deliver status, the listing and the four baselines described by two workers */
+            assertThat( cleartool.getCommandCount(), is( 4L ) );
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination( 10, TimeUnit.SECONDS );
+        }
+        assertThat( executor.getCompletedTaskCount(), is( 2L ) );
+    }
+
+    @Test
+    public void interruptedLoad() throws Exception {
+        cleartool.setLatency( "describe", 1000 );
+        ExecutorService executor = Executors.newFixedThreadPool( 3 );
+        BaselineList list = new BaselineList( Stream.get( "stream:proj_int@\\pvob" ), Component.get( "component:comp@\\pvob" ), null ).load( 3 ).setExecutor( executor );
+
+        /* Interrupted while the loaders are waiting for cleartool */
+        final Thread loading = Thread.currentThread();
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep( 200 );
+                } catch( InterruptedException e ) {
+                    /* Interrupting anyway */
+                }
+                loading.interrupt();
+            }
+        }.start();
+
+        try {
+            list.apply();
+            fail( "The load is interrupted" );
+        } catch( CommandLineException e ) {
+            /* Expected */
+        } finally {
+            assertThat( Thread.interrupted(), is( true ) );
+            executor.shutdownNow();
+            executor.awaitTermination( 10, TimeUnit.SECONDS );
+        }
+    }
+
+    @Test
+    public void loadingIterator() throws Exception {
+        BaselineList baselines = new BaselineList( Stream.get( "stream:proj_int@\\pvob" ), Component.get( "component:comp@\\pvob" ), null ).apply();
+        long listed = cleartool.getCommandCount();
+
+        Iterator<Baseline> it = baselines.loadingIterator();
+        assertThat( it.next().isLoaded(), is( true ) );
+        assertThat( cleartool.getCommandCount(), is( listed + 1 ) );
+    }
+
+    @Test
+    public void sortByDate() throws Exception {
+        List<Baseline> baselines = new ArrayList<Baseline>();
+        for( String name : new String[] { "bl4", "bl1", "bl6", "bl2" } ) {
+            baselines.add( Baseline.get( "baseline:" + name + "@\\pvob" ) );
+        }
+
+        long[] times = BaselineList.sortByDate( baselines, true );
+        assertThat( names( baselines ), is( "bl1 bl2 bl4 bl6" ) );
+        assertThat( times[0] < times[3], is( true ) );
+
+        /* The dates are loaded in one call and sorting again does not call cleartool */
+        BaselineList.sortByDate( baselines, false );
+        assertThat( names( baselines ), is( "bl6 bl4 bl2 bl1" ) );
+        assertThat( cleartool.getCommandCount(), is( 1L ) );
+    }
+
+    private String names( List<Baseline> baselines ) {
+        StringBuilder sb = new StringBuilder();
+        for( Baseline baseline : baselines ) {
+            sb.append( sb.length() > 0 ? " " : "" ).append( baseline.getShortname() );
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.unit.util.ScriptedCommandLine;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.utils.BaselinePoller;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author cwolfgang
+ */
+public class BaselinePollerTest {
+
+    private CommandLineInterface original;
+
+    private Stream stream;
+    private Component component;
+
+    @Before
+    public void before() throws Exception {
+        original = Cleartool.getCommandLineInterface();
+        stream = Stream.get( "stream:dev@\\pvob" );
+        component = Component.get( "component:comp@\\pvob" );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    private void listing( String output ) {
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().on( "^cleartool lsbl ", output ) );
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        BaselinePoller poller = new BaselinePoller();
+
+        listing( "baseline:bl1@\\pvob;20130101.120000;BUILT\nbaseline:bl2@\\pvob;20130102.120000;INITIAL" );
+        List<Baseline> baselines = poller.poll( stream, component, PromotionLevel.BUILT );
+        assertThat( baselines.size(), is( 1 ) );
+        assertThat( baselines.get( 0 ).getShortname(), is( "bl1" ) );
+
+        /* bl2 is promoted and bl3 is created */
+        listing( "baseline:bl1@\\pvob;20130101.120000;BUILT\nbaseline:bl2@\\pvob;20130102.120000;BUILT\nbaseline:bl3@\\pvob;20130103.120000;BUILT" );
+        baselines = poller.poll( stream, component, PromotionLevel.BUILT );
+        assertThat( baselines.size(), is( 2 ) );
+        assertThat( baselines.get( 0 ).getShortname(), is( "bl2" ) );
+        assertThat( baselines.get( 1 ).getShortname(), is( "bl3" ) );
+
+        baselines = poller.poll( stream, component, PromotionLevel.BUILT );
+        assertThat( baselines.size(), is( 0 ) );
+    }
+
+    @Test
+    public void sameSecond() throws Exception {
+        BaselinePoller poller = new BaselinePoller();
+
+        listing( "baseline:bl1@\\pvob;20130101.120000;BUILT" );
+        assertThat( poller.poll( stream, component, null ).size(), is( 1 ) );
+
+        listing( "baseline:bl1@\\pvob;20130101.120000;BUILT\nbaseline:bl2@\\pvob;20130101.120000;INITIAL" );
+        List<Baseline> baselines = poller.poll( stream, component, null );
+        assertThat( baselines.size(), is( 1 ) );
+        assertThat( baselines.get( 0 ).getShortname(), is( "bl2" ) );
+    }
+
+    @Test
+    public void persisted() throws Exception {
+        File store = File.createTempFile( "watermarks", ".properties" );
+        store.delete();
+        try {
+            listing( "baseline:bl1@\\pvob;20130101.120000;BUILT\nbaseline:bl2@\\pvob;20130102.120000;INITIAL" );
+            new BaselinePoller( store ).poll( stream, component, PromotionLevel.BUILT );
+
+            /* bl1 is deleted, bl2 is promoted */
+            listing( "baseline:bl2@\\pvob;20130102.120000;BUILT" );
+            List<Baseline> baselines = new BaselinePoller( store ).poll( stream, component, PromotionLevel.BUILT );
+            assertThat( baselines.size(), is( 1 ) );
+            assertThat( baselines.get( 0 ).getShortname(), is( "bl2" ) );
+        } finally {
+            store.delete();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.unit.util.ScriptedCommandLine;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author cwolfgang
+ */
+public class BulkLoadTest {
+
+    private CommandLineInterface original;
+
+    @Before
+    public void before() {
+        original = Cleartool.getCommandLineInterface();
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    private String record( String name, String level ) {
+        return name + "::component:comp@\\pvob::stream:dev@\\pvob::" + level + "::user::20130101.120000::not labeled::site1";
+    }
+
+    @Test
+    public void oneDescribe() throws Exception {
+        ScriptedCommandLine cli = new ScriptedCommandLine().on( "describe -fmt .*\\{#\\} baseline:bl1@\\\\pvob baseline:bl2@\\\\pvob baseline:bl3@\\\\pvob$", record( "bl1", "INITIAL" ) + "{#}" + record( "bl2", "BUILT" ) + "{#}" + record( "bl3", "TESTED" ) + "{#}" );
+        Cleartool.setCommandLineInterface( cli );
+
+        List<Baseline> baselines = getBaselines( "bl1", "bl2", "bl3" );
+        UCMEntity.loadAll( baselines );
+
+        assertThat( cli.getCommands().size(), is( 1 ) );
+        assertThat( baselines.get( 0 ).getPromotionLevel(), is( Project.PromotionLevel.INITIAL ) );
+        assertThat( baselines.get( 2 ).getPromotionLevel(), is( Project.PromotionLevel.TESTED ) );
+        assertThat( baselines.get( 1 ).getUser(), is( "user" ) );
+        assertThat( baselines.get( 1 ).getStream().getShortname(), is( "dev" ) );
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        ScriptedCommandLine cli = new ScriptedCommandLine()
+                .on( "describe -fmt ", record( "bl1", "INITIAL" ) + "{#}" )
+                .on( "desc -fmt .* baseline:bl1@", record( "bl1", "INITIAL" ) )
+                .fail( "desc -fmt .* baseline:bl2@", "cleartool: Error: Baseline not found: \"bl2\"." );
+        Cleartool.setCommandLineInterface( cli );
+
+        List<Baseline> baselines = getBaselines( "bl1", "bl2" );
+        Map<Baseline, Exception> failed = UCMEntity.tryLoadAll( baselines );
+
+        assertThat( failed.size(), is( 1 ) );
+        assertThat( failed.containsKey( baselines.get( 1 ) ), is( true ) );
+        assertThat( baselines.get( 0 ).isLoaded(), is( true ) );
+        assertThat( cli.getCommands().size(), is( 3 ) );
+    }
+
+    private List<Baseline> getBaselines( String ... names ) throws Exception {
+        List<Baseline> baselines = new ArrayList<Baseline>();
+        for( String name : names ) {
+            baselines.add( Baseline.get( "baseline:" + name + "@\\pvob" ) );
+        }
+        return baselines;
+    }
+}
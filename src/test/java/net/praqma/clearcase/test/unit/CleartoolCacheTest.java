@@ -0,0 +1,96 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolCache;
+import net.praqma.clearcase.test.unit.util.ScriptedCommandLine;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author cwolfgang
+ */
+public class CleartoolCacheTest {
+
+    private CommandLineInterface original;
+    private ScriptedCommandLine cli;
+    private CleartoolCache cache;
+
+    @Before
+    public void before() {
+        original = Cleartool.getCommandLineInterface();
+        cli = new ScriptedCommandLine()
+                .on( "deliver -status", "No deliver operation in progress on stream" )
+                .on( "lsbl", "baseline:bl1@\\pvob" )
+                .on( "desc", "stream:s@\\pvob" )
+                .on( "chbl|mkbl", "" )
+                .fail( "lsstream", "cleartool: Error: Stream not found" );
+        Cleartool.setCommandLineInterface( cli );
+        cache = new CleartoolCache( 10 );
+        Cleartool.setCache( cache );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCache( null );
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void cached() {
+        Cleartool.run( "deliver -status -stream stream:s@\\pvob" );
+        Cleartool.run( "deliver  -status -stream stream:s@\\pvob " ).stdoutList.clear();
+        Cleartool.run( "deliver -status -stream stream:s@\\pvob", null, false );
+
+        assertThat( cli.count( "deliver" ), is( 2 ) );
+        assertThat( cache.getHits(), is( 1L ) );
+        assertThat( Cleartool.run( "deliver -status -stream stream:s@\\pvob" ).stdoutList.size(), is( 1 ) );
+    }
+
+    @Test
+    public void expired() throws InterruptedException {
+        cache.setTtl( "desc", 50 );
+        Cleartool.run( "desc -fmt %n stream:s@\\pvob" );
+        Thread.sleep( 100 );
+        Cleartool.run( "desc -fmt %n stream:s@\\pvob" );
+
+        assertThat( cli.count( "desc" ), is( 2 ) );
+    }
+
+    @Test
+    public void invalidatedByChbl() {
+        Cleartool.run( "desc -fmt %[plevel]p baseline:bl1@\\pvob" );
+        Cleartool.run( "desc -fmt %n stream:s@\\pvob" );
+        Cleartool.run( "lsbl -stream stream:s@\\pvob" );
+        assertThat( cache.size(), is( 3 ) );
+
+        Cleartool.run( "chbl -level BUILT baseline:bl1@\\pvob" );
+
+        assertThat( cache.size(), is( 1 ) );
+        Cleartool.run( "desc -fmt %n stream:s@\\pvob" );
+        assertThat( cli.count( "desc -fmt %n" ), is( 1 ) );
+    }
+
+    @Test
+    public void clearedByMkbl() {
+        Cleartool.run( "desc -fmt %n stream:s@\\pvob" );
+        Cleartool.run( "mkbl -nc bl2" );
+
+        assertThat( cache.size(), is( 0 ) );
+    }
+
+    @Test
+    public void failedNotCached() {
+        /* Failed, the error merged into the output or ignored */
+        Cleartool.run( "lsstream -fmt %n stream:s@\\pvob", null, true, true );
+        Cleartool.run( "lsstream -fmt %n stream:s@\\pvob", null, false, true );
+        Cleartool.run( "lsstream -fmt %n stream:s@\\pvob", null, true, true );
+
+        assertThat( cli.count( "lsstream" ), is( 3 ) );
+        assertThat( cache.size(), is( 0 ) );
+    }
+}
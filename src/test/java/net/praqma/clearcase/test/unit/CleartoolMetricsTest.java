@@ -0,0 +1,75 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.exceptions.NoLicensesException;
+import net.praqma.clearcase.test.unit.util.ScriptedCommandLine;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class CleartoolMetricsTest {
+
+    private CommandLineInterface original;
+    private CleartoolMetrics metrics;
+
+    @Before
+    public void before() {
+        original = Cleartool.getCommandLineInterface();
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine()
+                .on( "desc", "stream:s@\\pvob" )
+                .on( "lsbl", "baseline:bl1@\\pvob\nbaseline:bl2@\\pvob" )
+                .fail( "mkbl", "FLEXnet Licensing error:-18,147" ) );
+        metrics = new CleartoolMetrics();
+        Cleartool.addListener( metrics );
+    }
+
+    @After
+    public void after() {
+        Cleartool.removeListener( metrics );
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void verbs() {
+        Cleartool.run( "desc -fmt %n stream:s@\\pvob" );
+        Cleartool.run( "describe -fmt %n stream:s@\\pvob" );
+        Cleartool.run( "lsbl -s" );
+
+        assertThat( metrics.getCommandCount(), is( 3L ) );
+        assertThat( metrics.getCount( "describe" ), is( 2L ) );
+        assertThat( metrics.getCount( "lsbl" ), is( 1L ) );
+        assertThat( metrics.getVerbs().length, is( 2 ) );
+        assertThat( metrics.getTopCallers()[0], is( CleartoolMetricsTest.class.getName() + ".verbs: 3" ) );
+    }
+
+    @Test
+    public void failures() {
+        try {
+            Cleartool.run( "mkbl -nc bl" );
+            fail( "Should fail" );
+        } catch( NoLicensesException e ) {
+            /* Expected */
+        }
+
+        assertThat( metrics.getFailureCount(), is( 1L ) );
+        assertThat( metrics.getFailureSummary()[0], is( "NoLicensesException: 1" ) );
+    }
+
+    @Test
+    public void verb() {
+        assertThat( Cleartool.getVerb( "desc -fmt %n x" ), is( "describe" ) );
+        assertThat( Cleartool.getVerb( " lsbaseline -s" ), is( "lsbl" ) );
+        assertThat( Cleartool.getVerb( "lsproj -s" ), is( "lsproject" ) );
+        assertThat( Cleartool.getVerb( "lsproject -s" ), is( "lsproject" ) );
+        assertThat( Cleartool.getVerb( "find . -all -print" ), is( "find" ) );
+    }
+}
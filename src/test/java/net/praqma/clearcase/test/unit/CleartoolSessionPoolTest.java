@@ -0,0 +1,147 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.CleartoolSessionPool;
+import net.praqma.clearcase.test.unit.util.ScriptedSession;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class CleartoolSessionPoolTest {
+
+    private final AtomicInteger launched = new AtomicInteger( 0 );
+    private final CountDownLatch gate = new CountDownLatch( 1 );
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void after() {
+        gate.countDown();
+        executor.shutdownNow();
+    }
+
+    private CleartoolSessionPool pool( int size ) {
+        return new CleartoolSessionPool( size ) {
+            @Override
+            protected Process launch() throws IOException {
+                launched.incrementAndGet();
+                return new ScriptedSession( gate );
+            }
+        };
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        CleartoolSessionPool pool = pool( 2 );
+        for( int i = 0 ; i < 3 ; i++ ) {
+            CmdResult result = pool.run( "cleartool echo a b" );
+            assertThat( result.stdoutList.size(), is( 2 ) );
+            assertThat( result.stdoutList.get( 1 ), is( "b" ) );
+        }
+        assertThat( launched.get(), is( 1 ) );
+        assertThat( pool.getNumberOfIdleSessions(), is( 1 ) );
+        pool.close();
+    }
+
+    @Test
+    public void deadSessionWakesWaiter() throws Exception {
+        final CleartoolSessionPool pool = pool( 1 );
+
+        /* The only session dies while another caller waits for it */
+        Future<CmdResult> dying = executor.submit( call( pool, "cleartool die" ) );
+        waitFor( pool, 1 );
+        Future<CmdResult> waiter = executor.submit( call( pool, "cleartool echo waited" ) );
+        Thread.sleep( 100 );
+        gate.countDown();
+
+        try {
+            dying.get( 10, TimeUnit.SECONDS );
+            fail( "The session terminated" );
+        } catch( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof CommandLineException );
+        }
+
+        /* A new session is started for the waiter */
+        assertThat( waiter.get( 10, TimeUnit.SECONDS ).stdoutList.get( 0 ), is( "waited" ) );
+        assertThat( launched.get(), is( 2 ) );
+        assertThat( pool.getNumberOfSessions(), is( 1 ) );
+        pool.close();
+    }
+
+    @Test
+    public void closeWakesWaiter() throws Exception {
+        final CleartoolSessionPool pool = pool( 1 );
+
+        Future<CmdResult> holder = executor.submit( call( pool, "cleartool wait" ) );
+        waitFor( pool, 1 );
+        Future<CmdResult> waiter = executor.submit( call( pool, "cleartool echo waited" ) );
+        Thread.sleep( 100 );
+
+        pool.close();
+
+        try {
+            waiter.get( 10, TimeUnit.SECONDS );
+            fail( "The waiter must fail when the pool is closed" );
+        } catch( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof CommandLineException );
+        }
+        try {
+            holder.get( 10, TimeUnit.SECONDS );
+            fail( "The session is terminated when the pool is closed" );
+        } catch( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof CommandLineException );
+        }
+    }
+
+    @Test
+    public void workingDirectory() throws Exception {
+        CleartoolSessionPool pool = pool( 1 );
+        File dir = new File( System.getProperty( "java.io.tmpdir" ) ).getAbsoluteFile();
+
+        assertThat( pool.run( "cleartool pwd", dir ).stdoutList.get( 0 ), is( dir.getAbsolutePath() ) );
+
+        /* Without a directory, in the working directory of the JVM as a forked cleartool */
+        assertThat( pool.run( "cleartool pwd" ).stdoutList.get( 0 ), is( System.getProperty( "user.dir" ) ) );
+        assertThat( launched.get(), is( 1 ) );
+        pool.close();
+    }
+
+    private Callable<CmdResult> call( final CleartoolSessionPool pool, final String cmd ) {
+        return new Callable<CmdResult>() {
+            @Override
+            public CmdResult call() throws Exception {
+                return pool.run( cmd );
+            }
+        };
+    }
+
+    private void waitFor( CleartoolSessionPool pool, int sessions ) throws InterruptedException {
+        for( int i = 0 ; i < 100 && pool.getNumberOfSessions() < sessions ; i++ ) {
+            Thread.sleep( 10 );
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolRecorder;
+import net.praqma.clearcase.cleartool.CleartoolReplayer;
+import net.praqma.clearcase.cleartool.CleartoolTranscript;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class CleartoolTranscriptTest {
+
+    private CommandLineInterface original;
+    private SimulatedCleartool simulator;
+
+    @Before
+    public void before() {
+        SimulatedUCM model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" );
+        model.baseline( "bl1", "component:comp@\\pvob", "stream:proj_int@\\pvob", "BUILT" );
+
+        original = Cleartool.getCommandLineInterface();
+        simulator = new SimulatedCleartool( model );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void recordAndReplay() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CleartoolRecorder recorder = new CleartoolRecorder( simulator, out );
+        Cleartool.setCommandLineInterface( recorder );
+
+        assertThat( Baseline.get( "baseline:bl1@\\pvob" ).load().getPromotionLevel(), is( Project.PromotionLevel.BUILT ) );
+        try {
+            Cleartool.run( "describe baseline:nothing@\\pvob" );
+            fail( "The baseline does not exist" );
+        } catch( AbnormalProcessTerminationException e ) {
+            /* Recorded */
+        }
+        recorder.close();
+
+        List<CleartoolTranscript.Entry> entries = CleartoolTranscript.read( new ByteArrayInputStream( out.toByteArray() ) );
+        assertThat( entries.size(), is( 2 ) );
+        assertThat( entries.get( 1 ).isFailed(), is( true ) );
+
+        CleartoolReplayer replayer = new CleartoolReplayer( entries );
+        Cleartool.setCommandLineInterface( replayer );
+
+        assertThat( Baseline.get( "baseline:bl1@\\pvob" ).load().getPromotionLevel(), is( Project.PromotionLevel.BUILT ) );
+        try {
+            Cleartool.run( "describe baseline:nothing@\\pvob" );
+            fail( "The failure is replayed" );
+        } catch( AbnormalProcessTerminationException e ) {
+            assertThat( e.getExitValue(), is( 1 ) );
+        }
+
+        assertThat( replayer.getReplayed(), is( 2L ) );
+        assertThat( simulator.getCommandCount(), is( 2L ) );
+    }
+
+    @Test
+    public void killedRecording() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CleartoolRecorder recorder = new CleartoolRecorder( simulator, out );
+        recorder.run( "cleartool lsbl -s -stream stream:proj_int@\\pvob" );
+        recorder.run( "cleartool lsproj -s" );
+
+        /* Not closed, each command is written through */
+        byte[] bytes = out.toByteArray();
+        List<CleartoolTranscript.Entry> entries = CleartoolTranscript.read( new ByteArrayInputStream( bytes ) );
+        assertThat( entries.size(), is( 2 ) );
+        assertThat( entries.get( 1 ).getOutput().get( 0 ), is( "proj" ) );
+
+        /* Cut off in the last entry */
+        entries = CleartoolTranscript.read( new ByteArrayInputStream( Arrays.copyOf( bytes, bytes.length - 3 ) ) );
+        assertThat( entries.size(), is( 1 ) );
+        assertThat( entries.get( 0 ).getOutput().get( 0 ), is( "bl1" ) );
+    }
+
+    @Test
+    public void repeatAndUnrecorded() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CleartoolRecorder recorder = new CleartoolRecorder( simulator, out );
+        recorder.run( "cleartool lsbl -s -stream stream:proj_int@\\pvob" );
+        recorder.close();
+
+        CleartoolReplayer replayer = new CleartoolReplayer( CleartoolTranscript.read( new ByteArrayInputStream( out.toByteArray() ) ) );
+        assertThat( replayer.run( "cleartool lsbl -s -stream stream:proj_int@\\pvob" ).stdoutList.get( 0 ), is( "bl1" ) );
+        assertThat( replayer.run( "cleartool lsbl -s -stream stream:proj_int@\\pvob" ).stdoutList.get( 0 ), is( "bl1" ) );
+        assertThat( replayer.getRepeated(), is( 1L ) );
+
+        try {
+            replayer.run( "cleartool lsproj -s" );
+            fail( "Not recorded" );
+        } catch( CommandLineException e ) {
+            assertThat( replayer.getUnrecorded(), is( 1L ) );
+        }
+    }
+
+    @Test
+    public void usedOnce() throws Exception {
+        String cmd = "cleartool lsbl -s -stream stream:proj_int@\\pvob";
+        File a = new File( "/view/a" );
+        File b = new File( "/view/b" );
+        CleartoolReplayer replayer = new CleartoolReplayer( Arrays.asList( entry( cmd, a, "bl_a" ), entry( cmd, b, "bl_b" ) ) );
+
+        assertThat( replayer.run( cmd, a ).stdoutList.get( 0 ), is( "bl_a" ) );
+
+        /* Not recorded in the directory, the first recording not used */
+        assertThat( replayer.run( cmd, new File( "/view/c" ) ).stdoutList.get( 0 ), is( "bl_b" ) );
+        assertThat( replayer.getRepeated(), is( 0L ) );
+
+        /* Already used for another directory, the recording of the directory is repeated */
+        assertThat( replayer.run( cmd, b ).stdoutList.get( 0 ), is( "bl_b" ) );
+        assertThat( replayer.getRepeated(), is( 1L ) );
+    }
+
+    private static CleartoolTranscript.Entry entry( String cmd, File dir, String output ) {
+        return new CleartoolTranscript.Entry( cmd, dir.getAbsolutePath(), false, false, Arrays.asList( output ), new ArrayList<String>(), 0, null, 0, 0 );
+    }
+}
@@ -0,0 +1,238 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.cli.Report;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cwolfgang
+ */
+public class ReportTest {
+
+    private static final File root = new File( "/view/vobs/comp" );
+
+    private CommandLineInterface original;
+    private SimulatedUCM model;
+    private File state;
+
+    @Before
+    public void before() throws Exception {
+        model = new SimulatedUCM()
+                .component( "comp", "\\pvob", root.getPath() )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                .stream( "dev", "stream:proj_int@\\pvob" )
+                .activity( "act1", "stream:dev@\\pvob", "First" );
+
+        /* Hours before the reports */
+        model.setClock( new Date( System.currentTimeMillis() - 3 * 60 * 60 * 1000 ) );
+        model.version( file( "a.txt" ), "main/dev", "activity:act1@\\pvob" );
+        model.version( file( "a.txt" ), "main/dev", "activity:act1@\\pvob" );
+        model.version( file( "b.txt" ), "main/dev", "activity:act1@\\pvob" );
+        model.version( file( "c.txt" ), "main/feature", "activity:act1@\\pvob" );
+
+        original = Cleartool.getCommandLineInterface();
+        Cleartool.setCommandLineInterface( new SimulatedCleartool( model ) );
+
+        state = File.createTempFile( "report", ".state" );
+        state.delete();
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+        state.delete();
+    }
+
+    @Test
+    public void incrementalAsFull() throws Exception {
+        File first = report( true );
+        assertThat( lines( first ).size(), is( 4 ) );
+
+        /* New versions, of a known element on a new branch and of a new element */
+        model.setClock( new Date() );
+        model.version( file( "a.txt" ), "main/dev", "activity:act1@\\pvob" );
+        model.version( file( "b.txt" ), "main/feature", "activity:act1@\\pvob" );
+        model.version( file( "d.txt" ), "main/dev", "activity:act1@\\pvob" );
+
+        File incremental = report( true );
+        File full = report( false );
+
+        List<String> lines = lines( incremental );
+        assertThat( lines, is( lines( full ) ) );
+        assertThat( lines.size(), is( 5 ) );
+
+        /* The element is found on both branches, each listed once */
+        for( String line : lines ) {
+            if( line.contains( "b.txt" ) ) {
+                assertTrue( line, line.endsWith( "devfeature" ) );
+            }
+            if( line.contains( "a.txt" ) ) {
+                assertTrue( line, line.contains( ";dev;3;" ) );
+            }
+        }
+
+        FileUtils.forceDelete( first );
+        FileUtils.forceDelete( incremental );
+        FileUtils.forceDelete( full );
+    }
+
+    @Test
+    public void incrementalRemoved() throws Exception {
+        model.setClock( new Date() );
+        model.version( file( "c.txt" ), "main/dev", "activity:act1@\\pvob" );
+        File first = report( true );
+        assertThat( lines( first ).size(), is( 4 ) );
+
+        /* Removed, an element and a branch of an element */
+        model.remove( model.getVersions( file( "b.txt" ) ).get( 0 ) );
+        model.remove( model.getVersions( file( "c.txt" ) ).get( 0 ) );
+
+        File incremental = report( true );
+        File full = report( false );
+
+        List<String> lines = lines( incremental );
+        assertThat( lines, is( lines( full ) ) );
+        assertThat( lines.size(), is( 3 ) );
+        for( String line : lines ) {
+            assertTrue( line, !line.contains( "b.txt" ) );
+            if( line.contains( "c.txt" ) ) {
+                assertTrue( line, line.endsWith( ";dev" ) );
+            }
+        }
+
+        FileUtils.forceDelete( first );
+        FileUtils.forceDelete( incremental );
+        FileUtils.forceDelete( full );
+    }
+
+    @Test
+    public void periodicFull() throws Exception {
+        File first = report( true );
+
+        /* A label of an unchanged version is not seen by an incremental report */
+        model.label( model.getVersions( file( "a.txt" ) ).get( 0 ), "REL_1" );
+        File incremental = report( true );
+        File full = report( false );
+        assertTrue( !lines( incremental ).equals( lines( full ) ) );
+
+        /* Until the next full report */
+        File output = File.createTempFile( "report", ".csv" );
+        new Report().setState( state ).setFullAfter( 0 ).report( root, output );
+        assertThat( lines( output ), is( lines( full ) ) );
+
+        FileUtils.forceDelete( first );
+        FileUtils.forceDelete( incremental );
+        FileUtils.forceDelete( full );
+        FileUtils.forceDelete( output );
+    }
+
+    @Test
+    public void subtrees() throws Exception {
+        File dir = File.createTempFile( "report", ".view" );
+        FileUtils.forceDelete( dir );
+        FileUtils.forceMkdir( new File( dir, "x/deep" ) );
+        FileUtils.forceMkdir( new File( dir, "y" ) );
+
+        try {
+            SimulatedUCM model = new SimulatedUCM()
+                    .component( "comp", "\\pvob", dir.getPath() )
+                    .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                    .stream( "dev", "stream:proj_int@\\pvob" )
+                    .activity( "act1", "stream:dev@\\pvob", "First" );
+            for( String element : new String[] { "a.txt", "x/b.txt", "x/deep/c.txt", "y/d.txt" } ) {
+                model.version( new File( dir, element ).getPath(), "main/dev", "activity:act1@\\pvob" );
+            }
+
+            /* The versions found by each find, by path name */
+            final Map<String, Integer> found = new TreeMap<String, Integer>();
+            Cleartool.setCommandLineInterface( new SimulatedCleartool( model ) {
+                @Override
+                public void stream( String cmd, File dir, boolean ignore, final LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+                    if( !cmd.startsWith( "cleartool find " ) ) {
+                        super.stream( cmd, dir, ignore, handler );
+                        return;
+                    }
+
+                    final String pname = cmd.split( " " )[2];
+                    super.stream( cmd, dir, ignore, new LineHandler() {
+                        @Override
+                        public void handle( String line ) {
+                            count( found, pname );
+                            handler.handle( line );
+                        }
+                    } );
+                }
+
+                @Override
+                public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+                    CmdResult result = super.run( cmd, dir, merge, ignore, variables );
+                    if( cmd.startsWith( "cleartool find " ) ) {
+                        for( int i = 0 ; i < result.stdoutList.size() ; i++ ) {
+                            count( found, cmd.split( " " )[2] );
+                        }
+                    }
+                    return result;
+                }
+            } );
+
+            File output = File.createTempFile( "report", ".csv" );
+            new Report().report( dir, output );
+            assertThat( found.toString(), is( "{.=4}" ) );
+            List<String> full = lines( output );
+
+            /* Each version is found once, by the partition of its subtree */
+            found.clear();
+            new Report().setSubtrees( true ).report( dir, output );
+            assertThat( found.toString(), is( "{.=1, x=2, y=1}" ) );
+            assertThat( lines( output ), is( full ) );
+            assertThat( full.size(), is( 5 ) );
+
+            FileUtils.forceDelete( output );
+        } finally {
+            FileUtils.deleteDirectory( dir );
+        }
+    }
+
+    private static synchronized void count( Map<String, Integer> found, String pname ) {
+        Integer n = found.get( pname );
+        found.put( pname, n == null ? 1 : n + 1 );
+    }
+
+    private File report( boolean incremental ) throws Exception {
+        File output = File.createTempFile( "report", ".csv" );
+        Report report = new Report();
+        if( incremental ) {
+            report.setState( state );
+        }
+        report.report( root, output );
+        return output;
+    }
+
+    private List<String> lines( File file ) throws Exception {
+        return FileUtils.readLines( file );
+    }
+
+    private static String file( String name ) {
+        return new File( root, name ).getPath();
+    }
+}
@@ -0,0 +1,108 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.cli.ReportWriter;
+import net.praqma.clearcase.Branch;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author cwolfgang
+ */
+public class ReportWriterTest {
+
+    private Branch main = new Branch( "main" );
+    private Branch dev = new Branch( "dev" );
+
+    @Test
+    public void inMemory() throws Exception {
+        assertThat( write( ReportWriter.DEFAULT_MEMORY ), is( expected() ) );
+    }
+
+    @Test
+    public void onDisk() throws Exception {
+        /* The index and the rows are sorted on disk */
+        assertThat( write( 1000 ), is( expected() ) );
+    }
+
+    @Test
+    public void longRows() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0 ; i < 20000 ; i++ ) {
+            sb.append( "æbc;" );
+        }
+        String row = sb.toString();
+
+        /* Beyond the 64K of writeUTF, in memory and on disk */
+        for( long memory : new long[] { ReportWriter.DEFAULT_MEMORY, 1000 } ) {
+            ReportWriter writer = new ReportWriter( Arrays.asList( main, dev ), memory );
+            try {
+                writer.add( "/view/vobs/comp/b.txt", row + "b", 10, 0, Collections.singletonList( main ) );
+                writer.add( "/view/vobs/comp/a.txt", row + "a", 10, 1, Collections.singletonList( dev ) );
+                writer.add( "/view/vobs/comp/b.txt", "old", 5, 2, Collections.singletonList( dev ) );
+
+                final List<String> rows = new ArrayList<String>();
+                writer.write( new ReportWriter.RowHandler() {
+                    @Override
+                    public void handle( String path, String row, long date, List<Branch> branches ) throws IOException {
+                        rows.add( row.substring( row.length() - 1 ) + branches.size() + row.length() );
+                    }
+                } );
+
+                assertThat( rows, is( Arrays.asList( "a1" + ( row.length() + 1 ), "b2" + ( row.length() + 1 ) ) ) );
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private List<String> write( long memory ) throws Exception {
+        ReportWriter writer = new ReportWriter( Arrays.asList( main, dev ), memory );
+        try {
+            for( int i = 0 ; i < 500 ; i++ ) {
+                /* Each file on main, and the even files younger on dev */
+                String path = "/view/vobs/comp/f" + ( 499 - i ) + ".txt";
+                writer.add( path, path + ";main;", 10, i, Collections.singletonList( main ) );
+                if( i % 2 == 0 ) {
+                    writer.add( path, path + ";dev;", 20, 1000 + i, Collections.singletonList( dev ) );
+                }
+                /* Equally young, the lowest rank wins */
+                writer.add( path, path + ";late;", 10, 2000 + i, Collections.singletonList( main ) );
+            }
+
+            final List<String> rows = new ArrayList<String>();
+            writer.write( new ReportWriter.RowHandler() {
+                @Override
+                public void handle( String path, String row, long date, List<Branch> branches ) throws IOException {
+                    rows.add( row + branches.size() );
+                }
+            } );
+
+            return rows;
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<String> expected() {
+        List<String> paths = new ArrayList<String>();
+        for( int i = 0 ; i < 500 ; i++ ) {
+            paths.add( "/view/vobs/comp/f" + i + ".txt" );
+        }
+        Collections.sort( paths );
+
+        List<String> rows = new ArrayList<String>();
+        for( String path : paths ) {
+            int n = Integer.parseInt( path.substring( path.lastIndexOf( 'f' ) + 1, path.length() - 4 ) );
+            rows.add( ( 499 - n ) % 2 == 0 ? path + ";dev;2" : path + ";main;1" );
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,229 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.Deliver;
+import net.praqma.clearcase.Find;
+import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.container.LabelsForVersion;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.DiffBlCache;
+import net.praqma.clearcase.util.Labels;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class SimulatedCleartoolTest {
+
+    private CommandLineInterface original;
+    private SimulatedCleartool cleartool;
+
+    @Before
+    public void before() {
+        SimulatedUCM model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                .stream( "dev", "stream:proj_int@\\pvob" )
+                .activity( "act1", "stream:dev@\\pvob", "First" );
+        model.version( "/view/vobs/comp/a.txt", "main/dev", "activity:act1@\\pvob" );
+        model.version( "/view/vobs/comp/a.txt", "main/dev", "activity:act1@\\pvob" );
+        model.baseline( "bl1", "component:comp@\\pvob", "stream:dev@\\pvob", "BUILT" );
+        model.activity( "act2", "stream:dev@\\pvob", "Second" );
+        model.version( "/view/vobs/comp/b.txt", "main/dev", "activity:act2@\\pvob" );
+        model.baseline( "bl2", "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+
+        original = Cleartool.getCommandLineInterface();
+        cleartool = new SimulatedCleartool( model );
+        Cleartool.setCommandLineInterface( cleartool );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void load() throws Exception {
+        Stream stream = Stream.get( "stream:dev@\\pvob" ).load();
+        assertThat( stream.getProject().getShortname(), is( "proj" ) );
+        assertThat( stream.getDefaultTarget().getShortname(), is( "proj_int" ) );
+
+        Baseline baseline = Baseline.get( "baseline:bl1@\\pvob" ).load();
+        assertThat( baseline.getPromotionLevel(), is( Project.PromotionLevel.BUILT ) );
+        assertThat( baseline.getComponent().getShortname(), is( "comp" ) );
+        assertThat( baseline.getUser(), is( "simulator" ) );
+    }
+
+    @Test
+    public void listAndPromote() throws Exception {
+        Stream stream = Stream.get( "stream:dev@\\pvob" );
+        List<Baseline> baselines = new BaselineList( stream, Baseline.get( "baseline:bl1@\\pvob" ).load().getComponent(), null ).apply();
+        assertThat( baselines.size(), is( 2 ) );
+
+        Baseline bl2 = Baseline.get( "baseline:bl2@\\pvob" );
+        bl2.setPromotionLevel( Project.PromotionLevel.TESTED );
+        assertThat( Baseline.get( "baseline:bl2@\\pvob" ).load().getPromotionLevel(), is( Project.PromotionLevel.TESTED ) );
+    }
+
+    @Test
+    public void diff() throws Exception {
+        DiffBl diffbl = new DiffBl( Baseline.get( "baseline:bl2@\\pvob" ), Baseline.get( "baseline:bl1@\\pvob" ) ).setActivities( true ).setVersions( true );
+        List<Activity> activities = new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.RIGHT ).parse().getActivities();
+
+        assertThat( activities.size(), is( 1 ) );
+        assertThat( activities.get( 0 ).getShortname(), is( "act2" ) );
+        assertThat( activities.get( 0 ).changeset.versions.size(), is( 1 ) );
+        assertThat( activities.get( 0 ).changeset.versions.get( 0 ).getRevision(), is( 1 ) );
+    }
+
+    @Test
+    public void versionActivity() throws Exception {
+        DiffBl diffbl = new DiffBl( Baseline.get( "baseline:bl2@\\pvob" ), Baseline.get( "baseline:bl1@\\pvob" ) ).setActivities( true ).setVersions( true );
+        List<Activity> activities = new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.RIGHT ).parse().getActivities();
+
+        /* The diffbl and one describe of the versions */
+        assertThat( cleartool.getCommandCount(), is( 2L ) );
+        assertThat( activities.get( 0 ).changeset.versions.get( 0 ).getActivity(), is( activities.get( 0 ) ) );
+        assertThat( cleartool.getCommandCount(), is( 2L ) );
+
+        Version version = Version.get( activities.get( 0 ).changeset.versions.get( 0 ).getFullyQualifiedName() ).load();
+        assertThat( version.getActivity().getShortname(), is( "act2" ) );
+        assertThat( cleartool.getCommandCount(), is( 3L ) );
+    }
+
+    @Test
+    public void diffCache() throws Exception {
+        DiffBlCache.setCapacity( 10 );
+        try {
+            for( int i = 0 ; i < 3 ; i++ ) {
+                DiffBl diffbl = new DiffBl( Baseline.get( "baseline:bl2@\\pvob" ), Baseline.get( "baseline:bl1@\\pvob" ) ).setActivities( true ).setVersions( true );
+                List<Activity> activities = new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.RIGHT ).parse().getActivities();
+                assertThat( activities.get( 0 ).getShortname(), is( "act2" ) );
+            }
+
+            /* One diffbl and a describe of the versions each time */
+            assertThat( DiffBlCache.getHits(), is( 2L ) );
+            assertThat( cleartool.getCommandCount(), is( 4L ) );
+
+            /* Other flags */
+            new DiffBl( Baseline.get( "baseline:bl2@\\pvob" ), Baseline.get( "baseline:bl1@\\pvob" ) ).setActivities( true ).execute();
+            assertThat( cleartool.getCommandCount(), is( 5L ) );
+        } finally {
+            DiffBlCache.setCapacity( 0 );
+        }
+    }
+
+    @Test
+    public void projectedFind() throws Exception {
+        Find find = new Find().addPathName( "." ).setFindAll().print().setViewRoot( new File( "/view/vobs/comp" ) ).setVersionQuery( "version(.../dev/LATEST)" )
+                .project( Find.Field.ELEMENT_OID, Find.Field.VERSION_OID, Find.Field.DATE, Find.Field.KIND, Find.Field.USER );
+        List<Find.Record> records = find.findRecords();
+
+        assertThat( records.size(), is( 2 ) );
+        Find.Record a = records.get( 0 );
+        assertThat( a.getRevision(), is( 2 ) );
+        assertThat( a.getUser(), is( "simulator" ) );
+        assertThat( a.isDirectory(), is( false ) );
+        assertTrue( !a.getElementObjectId().equals( a.getObjectId() ) );
+
+        /* The find and one describe, the versions need no loading */
+        assertThat( a.getVersion().getDate(), is( a.getDate() ) );
+        assertThat( cleartool.getCommandCount(), is( 2L ) );
+    }
+
+    @Test
+    public void projectedFindChunks() throws Exception {
+        int size = UCMEntity.BULK_LOAD_CHUNK_SIZE;
+        UCMEntity.BULK_LOAD_CHUNK_SIZE = 3;
+        try {
+            Find find = new Find().addPathName( "." ).setFindAll().print().setViewRoot( new File( "/view/vobs/comp" ) ).setVersionQuery( "version(.../dev/LATEST)" )
+                    .project( Find.Field.ELEMENT_OID, Find.Field.VERSION_OID );
+            List<Find.Record> records = find.findRecords();
+            assertTrue( records.get( 1 ).getElementObjectId() != null );
+
+            /* Two selectors for each record, the find and a describe per record */
+            assertThat( cleartool.getCommandCount(), is( 3L ) );
+        } finally {
+            UCMEntity.BULK_LOAD_CHUNK_SIZE = size;
+        }
+    }
+
+    @Test
+    public void findQuery() throws Exception {
+        SimulatedUCM model = cleartool.getModel();
+        String since = new SimpleDateFormat( "dd-MMM-yyyy.HH:mm:ss", Locale.US ).format( model.getVersions( "/view/vobs/comp/b.txt" ).get( 0 ).getDate() );
+
+        Find find = new Find().addPathName( "." ).setFindAll().print().setViewRoot( new File( "/view/vobs/comp" ) ).setVersionQuery( "version(.../dev/LATEST) && created_since(" + since + ")" );
+        List<Version> versions = find.find();
+        assertThat( versions.size(), is( 1 ) );
+        assertThat( versions.get( 0 ).getFile().getName(), is( "b.txt" ) );
+
+        find = new Find().addPathName( "." ).setFindAll().print().setViewRoot( new File( "/view/vobs/comp" ) ).setVersionQuery( "version(.../dev/1)" );
+        assertThat( find.find().size(), is( 2 ) );
+
+        /* A query the simulator can not answer fails */
+        try {
+            new Find().addPathName( "." ).setFindAll().print().setViewRoot( new File( "/view/vobs/comp" ) ).setVersionQuery( "version(.../dev/LATEST) && !lbtype(REL_1)" ).find();
+            fail( "The query is not supported by the simulator" );
+        } catch( Exception e ) {
+            assertTrue( e.getMessage(), e.getMessage().contains( "does not support" ) || e.getCause() != null && e.getCause().getMessage().contains( "does not support" ) );
+        }
+    }
+
+    @Test
+    public void batchedLabels() throws Exception {
+        SimulatedUCM model = cleartool.getModel();
+        model.label( model.getVersions( "/view/vobs/comp/a.txt" ).get( 0 ), "REL_1" );
+        model.label( model.getVersions( "/view/vobs/comp/a.txt" ).get( 1 ), "REL_2" );
+        model.label( model.getVersions( "/view/vobs/comp/b.txt" ).get( 0 ), "REL_2" );
+
+        Map<String, List<LabelsForVersion>> labels = Labels.getLabels( Arrays.asList( "/view/vobs/comp/a.txt@@", "/view/vobs/comp/b.txt@@" ), null );
+        assertThat( labels.get( "/view/vobs/comp/a.txt@@" ).size(), is( 2 ) );
+        assertThat( labels.get( "/view/vobs/comp/a.txt@@" ).get( 1 ).getRevision(), is( 2 ) );
+        assertThat( labels.get( "/view/vobs/comp/b.txt@@" ).get( 0 ).getLabels().get( 0 ).getName(), is( "REL_2" ) );
+
+        /* One lsvtree */
+        assertThat( cleartool.getCommandCount(), is( 1L ) );
+    }
+
+    @Test
+    public void deliverStatus() throws Exception {
+        assertTrue( !Deliver.isDelivering( Stream.get( "stream:dev@\\pvob" ) ) );
+
+        cleartool.getModel().deliver( "stream:dev@\\pvob", "activity:deliver.dev@\\pvob", "dev_view" );
+        assertTrue( Deliver.isDelivering( Stream.get( "stream:dev@\\pvob" ) ) );
+    }
+
+    @Test
+    public void latency() {
+        cleartool.setLatency( "lsbl", 50 );
+        long start = System.currentTimeMillis();
+        Cleartool.run( "lsbl -s -stream stream:dev@\\pvob" );
+
+        assertTrue( System.currentTimeMillis() - start >= 50 );
+        assertThat( cleartool.getCommandCount(), is( 1L ) );
+    }
+}
@@ -0,0 +1,121 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ReadOnlyCommands;
+import net.praqma.clearcase.test.unit.util.ScriptedCommandLine;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author cwolfgang
+ */
+public class SingleFlightTest {
+
+    private CommandLineInterface original;
+    private CountDownLatch release;
+    private ScriptedCommandLine cli;
+
+    @Before
+    public void before() {
+        original = Cleartool.getCommandLineInterface();
+        release = new CountDownLatch( 1 );
+        cli = new ScriptedCommandLine() {
+            @Override
+            public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+                try {
+                    release.await( 10, TimeUnit.SECONDS );
+                } catch( InterruptedException e ) {
+                    throw new CommandLineException( "Interrupted" );
+                }
+                return super.run( cmd, dir, merge, ignore, variables );
+            }
+        }.on( "desc", "baseline:bl1@\\pvob" ).on( "mkbl", "" );
+        Cleartool.setCommandLineInterface( cli );
+        Cleartool.setSingleFlight( true );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setSingleFlight( false );
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void coalesced() throws InterruptedException {
+        List<CmdResult> results = runConcurrently( "desc -fmt %[rec_bls]p stream:s@\\pvob", 5 );
+
+        assertThat( cli.count( "desc" ), is( 1 ) );
+        assertThat( Cleartool.getCoalescedCommands(), is( 4L ) );
+        assertThat( results.size(), is( 5 ) );
+        for( CmdResult result : results ) {
+            assertThat( result.stdoutList.get( 0 ), is( "baseline:bl1@\\pvob" ) );
+        }
+
+        /* Each caller has its own result */
+        results.get( 0 ).stdoutList.clear();
+        assertThat( results.get( 1 ).stdoutList.size(), is( 1 ) );
+    }
+
+    @Test
+    public void mutationsAreNotCoalesced() throws InterruptedException {
+        runConcurrently( "mkbl -nc bl1", 3 );
+
+        assertThat( cli.count( "mkbl" ), is( 3 ) );
+        assertThat( Cleartool.getCoalescedCommands(), is( 0L ) );
+    }
+
+    @Test
+    public void readOnly() {
+        assertTrue( ReadOnlyCommands.isReadOnly( "desc -fmt %n stream:s@\\pvob" ) );
+        assertTrue( ReadOnlyCommands.isReadOnly( "deliver -status -stream stream:s@\\pvob" ) );
+        assertTrue( ReadOnlyCommands.isReadOnly( "find . -version version(\\main\\LATEST) -print" ) );
+        assertTrue( !ReadOnlyCommands.isReadOnly( "deliver -stream stream:s@\\pvob -force" ) );
+        assertTrue( !ReadOnlyCommands.isReadOnly( "find . -exec \"cleartool rmname $CLEARCASE_PN\"" ) );
+        assertTrue( !ReadOnlyCommands.isReadOnly( "chbl -level BUILT baseline:bl1@\\pvob" ) );
+        assertTrue( !ReadOnlyCommands.isReadOnly( "unknownverb" ) );
+    }
+
+    private List<CmdResult> runConcurrently( final String cmd, int n ) throws InterruptedException {
+        final List<CmdResult> results = Collections.synchronizedList( new ArrayList<CmdResult>() );
+        final CountDownLatch started = new CountDownLatch( n );
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int i = 0 ; i < n ; i++ ) {
+            Thread t = new Thread() {
+                public void run() {
+                    started.countDown();
+                    results.add( Cleartool.run( cmd ) );
+                }
+            };
+            threads.add( t );
+            t.start();
+        }
+
+        started.await();
+        /* Let the callers reach the command line */
+        Thread.sleep( 200 );
+        release.countDown();
+
+        for( Thread t : threads ) {
+            t.join();
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,182 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.Deliver;
+import net.praqma.clearcase.PVob;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.exceptions.CleartoolException;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.StreamHierarchy;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class StreamHierarchyTest {
+
+    private CommandLineInterface original;
+    private SimulatedCleartool cleartool;
+
+    @Before
+    public void before() {
+        SimulatedUCM model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                .project( "other", "\\pvob", "component:comp@\\pvob" )
+                .stream( "dev1", "stream:proj_int@\\pvob" )
+                .stream( "dev2", "stream:proj_int@\\pvob" )
+                .view( "dev1_view", "stream:dev1@\\pvob", null );
+        model.get( "stream", "stream:other_int@\\pvob" ).set( "def_deliver_tgt", "stream:proj_int@\\pvob" );
+
+        original = Cleartool.getCommandLineInterface();
+        cleartool = new SimulatedCleartool( model );
+        Cleartool.setCommandLineInterface( cleartool );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void lookups() throws Exception {
+        StreamHierarchy hierarchy = new PVob( "\\pvob" ).getStreamHierarchy();
+        Stream integration = Stream.get( "stream:proj_int@\\pvob" );
+        Stream dev1 = Stream.get( "stream:dev1@\\pvob" );
+
+        assertThat( hierarchy.size(), is( 4 ) );
+        assertThat( hierarchy.getChildren( integration ).size(), is( 2 ) );
+        assertThat( hierarchy.getParent( dev1 ), is( integration ) );
+        assertThat( hierarchy.getParent( integration ), is( nullValue() ) );
+        assertThat( hierarchy.getTarget( dev1 ), is( integration ) );
+        assertThat( hierarchy.getTargeting( integration ).size(), is( 3 ) );
+        assertThat( hierarchy.getSiblings( integration ).get( 0 ).getShortname(), is( "other_int" ) );
+        assertThat( hierarchy.getProject( dev1 ), is( Project.get( "project:proj@\\pvob" ) ) );
+        assertThat( hierarchy.getStreams( Project.get( "project:proj@\\pvob" ) ).size(), is( 3 ) );
+        assertThat( hierarchy.getViews( dev1 ).get( 0 ), is( "dev1_view" ) );
+
+        /* One listing of the PVob */
+        assertThat( cleartool.getCommandCount(), is( 1L ) );
+    }
+
+    @Test
+    public void deliveringStream() throws Exception {
+        for( int i = 0 ; i < 20 ; i++ ) {
+            cleartool.getModel().stream( "dev_" + i, "stream:proj_int@\\pvob" );
+        }
+        cleartool.getModel().deliver( "stream:dev_13@\\pvob", "activity:deliver.dev_13@\\pvob", "int_view" );
+        cleartool.setLatency( "deliver", 20 );
+
+        Stream integration = Stream.get( "stream:proj_int@\\pvob" );
+        List<Stream> streams = StreamHierarchy.snapshot( new PVob( "\\pvob" ) ).getChildren( integration );
+        assertThat( integration.getDeliveringStream( false, streams, 8 ).getShortname(), is( "dev_13" ) );
+
+        /* None delivering */
+        cleartool.getModel().completeDeliver( "stream:dev_13@\\pvob" );
+        assertThat( integration.getDeliveringStream( false, streams, 8 ), is( nullValue() ) );
+
+        /* Using the relations of a snapshot */
+        cleartool.getModel().deliver( "stream:dev2@\\pvob", "activity:deliver.dev2@\\pvob", "int_view" );
+        assertThat( integration.getDeliveringStream( true, StreamHierarchy.snapshot( new PVob( "\\pvob" ) ) ).getShortname(), is( "dev2" ) );
+    }
+
+    @Test
+    public void deliveringToTarget() throws Exception {
+        /* Two delivers at a time, to different targets */
+        SimulatedUCM model = cleartool.getModel();
+        model.deliver( "stream:dev1@\\pvob", "activity:deliver.dev1@\\pvob", "int_view" );
+        model.deliver( "stream:dev2@\\pvob", "stream:other_int@\\pvob", "activity:deliver.dev2@\\pvob", "other_view" );
+
+        Stream integration = Stream.get( "stream:proj_int@\\pvob" );
+        Stream other = Stream.get( "stream:other_int@\\pvob" );
+        Stream dev1 = Stream.get( "stream:dev1@\\pvob" );
+        Stream dev2 = Stream.get( "stream:dev2@\\pvob" );
+        List<Stream> streams = Arrays.asList( dev2, dev1 );
+        for( int parallelism : new int[] { 1, 2 } ) {
+            assertThat( integration.getDeliveringStream( false, streams, parallelism ), is( dev1 ) );
+            assertThat( other.getDeliveringStream( false, streams, parallelism ), is( dev2 ) );
+        }
+
+        /* Not printed by the status, the target is the stream of the integration view */
+        model.view( "int_view", "stream:proj_int@\\pvob", null );
+        Deliver.Status status = Deliver.Status.getStatus( "Deliver operation in progress on stream \"stream:dev1@\\pvob\"\n" +
+                "  Using integration activity \"deliver.dev1\".\n" +
+                "  Using view \"int_view\".\n" );
+        assertThat( status.getTargetStream(), is( integration ) );
+    }
+
+    @Test
+    public void deliverCandidatesByDate() throws Exception {
+        cleartool.getModel().stream( "old", "stream:proj_int@\\pvob" ).stream( "new", "stream:proj_int@\\pvob" ).stream( "unknown", "stream:proj_int@\\pvob" );
+        for( String stream : new String[] { "old", "new", "unknown" } ) {
+            cleartool.getModel().deliver( "stream:" + stream + "@\\pvob", "activity:deliver." + stream + "@\\pvob", "int_view" );
+        }
+
+        Stream old = Stream.get( "stream:old@\\pvob" );
+        old.setDate( new Date( 1000000000000L ) );
+        Stream young = Stream.get( "stream:new@\\pvob" );
+        young.setDate( new Date( 1300000000000L ) );
+        Stream unknown = Stream.get( "stream:unknown@\\pvob" );
+
+        /* The newest first, whatever the order of the candidates */
+        Stream integration = Stream.get( "stream:proj_int@\\pvob" );
+        assertThat( integration.getDeliveringStream( false, Arrays.asList( unknown, old, young ) ), is( young ) );
+        assertThat( integration.getDeliveringStream( false, Arrays.asList( old, unknown, young ) ), is( young ) );
+        assertThat( integration.getDeliveringStream( false, Arrays.asList( unknown, old ) ), is( old ) );
+    }
+
+    @Test
+    public void interruptedDeliverSearch() throws Exception {
+        cleartool.setLatency( "deliver", 1000 );
+        Stream integration = Stream.get( "stream:proj_int@\\pvob" );
+        List<Stream> streams = Arrays.asList( Stream.get( "stream:dev1@\\pvob" ), Stream.get( "stream:dev2@\\pvob" ) );
+
+        /* Interrupted while the queries are waiting for cleartool */
+        final Thread searching = Thread.currentThread();
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep( 200 );
+                } catch( InterruptedException e ) {
+                    /* Interrupting anyway */
+                }
+                searching.interrupt();
+            }
+        }.start();
+
+        try {
+            integration.getDeliveringStream( false, streams, 2 );
+            fail( "The search is interrupted" );
+        } catch( CleartoolException e ) {
+            /* Expected */
+        }
+        assertThat( Thread.interrupted(), is( true ) );
+    }
+
+    @Test
+    public void childStreams() throws Exception {
+        StreamHierarchy hierarchy = StreamHierarchy.snapshot( new PVob( "\\pvob" ) );
+        List<Stream> children = Stream.get( "stream:proj_int@\\pvob" ).getChildStreams( true, hierarchy );
+
+        assertThat( children.size(), is( 2 ) );
+        assertThat( cleartool.getCommandCount(), is( 1L ) );
+
+        /* A refresh sees new streams */
+        cleartool.getModel().stream( "dev3", "stream:proj_int@\\pvob" );
+        assertThat( hierarchy.refresh().getChildren( Stream.get( "stream:proj_int@\\pvob" ) ).size(), is( 3 ) );
+    }
+}
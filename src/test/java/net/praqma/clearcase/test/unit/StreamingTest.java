@@ -0,0 +1,243 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.Find;
+import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.container.LabelsForVersion;
+import net.praqma.clearcase.exceptions.CleartoolException;
+import net.praqma.clearcase.test.unit.util.ScriptedCommandLine;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.util.Labels;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The output of streamed commands is handed over line by line in order, a failing handler stops the command
+ * and a non zero exit status is an error, unless ignored.
+ * Streamed through the simulator, through a {@link CommandLineInterface} that cannot stream, and through a forked process.
+ *
+ * @author cwolfgang
+ */
+public class StreamingTest {
+
+    private CommandLineInterface original;
+    private SimulatedCleartool simulator;
+
+    @Before
+    public void before() {
+        SimulatedUCM model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                .stream( "dev", "stream:proj_int@\\pvob" );
+        model.baseline( "bl0", "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+        model.activity( "act1", "stream:dev@\\pvob", "First" );
+        model.version( "/view/vobs/comp/a.txt", "main/dev", "activity:act1@\\pvob" );
+        model.version( "/view/vobs/comp/b.txt", "main/dev", "activity:act1@\\pvob" );
+        model.baseline( "bl1", "component:comp@\\pvob", "stream:dev@\\pvob", "BUILT" );
+        model.activity( "act2", "stream:dev@\\pvob", "Second" );
+        model.version( "/view/vobs/comp/c.txt", "main/dev", "activity:act2@\\pvob" );
+        model.baseline( "bl2", "component:comp@\\pvob", "stream:dev@\\pvob", "BUILT" );
+
+        original = Cleartool.getCommandLineInterface();
+        simulator = new SimulatedCleartool( model );
+        Cleartool.setCommandLineInterface( simulator );
+    }
+
+    @After
+    public void after() {
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void linesInOrder() throws Exception {
+        assertThat( stream( "lsbl -s -stream stream:dev@\\pvob", false ), is( Arrays.asList( "bl0", "bl1", "bl2" ) ) );
+
+        /* Handed over when the command has finished */
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().on( "lsbl", "bl0\nbl1\nbl2" ) );
+        assertThat( stream( "lsbl -s -stream stream:dev@\\pvob", false ), is( Arrays.asList( "bl0", "bl1", "bl2" ) ) );
+    }
+
+    @Test
+    public void failingHandler() throws Exception {
+        assertThat( failAt( 2 ), is( 2 ) );
+
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().on( "lsbl", "bl0\nbl1\nbl2" ) );
+        assertThat( failAt( 2 ), is( 2 ) );
+    }
+
+    @Test
+    public void exitStatus() throws Exception {
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().fail( "lsbl", "cleartool: Error: Unable to determine stream" ) );
+        try {
+            stream( "lsbl -s -stream stream:dev@\\pvob", false );
+            fail( "The command failed" );
+        } catch( AbnormalProcessTerminationException e ) {
+            assertThat( e.getExitValue(), is( 1 ) );
+        }
+        assertThat( stream( "lsbl -s -stream stream:dev@\\pvob", true ).size(), is( 0 ) );
+    }
+
+    @Test
+    public void process() throws Exception {
+        /* Unknown to cleartool, or cleartool is not installed */
+        Cleartool.setCommandLineInterface( CommandLine.getInstance() );
+        try {
+            stream( "nosuchcommand -s", false );
+            fail( "The command failed" );
+        } catch( AbnormalProcessTerminationException e ) {
+            assertTrue( e.getExitValue() != 0 );
+        }
+        assertThat( stream( "nosuchcommand -s", true ).size(), is( 0 ) );
+    }
+
+    @Test
+    public void findLines() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        versions().find( collect( lines ) );
+        assertThat( lines.size(), is( 3 ) );
+        assertTrue( lines.get( 0 ), lines.get( 0 ).contains( "a.txt" ) );
+        assertTrue( lines.get( 2 ), lines.get( 2 ).contains( "c.txt" ) );
+
+        try {
+            versions().find( new LineHandler() {
+                @Override
+                public void handle( String line ) {
+                    throw new IllegalStateException( "Enough" );
+                }
+            } );
+            fail( "The handler failed" );
+        } catch( IllegalStateException e ) {
+            assertThat( e.getMessage(), is( "Enough" ) );
+        }
+
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().fail( "find", "cleartool: Error: Pathname not found" ) );
+        try {
+            versions().find( collect( lines ) );
+            fail( "The find failed" );
+        } catch( CleartoolException e ) {
+            /* Expected */
+        }
+        versions().acceptErrors().find( collect( lines ) );
+        assertThat( lines.size(), is( 3 ) );
+    }
+
+    @Test
+    public void labels() throws Exception {
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().fail( "lsvtree", "cleartool: Error: Not a vob object" ) );
+        try {
+            Labels.getLabels( Arrays.asList( "/view/vobs/comp/a.txt@@", "/view/vobs/comp/b.txt@@" ), null );
+            fail( "The listing failed" );
+        } catch( CleartoolException e ) {
+            /* Expected, also when listed one by one */
+        }
+    }
+
+    @Test
+    public void labelsOutOfOrder() throws Exception {
+        /* Printed absolute and out of order, with an element not asked for, and nothing for d.txt */
+        ScriptedCommandLine cli = new ScriptedCommandLine()
+                .on( "lsvtree \"d.txt@@\"$", "/view/vobs/comp/d.txt@@/main\n/view/vobs/comp/d.txt@@/main/1 (REL_4)" )
+                .on( "lsvtree", "/view/vobs/comp/x/a.txt@@/main\n/view/vobs/comp/x/a.txt@@/main/1 (REL_1)\n" +
+                                "/view/vobs/comp/other.txt@@/main\n/view/vobs/comp/other.txt@@/main/1 (REL_9)\n" +
+                                "/view/vobs/comp/c.txt@@/main\n/view/vobs/comp/c.txt@@/main/1 (REL_3)\n" +
+                                "/view/vobs/comp/a.txt@@/main\n/view/vobs/comp/a.txt@@/main/1 (REL_0)\n" +
+                                "/view/vobs/comp/b.txt@@/main\n/view/vobs/comp/b.txt@@/main/1 (REL_2)" );
+        Cleartool.setCommandLineInterface( cli );
+
+        List<String> pathnames = Arrays.asList( "a.txt@@", "./b.txt@@", "/view/vobs/comp/c.txt@@", "d.txt@@", "x/a.txt@@" );
+        Map<String, List<LabelsForVersion>> labels = Labels.getLabels( pathnames, null );
+
+        assertThat( new ArrayList<String>( labels.keySet() ), is( pathnames ) );
+        assertThat( labels.get( "a.txt@@" ).get( 0 ).getLabels().get( 0 ).getName(), is( "REL_0" ) );
+        assertThat( labels.get( "./b.txt@@" ).get( 0 ).getLabels().get( 0 ).getName(), is( "REL_2" ) );
+        assertThat( labels.get( "/view/vobs/comp/c.txt@@" ).get( 0 ).getLabels().get( 0 ).getName(), is( "REL_3" ) );
+        assertThat( labels.get( "d.txt@@" ).get( 0 ).getLabels().get( 0 ).getName(), is( "REL_4" ) );
+        assertThat( labels.get( "x/a.txt@@" ).get( 0 ).getLabels().get( 0 ).getName(), is( "REL_1" ) );
+        assertThat( labels.get( "a.txt@@" ).size(), is( 1 ) );
+
+        /* The chunk and d.txt alone */
+        assertThat( cli.count( "lsvtree" ), is( 2 ) );
+    }
+
+    @Test
+    public void activities() throws Exception {
+        DiffBl diffbl = new DiffBl( Baseline.get( "baseline:bl2@\\pvob" ), Baseline.get( "baseline:bl0@\\pvob" ) ).setActivities( true ).setVersions( true );
+        Activity.Parser parser = new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.RIGHT );
+
+        List<Activity> activities = parser.parse().getActivities();
+        assertThat( activities.size(), is( 2 ) );
+        assertThat( activities.get( 0 ).getShortname(), is( "act1" ) );
+        assertThat( activities.get( 0 ).changeset.versions.size(), is( 2 ) );
+        assertThat( activities.get( 1 ).getShortname(), is( "act2" ) );
+
+        /* Parsed again from the start */
+        assertThat( parser.parse().getActivities().size(), is( 2 ) );
+
+        Cleartool.setCommandLineInterface( new ScriptedCommandLine().fail( "diffbl", "cleartool: Error: Baseline not found" ) );
+        try {
+            parser.parse();
+            fail( "The diff failed" );
+        } catch( CleartoolException e ) {
+            /* Expected */
+        }
+    }
+
+    private Find versions() {
+        return new Find().addPathName( "." ).setFindAll().print().setViewRoot( new File( "/view/vobs/comp" ) ).setVersionQuery( "version(.../dev/LATEST)" );
+    }
+
+    private List<String> stream( String cmd, boolean ignore ) {
+        List<String> lines = new ArrayList<String>();
+        Cleartool.stream( cmd, null, ignore, collect( lines ) );
+        return lines;
+    }
+
+    /**
+     * @return The number of lines handed over when the handler failed at a line
+     */
+    private int failAt( final int line ) {
+        final int[] handled = new int[1];
+        try {
+            Cleartool.stream( "lsbl -s -stream stream:dev@\\pvob", null, new LineHandler() {
+                @Override
+                public void handle( String l ) {
+                    if( ++handled[0] == line ) {
+                        throw new IllegalStateException( "Failed at " + l );
+                    }
+                }
+            } );
+            fail( "The handler failed" );
+        } catch( IllegalStateException e ) {
+            assertThat( e.getMessage(), is( "Failed at bl1" ) );
+        }
+        return handled[0];
+    }
+
+    private LineHandler collect( final List<String> lines ) {
+        return new LineHandler() {
+            @Override
+            public void handle( String line ) {
+                lines.add( line );
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntityCache;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author cwolfgang
+ */
+public class UCMEntityCacheTest {
+
+    @After
+    public void disable() {
+        UCMEntityCache.disable();
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        Stream s1 = Stream.get( "stream:one@\\pvob" );
+        Stream s2 = Stream.get( "stream:one@\\pvob" );
+
+        assertThat( s1, is( not( sameInstance( s2 ) ) ) );
+        assertThat( s1, is( s2 ) );
+    }
+
+    @Test
+    public void cached() throws Exception {
+        UCMEntityCache.enable();
+
+        Stream s1 = Stream.get( "stream:one@\\pvob" );
+        Stream s2 = Stream.get( "one", s1.getPVob() );
+
+        assertThat( s1, is( sameInstance( s2 ) ) );
+        assertThat( UCMEntityCache.getHits(), is( 1 ) );
+    }
+
+    @Test
+    public void activitiesAreNotCached() throws Exception {
+        UCMEntityCache.enable();
+
+        Activity a1 = Activity.get( "activity:one@\\pvob" );
+        Activity a2 = Activity.get( "activity:one@\\pvob" );
+
+        assertThat( a1, is( not( sameInstance( a2 ) ) ) );
+        assertThat( UCMEntityCache.size(), is( 0 ) );
+    }
+
+    @Test
+    public void evict() throws Exception {
+        UCMEntityCache.enable();
+
+        Baseline b1 = Baseline.get( "baseline:bl@\\pvob" );
+        UCMEntityCache.evict( "baseline:bl@\\pvob" );
+        Baseline b2 = Baseline.get( "baseline:bl@\\pvob" );
+
+        assertThat( b1, is( not( sameInstance( b2 ) ) ) );
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        UCMEntityCache.enable( 2 );
+
+        Baseline b1 = Baseline.get( "baseline:bl1@\\pvob" );
+        Baseline.get( "baseline:bl2@\\pvob" );
+        Baseline.get( "baseline:bl3@\\pvob" );
+        Baseline.get( "baseline:bl1@\\other" );
+
+        assertThat( UCMEntityCache.size(), is( 3 ) );
+        assertThat( b1, is( not( sameInstance( Baseline.get( "baseline:bl1@\\pvob" ) ) ) ) );
+    }
+}
@@ -0,0 +1,288 @@
+package net.praqma.clearcase.test.unit;
+
+import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedCleartool;
+import net.praqma.clearcase.cleartool.simulator.SimulatedUCM;
+import net.praqma.clearcase.cleartool.simulator.SimulatedVersion;
+import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Project;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.UCMEntityStore;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.ucm.utils.DiffBlCache;
+import net.praqma.util.execute.CommandLineInterface;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author cwolfgang
+ */
+public class UCMEntityStoreTest {
+
+    private CommandLineInterface original;
+    private SimulatedUCM model;
+    private SimulatedCleartool cleartool;
+    private File file;
+
+    private List<String> versions = new ArrayList<String>();
+    private List<SimulatedVersion> simulated = new ArrayList<SimulatedVersion>();
+
+    @Before
+    public void before() throws Exception {
+        model = new SimulatedUCM()
+                .component( "comp", "\\pvob", "/view/vobs/comp" )
+                .project( "proj", "\\pvob", "component:comp@\\pvob" )
+                .stream( "dev", "stream:proj_int@\\pvob" )
+                .stream( "dev2", "stream:proj_int@\\pvob" )
+                .activity( "act1", "stream:dev@\\pvob", "First" )
+                .activity( "act2", "stream:dev@\\pvob", "Second" );
+        for( String element : new String[] { "a.txt", "b.txt", "c.txt" } ) {
+            SimulatedVersion version = model.version( "/view/vobs/comp/" + element, "main/dev", "activity:act1@\\pvob" );
+            versions.add( version.getFullyQualifiedName() );
+            simulated.add( version );
+        }
+        model.baseline( "bl1", "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+
+        original = Cleartool.getCommandLineInterface();
+        cleartool = new SimulatedCleartool( model );
+        Cleartool.setCommandLineInterface( cleartool );
+
+        file = File.createTempFile( "entities", ".store" );
+        file.delete();
+        UCMEntityStore.enable( file );
+    }
+
+    @After
+    public void after() {
+        UCMEntityStore.disable();
+        file.delete();
+        Cleartool.setCommandLineInterface( original );
+    }
+
+    @Test
+    public void acrossRestarts() throws Exception {
+        UCMEntity.loadAll( versions() );
+        Baseline.get( "baseline:bl1@\\pvob" ).load();
+        long described = cleartool.getCommandCount();
+
+        /* A restart */
+        UCMEntityStore.disable();
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.size(), is( 4 ) );
+
+        /* The versions are not described */
+        List<Version> loaded = versions();
+        UCMEntity.loadAll( loaded );
+        assertThat( loaded.get( 2 ).getUser(), is( "simulator" ) );
+        assertThat( cleartool.getCommandCount(), is( described ) );
+        loaded.get( 1 ).load();
+        assertThat( cleartool.getCommandCount(), is( described ) );
+
+        /* The activity is not stored, it is described when asked for */
+        assertThat( loaded.get( 2 ).getActivity().getShortname(), is( "act1" ) );
+        assertThat( cleartool.getCommandCount(), is( described + 1 ) );
+
+        /* The promotion level is described again */
+        Baseline.get( "baseline:bl1@\\pvob" ).setPromotionLevel( Project.PromotionLevel.TESTED );
+        Baseline baseline = Baseline.get( "baseline:bl1@\\pvob" ).load();
+        assertThat( baseline.getPromotionLevel(), is( Project.PromotionLevel.TESTED ) );
+        assertThat( baseline.getComponent().getShortname(), is( "comp" ) );
+    }
+
+    @Test
+    public void movedVersion() throws Exception {
+        UCMEntity.loadAll( versions() );
+
+        /* Moved to another activity */
+        simulated.get( 0 ).set( "activity", "activity:act2@\\pvob" );
+        UCMEntityStore.enable( file );
+
+        Version version = versions().get( 0 );
+        UCMEntity.loadAll( Collections.singletonList( version ) );
+        assertThat( version.getActivity().getShortname(), is( "act2" ) );
+    }
+
+    @Test
+    public void storedDiff() throws Exception {
+        model.activity( "act3", "stream:dev@\\pvob", "Third" );
+        model.version( "/view/vobs/comp/d.txt", "main/dev", "activity:act3@\\pvob" );
+        model.baseline( "bl2", "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+        DiffBlCache.setCapacity( 10 );
+        try {
+            assertThat( diff(), is( "act3" ) );
+
+            /* A restart, only the object ids of the baselines are described */
+            DiffBlCache.setCapacity( 10 );
+            UCMEntityStore.enable( file );
+            long count = cleartool.getCommandCount();
+            assertThat( diff(), is( "act3" ) );
+            assertThat( cleartool.getCommandCount(), is( count + 2 ) );
+
+            /* Removed and made again with another activity, the stored diff is not of the baseline */
+            model.remove( "baseline", "baseline:bl2@\\pvob" );
+            model.activity( "act4", "stream:dev@\\pvob", "Fourth" );
+            model.version( "/view/vobs/comp/e.txt", "main/dev", "activity:act4@\\pvob" );
+            model.baseline( "bl2", "component:comp@\\pvob", "stream:dev@\\pvob", "INITIAL" );
+
+            DiffBlCache.setCapacity( 10 );
+            UCMEntityStore.enable( file );
+            assertThat( diff(), is( "act3 act4" ) );
+
+            DiffBlCache.setCapacity( 10 );
+            UCMEntityStore.enable( file );
+            assertThat( diff(), is( "act3 act4" ) );
+        } finally {
+            DiffBlCache.setCapacity( 0 );
+        }
+    }
+
+    private String diff() throws Exception {
+        DiffBl diffbl = new DiffBl( Baseline.get( "baseline:bl2@\\pvob" ), Baseline.get( "baseline:bl1@\\pvob" ) ).setActivities( true );
+        StringBuilder sb = new StringBuilder();
+        for( Activity activity : new Activity.Parser( diffbl ).addDirection( Activity.Parser.Direction.RIGHT ).parse().getActivities() ) {
+            sb.append( sb.length() > 0 ? " " : "" ).append( activity.getShortname() );
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void reusedName() throws Exception {
+        Baseline.get( "baseline:bl1@\\pvob" ).load();
+        assertThat( UCMEntityStore.size(), is( 1 ) );
+
+        /* Removed and made again, on another stream */
+        model.remove( "baseline", "baseline:bl1@\\pvob" );
+        model.baseline( "bl1", "component:comp@\\pvob", "stream:dev2@\\pvob", "INITIAL" );
+
+        Baseline baseline = Baseline.get( "baseline:bl1@\\pvob" ).load();
+        assertThat( baseline.getStream().getShortname(), is( "dev2" ) );
+
+        /* The record of the new baseline is stored */
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.size(), is( 1 ) );
+        assertThat( Baseline.get( "baseline:bl1@\\pvob" ).load().getStream().getShortname(), is( "dev2" ) );
+    }
+
+    @Test
+    public void removedEntity() throws Exception {
+        Baseline.get( "baseline:bl1@\\pvob" ).load();
+        model.remove( "baseline", "baseline:bl1@\\pvob" );
+
+        try {
+            Baseline.get( "baseline:bl1@\\pvob" ).load();
+            fail( "The baseline is removed" );
+        } catch( UnableToLoadEntityException e ) {
+            /* Expected */
+        }
+        assertThat( UCMEntityStore.size(), is( 0 ) );
+
+        /* Also after a restart */
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.size(), is( 0 ) );
+    }
+
+    @Test
+    public void compactKeepsFile() throws Exception {
+        UCMEntityStore.put( "key", "value" );
+
+        /* The rewritten file cannot replace the store */
+        File blocker = new File( file.getPath() + ".old" );
+        blocker.mkdir();
+        new File( blocker, "file" ).createNewFile();
+        try {
+            UCMEntityStore.compact();
+            fail( "The store cannot be replaced" );
+        } catch( IOException e ) {
+            /* Expected */
+        } finally {
+            FileUtils.deleteDirectory( blocker );
+        }
+
+        UCMEntityStore.put( "other", "value" );
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.get( "key" ), is( "value" ) );
+        assertThat( UCMEntityStore.get( "other" ), is( "value" ) );
+    }
+
+    @Test
+    public void compact() throws Exception {
+        UCMEntityStore.put( "key", "first" );
+        UCMEntityStore.put( "key", "second" );
+        long length = file.length();
+
+        UCMEntityStore.compact();
+        assertThat( file.length() < length, is( true ) );
+
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.get( "key" ), is( "second" ) );
+    }
+
+    @Test
+    public void compactWhenOutgrown() throws Exception {
+        long limit = UCMEntityStore.COMPACT_LENGTH;
+        UCMEntityStore.COMPACT_LENGTH = 1000;
+        try {
+            for( int i = 0 ; i < 1000 ; i++ ) {
+                UCMEntityStore.put( "key" + ( i % 10 ), "value " + i );
+            }
+            UCMEntityStore.remove( "key0" );
+
+            /* Not more than twice the current values, and not less than the limit */
+            assertThat( file.length() <= 2 * 9 * ( 8 + "key0".length() + "value 999".length() ) + 1000, is( true ) );
+            assertThat( UCMEntityStore.size(), is( 9 ) );
+
+            UCMEntityStore.enable( file );
+            assertThat( UCMEntityStore.size(), is( 9 ) );
+            assertThat( UCMEntityStore.get( "key9" ), is( "value 999" ) );
+        } finally {
+            UCMEntityStore.COMPACT_LENGTH = limit;
+        }
+    }
+
+    @Test
+    public void longValues() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0 ; i < 1000 ; i++ ) {
+            sb.append( "line " ).append( i ).append( "\n" );
+        }
+        String value = sb.toString();
+        UCMEntityStore.put( "long", value );
+        UCMEntityStore.put( "short", "value" );
+        assertThat( UCMEntityStore.get( "long" ), is( value ) );
+
+        /* Read from the file when asked for, also after a restart and compaction */
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.get( "long" ), is( value ) );
+        UCMEntityStore.compact();
+        UCMEntityStore.put( "after", "compaction" );
+        assertThat( UCMEntityStore.get( "long" ), is( value ) );
+
+        UCMEntityStore.enable( file );
+        assertThat( UCMEntityStore.get( "long" ), is( value ) );
+        assertThat( UCMEntityStore.get( "short" ), is( "value" ) );
+        assertThat( UCMEntityStore.get( "after" ), is( "compaction" ) );
+    }
+
+    private List<Version> versions() throws Exception {
+        List<Version> list = new ArrayList<Version>();
+        for( String version : versions ) {
+            list.add( Version.get( version ) );
+        }
+        return list;
+    }
+}
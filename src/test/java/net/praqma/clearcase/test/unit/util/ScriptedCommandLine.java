@@ -0,0 +1,111 @@
+package net.praqma.clearcase.test.unit.util;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link CommandLineInterface} answering commands from a script of regular expressions,
+ * for use with {@link net.praqma.clearcase.cleartool.Cleartool#setCommandLineInterface(CommandLineInterface)}.
+ *
+ * @author cwolfgang
+ */
+public class ScriptedCommandLine implements CommandLineInterface {
+
+    private final Map<Pattern, String[]> script = new LinkedHashMap<Pattern, String[]>();
+    private final List<String> commands = Collections.synchronizedList( new ArrayList<String>() );
+
+    /**
+     * Answer commands matching the regular expression with the output
+     */
+    public ScriptedCommandLine on( String regex, String output ) {
+        script.put( Pattern.compile( regex ), new String[] { output, null } );
+        return this;
+    }
+
+    /**
+     * Fail commands matching the regular expression with the error
+     */
+    public ScriptedCommandLine fail( String regex, String error ) {
+        script.put( Pattern.compile( regex ), new String[] { null, error } );
+        return this;
+    }
+
+    public List<String> getCommands() {
+        synchronized( commands ) {
+            return new ArrayList<String>( commands );
+        }
+    }
+
+    public int count( String regex ) {
+        Pattern p = Pattern.compile( regex );
+        int count = 0;
+        for( String cmd : getCommands() ) {
+            if( p.matcher( cmd ).find() ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public OperatingSystem getOS() {
+        return CommandLine.getInstance().getOS();
+    }
+
+    @Override
+    public CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, null, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, false, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, false, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        return run( cmd, dir, merge, ignore, null );
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Map<String, String> variables ) throws CommandLineException, AbnormalProcessTerminationException {
+        commands.add( cmd );
+
+        for( Map.Entry<Pattern, String[]> entry : script.entrySet() ) {
+            if( entry.getKey().matcher( cmd ).find() ) {
+                String[] answer = entry.getValue();
+                if( answer[1] != null && !ignore ) {
+                    throw new AbnormalProcessTerminationException( answer[1], cmd, 1 );
+                }
+
+                CmdResult result = new CmdResult();
+                if( answer[0] != null && answer[0].length() > 0 ) {
+                    for( String line : answer[0].split( "\n", -1 ) ) {
+                        result.stdoutList.add( line );
+                        result.stdoutBuffer.append( line ).append( Cool.linesep );
+                    }
+                }
+                return result;
+            }
+        }
+
+        throw new AbnormalProcessTerminationException( "No script for " + cmd, cmd, 1 );
+    }
+}
@@ -0,0 +1,195 @@
+package net.praqma.clearcase.test.unit.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Process} behaving as an interactive <code>cleartool -status</code>, for testing the session pool without cleartool.<br>
+ * It knows these commands:
+ * <ul>
+ *     <li>cd "dir", changes the working directory, which starts as user.dir</li>
+ *     <li>pwd, prints the working directory</li>
+ *     <li>echo a b, prints each argument on a line</li>
+ *     <li>wait, waits for the gate to open</li>
+ *     <li>die, waits for the gate to open and terminates the process without a status, as a lost license</li>
+ *     <li>quit</li>
+ * </ul>
+ * Anything else is an unrecognized command with the status 1.
+ *
+ * @author cwolfgang
+ */
+public class ScriptedSession extends Process {
+
+    private final Pipe stdin = new Pipe();
+    private final Pipe stdout = new Pipe();
+    private final Pipe stderr = new Pipe();
+    private final CountDownLatch gate;
+    private final CountDownLatch terminated = new CountDownLatch( 1 );
+
+    private String directory = System.getProperty( "user.dir" );
+
+    public ScriptedSession( CountDownLatch gate ) {
+        this.gate = gate;
+
+        Thread thread = new Thread( "scripted-cleartool-session" ) {
+            public void run() {
+                try {
+                    interpret();
+                } catch( Exception e ) {
+                    /* Terminated */
+                } finally {
+                    terminate();
+                }
+            }
+        };
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    private void interpret() throws IOException, InterruptedException {
+        BufferedReader in = new BufferedReader( new InputStreamReader( stdin.input ) );
+        PrintStream out = new PrintStream( stdout.output, true );
+        PrintStream err = new PrintStream( stderr.output, true );
+
+        int number = 0;
+        String line;
+        while( ( line = in.readLine() ) != null ) {
+            number++;
+            String[] words = line.trim().split( "\\s+", 2 );
+            String command = words[0];
+            String arguments = words.length > 1 ? words[1] : "";
+
+            int status = 0;
+            if( command.equals( "quit" ) ) {
+                return;
+            } else if( command.equals( "die" ) ) {
+                gate.await( 10, TimeUnit.SECONDS );
+                return;
+            } else if( command.equals( "wait" ) ) {
+                gate.await( 10, TimeUnit.SECONDS );
+            } else if( command.equals( "cd" ) ) {
+                directory = arguments.replace( "\"", "" );
+            } else if( command.equals( "pwd" ) ) {
+                out.println( directory );
+            } else if( command.equals( "echo" ) ) {
+                for( String word : arguments.split( "\\s+" ) ) {
+                    out.println( word );
+                }
+            } else {
+                err.println( "cleartool: Error: Unrecognized command: \"" + line + "\"" );
+                status = 1;
+            }
+
+            out.println( "Command " + number + " returned status " + status );
+        }
+    }
+
+    private void terminate() {
+        stdout.close();
+        stderr.close();
+        terminated.countDown();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stdin.output;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout.input;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr.input;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        terminated.await();
+        return 0;
+    }
+
+    @Override
+    public int exitValue() {
+        if( terminated.getCount() > 0 ) {
+            throw new IllegalThreadStateException( "The session is running" );
+        }
+        return 0;
+    }
+
+    @Override
+    public void destroy() {
+        stdin.close();
+        terminate();
+    }
+
+    /**
+     * A pipe between threads, not bound to the threads as the piped streams
+     */
+    private static class Pipe {
+        private final LinkedList<Integer> bytes = new LinkedList<Integer>();
+        private boolean closed = false;
+
+        private final OutputStream output = new OutputStream() {
+            @Override
+            public void write( int b ) throws IOException {
+                synchronized( Pipe.this ) {
+                    if( closed ) {
+                        throw new IOException( "The pipe is closed" );
+                    }
+                    bytes.add( b & 0xff );
+                    Pipe.this.notifyAll();
+                }
+            }
+        };
+
+        private final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                synchronized( Pipe.this ) {
+                    while( bytes.isEmpty() && !closed ) {
+                        try {
+                            Pipe.this.wait();
+                        } catch( InterruptedException e ) {
+                            throw new IOException( "Interrupted" );
+                        }
+                    }
+                    return bytes.isEmpty() ? -1 : bytes.removeFirst();
+                }
+            }
+
+            @Override
+            public int read( byte[] b, int off, int len ) throws IOException {
+                if( len == 0 ) {
+                    return 0;
+                }
+                int c = read();
+                if( c < 0 ) {
+                    return -1;
+                }
+                b[off] = (byte) c;
+                int n = 1;
+                synchronized( Pipe.this ) {
+                    while( n < len && !bytes.isEmpty() ) {
+                        b[off + n++] = (byte) (int) bytes.removeFirst();
+                    }
+                }
+                return n;
+            }
+        };
+
+        private synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+}